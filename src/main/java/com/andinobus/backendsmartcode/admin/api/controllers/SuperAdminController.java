@@ -2,6 +2,9 @@ package com.andinobus.backendsmartcode.admin.api.controllers;
 
 import com.andinobus.backendsmartcode.admin.api.dto.SuperAdminDtos;
 import com.andinobus.backendsmartcode.admin.application.services.SuperAdminStatsService;
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
+import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
@@ -20,6 +23,7 @@ import java.util.List;
 public class SuperAdminController {
 
     private final SuperAdminStatsService superAdminStatsService;
+    private final ControlAcceso controlAcceso;
 
     /**
      * Obtener estadísticas globales del sistema para el Super Admin
@@ -31,6 +35,17 @@ public class SuperAdminController {
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * Recalcular los agregados del dashboard desde las tablas base
+     */
+    @PostMapping("/stats/reconstruir")
+    public ResponseEntity<Void> reconstruirStats(HttpServletRequest httpRequest) {
+        controlAcceso.requerirAdmin(httpRequest);
+        log.info("POST /api/admin/stats/reconstruir - Reconstruyendo estadísticas agregadas");
+        superAdminStatsService.reconstruirEstadisticas();
+        return ResponseEntity.ok().build();
+    }
+
     /**
      * Obtener lista de todas las cooperativas con información resumida
      */
@@ -99,4 +114,24 @@ public class SuperAdminController {
         SuperAdminDtos.ReporteVentasGlobalResponse reporte = superAdminStatsService.getReporteVentasGlobal(fechaInicio, fechaFin);
         return ResponseEntity.ok(reporte);
     }
+
+    /**
+     * Estado del cubo de ventas de los reportes (marca de agua y cambios pendientes)
+     */
+    @GetMapping("/reportes/cubo")
+    public ResponseEntity<VentasDtos.CuboVentasEstadoResponse> getEstadoCuboVentas() {
+        log.info("GET /api/admin/reportes/cubo - Estado del cubo de ventas");
+        return ResponseEntity.ok(superAdminStatsService.getEstadoCuboVentas());
+    }
+
+    /**
+     * Recalcular el cubo de ventas de los reportes desde las tablas base
+     */
+    @PostMapping("/reportes/cubo/reconstruir")
+    public ResponseEntity<Void> reconstruirCuboVentas(HttpServletRequest httpRequest) {
+        controlAcceso.requerirAdmin(httpRequest);
+        log.info("POST /api/admin/reportes/cubo/reconstruir - Reconstruyendo el cubo de ventas");
+        superAdminStatsService.reconstruirCuboVentas();
+        return ResponseEntity.ok().build();
+    }
 }
@@ -0,0 +1,109 @@
+package com.andinobus.backendsmartcode.admin.application.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lectura de la capa de agregados del dashboard (migraciones V49 y V55).
+ *
+ * Los triggers de reserva, viaje, frecuencia, bus y usuario_cooperativa mantienen los contadores; los
+ * de viajes y reservas llegan como deltas que aquí se suman a la fila consolidada al leer y se
+ * compactan periódicamente, así cada consulta lee unas pocas filas y no las tablas completas.
+ * Un viaje cuenta para la cooperativa de su frecuencia, igual que en el cubo de ventas.
+ */
+@Service
+@Slf4j
+public class EstadisticasAgregadasService {
+
+    private static final String SQL_RESUMEN_DIA =
+            "SELECT COALESCE(SUM(viajes), 0), COALESCE(SUM(ventas_monto), 0), " +
+            "       COALESCE(SUM(transacciones), 0), COALESCE(SUM(reservas_pendientes), 0) " +
+            "FROM (SELECT viajes, ventas_monto, transacciones, reservas_pendientes " +
+            "      FROM estadistica_diaria_cooperativa WHERE fecha = ? AND (CAST(? AS BIGINT) IS NULL OR cooperativa_id = ?) " +
+            "      UNION ALL " +
+            "      SELECT viajes, ventas_monto, transacciones, reservas_pendientes " +
+            "      FROM estadistica_diaria_delta WHERE fecha = ? AND (CAST(? AS BIGINT) IS NULL OR cooperativa_id = ?)) t";
+
+    private static final String SQL_RESUMEN_COOPERATIVAS =
+            "SELECT COALESCE(SUM(buses), 0), COALESCE(SUM(buses_activos), 0), " +
+            "       COALESCE(SUM(usuarios), 0), COALESCE(SUM(usuarios_activos), 0) " +
+            "FROM estadistica_cooperativa WHERE (CAST(? AS BIGINT) IS NULL OR cooperativa_id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EstadisticasAgregadasService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Contadores de un día (fecha del viaje), de todas las cooperativas si cooperativaId es null
+     */
+    public record ResumenDiario(int viajes, BigDecimal ventasMonto, int transacciones, int reservasPendientes) {
+    }
+
+    /**
+     * Buses y usuarios, de todas las cooperativas si se piden en conjunto
+     */
+    public record ResumenCooperativa(int buses, int busesActivos, int usuarios, int usuariosActivos) {
+    }
+
+    @Transactional(readOnly = true)
+    public ResumenDiario obtenerDia(LocalDate fecha, Long cooperativaId) {
+        return jdbcTemplate.queryForObject(SQL_RESUMEN_DIA, (rs, i) -> new ResumenDiario(
+                        rs.getInt(1), rs.getBigDecimal(2), rs.getInt(3), rs.getInt(4)),
+                fecha, cooperativaId, cooperativaId, fecha, cooperativaId, cooperativaId);
+    }
+
+    @Transactional(readOnly = true)
+    public ResumenCooperativa obtenerCooperativa(Long cooperativaId) {
+        return jdbcTemplate.queryForObject(SQL_RESUMEN_COOPERATIVAS, (rs, i) -> new ResumenCooperativa(
+                        rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4)),
+                cooperativaId, cooperativaId);
+    }
+
+    /**
+     * Buses y usuarios de cada cooperativa en una sola lectura
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, ResumenCooperativa> obtenerPorCooperativa() {
+        Map<Long, ResumenCooperativa> resumen = new HashMap<>();
+        jdbcTemplate.query("SELECT cooperativa_id, buses, buses_activos, usuarios, usuarios_activos FROM estadistica_cooperativa",
+                rs -> {
+                    resumen.put(rs.getLong(1), new ResumenCooperativa(rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5)));
+                });
+        return resumen;
+    }
+
+    /**
+     * Consolida los deltas pendientes en las filas por día y cooperativa
+     */
+    @Scheduled(fixedDelayString = "${app.admin.estadisticas.compactacion-ms:30000}", initialDelayString = "${app.admin.estadisticas.compactacion-ms:30000}")
+    public void compactar() {
+        try {
+            Integer grupos = jdbcTemplate.queryForObject("SELECT estadistica_compactar()", Integer.class);
+            if (grupos != null && grupos > 0) {
+                log.debug("Estadísticas agregadas compactadas: {} filas día/cooperativa actualizadas", grupos);
+            }
+        } catch (Exception e) {
+            log.error("No se pudieron compactar las estadísticas agregadas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recalcula todos los agregados desde las tablas base (reparación manual). No bloquea a las
+     * ventas: los deltas que se registran mientras corre quedan para la siguiente compactación
+     */
+    @Transactional
+    public void reconstruir() {
+        log.info("Reconstruyendo estadísticas agregadas desde las tablas base");
+        jdbcTemplate.execute("SELECT estadistica_reconstruir()");
+    }
+}
@@ -2,16 +2,14 @@ package com.andinobus.backendsmartcode.admin.application.services;
 
 import com.andinobus.backendsmartcode.admin.api.dto.SuperAdminDtos;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.Cooperativa;
-import com.andinobus.backendsmartcode.catalogos.domain.entities.Bus;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.CooperativaRepository;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusRepository;
 import com.andinobus.backendsmartcode.cooperativa.infrastructure.repositories.UsuarioCooperativaRepository;
+import com.andinobus.backendsmartcode.usuarios.application.services.CacheSesiones;
 import com.andinobus.backendsmartcode.usuarios.domain.entities.AppUser;
 import com.andinobus.backendsmartcode.usuarios.domain.repositories.UserRepository;
-import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
-import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
-import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
-import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
+import com.andinobus.backendsmartcode.ventas.application.services.CuboVentasService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
@@ -19,9 +17,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -33,62 +31,32 @@ public class SuperAdminStatsService {
     private final BusRepository busRepository;
     private final UsuarioCooperativaRepository usuarioCooperativaRepository;
     private final UserRepository userRepository;
-    private final ViajeRepository viajeRepository;
-    private final ReservaRepository reservaRepository;
+    private final CuboVentasService cuboVentasService;
+    private final EstadisticasAgregadasService estadisticasAgregadasService;
+    private final CacheSesiones cacheSesiones;
 
     @Transactional(readOnly = true)
     public SuperAdminDtos.SuperAdminStatsResponse getStats() {
         log.info("Obteniendo estadísticas globales del sistema");
 
         // Estadísticas de cooperativas
-        List<Cooperativa> todasCooperativas = cooperativaRepository.findAll();
-        int totalCooperativas = todasCooperativas.size();
-        int cooperativasActivas = (int) todasCooperativas.stream()
-                .filter(Cooperativa::getActivo)
-                .count();
+        int totalCooperativas = (int) cooperativaRepository.count();
+        int cooperativasActivas = (int) cooperativaRepository.countByActivoTrue();
 
-        // Estadísticas de buses
-        List<Bus> todosBuses = busRepository.findAll();
-        int totalBuses = todosBuses.size();
-        int busesActivos = (int) todosBuses.stream()
-                .filter(Bus::getActivo)
-                .count();
-
-        // Estadísticas de usuarios
-        long totalUsuarios = usuarioCooperativaRepository.count();
-        long usuariosActivos = usuarioCooperativaRepository.findAll().stream()
-                .filter(u -> u.getActivo())
-                .count();
-
-        // Estadísticas de viajes de hoy
-        LocalDate hoy = LocalDate.now();
-        List<Viaje> viajesHoy = viajeRepository.findByFecha(hoy);
-        int cantidadViajesHoy = viajesHoy.size();
-
-        // Estadísticas de reservas y ventas de hoy
-        List<Reserva> reservasHoy = reservaRepository.findAll().stream()
-                .filter(r -> viajesHoy.stream().anyMatch(v -> v.getId().equals(r.getViaje().getId())))
-                .collect(Collectors.toList());
-
-        double ventasTotalesHoy = reservasHoy.stream()
-                .filter(r -> "PAGADO".equals(r.getEstado()))
-                .mapToDouble(r -> r.getMonto() != null ? r.getMonto().doubleValue() : 0.0)
-                .sum();
-
-        int reservasPendientes = (int) reservasHoy.stream()
-                .filter(r -> "PENDIENTE".equals(r.getEstado()))
-                .count();
+        // Buses, usuarios, viajes y ventas de hoy desde la capa de agregados
+        EstadisticasAgregadasService.ResumenCooperativa flota = estadisticasAgregadasService.obtenerCooperativa(null);
+        EstadisticasAgregadasService.ResumenDiario hoy = estadisticasAgregadasService.obtenerDia(LocalDate.now(), null);
 
         return SuperAdminDtos.SuperAdminStatsResponse.builder()
                 .totalCooperativas(totalCooperativas)
                 .cooperativasActivas(cooperativasActivas)
-                .totalBuses(totalBuses)
-                .busesActivos(busesActivos)
-                .totalUsuarios((int) totalUsuarios)
-                .usuariosActivos((int) usuariosActivos)
-                .ventasTotalesHoy(ventasTotalesHoy)
-                .viajesHoy(cantidadViajesHoy)
-                .reservasPendientes(reservasPendientes)
+                .totalBuses(flota.buses())
+                .busesActivos(flota.busesActivos())
+                .totalUsuarios(flota.usuarios())
+                .usuariosActivos(flota.usuariosActivos())
+                .ventasTotalesHoy(hoy.ventasMonto().doubleValue())
+                .viajesHoy(hoy.viajes())
+                .reservasPendientes(hoy.reservasPendientes())
                 .build();
     }
 
@@ -96,10 +64,14 @@ public class SuperAdminStatsService {
     public List<SuperAdminDtos.CooperativaInfo> getAllCooperativas() {
         log.info("Obteniendo lista completa de cooperativas");
 
+        Map<Long, EstadisticasAgregadasService.ResumenCooperativa> resumenes = estadisticasAgregadasService.obtenerPorCooperativa();
+        EstadisticasAgregadasService.ResumenCooperativa vacio = new EstadisticasAgregadasService.ResumenCooperativa(0, 0, 0, 0);
+
         return cooperativaRepository.findAll().stream()
                 .map(coop -> {
-                    int cantidadBuses = busRepository.findByCooperativaId(coop.getId()).size();
-                    int cantidadPersonal = usuarioCooperativaRepository.findByCooperativaId(coop.getId()).size();
+                    EstadisticasAgregadasService.ResumenCooperativa resumen = resumenes.getOrDefault(coop.getId(), vacio);
+                    int cantidadBuses = resumen.buses();
+                    int cantidadPersonal = resumen.usuarios();
 
                     return SuperAdminDtos.CooperativaInfo.builder()
                             .id(coop.getId())
@@ -157,34 +129,16 @@ public class SuperAdminStatsService {
         int usuariosActivos = (int) usuarios.stream().filter(SuperAdminDtos.UsuarioInfo::isActivo).count();
 
         // Viajes y ventas de hoy para esta cooperativa
-        LocalDate hoy = LocalDate.now();
-        List<Viaje> viajesHoyCooperativa = viajeRepository.findByFecha(hoy).stream()
-                .filter(v -> v.getBus().getCooperativa().getId().equals(cooperativaId))
-                .collect(Collectors.toList());
-
-        int viajesHoy = viajesHoyCooperativa.size();
-
-        List<Reserva> reservasHoyCooperativa = reservaRepository.findAll().stream()
-                .filter(r -> viajesHoyCooperativa.stream().anyMatch(v -> v.getId().equals(r.getViaje().getId())))
-                .collect(Collectors.toList());
-
-        double ventasHoy = reservasHoyCooperativa.stream()
-                .filter(r -> "PAGADO".equals(r.getEstado()))
-                .mapToDouble(r -> r.getMonto() != null ? r.getMonto().doubleValue() : 0.0)
-                .sum();
-
-        int reservasPendientes = (int) reservasHoyCooperativa.stream()
-                .filter(r -> "PENDIENTE".equals(r.getEstado()))
-                .count();
+        EstadisticasAgregadasService.ResumenDiario hoy = estadisticasAgregadasService.obtenerDia(LocalDate.now(), cooperativaId);
 
         SuperAdminDtos.CooperativaStatsResponse stats = SuperAdminDtos.CooperativaStatsResponse.builder()
                 .totalBuses(totalBuses)
                 .busesActivos(busesActivos)
                 .totalUsuarios(totalUsuarios)
                 .usuariosActivos(usuariosActivos)
-                .viajesHoy(viajesHoy)
-                .ventasHoy(ventasHoy)
-                .reservasPendientes(reservasPendientes)
+                .viajesHoy(hoy.viajes())
+                .ventasHoy(hoy.ventasMonto().doubleValue())
+                .reservasPendientes(hoy.reservasPendientes())
                 .build();
 
         return SuperAdminDtos.CooperativaDetalleResponse.builder()
@@ -201,6 +155,13 @@ public class SuperAdminStatsService {
                 .build();
     }
 
+    /**
+     * Recalcula los agregados del dashboard desde las tablas base
+     */
+    public void reconstruirEstadisticas() {
+        estadisticasAgregadasService.reconstruir();
+    }
+
     /**
      * Activa o desactiva una cooperativa
      */
@@ -250,6 +211,7 @@ public class SuperAdminStatsService {
         
         cliente.setActivo(activo);
         userRepository.save(cliente);
+        cacheSesiones.invalidarUsuario("CLIENTE", clienteId);
         
         log.info("Estado de cliente {} actualizado exitosamente", clienteId);
     }
@@ -261,31 +223,34 @@ public class SuperAdminStatsService {
     public SuperAdminDtos.ReporteVentasGlobalResponse getReporteVentasGlobal(LocalDate fechaInicio, LocalDate fechaFin) {
         log.info("Generando reporte de ventas global desde {} hasta {}", fechaInicio, fechaFin);
         
-        // Obtener ventas totales globales
-        java.math.BigDecimal ventasTotales = reservaRepository.sumVentasTotalesGlobal(fechaInicio, fechaFin);
-        if (ventasTotales == null) ventasTotales = java.math.BigDecimal.ZERO;
+        // Una lectura del cubo de ventas; totales, días y cooperativas se acumulan en memoria
+        List<CuboVentasService.Celda> celdas = cuboVentasService.consultar(null, fechaInicio, fechaFin, CuboVentasService.PAGADO);
         
-        long totalTransacciones = reservaRepository.countTransaccionesGlobal(fechaInicio, fechaFin);
-        
-        // Obtener ventas por día
-        List<Object[]> ventasPorDiaRaw = reservaRepository.findVentasPorDiaGlobal(fechaInicio, fechaFin);
-        List<SuperAdminDtos.VentaDiariaGlobal> ventasPorDia = ventasPorDiaRaw.stream()
-                .map(row -> SuperAdminDtos.VentaDiariaGlobal.builder()
-                        .fecha((LocalDate) row[0])
-                        .monto((java.math.BigDecimal) row[1])
-                        .transacciones(((Long) row[2]).intValue())
-                        .build())
-                .collect(Collectors.toList());
+        java.math.BigDecimal ventasTotales = java.math.BigDecimal.ZERO;
+        long totalTransacciones = 0;
+        Map<LocalDate, SuperAdminDtos.VentaDiariaGlobal> ventasPorFecha = new java.util.TreeMap<>();
+        Map<Long, SuperAdminDtos.VentaCooperativa> ventasPorCooperativaId = new java.util.HashMap<>();
+        for (CuboVentasService.Celda celda : celdas) {
+            ventasTotales = ventasTotales.add(celda.monto());
+            totalTransacciones += celda.reservas();
+            
+            SuperAdminDtos.VentaDiariaGlobal dia = ventasPorFecha.computeIfAbsent(celda.fecha(),
+                    fecha -> SuperAdminDtos.VentaDiariaGlobal.builder().fecha(fecha).monto(java.math.BigDecimal.ZERO).build());
+            dia.setMonto(dia.getMonto().add(celda.monto()));
+            dia.setTransacciones(dia.getTransacciones() + celda.reservas());
+            
+            SuperAdminDtos.VentaCooperativa cooperativa = ventasPorCooperativaId.computeIfAbsent(celda.cooperativaId(),
+                    id -> SuperAdminDtos.VentaCooperativa.builder().cooperativaId(id).ventas(java.math.BigDecimal.ZERO).build());
+            cooperativa.setVentas(cooperativa.getVentas().add(celda.monto()));
+            cooperativa.setTransacciones(cooperativa.getTransacciones() + celda.reservas());
+        }
+        List<SuperAdminDtos.VentaDiariaGlobal> ventasPorDia = new java.util.ArrayList<>(ventasPorFecha.values());
         
         // Obtener ventas por cooperativa
-        List<Object[]> ventasPorCooperativaRaw = reservaRepository.findVentasPorCooperativa(fechaInicio, fechaFin);
-        List<SuperAdminDtos.VentaCooperativa> ventasPorCooperativa = ventasPorCooperativaRaw.stream()
-                .map(row -> SuperAdminDtos.VentaCooperativa.builder()
-                        .cooperativaId((Long) row[0])
-                        .cooperativaNombre((String) row[1])
-                        .ventas((java.math.BigDecimal) row[2])
-                        .transacciones(((Long) row[3]).intValue())
-                        .build())
+        cooperativaRepository.findAllById(ventasPorCooperativaId.keySet())
+                .forEach(c -> ventasPorCooperativaId.get(c.getId()).setCooperativaNombre(c.getNombre()));
+        List<SuperAdminDtos.VentaCooperativa> ventasPorCooperativa = ventasPorCooperativaId.values().stream()
+                .sorted((a, b) -> b.getVentas().compareTo(a.getVentas()))
                 .collect(Collectors.toList());
         
         // Calcular ticket promedio
@@ -301,4 +266,15 @@ public class SuperAdminStatsService {
                 .ventasPorCooperativa(ventasPorCooperativa)
                 .build();
     }
+
+    /**
+     * Recalcular el cubo de ventas de los reportes desde las tablas base
+     */
+    public void reconstruirCuboVentas() {
+        cuboVentasService.reconstruir();
+    }
+
+    public VentasDtos.CuboVentasEstadoResponse getEstadoCuboVentas() {
+        return cuboVentasService.obtenerEstado();
+    }
 }
@@ -30,4 +30,38 @@ public interface FrecuenciaViajeRepository extends JpaRepository<FrecuenciaViaje
 
     @Query("SELECT f FROM FrecuenciaViaje f WHERE f.chofer.id = :choferId AND f.activo = true ORDER BY f.horaSalida ASC")
     List<FrecuenciaViaje> findByChoferIdAndActivoTrue(@Param("choferId") Long choferId);
+
+    /**
+     * Frecuencias activas con bus, ruta, cooperativa y terminales cargados (índice de búsqueda de rutas)
+     */
+    @Query("SELECT f FROM FrecuenciaViaje f " +
+           "JOIN FETCH f.bus b LEFT JOIN FETCH b.cooperativa " +
+           "JOIN FETCH f.ruta LEFT JOIN FETCH f.cooperativa " +
+           "LEFT JOIN FETCH f.terminalOrigen LEFT JOIN FETCH f.terminalDestino " +
+           "WHERE f.activo = true")
+    List<FrecuenciaViaje> findActivasConDetalle();
+
+    /**
+     * Frecuencias activas con sus paradas, terminales y cooperativa (planificador de itinerarios)
+     */
+    @Query("SELECT DISTINCT f FROM FrecuenciaViaje f " +
+           "JOIN FETCH f.bus b LEFT JOIN FETCH b.cooperativa " +
+           "JOIN FETCH f.ruta LEFT JOIN FETCH f.cooperativa " +
+           "LEFT JOIN FETCH f.terminalOrigen LEFT JOIN FETCH f.terminalDestino " +
+           "LEFT JOIN FETCH f.paradas " +
+           "WHERE f.activo = true")
+    List<FrecuenciaViaje> findActivasConParadas();
+
+    /**
+     * Huella del catálogo de búsqueda: total de filas y última creación/modificación de
+     * frecuencia_viaje y de las tablas cuyos datos copia el índice (terminal, bus, cooperativa, ruta)
+     */
+    @Query(value = "SELECT (SELECT COUNT(*) FROM frecuencia_viaje), " +
+                   "       (SELECT MAX(COALESCE(updated_at, created_at)) FROM frecuencia_viaje), " +
+                   "       (SELECT COUNT(*) FROM terminal), (SELECT MAX(updated_at) FROM terminal), " +
+                   "       (SELECT COUNT(*) FROM bus), (SELECT MAX(updated_at) FROM bus), " +
+                   "       (SELECT COUNT(*) FROM cooperativa), (SELECT MAX(updated_at) FROM cooperativa), " +
+                   "       (SELECT COUNT(*) FROM ruta), (SELECT MAX(COALESCE(updated_at, created_at)) FROM ruta)",
+           nativeQuery = true)
+    List<Object[]> obtenerHuellaCatalogo();
 }
@@ -6,6 +6,7 @@ import com.andinobus.backendsmartcode.catalogos.domain.entities.Bus;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.AsientoLayoutRepository;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusRepository;
 import com.andinobus.backendsmartcode.common.errors.NotFoundException;
+import com.andinobus.backendsmartcode.operacion.application.services.MapaAsientosCache;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
@@ -25,6 +26,7 @@ public class AsientoLayoutService {
 
     private final AsientoLayoutRepository asientoLayoutRepository;
     private final BusRepository busRepository;
+    private final MapaAsientosCache mapaAsientosCache;
     
     @PersistenceContext
     private EntityManager entityManager;
@@ -227,6 +229,7 @@ public class AsientoLayoutService {
         
         int asientosExcedentes = asientos.size() - capacidad;
         
+        mapaAsientosCache.invalidarBus(busId);
         log.info("Layout generado para bus {} (piso {}): {} asientos creados - Capacidad: {} (grid {}×{} {})", 
                  busId, piso, asientos.size(), capacidad, filas, columnas, 
                  incluirFilaTrasera ? "+ fila trasera" : "");
@@ -273,6 +276,7 @@ public class AsientoLayoutService {
         }
 
         AsientoLayout saved = asientoLayoutRepository.save(asiento);
+        mapaAsientosCache.invalidarBus(busId);
         log.info("Asiento {} del bus {} actualizado: tipo={}, habilitado={}", 
                 asiento.getNumeroAsiento(), busId, saved.getTipoAsiento(), saved.getHabilitado());
 
@@ -324,6 +328,7 @@ public class AsientoLayoutService {
             actualizados++;
         }
 
+        mapaAsientosCache.invalidarBus(busId);
         log.info("Bulk update completado para bus {}: {} asientos actualizados", busId, actualizados);
 
         return AsientoOperationResponse.builder()
@@ -346,6 +351,7 @@ public class AsientoLayoutService {
         asientoLayoutRepository.deleteByBusId(busId);
         entityManager.flush();
         entityManager.clear();
+        mapaAsientosCache.invalidarBus(busId);
         log.info("Layout eliminado para bus {}: {} asientos", busId, count);
 
         return AsientoOperationResponse.builder()
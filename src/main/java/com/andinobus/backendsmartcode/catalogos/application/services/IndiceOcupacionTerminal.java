@@ -0,0 +1,215 @@
+package com.andinobus.backendsmartcode.catalogos.application.services;
+
+import com.andinobus.backendsmartcode.catalogos.domain.entities.OcupacionTerminal;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
+import com.andinobus.backendsmartcode.catalogos.domain.repositories.OcupacionTerminalRepository;
+import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
+import com.andinobus.backendsmartcode.common.cache.CacheAcotada;
+import com.andinobus.backendsmartcode.common.transacciones.Transacciones;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Ocupación de terminales por día en memoria, en franjas de 15 minutos.
+ *
+ * Cada (terminal, fecha) guarda un arreglo de 96 contadores y el total del día, con la capacidad
+ * por franja (andenes) y por día (andenes × frecuencias por andén). Consultar una franja es O(1)
+ * y reservar es un compareAndSet, así que los generadores pueden validar capacidad en bucles sin
+ * tocar la BD. Cada reserva se escribe en ocupacion_terminal dentro de la transacción del llamador
+ * y se deshace en memoria si esta se revierte. La caché está acotada (LRU) y cada día vence tras
+ * ttlMs para corregir cualquier desfase con la BD.
+ */
+@Component
+@Slf4j
+public class IndiceOcupacionTerminal {
+
+    public static final int MINUTOS_FRANJA = 15;
+    public static final int FRANJAS_DIA = 24 * 60 / MINUTOS_FRANJA;
+
+    private static final String SQL_RESERVAR =
+            "INSERT INTO ocupacion_terminal (terminal_id, fecha, hora, frecuencias_asignadas, created_at) " +
+            "VALUES (?, ?, ?, 1, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (terminal_id, fecha, hora) " +
+            "DO UPDATE SET frecuencias_asignadas = ocupacion_terminal.frecuencias_asignadas + 1";
+
+    private static final String SQL_LIBERAR =
+            "UPDATE ocupacion_terminal SET frecuencias_asignadas = frecuencias_asignadas - 1 " +
+            "WHERE terminal_id = ? AND fecha = ? AND hora = ? AND frecuencias_asignadas > 0";
+
+    private static final String SQL_ELIMINAR_VACIA =
+            "DELETE FROM ocupacion_terminal WHERE terminal_id = ? AND fecha = ? AND hora = ? AND frecuencias_asignadas <= 0";
+
+    private final OcupacionTerminalRepository ocupacionRepository;
+    private final TerminalRepository terminalRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.terminales.ocupacion.max-dias:2000}")
+    private int maxDias;
+
+    @Value("${app.terminales.ocupacion.ttl-ms:60000}")
+    private long ttlMs;
+
+    private final CacheAcotada<ClaveDia, OcupacionDia> dias = CacheAcotada.porEntradas(() -> maxDias, () -> ttlMs);
+
+    public IndiceOcupacionTerminal(OcupacionTerminalRepository ocupacionRepository,
+                                   TerminalRepository terminalRepository,
+                                   JdbcTemplate jdbcTemplate) {
+        this.ocupacionRepository = ocupacionRepository;
+        this.terminalRepository = terminalRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private record ClaveDia(Long terminalId, LocalDate fecha) {
+    }
+
+    /**
+     * Ocupación de un terminal en un día; las lecturas son instantáneas de contadores atómicos
+     */
+    public static final class OcupacionDia {
+        private final String terminalNombre;
+        private final int capacidadFranja;
+        private final int capacidadDia;
+        private final AtomicIntegerArray franjas = new AtomicIntegerArray(FRANJAS_DIA);
+        private final AtomicInteger total = new AtomicInteger();
+
+        private OcupacionDia(Terminal terminal, List<OcupacionTerminal> ocupaciones) {
+            this.terminalNombre = terminal.getNombre();
+            this.capacidadFranja = terminal.getAndenes();
+            this.capacidadDia = terminal.getAndenes() * terminal.getFrecuenciasPorAnden();
+            for (OcupacionTerminal o : ocupaciones) {
+                franjas.addAndGet(franja(o.getHora()), o.getFrecuenciasAsignadas());
+                total.addAndGet(o.getFrecuenciasAsignadas());
+            }
+        }
+
+        public String terminalNombre() {
+            return terminalNombre;
+        }
+
+        public int capacidadFranja() {
+            return capacidadFranja;
+        }
+
+        public int capacidadDia() {
+            return capacidadDia;
+        }
+
+        public int ocupacion(int franja) {
+            return franjas.get(franja);
+        }
+
+        public int total() {
+            return total.get();
+        }
+
+        public boolean tieneDisponibilidad(int franja) {
+            return franjas.get(franja) < capacidadFranja && total.get() < capacidadDia;
+        }
+
+        /**
+         * Suma una frecuencia a la franja si queda cupo en ella y en el día
+         */
+        private boolean reservar(int franja) {
+            while (true) {
+                int dia = total.get();
+                if (dia >= capacidadDia) {
+                    return false;
+                }
+                if (total.compareAndSet(dia, dia + 1)) {
+                    break;
+                }
+            }
+            while (true) {
+                int actual = franjas.get(franja);
+                if (actual >= capacidadFranja) {
+                    total.decrementAndGet();
+                    return false;
+                }
+                if (franjas.compareAndSet(franja, actual, actual + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void deshacer(int franja) {
+            franjas.decrementAndGet(franja);
+            total.decrementAndGet();
+        }
+    }
+
+    /**
+     * Franja de 15 minutos (0..95) a la que pertenece una hora
+     */
+    public static int franja(LocalTime hora) {
+        return hora.toSecondOfDay() / (MINUTOS_FRANJA * 60);
+    }
+
+    public static LocalTime inicioFranja(int franja) {
+        return LocalTime.ofSecondOfDay((long) franja * MINUTOS_FRANJA * 60);
+    }
+
+    /**
+     * Ocupación del terminal en el día, cargada desde la BD si no está en memoria o venció
+     */
+    public OcupacionDia obtener(Long terminalId, LocalDate fecha) {
+        ClaveDia clave = new ClaveDia(terminalId, fecha);
+        OcupacionDia dia = dias.obtener(clave);
+        if (dia != null) {
+            return dia;
+        }
+        return dias.guardarSiFalta(clave, cargar(terminalId, fecha));
+    }
+
+    public boolean tieneDisponibilidad(Long terminalId, LocalDate fecha, LocalTime hora) {
+        return obtener(terminalId, fecha).tieneDisponibilidad(franja(hora));
+    }
+
+    /**
+     * Reserva una frecuencia en la franja de la hora y la registra en ocupacion_terminal dentro de la
+     * transacción en curso. Devuelve null si la franja o el día no tienen cupo
+     */
+    public OcupacionDia reservar(Long terminalId, LocalDate fecha, LocalTime hora) {
+        OcupacionDia dia = obtener(terminalId, fecha);
+        int franja = franja(hora);
+        if (!dia.reservar(franja)) {
+            return null;
+        }
+        try {
+            jdbcTemplate.update(SQL_RESERVAR, terminalId, fecha, hora);
+        } catch (RuntimeException e) {
+            dia.deshacer(franja);
+            throw e;
+        }
+        Transacciones.alRevertir(() -> dia.deshacer(franja));
+        return dia;
+    }
+
+    /**
+     * Quita una frecuencia de la hora en ocupacion_terminal; el día se recarga al confirmarse.
+     * Devuelve false si no había frecuencias registradas a esa hora
+     */
+    public boolean liberar(Long terminalId, LocalDate fecha, LocalTime hora) {
+        if (jdbcTemplate.update(SQL_LIBERAR, terminalId, fecha, hora) == 0) {
+            return false;
+        }
+        jdbcTemplate.update(SQL_ELIMINAR_VACIA, terminalId, fecha, hora);
+        Transacciones.alConfirmar(() -> dias.quitar(new ClaveDia(terminalId, fecha)));
+        return true;
+    }
+
+    private OcupacionDia cargar(Long terminalId, LocalDate fecha) {
+        Terminal terminal = terminalRepository.findById(terminalId)
+                .orElseThrow(() -> new RuntimeException("Terminal no encontrado: " + terminalId));
+        List<OcupacionTerminal> ocupaciones = ocupacionRepository.findByTerminalIdAndFecha(terminalId, fecha);
+        log.debug("Ocupación cargada para terminal {} el {}: {} horas registradas", terminalId, fecha, ocupaciones.size());
+        return new OcupacionDia(terminal, ocupaciones);
+    }
+}
@@ -1,5 +1,6 @@
 package com.andinobus.backendsmartcode.catalogos.application.services;
 
+import com.andinobus.backendsmartcode.catalogos.application.services.IndiceOcupacionTerminal.OcupacionDia;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.OcupacionTerminal;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
 import com.andinobus.backendsmartcode.catalogos.domain.repositories.OcupacionTerminalRepository;
@@ -12,7 +13,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * Servicio para gestionar la ocupación y capacidad de los terminales.
@@ -28,6 +31,7 @@ public class OcupacionTerminalService {
 
     private final OcupacionTerminalRepository ocupacionRepository;
     private final TerminalRepository terminalRepository;
+    private final IndiceOcupacionTerminal indiceOcupacion;
 
     /**
      * Calcula el máximo de frecuencias por hora para un terminal.
@@ -41,62 +45,40 @@ public class OcupacionTerminalService {
     /**
      * Verifica si un terminal tiene disponibilidad para una frecuencia en una hora específica
      */
-    @Transactional(readOnly = true)
     public boolean tieneDisponibilidad(Long terminalId, LocalDate fecha, LocalTime hora) {
-        Terminal terminal = terminalRepository.findById(terminalId)
-                .orElseThrow(() -> new RuntimeException("Terminal no encontrado: " + terminalId));
-
-        int maxPorHora = calcularMaxFrecuenciasPorHora(terminal);
-
-        OcupacionTerminal ocupacion = ocupacionRepository
-                .findByTerminalAndFechaAndHora(terminal, fecha, hora)
-                .orElse(null);
-
-        if (ocupacion == null) {
-            return true; // Sin ocupación registrada, hay disponibilidad
-        }
-
-        return ocupacion.puedeAgregarFrecuencia(maxPorHora);
+        return indiceOcupacion.tieneDisponibilidad(terminalId, fecha, hora);
     }
 
     /**
      * Verifica disponibilidad en un rango de horas (útil para evitar congestión en horas pico)
      */
-    @Transactional(readOnly = true)
     public DisponibilidadRangoResponse verificarDisponibilidadRango(
             Long terminalId, LocalDate fecha, LocalTime horaInicio, LocalTime horaFin) {
-        
-        Terminal terminal = terminalRepository.findById(terminalId)
-                .orElseThrow(() -> new RuntimeException("Terminal no encontrado: " + terminalId));
 
-        List<OcupacionTerminal> ocupaciones = ocupacionRepository
-                .findByTerminalIdAndFechaAndRangoHora(terminalId, fecha, horaInicio, horaFin);
-
-        int maxPorHora = calcularMaxFrecuenciasPorHora(terminal);
+        OcupacionDia ocupacion = indiceOcupacion.obtener(terminalId, fecha);
+        int maxPorHora = ocupacion.capacidadFranja();
         List<LocalTime> horasSaturadas = new ArrayList<>();
         List<LocalTime> horasDisponibles = new ArrayList<>();
 
-        // Generar todas las horas en el rango (cada 15 minutos)
+        // Recorrer todas las horas en el rango (cada 15 minutos)
         LocalTime hora = horaInicio;
         while (!hora.isAfter(horaFin)) {
-            LocalTime horaActual = hora;
-            OcupacionTerminal ocupacion = ocupaciones.stream()
-                    .filter(o -> o.getHora().equals(horaActual))
-                    .findFirst()
-                    .orElse(null);
-
-            if (ocupacion == null || ocupacion.getFrecuenciasAsignadas() < maxPorHora) {
-                horasDisponibles.add(horaActual);
+            if (ocupacion.tieneDisponibilidad(IndiceOcupacionTerminal.franja(hora))) {
+                horasDisponibles.add(hora);
             } else {
-                horasSaturadas.add(horaActual);
+                horasSaturadas.add(hora);
             }
 
-            hora = hora.plusMinutes(15);
+            LocalTime siguiente = hora.plusMinutes(15);
+            if (siguiente.isBefore(hora)) {
+                break; // Cruzó la medianoche
+            }
+            hora = siguiente;
         }
 
         return DisponibilidadRangoResponse.builder()
                 .terminalId(terminalId)
-                .terminalNombre(terminal.getNombre())
+                .terminalNombre(ocupacion.terminalNombre())
                 .fecha(fecha)
                 .horaInicio(horaInicio)
                 .horaFin(horaFin)
@@ -113,32 +95,20 @@ public class OcupacionTerminalService {
      */
     @Transactional
     public void registrarFrecuencia(Long terminalId, LocalDate fecha, LocalTime hora) {
-        Terminal terminal = terminalRepository.findById(terminalId)
-                .orElseThrow(() -> new RuntimeException("Terminal no encontrado: " + terminalId));
-
-        int maxPorHora = calcularMaxFrecuenciasPorHora(terminal);
-
-        OcupacionTerminal ocupacion = ocupacionRepository
-                .findByTerminalAndFechaAndHora(terminal, fecha, hora)
-                .orElse(OcupacionTerminal.builder()
-                        .terminal(terminal)
-                        .fecha(fecha)
-                        .hora(hora)
-                        .frecuenciasAsignadas(0)
-                        .build());
+        OcupacionDia ocupacion = indiceOcupacion.reservar(terminalId, fecha, hora);
 
-        if (!ocupacion.puedeAgregarFrecuencia(maxPorHora)) {
+        if (ocupacion == null) {
+            OcupacionDia actual = indiceOcupacion.obtener(terminalId, fecha);
             throw new RuntimeException(String.format(
                     "El terminal %s no tiene capacidad disponible para la hora %s en la fecha %s. " +
-                    "Capacidad: %d, Asignadas: %d",
-                    terminal.getNombre(), hora, fecha, maxPorHora, ocupacion.getFrecuenciasAsignadas()));
+                    "Capacidad: %d, Asignadas: %d (día: %d/%d)",
+                    actual.terminalNombre(), hora, fecha, actual.capacidadFranja(),
+                    actual.ocupacion(IndiceOcupacionTerminal.franja(hora)), actual.total(), actual.capacidadDia()));
         }
 
-        ocupacion.incrementarFrecuencias();
-        ocupacionRepository.save(ocupacion);
-
         log.info("Frecuencia registrada en terminal {} para {} a las {}. Total: {}/{}",
-                terminal.getNombre(), fecha, hora, ocupacion.getFrecuenciasAsignadas(), maxPorHora);
+                ocupacion.terminalNombre(), fecha, hora,
+                ocupacion.ocupacion(IndiceOcupacionTerminal.franja(hora)), ocupacion.capacidadFranja());
     }
 
     /**
@@ -146,20 +116,9 @@ public class OcupacionTerminalService {
      */
     @Transactional
     public void eliminarFrecuencia(Long terminalId, LocalDate fecha, LocalTime hora) {
-        Terminal terminal = terminalRepository.findById(terminalId)
-                .orElseThrow(() -> new RuntimeException("Terminal no encontrado: " + terminalId));
-
-        ocupacionRepository.findByTerminalAndFechaAndHora(terminal, fecha, hora)
-                .ifPresent(ocupacion -> {
-                    ocupacion.decrementarFrecuencias();
-                    if (ocupacion.getFrecuenciasAsignadas() <= 0) {
-                        ocupacionRepository.delete(ocupacion);
-                    } else {
-                        ocupacionRepository.save(ocupacion);
-                    }
-                    log.info("Frecuencia eliminada del terminal {} para {} a las {}",
-                            terminal.getNombre(), fecha, hora);
-                });
+        if (indiceOcupacion.liberar(terminalId, fecha, hora)) {
+            log.info("Frecuencia eliminada del terminal {} para {} a las {}", terminalId, fecha, hora);
+        }
     }
 
     /**
@@ -202,48 +161,45 @@ public class OcupacionTerminalService {
     }
 
     /**
-     * Sugiere las mejores horas para asignar una frecuencia (menos congestionadas)
+     * Sugiere las mejores horas para asignar una frecuencia (menos congestionadas).
+     * Recorre las franjas de 5:00 a 23:00 con un heap acotado a la cantidad pedida
      */
-    @Transactional(readOnly = true)
     public List<SugerenciaHoraResponse> sugerirHorasOptimas(Long terminalId, LocalDate fecha, int cantidad) {
-        Terminal terminal = terminalRepository.findById(terminalId)
-                .orElseThrow(() -> new RuntimeException("Terminal no encontrado: " + terminalId));
-
-        int maxPorHora = calcularMaxFrecuenciasPorHora(terminal);
-        List<OcupacionTerminal> ocupaciones = ocupacionRepository
-                .findByTerminalIdAndFecha(terminalId, fecha);
-
-        List<SugerenciaHoraResponse> sugerencias = new ArrayList<>();
-
-        // Generar todas las horas del día (5:00 - 23:00) cada 15 minutos
-        LocalTime hora = LocalTime.of(5, 0);
-        LocalTime horaFin = LocalTime.of(23, 0);
+        OcupacionDia ocupacion = indiceOcupacion.obtener(terminalId, fecha);
+        int maxPorHora = ocupacion.capacidadFranja();
+        if (cantidad <= 0 || ocupacion.total() >= ocupacion.capacidadDia()) {
+            return List.of();
+        }
 
-        while (!hora.isAfter(horaFin)) {
-            LocalTime horaActual = hora;
-            int ocupacionActual = ocupaciones.stream()
-                    .filter(o -> o.getHora().equals(horaActual))
-                    .findFirst()
-                    .map(OcupacionTerminal::getFrecuenciasAsignadas)
-                    .orElse(0);
-
-            if (ocupacionActual < maxPorHora) {
-                sugerencias.add(SugerenciaHoraResponse.builder()
-                        .hora(horaActual)
-                        .ocupacionActual(ocupacionActual)
-                        .disponibilidad(maxPorHora - ocupacionActual)
-                        .prioridad(calcularPrioridad(horaActual, ocupacionActual, maxPorHora))
-                        .build());
+        // Peor sugerencia en la cima: menor prioridad y, a igual prioridad, la hora más tardía
+        Comparator<SugerenciaHoraResponse> orden = Comparator
+                .comparingInt(SugerenciaHoraResponse::getPrioridad).reversed()
+                .thenComparing(SugerenciaHoraResponse::getHora);
+        PriorityQueue<SugerenciaHoraResponse> mejores = new PriorityQueue<>(cantidad + 1, orden.reversed());
+
+        int primera = IndiceOcupacionTerminal.franja(LocalTime.of(5, 0));
+        int ultima = IndiceOcupacionTerminal.franja(LocalTime.of(23, 0));
+        for (int franja = primera; franja <= ultima; franja++) {
+            int ocupacionActual = ocupacion.ocupacion(franja);
+            if (ocupacionActual >= maxPorHora) {
+                continue;
+            }
+            LocalTime hora = IndiceOcupacionTerminal.inicioFranja(franja);
+            mejores.add(SugerenciaHoraResponse.builder()
+                    .hora(hora)
+                    .ocupacionActual(ocupacionActual)
+                    .disponibilidad(maxPorHora - ocupacionActual)
+                    .prioridad(calcularPrioridad(hora, ocupacionActual, maxPorHora))
+                    .build());
+            if (mejores.size() > cantidad) {
+                mejores.poll();
             }
-
-            hora = hora.plusMinutes(15);
         }
 
         // Ordenar por prioridad (menos ocupadas primero, preferir horas normales)
-        return sugerencias.stream()
-                .sorted((a, b) -> Integer.compare(b.getPrioridad(), a.getPrioridad()))
-                .limit(cantidad)
-                .toList();
+        List<SugerenciaHoraResponse> sugerencias = new ArrayList<>(mejores);
+        sugerencias.sort(orden);
+        return sugerencias;
     }
 
     private double calcularPorcentaje(int valor, int total) {
@@ -0,0 +1,226 @@
+package com.andinobus.backendsmartcode.catalogos.application.services;
+
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
+import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
+import com.andinobus.backendsmartcode.common.transacciones.Transacciones;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Resuelve textos de ruta ("PROVINCIA|Canton|n", cantón o nombre de terminal) a terminales
+ * con coordenadas, sin consultar la BD en cada petición.
+ *
+ * Mantiene un índice inmutable normalizado (sin tildes, en minúsculas) por nombre, por cantón y
+ * por "provincia|cantón", que se reemplaza completo cuando TerminalService crea, actualiza o
+ * desactiva un terminal. Hay cantones homónimos en distintas provincias (Bolívar, Olmedo...), así
+ * que un texto "PROVINCIA|Canton|n" se resuelve solo por provincia y cantón; la búsqueda por
+ * cantón, nombre o texto parcial queda para los textos sin provincia.
+ */
+@Component
+@Slf4j
+public class TerminalResolver {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final int MAX_BUSQUEDAS_PARCIALES = 1024;
+
+    private final TerminalRepository terminalRepository;
+    private volatile Indice indice;
+
+    public TerminalResolver(TerminalRepository terminalRepository) {
+        this.terminalRepository = terminalRepository;
+    }
+
+    /**
+     * Vista inmutable de un terminal para resolver coordenadas
+     */
+    public record TerminalUbicacion(
+            Long id,
+            String nombre,
+            String provincia,
+            String canton,
+            Double latitud,
+            Double longitud,
+            boolean activo
+    ) {
+        public boolean tieneCoordenadas() {
+            return latitud != null && longitud != null;
+        }
+    }
+
+    private record Indice(
+            Map<String, TerminalUbicacion> porNombre,
+            Map<String, TerminalUbicacion> porCanton,
+            Map<String, TerminalUbicacion> porProvinciaCanton,
+            List<TerminalUbicacion> activos,
+            Map<String, Optional<TerminalUbicacion>> busquedasParciales
+    ) {
+    }
+
+    /**
+     * Resuelve buscando primero por cantón y luego por nombre del terminal
+     * (orden usado por los dashboards de tracking)
+     */
+    public Optional<TerminalUbicacion> resolverPorCanton(String ruta) {
+        String provinciaCanton = claveProvinciaCanton(ruta);
+        if (provinciaCanton != null) {
+            return Optional.ofNullable(obtenerIndice().porProvinciaCanton().get(provinciaCanton));
+        }
+        String clave = normalizar(extraerCanton(ruta));
+        if (clave.isEmpty()) {
+            return Optional.empty();
+        }
+        Indice actual = obtenerIndice();
+        TerminalUbicacion terminal = actual.porCanton().get(clave);
+        return Optional.ofNullable(terminal != null ? terminal : actual.porNombre().get(clave));
+    }
+
+    /**
+     * Resuelve buscando por nombre exacto, luego por cantón y por último por texto parcial
+     * en nombre, cantón o provincia de terminales activos
+     */
+    public Optional<TerminalUbicacion> resolver(String ruta) {
+        String provinciaCanton = claveProvinciaCanton(ruta);
+        if (provinciaCanton != null) {
+            return Optional.ofNullable(obtenerIndice().porProvinciaCanton().get(provinciaCanton));
+        }
+        String clave = normalizar(extraerCanton(ruta));
+        if (clave.isEmpty()) {
+            return Optional.empty();
+        }
+        Indice actual = obtenerIndice();
+        TerminalUbicacion terminal = actual.porNombre().get(clave);
+        if (terminal == null) {
+            terminal = actual.porCanton().get(clave);
+        }
+        if (terminal != null) {
+            return Optional.of(terminal);
+        }
+        Optional<TerminalUbicacion> memo = actual.busquedasParciales().get(clave);
+        if (memo != null) {
+            return memo;
+        }
+        Optional<TerminalUbicacion> encontrado = actual.activos().stream()
+                .filter(t -> normalizar(t.nombre()).contains(clave)
+                        || normalizar(t.canton()).contains(clave)
+                        || normalizar(t.provincia()).contains(clave))
+                .findFirst();
+        if (actual.busquedasParciales().size() < MAX_BUSQUEDAS_PARCIALES) {
+            actual.busquedasParciales().put(clave, encontrado);
+        }
+        return encontrado;
+    }
+
+    /**
+     * Extrae el cantón de una ruta con formato "PROVINCIA|Canton|numero".
+     * Si el formato no coincide, retorna el texto original
+     */
+    public static String extraerCanton(String ruta) {
+        if (ruta == null || ruta.isEmpty()) {
+            return null;
+        }
+        if (ruta.contains("|")) {
+            String[] partes = ruta.split("\\|");
+            if (partes.length >= 2) {
+                return partes[1].trim();
+            }
+        }
+        return ruta.trim();
+    }
+
+    /**
+     * Clave normalizada "provincia|cantón" de una ruta "PROVINCIA|Canton|numero"; null si el texto
+     * no trae provincia y cantón
+     */
+    static String claveProvinciaCanton(String ruta) {
+        if (ruta == null || !ruta.contains("|")) {
+            return null;
+        }
+        String[] partes = ruta.split("\\|");
+        if (partes.length < 2) {
+            return null;
+        }
+        String provincia = normalizar(partes[0]);
+        String canton = normalizar(partes[1]);
+        return provincia.isEmpty() || canton.isEmpty() ? null : provincia + "|" + canton;
+    }
+
+    /**
+     * Normaliza un texto para comparar: sin tildes, minúsculas y sin espacios extremos
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinTildes.toLowerCase().trim();
+    }
+
+    /**
+     * Descarta el índice para que se reconstruya; si hay una transacción activa, al confirmarse
+     */
+    public void invalidar() {
+        Transacciones.alConfirmar(() -> indice = null);
+    }
+
+    private Indice obtenerIndice() {
+        Indice actual = indice;
+        if (actual == null) {
+            synchronized (this) {
+                actual = indice;
+                if (actual == null) {
+                    actual = construirIndice(terminalRepository.findAll());
+                    indice = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
+    private Indice construirIndice(List<Terminal> terminales) {
+        // Activos primero y luego por ID, para que ante cantones repetidos gane un terminal activo
+        List<TerminalUbicacion> ordenados = terminales.stream()
+                .map(t -> new TerminalUbicacion(t.getId(), t.getNombre(), t.getProvincia(), t.getCanton(),
+                        t.getLatitud(), t.getLongitud(), Boolean.TRUE.equals(t.getActivo())))
+                .sorted(Comparator.comparing((TerminalUbicacion t) -> !t.activo())
+                        .thenComparing(TerminalUbicacion::id, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+
+        Map<String, TerminalUbicacion> porNombre = new HashMap<>();
+        Map<String, TerminalUbicacion> porCanton = new HashMap<>();
+        Map<String, TerminalUbicacion> porProvinciaCanton = new HashMap<>();
+        List<TerminalUbicacion> activos = new ArrayList<>();
+        for (TerminalUbicacion t : ordenados) {
+            if (t.nombre() != null) {
+                porNombre.putIfAbsent(normalizar(t.nombre()), t);
+            }
+            if (t.canton() != null) {
+                porCanton.putIfAbsent(normalizar(t.canton()), t);
+                if (t.provincia() != null) {
+                    porProvinciaCanton.putIfAbsent(normalizar(t.provincia()) + "|" + normalizar(t.canton()), t);
+                }
+            }
+            if (t.activo()) {
+                activos.add(t);
+            }
+        }
+        log.info("Índice de terminales construido: {} terminales, {} cantones", ordenados.size(), porCanton.size());
+        return new Indice(
+                Collections.unmodifiableMap(porNombre),
+                Collections.unmodifiableMap(porCanton),
+                Collections.unmodifiableMap(porProvinciaCanton),
+                Collections.unmodifiableList(activos),
+                new ConcurrentHashMap<>()
+        );
+    }
+}
@@ -3,6 +3,7 @@ package com.andinobus.backendsmartcode.catalogos.application.services;
 import com.andinobus.backendsmartcode.catalogos.api.dto.TerminalDtos.*;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
 import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
+import com.andinobus.backendsmartcode.rutas.application.services.IndiceBusquedaRutas;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,6 +16,8 @@ import java.util.stream.Collectors;
 public class TerminalService {
 
     private final TerminalRepository terminalRepository;
+    private final TerminalResolver terminalResolver;
+    private final IndiceBusquedaRutas indiceBusquedaRutas;
 
     @Transactional(readOnly = true)
     public List<TerminalResponse> listarTodos() {
@@ -84,6 +87,8 @@ public class TerminalService {
                 .build();
 
         terminal = terminalRepository.save(terminal);
+        terminalResolver.invalidar();
+        indiceBusquedaRutas.invalidar();
         return toResponse(terminal);
     }
 
@@ -111,6 +116,8 @@ public class TerminalService {
         if (request.getActivo() != null) terminal.setActivo(request.getActivo());
 
         terminal = terminalRepository.save(terminal);
+        terminalResolver.invalidar();
+        indiceBusquedaRutas.invalidar();
         return toResponse(terminal);
     }
 
@@ -120,6 +127,8 @@ public class TerminalService {
                 .orElseThrow(() -> new RuntimeException("Terminal no encontrado con ID: " + id));
         terminal.setActivo(false);
         terminalRepository.save(terminal);
+        terminalResolver.invalidar();
+        indiceBusquedaRutas.invalidar();
     }
 
     @Transactional(readOnly = true)
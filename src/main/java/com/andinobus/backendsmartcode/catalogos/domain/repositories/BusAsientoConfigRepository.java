@@ -4,6 +4,7 @@ import com.andinobus.backendsmartcode.catalogos.domain.entities.BusAsientoConfig
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,4 +14,9 @@ public interface BusAsientoConfigRepository extends JpaRepository<BusAsientoConf
      * Busca la configuración de asientos de un bus específico
      */
     List<BusAsientoConfig> findByBusId(Long busId);
+
+    /**
+     * Configuración de asientos de varios buses en una sola consulta
+     */
+    List<BusAsientoConfig> findByBusIdIn(Collection<Long> busIds);
 }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -47,4 +48,24 @@ public interface TerminalRepository extends JpaRepository<Terminal, Long> {
     Long sumMaxFrecuenciasTotales();
 
     boolean existsByNombreIgnoreCase(String nombre);
+
+    /**
+     * Huella de las terminales: total de filas y última modificación
+     */
+    @Query("SELECT COUNT(t), MAX(t.updatedAt) FROM Terminal t")
+    List<Object[]> obtenerHuella();
+
+    /**
+     * id, latitud, longitud, updatedAt y activo de las terminales activas, sin cargar entidades
+     */
+    @Query("SELECT t.id, t.latitud, t.longitud, t.updatedAt, t.activo FROM Terminal t WHERE t.activo = true")
+    List<Object[]> findCoordenadasActivas();
+
+    /**
+     * Las mismas columnas para las terminales (activas o no) modificadas desde una fecha
+     */
+    @Query("SELECT t.id, t.latitud, t.longitud, t.updatedAt, t.activo FROM Terminal t WHERE t.updatedAt >= :desde")
+    List<Object[]> findCoordenadasModificadasDesde(@Param("desde") LocalDateTime desde);
+
+    long countByActivoTrue();
 }
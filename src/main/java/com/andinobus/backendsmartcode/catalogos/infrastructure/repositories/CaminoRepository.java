@@ -17,4 +17,19 @@ public interface CaminoRepository extends JpaRepository<Camino, Long> {
     List<Camino> findActiveByRutaIdOrdered(@Param("rutaId") Long rutaId);
 
     boolean existsByRutaIdAndNombre(Long rutaId, String nombre);
+
+    /**
+     * Caminos activos con distancia entre dos terminales: origen, destino, tipo, distancia y duración
+     */
+    @Query("SELECT r.terminalOrigen.id, r.terminalDestino.id, c.tipo, c.distanciaKm, c.duracionMinutos " +
+           "FROM Camino c JOIN c.ruta r " +
+           "WHERE c.activo = true AND r.activo = true AND c.distanciaKm IS NOT NULL " +
+           "AND r.terminalOrigen IS NOT NULL AND r.terminalDestino IS NOT NULL")
+    List<Object[]> findDistanciasEntreTerminales();
+
+    /**
+     * Huella de los caminos: total de filas, última modificación del camino y de su ruta
+     */
+    @Query("SELECT COUNT(c), MAX(COALESCE(c.updatedAt, c.createdAt)), MAX(r.updatedAt) FROM Camino c JOIN c.ruta r")
+    List<Object[]> obtenerHuella();
 }
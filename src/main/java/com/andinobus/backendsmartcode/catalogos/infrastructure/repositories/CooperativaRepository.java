@@ -9,5 +9,6 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface CooperativaRepository extends JpaRepository<Cooperativa, Long> {
     Page<Cooperativa> findByActivoTrue(Pageable pageable);
+    long countByActivoTrue();
     Page<Cooperativa> findByActivoTrueAndNombreContainingIgnoreCaseOrActivoTrueAndRucContainingIgnoreCase(String nombre, String ruc, Pageable pageable);
 }
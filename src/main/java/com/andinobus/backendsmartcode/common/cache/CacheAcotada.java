@@ -0,0 +1,146 @@
+package com.andinobus.backendsmartcode.common.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caché en memoria acotada (LRU), con vencimiento opcional de cada entrada.
+ *
+ * El límite se cuenta en entradas o en un peso por valor (p.ej. bytes) y, como el vencimiento, se
+ * lee en cada uso: puede venir de un campo @Value que se inyecta después de construir la caché.
+ * Una entrada vence ttlMs después de guardarse. Los métodos sincronizan sobre la propia caché, así
+ * que el llamador puede sincronizar sobre ella para combinar una comprobación con una escritura.
+ */
+public final class CacheAcotada<K, V> {
+
+    private static final LongSupplier SIN_VENCIMIENTO = () -> Long.MAX_VALUE;
+
+    private final LongSupplier maximo;
+    private final ToLongFunction<? super V> peso;
+    private final LongSupplier ttlMs;
+
+    private final LinkedHashMap<K, Entrada<V>> entradas = new LinkedHashMap<>(256, 0.75f, true);
+    private long pesoTotal;
+
+    private record Entrada<V>(V valor, long peso, long guardadoEn) {
+    }
+
+    private CacheAcotada(LongSupplier maximo, ToLongFunction<? super V> peso, LongSupplier ttlMs) {
+        this.maximo = maximo;
+        this.peso = peso;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Hasta maximo entradas, sin vencimiento
+     */
+    public static <K, V> CacheAcotada<K, V> porEntradas(IntSupplier maximo) {
+        return porEntradas(maximo, SIN_VENCIMIENTO);
+    }
+
+    /**
+     * Hasta maximo entradas, cada una vigente durante ttlMs
+     */
+    public static <K, V> CacheAcotada<K, V> porEntradas(IntSupplier maximo, LongSupplier ttlMs) {
+        return new CacheAcotada<>(maximo::getAsInt, valor -> 1, ttlMs);
+    }
+
+    /**
+     * Hasta que la suma de los pesos supere maximo, sin vencimiento
+     */
+    public static <K, V> CacheAcotada<K, V> porPeso(LongSupplier maximo, ToLongFunction<? super V> peso) {
+        return new CacheAcotada<>(maximo, peso, SIN_VENCIMIENTO);
+    }
+
+    /**
+     * Valor vigente de la clave; null si no está o venció
+     */
+    public synchronized V obtener(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada == null) {
+            return null;
+        }
+        if (vencida(entrada)) {
+            descartar(clave);
+            return null;
+        }
+        return entrada.valor();
+    }
+
+    public synchronized void guardar(K clave, V valor) {
+        long pesoValor = peso.applyAsLong(valor);
+        Entrada<V> anterior = entradas.put(clave, new Entrada<>(valor, pesoValor, System.currentTimeMillis()));
+        pesoTotal += pesoValor - (anterior != null ? anterior.peso() : 0);
+        recortar();
+    }
+
+    /**
+     * Guarda el valor si la clave no tiene uno vigente; devuelve el que queda en la caché
+     */
+    public synchronized V guardarSiFalta(K clave, V valor) {
+        V vigente = obtener(clave);
+        if (vigente != null) {
+            return vigente;
+        }
+        guardar(clave, valor);
+        return valor;
+    }
+
+    /**
+     * Descarta la clave; devuelve el valor que tenía o null
+     */
+    public synchronized V quitar(K clave) {
+        Entrada<V> entrada = descartar(clave);
+        return entrada != null ? entrada.valor() : null;
+    }
+
+    /**
+     * Descarta los valores que cumplen la condición; devuelve cuántos
+     */
+    public synchronized int quitarSi(Predicate<? super V> condicion) {
+        int quitados = 0;
+        Iterator<Entrada<V>> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            Entrada<V> entrada = it.next();
+            if (condicion.test(entrada.valor())) {
+                pesoTotal -= entrada.peso();
+                it.remove();
+                quitados++;
+            }
+        }
+        return quitados;
+    }
+
+    public synchronized int tamano() {
+        return entradas.size();
+    }
+
+    private boolean vencida(Entrada<V> entrada) {
+        return System.currentTimeMillis() - entrada.guardadoEn() > ttlMs.getAsLong();
+    }
+
+    private Entrada<V> descartar(K clave) {
+        Entrada<V> entrada = entradas.remove(clave);
+        if (entrada != null) {
+            pesoTotal -= entrada.peso();
+        }
+        return entrada;
+    }
+
+    /**
+     * Descarta las entradas menos usadas hasta volver al límite
+     */
+    private void recortar() {
+        long limite = maximo.getAsLong();
+        Iterator<Map.Entry<K, Entrada<V>>> it = entradas.entrySet().iterator();
+        while (pesoTotal > limite && it.hasNext()) {
+            pesoTotal -= it.next().getValue().peso();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.andinobus.backendsmartcode.common.errors;
+
+/**
+ * Excepción para usuarios autenticados sin permiso sobre el recurso.
+ * GlobalExceptionHandler la traduce a 403.
+ */
+public class AccesoDenegadoException extends RuntimeException {
+    public AccesoDenegadoException() {
+        super("No tienes permiso para realizar esta acción");
+    }
+    public AccesoDenegadoException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.andinobus.backendsmartcode.common.errors;
+
+import java.util.List;
+
+/**
+ * Excepción para indicar que uno o más asientos solicitados ya fueron tomados por otra compra.
+ * GlobalExceptionHandler la traduce a 409 con el detalle de cada asiento perdido.
+ */
+public class AsientosNoDisponiblesException extends RuntimeException {
+
+    private final List<String> asientos;
+
+    public AsientosNoDisponiblesException(List<String> asientos) {
+        super("Asientos no disponibles: " + String.join(", ", asientos));
+        this.asientos = List.copyOf(asientos);
+    }
+
+    public List<String> getAsientos() {
+        return asientos;
+    }
+}
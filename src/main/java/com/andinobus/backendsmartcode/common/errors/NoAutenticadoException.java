@@ -0,0 +1,14 @@
+package com.andinobus.backendsmartcode.common.errors;
+
+/**
+ * Excepción para peticiones sin token o con un token inválido/expirado.
+ * GlobalExceptionHandler la traduce a 401.
+ */
+public class NoAutenticadoException extends RuntimeException {
+    public NoAutenticadoException() {
+        super("Token no proporcionado");
+    }
+    public NoAutenticadoException(String message) {
+        super(message);
+    }
+}
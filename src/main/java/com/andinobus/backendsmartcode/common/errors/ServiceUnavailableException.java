@@ -0,0 +1,14 @@
+package com.andinobus.backendsmartcode.common.errors;
+
+/**
+ * Excepción para indicar que el servicio está saturado temporalmente.
+ * GlobalExceptionHandler la traduce a 503 para que el cliente reintente más tarde.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException() {
+        super("Servicio temporalmente no disponible");
+    }
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,82 @@
+package com.andinobus.backendsmartcode.common.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CSV en UTF-8 (RFC 4180) con BOM para que Excel reconozca las tildes
+ */
+public class CsvExportador implements ExportadorFilas {
+
+    private final Writer writer;
+    private long filas;
+
+    public CsvExportador(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            writer.write('\uFEFF');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void fila(Object... valores) throws IOException {
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            escribirValor(valores[i]);
+        }
+        writer.write("\r\n");
+        filas++;
+    }
+
+    @Override
+    public long filasEscritas() {
+        return filas;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    private void escribirValor(Object valor) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        if (valor instanceof BigDecimal decimal) {
+            writer.write(decimal.toPlainString());
+            return;
+        }
+        if (valor instanceof Number) {
+            writer.write(valor.toString());
+            return;
+        }
+        String texto = valor.toString();
+        // Evita que una hoja de cálculo interprete el texto como fórmula
+        if (!texto.isEmpty() && "=+-@".indexOf(texto.charAt(0)) >= 0) {
+            texto = "'" + texto;
+        }
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            writer.write(texto);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,19 @@
+package com.andinobus.backendsmartcode.common.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Escribe filas de un reporte a medida que llegan, sin acumularlas: la memoria usada no depende
+ * del número de filas. La primera fila es el encabezado.
+ *
+ * Los valores Number se escriben como números; LocalDate, LocalTime y LocalDateTime en formato ISO;
+ * null como celda vacía y el resto con toString(). close() termina el documento pero no cierra el
+ * stream de salida.
+ */
+public interface ExportadorFilas extends Closeable {
+
+    void fila(Object... valores) throws IOException;
+
+    long filasEscritas();
+}
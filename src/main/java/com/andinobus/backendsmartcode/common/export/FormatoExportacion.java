@@ -0,0 +1,47 @@
+package com.andinobus.backendsmartcode.common.export;
+
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Formatos de descarga de reportes
+ */
+public enum FormatoExportacion {
+
+    CSV("text/csv; charset=UTF-8", "csv"),
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+    private final String contentType;
+    private final String extension;
+
+    FormatoExportacion(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Exportador de este formato que escribe directamente sobre out
+     */
+    public ExportadorFilas crear(OutputStream out, String nombreHoja) {
+        return this == XLSX ? new XlsxExportador(out, nombreHoja) : new CsvExportador(out);
+    }
+
+    public static FormatoExportacion desde(String valor) {
+        if (valor != null) {
+            for (FormatoExportacion formato : values()) {
+                if (formato.extension.equals(valor.trim().toLowerCase(Locale.ROOT))) {
+                    return formato;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Formato de exportación no soportado: " + valor + " (csv o xlsx)");
+    }
+}
@@ -0,0 +1,207 @@
+package com.andinobus.backendsmartcode.common.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Libro XLSX (Office Open XML) escrito en streaming: cada hoja es una entrada del zip que se va
+ * comprimiendo a medida que llegan las filas, con textos en línea (sin tabla de strings
+ * compartidos), así la memoria no crece con el número de filas. Al llegar al límite de filas de
+ * Excel se abre otra hoja con el mismo encabezado. Las partes del libro que enumeran las hojas se
+ * escriben al final, cuando ya se sabe cuántas hay.
+ */
+public class XlsxExportador implements ExportadorFilas {
+
+    /** Filas por hoja que admite Excel, encabezado incluido */
+    static final int MAX_FILAS_HOJA = 1_048_576;
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String NS_PKG_REL = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    private final ZipOutputStream zip;
+    private final Writer xml;
+    private final String nombreHoja;
+    private final int maxFilasHoja;
+    private Object[] encabezado;
+    private int hojas;
+    private int filasEnHoja;
+    private long filas;
+
+    public XlsxExportador(OutputStream out, String nombreHoja) {
+        this(out, nombreHoja, MAX_FILAS_HOJA);
+    }
+
+    XlsxExportador(OutputStream out, String nombreHoja, int maxFilasHoja) {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.xml = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 64 * 1024);
+        this.nombreHoja = nombreHojaValido(nombreHoja);
+        this.maxFilasHoja = maxFilasHoja;
+    }
+
+    @Override
+    public void fila(Object... valores) throws IOException {
+        if (encabezado == null) {
+            encabezado = valores.clone();
+        }
+        if (hojas == 0 || filasEnHoja == maxFilasHoja) {
+            if (hojas > 0) {
+                cerrarHoja();
+            }
+            abrirHoja();
+            if (hojas > 1) {
+                escribirFila(encabezado);
+            }
+        }
+        escribirFila(valores);
+        filas++;
+    }
+
+    @Override
+    public long filasEscritas() {
+        return filas;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (hojas == 0) {
+            abrirHoja();
+        }
+        cerrarHoja();
+
+        entrada("[Content_Types].xml");
+        xml.write(XML);
+        xml.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        xml.write("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+        xml.write("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        xml.write("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        for (int i = 1; i <= hojas; i++) {
+            xml.write("<Override PartName=\"/xl/worksheets/sheet" + i
+                    + ".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        xml.write("</Types>");
+        cerrarEntrada();
+
+        entrada("_rels/.rels");
+        xml.write(XML);
+        xml.write("<Relationships xmlns=\"" + NS_PKG_REL + "\">");
+        xml.write("<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>");
+        xml.write("</Relationships>");
+        cerrarEntrada();
+
+        entrada("xl/workbook.xml");
+        xml.write(XML);
+        xml.write("<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\"><sheets>");
+        for (int i = 1; i <= hojas; i++) {
+            String nombre = i == 1 ? nombreHoja : nombreHoja + " " + i;
+            xml.write("<sheet name=\"");
+            escribirTexto(nombre);
+            xml.write("\" sheetId=\"" + i + "\" r:id=\"rId" + i + "\"/>");
+        }
+        xml.write("</sheets></workbook>");
+        cerrarEntrada();
+
+        entrada("xl/_rels/workbook.xml.rels");
+        xml.write(XML);
+        xml.write("<Relationships xmlns=\"" + NS_PKG_REL + "\">");
+        for (int i = 1; i <= hojas; i++) {
+            xml.write("<Relationship Id=\"rId" + i + "\" Type=\"" + NS_REL + "/worksheet\" Target=\"worksheets/sheet" + i + ".xml\"/>");
+        }
+        xml.write("</Relationships>");
+        cerrarEntrada();
+
+        zip.finish();
+        zip.flush();
+    }
+
+    private void abrirHoja() throws IOException {
+        hojas++;
+        filasEnHoja = 0;
+        entrada("xl/worksheets/sheet" + hojas + ".xml");
+        xml.write(XML);
+        xml.write("<worksheet xmlns=\"" + NS_MAIN + "\"><sheetData>");
+    }
+
+    private void cerrarHoja() throws IOException {
+        xml.write("</sheetData></worksheet>");
+        cerrarEntrada();
+    }
+
+    private void entrada(String nombre) throws IOException {
+        zip.putNextEntry(new ZipEntry(nombre));
+    }
+
+    private void cerrarEntrada() throws IOException {
+        xml.flush();
+        zip.closeEntry();
+    }
+
+    private void escribirFila(Object[] valores) throws IOException {
+        xml.write("<row>");
+        for (Object valor : valores) {
+            if (valor == null) {
+                xml.write("<c/>");
+            } else if (valor instanceof Number numero && esFinito(numero)) {
+                xml.write("<c><v>");
+                xml.write(numero instanceof BigDecimal decimal ? decimal.toPlainString() : numero.toString());
+                xml.write("</v></c>");
+            } else {
+                xml.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                escribirTexto(valor.toString());
+                xml.write("</t></is></c>");
+            }
+        }
+        xml.write("</row>");
+        filasEnHoja++;
+    }
+
+    private static boolean esFinito(Number numero) {
+        if (numero instanceof Double d) {
+            return Double.isFinite(d);
+        }
+        if (numero instanceof Float f) {
+            return Float.isFinite(f);
+        }
+        return true;
+    }
+
+    /**
+     * Escapa el texto para XML y descarta los caracteres de control que XML 1.0 no admite
+     */
+    private void escribirTexto(String texto) throws IOException {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '&' -> xml.write("&amp;");
+                case '<' -> xml.write("&lt;");
+                case '>' -> xml.write("&gt;");
+                case '"' -> xml.write("&quot;");
+                default -> {
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        xml.write(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Excel limita el nombre de la hoja a 31 caracteres y prohíbe : \ / ? * [ ]
+     */
+    private static String nombreHojaValido(String nombre) {
+        String limpio = nombre == null ? "" : nombre.replaceAll("[:\\\\/?*\\[\\]]", " ").trim();
+        if (limpio.isEmpty()) {
+            limpio = "Hoja";
+        }
+        // Deja espacio para el sufijo de las hojas siguientes
+        return limpio.length() > 27 ? limpio.substring(0, 27) : limpio;
+    }
+}
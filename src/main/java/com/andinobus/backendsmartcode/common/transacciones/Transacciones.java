@@ -0,0 +1,48 @@
+package com.andinobus.backendsmartcode.common.transacciones;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Acciones atadas al resultado de la transacción en curso.
+ *
+ * Las cachés y los índices en memoria aplican sus cambios con estas acciones, así un rollback no
+ * deja en memoria un estado que la BD no tiene.
+ */
+public final class Transacciones {
+
+    private Transacciones() {
+    }
+
+    /**
+     * Ejecuta la acción al confirmarse la transacción en curso, o en el acto si no hay ninguna
+     */
+    public static void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    /**
+     * Ejecuta la acción si la transacción en curso no se confirma; sin transacción no hace nada
+     */
+    public static void alRevertir(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        accion.run();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -6,7 +6,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 
 /**
  * Configuración para habilitar operaciones asíncronas
- * Usado principalmente para envío de emails sin bloquear la respuesta
+ * Los emails ya no usan @Async: se envían desde la bandeja de salida (EmailOutbox) con su propio pool acotado
  */
 @Configuration
 @EnableAsync
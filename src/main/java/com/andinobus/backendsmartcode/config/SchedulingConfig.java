@@ -0,0 +1,13 @@
+package com.andinobus.backendsmartcode.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita las tareas programadas (@Scheduled)
+ * Usado para resincronizar la flota en vivo y tareas de mantenimiento en segundo plano
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
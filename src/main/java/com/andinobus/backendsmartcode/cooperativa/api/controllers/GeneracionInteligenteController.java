@@ -38,6 +38,14 @@ public class GeneracionInteligenteController {
         return ResponseEntity.ok(generacionService.getEstado(cooperativaId));
     }
 
+    @GetMapping("/limpieza")
+    @Operation(summary = "Simular limpieza previa",
+               description = "Cuenta las frecuencias, paradas y disponibilidades que la generación eliminaría, sin borrar nada")
+    public ResponseEntity<ResultadoLimpiezaFrecuencias> simularLimpieza(
+            @PathVariable Long cooperativaId) {
+        return ResponseEntity.ok(generacionService.simularLimpieza(cooperativaId));
+    }
+
     @PostMapping("/preview")
     @Operation(summary = "Preview de generación inteligente", 
                description = "Simula la generación considerando disponibilidad real de buses y circuitos")
@@ -0,0 +1,87 @@
+package com.andinobus.backendsmartcode.cooperativa.api.controllers;
+
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionAutomaticaDtos.GenerarAutomaticoRequest;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionFrecuenciasDtos.GenerarFrecuenciasRequest;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionInteligenteDtos.GenerarInteligenteRequest;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionJobDtos.GeneracionJobResponse;
+import com.andinobus.backendsmartcode.cooperativa.application.services.GeneracionJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller para generar frecuencias en segundo plano.
+ * Las solicitudes responden 202 con el job; el avance se consulta por su id.
+ */
+@RestController
+@RequestMapping("/api/cooperativa/{cooperativaId}/frecuencias/jobs")
+@RequiredArgsConstructor
+@Tag(name = "Jobs de Generación", description = "APIs para generar frecuencias de forma asíncrona con progreso y cancelación")
+public class GeneracionJobController {
+
+    private final GeneracionJobService jobService;
+
+    @PostMapping("/inteligente")
+    @Operation(summary = "Encolar generación inteligente",
+               description = "Reemplaza las frecuencias de la cooperativa confirmando bloques de días")
+    public ResponseEntity<GeneracionJobResponse> enviarInteligente(
+            @PathVariable Long cooperativaId,
+            @RequestBody GenerarInteligenteRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.enviarInteligente(cooperativaId, request));
+    }
+
+    @PostMapping("/automatica")
+    @Operation(summary = "Encolar generación automática",
+               description = "Genera las frecuencias confirmando una ruta por bloque")
+    public ResponseEntity<GeneracionJobResponse> enviarAutomatica(
+            @PathVariable Long cooperativaId,
+            @RequestBody GenerarAutomaticoRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.enviarAutomatica(cooperativaId, request));
+    }
+
+    @PostMapping("/plantilla")
+    @Operation(summary = "Encolar generación por plantilla",
+               description = "Genera las frecuencias a partir de una plantilla de rotación")
+    public ResponseEntity<GeneracionJobResponse> enviarPlantilla(
+            @PathVariable Long cooperativaId,
+            @RequestBody GenerarFrecuenciasRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.enviarPlantilla(cooperativaId, request));
+    }
+
+    @GetMapping
+    @Operation(summary = "Últimos jobs de generación de la cooperativa")
+    public ResponseEntity<List<GeneracionJobResponse>> listar(@PathVariable Long cooperativaId) {
+        return ResponseEntity.ok(jobService.listar(cooperativaId));
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Progreso de un job de generación")
+    public ResponseEntity<GeneracionJobResponse> obtener(
+            @PathVariable Long cooperativaId,
+            @PathVariable Long jobId) {
+        return ResponseEntity.ok(jobService.obtener(cooperativaId, jobId));
+    }
+
+    @PostMapping("/{jobId}/cancelar")
+    @Operation(summary = "Cancelar un job",
+               description = "Un job en curso se detiene al terminar el bloque actual; lo confirmado se conserva")
+    public ResponseEntity<GeneracionJobResponse> cancelar(
+            @PathVariable Long cooperativaId,
+            @PathVariable Long jobId) {
+        return ResponseEntity.ok(jobService.cancelar(cooperativaId, jobId));
+    }
+
+    @PostMapping("/{jobId}/reanudar")
+    @Operation(summary = "Reanudar un job fallido o cancelado",
+               description = "Continúa desde el último bloque confirmado")
+    public ResponseEntity<GeneracionJobResponse> reanudar(
+            @PathVariable Long cooperativaId,
+            @PathVariable Long jobId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.reanudar(cooperativaId, jobId));
+    }
+}
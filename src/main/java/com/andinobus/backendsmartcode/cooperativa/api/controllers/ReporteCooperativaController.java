@@ -1,13 +1,21 @@
 package com.andinobus.backendsmartcode.cooperativa.api.controllers;
 
+import com.andinobus.backendsmartcode.common.export.FormatoExportacion;
 import com.andinobus.backendsmartcode.cooperativa.api.dto.ReporteCooperativaDtos.*;
+import com.andinobus.backendsmartcode.cooperativa.application.services.ExportacionReportesService;
 import com.andinobus.backendsmartcode.cooperativa.application.services.ReporteCooperativaService;
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 
@@ -18,6 +26,8 @@ import java.time.LocalDate;
 public class ReporteCooperativaController {
 
     private final ReporteCooperativaService reporteService;
+    private final ExportacionReportesService exportacionService;
+    private final ControlAcceso controlAcceso;
 
     @Operation(summary = "Obtener resumen general", 
             description = "Obtiene un resumen consolidado de ventas, viajes, ocupación y recursos")
@@ -68,4 +78,30 @@ public class ReporteCooperativaController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
         return ResponseEntity.ok(reporteService.obtenerReporteRutas(cooperativaId, fechaInicio, fechaFin));
     }
+
+    @Operation(summary = "Exportar reporte en CSV o Excel",
+            description = "Descarga ventas, viajes, ocupacion o manifiesto (pasajeros) fila por fila, sin armar el reporte en memoria")
+    @GetMapping("/{reporte}/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarReporte(
+            @PathVariable Long cooperativaId,
+            @PathVariable String reporte,
+            @RequestParam(defaultValue = "csv") String formato,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            HttpServletRequest httpRequest) {
+        // El manifiesto lleva datos de pasajeros: solo la propia cooperativa o el super administrador
+        controlAcceso.requerirCooperativa(httpRequest, cooperativaId);
+        ExportacionReportesService.Reporte tipo = ExportacionReportesService.Reporte.desde(reporte);
+        FormatoExportacion formatoExportacion = FormatoExportacion.desde(formato);
+        if (fechaFin.isBefore(fechaInicio)) {
+            throw new IllegalArgumentException("La fecha fin no puede ser anterior a la fecha inicio");
+        }
+        String archivo = exportacionService.nombreArchivo(tipo, cooperativaId, fechaInicio, fechaFin, formatoExportacion);
+        StreamingResponseBody cuerpo = out -> exportacionService.exportar(
+                tipo, cooperativaId, fechaInicio, fechaFin, formatoExportacion, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(archivo).build().toString())
+                .contentType(MediaType.parseMediaType(formatoExportacion.getContentType()))
+                .body(cuerpo);
+    }
 }
@@ -166,6 +166,20 @@ public class GeneracionInteligenteDtos {
         private List<String> advertencias;
     }
 
+    /**
+     * Lo que la generación eliminaría de la cooperativa antes de crear las nuevas frecuencias
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ResultadoLimpiezaFrecuencias {
+        private Integer frecuencias;
+        private Integer paradas;
+        private Integer disponibilidades;
+        private Integer asignacionesRotacion;          // Se desvinculan, no se eliminan
+    }
+
     // ============ Paradas Intermedias ============
 
     @Data
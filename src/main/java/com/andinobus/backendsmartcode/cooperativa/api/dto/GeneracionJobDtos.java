@@ -0,0 +1,38 @@
+package com.andinobus.backendsmartcode.cooperativa.api.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTOs para los jobs asíncronos de generación de frecuencias
+ */
+public class GeneracionJobDtos {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class GeneracionJobResponse {
+        private Long id;
+        private Long cooperativaId;
+        private String tipo;                    // INTELIGENTE, AUTOMATICA, PLANTILLA
+        private String estado;                  // PENDIENTE, EN_CURSO, COMPLETADO, CANCELADO, FALLIDO
+        private Integer totalBloques;
+        private Integer bloquesProcesados;
+        private Integer diasTotales;
+        private Integer diasProcesados;
+        private Integer porcentaje;             // 0-100 según bloques confirmados
+        private Integer frecuenciasCreadas;
+        private Integer frecuenciasOmitidas;
+        private Integer errores;
+        private Boolean cancelacionSolicitada;
+        private String mensaje;
+        private List<String> advertencias;
+        private LocalDateTime createdAt;
+        private LocalDateTime iniciadoEn;
+        private LocalDateTime actualizadoEn;
+        private LocalDateTime terminadoEn;
+    }
+}
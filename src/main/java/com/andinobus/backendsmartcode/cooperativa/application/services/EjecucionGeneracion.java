@@ -0,0 +1,25 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import java.util.List;
+
+/**
+ * Generación de frecuencias dividida en bloques que se confirman uno a uno.
+ *
+ * GeneracionJobService invoca procesarBloque en orden, a partir del primer bloque sin confirmar,
+ * dentro de la misma transacción que avanza el punto de control del job: un bloque queda
+ * confirmado junto con su avance o no queda en absoluto.
+ */
+public interface EjecucionGeneracion {
+
+    int totalBloques();
+
+    /**
+     * Días de operación que cubre la generación (0 si no se reparte por días)
+     */
+    int diasTotales();
+
+    ResultadoBloque procesarBloque(int indice);
+
+    record ResultadoBloque(int dias, int creadas, int omitidas, int errores, List<String> advertencias) {
+    }
+}
@@ -0,0 +1,215 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import com.andinobus.backendsmartcode.admin.domain.enums.TipoFrecuencia;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Escritura masiva por JDBC de las frecuencias generadas y sus paradas.
+ *
+ * Con ids IDENTITY Hibernate no agrupa los INSERT, así que cada frecuencia era un viaje a la BD,
+ * más un exists por candidata. Aquí las claves (bus, ruta, hora_salida) de la cooperativa se leen
+ * una sola vez, los ids se reservan de la secuencia en una consulta y las filas se envían con
+ * batchUpdate (el driver las reescribe como INSERT multi-fila con reWriteBatchedInserts).
+ * ON CONFLICT cubre la carrera con otra escritura concurrente: esas filas cuentan como omitidas.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EscrituraMasivaFrecuencias {
+
+    private static final int TAMANO_LOTE = 1000;
+
+    // La restricción uk_frecuencia_bus_ruta_hora no distingue activas: se leen todas las claves
+    private static final String SQL_CLAVES_COOPERATIVA =
+            "SELECT f.bus_id, f.ruta_id, f.hora_salida FROM frecuencia_viaje f " +
+            "JOIN bus b ON b.id = f.bus_id WHERE b.cooperativa_id = ?";
+
+    private static final String SQL_RESERVAR_IDS =
+            "SELECT nextval(pg_get_serial_sequence('frecuencia_viaje', 'id')) FROM generate_series(1, ?)";
+
+    private static final String SQL_INSERT_FRECUENCIA =
+            "INSERT INTO frecuencia_viaje (id, bus_id, ruta_id, cooperativa_id, chofer_id, camino_id, " +
+            "terminal_origen_id, terminal_destino_id, hora_salida, hora_llegada_estimada, dias_operacion, " +
+            "precio_base, asientos_disponibles, duracion_estimada_minutos, kilometros_ruta, " +
+            "costo_combustible_estimado, orden_dia, tipo_frecuencia, requiere_bus_en_terminal, " +
+            "tiempo_minimo_espera_minutos, estado, activo, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'ACTIVA', TRUE, ?) " +
+            "ON CONFLICT (bus_id, ruta_id, hora_salida) DO NOTHING";
+
+    private static final String SQL_IDS_INSERTADOS =
+            "SELECT id FROM frecuencia_viaje WHERE id = ANY(?)";
+
+    private static final String SQL_INSERT_PARADA =
+            "INSERT INTO parada_frecuencia (frecuencia_viaje_id, orden, nombre_parada, direccion, terminal_id, " +
+            "tiempo_llegada, tiempo_espera_minutos, precio_desde_origen, permite_abordaje, permite_descenso, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record ClaveFrecuencia(Long busId, Long rutaId, LocalTime horaSalida) {
+    }
+
+    public record NuevaFrecuencia(
+            Long busId,
+            Long rutaId,
+            Long cooperativaId,
+            Long choferId,
+            Long caminoId,
+            Long terminalOrigenId,
+            Long terminalDestinoId,
+            LocalTime horaSalida,
+            LocalTime horaLlegadaEstimada,
+            String diasOperacion,
+            Double precioBase,
+            Integer asientosDisponibles,
+            Integer duracionEstimadaMinutos,
+            Double kilometrosRuta,
+            Double costoCombustibleEstimado,
+            Integer ordenDia,
+            TipoFrecuencia tipoFrecuencia,
+            Integer tiempoMinimoEsperaMinutos,
+            boolean requiereBusEnTerminal,
+            List<NuevaParada> paradas
+    ) {
+        public ClaveFrecuencia clave() {
+            return new ClaveFrecuencia(busId, rutaId, horaSalida);
+        }
+    }
+
+    public record NuevaParada(
+            int orden,
+            String nombreParada,
+            String direccion,
+            Long terminalId,
+            LocalTime tiempoLlegada,
+            Integer tiempoEsperaMinutos,
+            Double precioDesdeOrigen,
+            boolean permiteAbordaje,
+            boolean permiteDescenso
+    ) {
+    }
+
+    public record Resultado(int creadas, int omitidas, int paradas, long milisegundos) {
+    }
+
+    /**
+     * Claves (bus, ruta, hora_salida) ya ocupadas por los buses de la cooperativa
+     */
+    public Set<ClaveFrecuencia> clavesExistentes(Long cooperativaId) {
+        Set<ClaveFrecuencia> claves = new HashSet<>();
+        jdbcTemplate.query(SQL_CLAVES_COOPERATIVA, rs -> {
+            claves.add(new ClaveFrecuencia(rs.getLong(1), rs.getLong(2), rs.getObject(3, LocalTime.class)));
+        }, cooperativaId);
+        return claves;
+    }
+
+    /**
+     * Inserta las frecuencias (ya deduplicadas por el llamador) y sus paradas.
+     * Se ejecuta en la transacción del llamador
+     */
+    public Resultado escribir(List<NuevaFrecuencia> frecuencias) {
+        if (frecuencias.isEmpty()) {
+            return new Resultado(0, 0, 0, 0);
+        }
+        long inicio = System.nanoTime();
+        int creadas = 0;
+        int paradas = 0;
+        for (int i = 0; i < frecuencias.size(); i += TAMANO_LOTE) {
+            List<NuevaFrecuencia> lote = frecuencias.subList(i, Math.min(i + TAMANO_LOTE, frecuencias.size()));
+            List<Long> ids = jdbcTemplate.queryForList(SQL_RESERVAR_IDS, Long.class, lote.size());
+            Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+
+            jdbcTemplate.batchUpdate(SQL_INSERT_FRECUENCIA, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int j) throws SQLException {
+                    NuevaFrecuencia f = lote.get(j);
+                    ps.setLong(1, ids.get(j));
+                    ps.setLong(2, f.busId());
+                    ps.setLong(3, f.rutaId());
+                    ps.setObject(4, f.cooperativaId(), Types.BIGINT);
+                    ps.setObject(5, f.choferId(), Types.BIGINT);
+                    ps.setObject(6, f.caminoId(), Types.BIGINT);
+                    ps.setObject(7, f.terminalOrigenId(), Types.BIGINT);
+                    ps.setObject(8, f.terminalDestinoId(), Types.BIGINT);
+                    ps.setTime(9, Time.valueOf(f.horaSalida()));
+                    ps.setTime(10, f.horaLlegadaEstimada() != null ? Time.valueOf(f.horaLlegadaEstimada()) : null);
+                    ps.setString(11, f.diasOperacion());
+                    ps.setObject(12, f.precioBase(), Types.DOUBLE);
+                    ps.setObject(13, f.asientosDisponibles(), Types.INTEGER);
+                    ps.setObject(14, f.duracionEstimadaMinutos(), Types.INTEGER);
+                    ps.setObject(15, f.kilometrosRuta(), Types.DOUBLE);
+                    ps.setObject(16, f.costoCombustibleEstimado(), Types.DOUBLE);
+                    ps.setObject(17, f.ordenDia(), Types.INTEGER);
+                    ps.setString(18, f.tipoFrecuencia() != null ? f.tipoFrecuencia().name() : null);
+                    ps.setBoolean(19, f.requiereBusEnTerminal());
+                    ps.setObject(20, f.tiempoMinimoEsperaMinutos(), Types.INTEGER);
+                    ps.setTimestamp(21, ahora);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return lote.size();
+                }
+            });
+
+            // Con la reescritura por lotes el driver no informa filas por sentencia: se consultan los ids
+            Set<Long> insertados = idsInsertados(ids);
+            creadas += insertados.size();
+
+            List<Object[]> filasParada = new ArrayList<>();
+            for (int j = 0; j < lote.size(); j++) {
+                Long id = ids.get(j);
+                List<NuevaParada> paradasFrecuencia = lote.get(j).paradas();
+                if (paradasFrecuencia == null || !insertados.contains(id)) {
+                    continue;
+                }
+                for (NuevaParada p : paradasFrecuencia) {
+                    filasParada.add(new Object[]{
+                            id, p.orden(), p.nombreParada(), p.direccion(), p.terminalId(),
+                            p.tiempoLlegada() != null ? Time.valueOf(p.tiempoLlegada()) : null,
+                            p.tiempoEsperaMinutos(), p.precioDesdeOrigen(), p.permiteAbordaje(), p.permiteDescenso(), ahora
+                    });
+                }
+            }
+            if (!filasParada.isEmpty()) {
+                jdbcTemplate.batchUpdate(SQL_INSERT_PARADA, filasParada, new int[]{
+                        Types.BIGINT, Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.TIME,
+                        Types.INTEGER, Types.DOUBLE, Types.BOOLEAN, Types.BOOLEAN, Types.TIMESTAMP
+                });
+                paradas += filasParada.size();
+            }
+        }
+        long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+        log.info("Escritura masiva: {} frecuencias creadas, {} omitidas por conflicto, {} paradas en {} ms",
+                creadas, frecuencias.size() - creadas, paradas, milisegundos);
+        return new Resultado(creadas, frecuencias.size() - creadas, paradas, milisegundos);
+    }
+
+    private Set<Long> idsInsertados(List<Long> ids) {
+        Set<Long> insertados = new HashSet<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_IDS_INSERTADOS);
+            ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        }, rs -> {
+            insertados.add(rs.getLong(1));
+        });
+        return insertados;
+    }
+}
@@ -0,0 +1,208 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import com.andinobus.backendsmartcode.common.export.ExportadorFilas;
+import com.andinobus.backendsmartcode.common.export.FormatoExportacion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Exportación de reportes de cooperativa a CSV o XLSX en streaming.
+ *
+ * Cada reporte es una sola consulta que se recorre con un cursor de solo avance (fetch size
+ * acotado, dentro de una transacción de solo lectura para que el driver de Postgres no cargue todo
+ * el resultado) y cada fila se escribe en la respuesta apenas llega; no hay entidades ni listas
+ * intermedias, así la memoria es la misma para cien filas que para millones.
+ */
+@Service
+@Slf4j
+public class ExportacionReportesService {
+
+    private static final String DESDE_VIAJES =
+            "FROM viaje v JOIN frecuencia f ON f.id = v.frecuencia_id LEFT JOIN bus b ON b.id = v.bus_id ";
+
+    private static final String FILTRO = "WHERE f.cooperativa_id = ? AND v.fecha BETWEEN ? AND ? ";
+
+    /**
+     * Reportes exportables: encabezado y consulta (parámetros: cooperativa, fecha inicio, fecha fin)
+     */
+    public enum Reporte {
+        VENTAS("ventas", "Ventas",
+                new String[]{"Fecha viaje", "Hora salida", "Origen", "Destino", "Reserva", "Cliente",
+                        "Asientos", "Estado", "Monto", "Fecha reserva"},
+                "SELECT v.fecha, v.hora_salida, f.origen, f.destino, r.id, r.cliente_email, " +
+                "       r.asientos, r.estado, r.monto, r.created_at " +
+                "FROM reserva r JOIN viaje v ON v.id = r.viaje_id JOIN frecuencia f ON f.id = v.frecuencia_id " +
+                FILTRO +
+                "ORDER BY v.fecha, v.hora_salida, r.id"),
+
+        VIAJES("viajes", "Viajes",
+                new String[]{"Viaje", "Fecha", "Hora salida", "Origen", "Destino", "Bus", "Estado",
+                        "Reservas pagadas", "Asientos vendidos", "Ventas"},
+                "SELECT v.id, v.fecha, v.hora_salida, f.origen, f.destino, b.placa, v.estado, " +
+                "       COUNT(r.id) FILTER (WHERE r.estado = 'PAGADO'), " +
+                "       COALESCE(SUM(r.asientos) FILTER (WHERE r.estado = 'PAGADO'), 0), " +
+                "       COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0) " +
+                DESDE_VIAJES +
+                "LEFT JOIN reserva r ON r.viaje_id = v.id " +
+                FILTRO +
+                "GROUP BY v.id, f.origen, f.destino, b.placa " +
+                "ORDER BY v.fecha, v.hora_salida, v.id"),
+
+        OCUPACION("ocupacion", "Ocupacion",
+                new String[]{"Viaje", "Fecha", "Hora salida", "Origen", "Destino", "Bus", "Capacidad",
+                        "Vendidos", "Reservados", "Disponibles", "Ocupacion %"},
+                "SELECT v.id, v.fecha, v.hora_salida, f.origen, f.destino, b.placa, " +
+                "       COALESCE(NULLIF(COUNT(va.id), 0), MAX(b.capacidad_asientos), 0), " +
+                "       COUNT(va.id) FILTER (WHERE va.estado = 'VENDIDO'), " +
+                "       COUNT(va.id) FILTER (WHERE va.estado = 'RESERVADO'), " +
+                "       COUNT(va.id) FILTER (WHERE va.estado = 'DISPONIBLE'), " +
+                "       CASE WHEN COUNT(va.id) = 0 THEN 0 " +
+                "            ELSE ROUND(100.0 * COUNT(va.id) FILTER (WHERE va.estado IN ('VENDIDO', 'RESERVADO')) / COUNT(va.id), 1) END " +
+                DESDE_VIAJES +
+                "LEFT JOIN viaje_asiento va ON va.viaje_id = v.id " +
+                FILTRO +
+                "GROUP BY v.id, f.origen, f.destino, b.placa " +
+                "ORDER BY v.fecha, v.hora_salida, v.id"),
+
+        MANIFIESTO("manifiesto", "Pasajeros",
+                new String[]{"Fecha", "Hora salida", "Viaje", "Origen", "Destino", "Bus", "Asiento", "Tipo asiento",
+                        "Estado asiento", "Reserva", "Estado reserva", "Cliente", "Nombres", "Apellidos"},
+                "SELECT v.fecha, v.hora_salida, v.id, f.origen, f.destino, b.placa, va.numero_asiento, va.tipo_asiento, " +
+                "       va.estado, r.id, r.estado, r.cliente_email, u.nombres, u.apellidos " +
+                "FROM viaje_asiento va " +
+                "JOIN viaje v ON v.id = va.viaje_id " +
+                "JOIN frecuencia f ON f.id = v.frecuencia_id " +
+                "LEFT JOIN bus b ON b.id = v.bus_id " +
+                "JOIN reserva r ON r.id = va.reserva_id " +
+                "LEFT JOIN app_user u ON u.email = r.cliente_email " +
+                FILTRO +
+                "ORDER BY v.fecha, v.hora_salida, v.id, va.numero_asiento");
+
+        private final String nombre;
+        private final String hoja;
+        private final String[] encabezado;
+        private final String sql;
+
+        Reporte(String nombre, String hoja, String[] encabezado, String sql) {
+            this.nombre = nombre;
+            this.hoja = hoja;
+            this.encabezado = encabezado;
+            this.sql = sql;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public static Reporte desde(String valor) {
+            if (valor != null) {
+                for (Reporte reporte : values()) {
+                    if (reporte.nombre.equals(valor.trim().toLowerCase(Locale.ROOT))) {
+                        return reporte;
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Reporte no exportable: " + valor + " (ventas, viajes, ocupacion o manifiesto)");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.reportes.exportacion.fetch-size:1000}")
+    private int fetchSize;
+
+    public ExportacionReportesService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Nombre sugerido del archivo descargado
+     */
+    public String nombreArchivo(Reporte reporte, Long cooperativaId, LocalDate fechaInicio, LocalDate fechaFin, FormatoExportacion formato) {
+        return "reporte_" + reporte.getNombre() + "_" + cooperativaId + "_" + fechaInicio + "_" + fechaFin + "." + formato.getExtension();
+    }
+
+    /**
+     * Escribe el reporte en out fila por fila. Retorna las filas de datos escritas
+     */
+    public long exportar(Reporte reporte, Long cooperativaId, LocalDate fechaInicio, LocalDate fechaFin,
+                         FormatoExportacion formato, OutputStream out) throws IOException {
+        if (fechaFin.isBefore(fechaInicio)) {
+            throw new IllegalArgumentException("La fecha fin no puede ser anterior a la fecha inicio");
+        }
+        long inicio = System.currentTimeMillis();
+        try (ExportadorFilas exportador = formato.crear(out, reporte.hoja)) {
+            exportador.fila((Object[]) reporte.encabezado);
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(reporte.sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setLong(1, cooperativaId);
+                ps.setObject(2, fechaInicio);
+                ps.setObject(3, fechaFin);
+                return ps;
+            }, new EscritorFilas(exportador, reporte.encabezado.length)));
+
+            long filas = exportador.filasEscritas() - 1;
+            log.info("Reporte {} de cooperativa {} exportado en {}: {} filas en {} ms",
+                    reporte.getNombre(), cooperativaId, formato, filas, System.currentTimeMillis() - inicio);
+            return filas;
+        } catch (UncheckedIOException e) {
+            // El cliente cortó la descarga
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Pasa cada fila del cursor al exportador reutilizando el mismo arreglo de valores
+     */
+    private static final class EscritorFilas implements RowCallbackHandler {
+
+        private final ExportadorFilas exportador;
+        private final Object[] valores;
+
+        EscritorFilas(ExportadorFilas exportador, int columnas) {
+            this.exportador = exportador;
+            this.valores = new Object[columnas];
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            for (int i = 0; i < valores.length; i++) {
+                Object valor = rs.getObject(i + 1);
+                if (valor instanceof Date fecha) {
+                    valor = fecha.toLocalDate();
+                } else if (valor instanceof Time hora) {
+                    valor = hora.toLocalTime();
+                } else if (valor instanceof Timestamp momento) {
+                    valor = momento.toLocalDateTime();
+                }
+                valores[i] = valor;
+            }
+            try {
+                exportador.fila(valores);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -7,7 +7,6 @@ import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeR
 import com.andinobus.backendsmartcode.admin.domain.repositories.RutaRepository;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.*;
 import com.andinobus.backendsmartcode.catalogos.domain.repositories.CooperativaTerminalRepository;
-import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.*;
 import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionAutomaticaDtos.*;
 import com.andinobus.backendsmartcode.cooperativa.domain.entities.FrecuenciaConfigCooperativa;
@@ -35,7 +34,7 @@ import java.util.stream.Collectors;
 public class GeneracionAutomaticaService {
 
     private final CooperativaTerminalRepository cooperativaTerminalRepository;
-    private final TerminalRepository terminalRepository;
+    private final MatrizTerminales matrizTerminales;
     private final BusRepository busRepository;
     private final BusChoferRepository busChoferRepository;
     private final FrecuenciaConfigCooperativaRepository configRepository;
@@ -161,8 +160,8 @@ public class GeneracionAutomaticaService {
 
         // Generar preview para cada ruta
         for (RutaSeleccionada rutaSelec : rutasAGenerar) {
-            Terminal origen = terminalRepository.findById(rutaSelec.getTerminalOrigenId()).orElse(null);
-            Terminal destino = terminalRepository.findById(rutaSelec.getTerminalDestinoId()).orElse(null);
+            Terminal origen = matrizTerminales.obtenerTerminal(rutaSelec.getTerminalOrigenId());
+            Terminal destino = matrizTerminales.obtenerTerminal(rutaSelec.getTerminalDestinoId());
 
             if (origen == null || destino == null) {
                 advertencias.add("Ruta inválida: terminal no encontrado");
@@ -303,19 +302,131 @@ public class GeneracionAutomaticaService {
         }
 
         mensajes.add("Generando frecuencias para " + rutasAGenerar.size() + " ruta(s)");
-        int busIndex = 0;
+        GeneradorRutas generador = new GeneradorRutas(cooperativa, buses, config, diasOperacionStr, request,
+                frecuenciasCreadas, advertencias);
 
         // Generar frecuencias para cada ruta
         for (RutaSeleccionada rutaSelec : rutasAGenerar) {
-            Terminal origen = terminalRepository.findById(rutaSelec.getTerminalOrigenId())
-                    .orElse(null);
-            Terminal destino = terminalRepository.findById(rutaSelec.getTerminalDestinoId())
-                    .orElse(null);
+            generador.generarRuta(rutaSelec);
+        }
+        errores = generador.errores;
+        conAdvertencias = generador.conAdvertencias;
+        omitidas = generador.omitidas;
+
+        mensajes.add("Proceso completado");
+        mensajes.add("Frecuencias creadas: " + frecuenciasCreadas.size());
+        if (omitidas > 0) {
+            mensajes.add("Frecuencias omitidas (ya existían): " + omitidas);
+        }
+
+        return ResultadoGeneracionAutomatica.builder()
+                .frecuenciasCreadas(frecuenciasCreadas.size())
+                .frecuenciasConAdvertencias(conAdvertencias)
+                .errores(errores)
+                .frecuenciasGeneradas(frecuenciasCreadas)
+                .mensajes(mensajes)
+                .advertencias(advertencias)
+                .build();
+    }
+
+    /**
+     * Prepara la generación para correr como job: un bloque por ruta, en el mismo orden y con la
+     * misma rotación de buses que la generación síncrona
+     */
+    public EjecucionGeneracion planificarGeneracion(Long cooperativaId, GenerarAutomaticoRequest request) {
+        Cooperativa cooperativa = cooperativaRepository.findById(cooperativaId)
+                .orElseThrow(() -> new EntityNotFoundException("Cooperativa no encontrada"));
+
+        List<Bus> buses = busRepository.findByCooperativaIdAndActivoTrue(cooperativaId)
+                .stream()
+                .filter(b -> "DISPONIBLE".equals(b.getEstado()))
+                .collect(Collectors.toList());
+        if (buses.isEmpty()) {
+            throw new IllegalArgumentException("No hay buses disponibles para generar frecuencias");
+        }
+
+        var config = configRepository.findByCooperativaId(cooperativaId).orElse(null);
+        String diasOperacionStr = String.join(",", request.getDiasOperacion() != null && !request.getDiasOperacion().isEmpty()
+                ? request.getDiasOperacion()
+                : Arrays.asList("LUNES", "MARTES", "MIERCOLES", "JUEVES", "VIERNES", "SABADO", "DOMINGO"));
+
+        List<RutaSeleccionada> rutasAGenerar = obtenerRutasAGenerar(cooperativaId, request);
+        if (rutasAGenerar.isEmpty()) {
+            throw new IllegalArgumentException("No hay rutas disponibles para generar frecuencias");
+        }
+
+        List<FrecuenciaCreada> frecuenciasCreadas = new ArrayList<>();
+        List<String> advertencias = new ArrayList<>();
+        GeneradorRutas generador = new GeneradorRutas(cooperativa, buses, config, diasOperacionStr, request,
+                frecuenciasCreadas, advertencias);
+
+        return new EjecucionGeneracion() {
+            @Override
+            public int totalBloques() {
+                return rutasAGenerar.size();
+            }
+
+            @Override
+            public int diasTotales() {
+                return 0;
+            }
+
+            @Override
+            public ResultadoBloque procesarBloque(int indice) {
+                // Al reanudar, las rutas ya confirmadas solo avanzan la rotación
+                while (generador.rutasRecorridas < indice) {
+                    generador.saltarRuta(rutasAGenerar.get(generador.rutasRecorridas));
+                }
+                int omitidas = generador.omitidas;
+                int errores = generador.errores;
+                frecuenciasCreadas.clear();
+                advertencias.clear();
+                generador.generarRuta(rutasAGenerar.get(indice));
+                return new ResultadoBloque(0, frecuenciasCreadas.size(), generador.omitidas - omitidas,
+                        generador.errores - errores, new ArrayList<>(advertencias));
+            }
+        };
+    }
+
+    /**
+     * Genera las frecuencias ruta por ruta rotando los buses entre todas las rutas.
+     * La generación síncrona recorre todas las rutas de una vez; un job procesa una ruta por bloque
+     * y, al reanudar, salta las rutas ya confirmadas avanzando la rotación sin escribir
+     */
+    private class GeneradorRutas {
+        private final Cooperativa cooperativa;
+        private final List<Bus> buses;
+        private final FrecuenciaConfigCooperativa config;
+        private final String diasOperacionStr;
+        private final GenerarAutomaticoRequest request;
+        private final List<FrecuenciaCreada> frecuenciasCreadas;
+        private final List<String> advertencias;
+        private int busIndex = 0;
+        private int rutasRecorridas = 0;
+        private int errores = 0;
+        private int conAdvertencias = 0;
+        private int omitidas = 0;
+
+        GeneradorRutas(Cooperativa cooperativa, List<Bus> buses, FrecuenciaConfigCooperativa config, String diasOperacionStr,
+                       GenerarAutomaticoRequest request, List<FrecuenciaCreada> frecuenciasCreadas, List<String> advertencias) {
+            this.cooperativa = cooperativa;
+            this.buses = buses;
+            this.config = config;
+            this.diasOperacionStr = diasOperacionStr;
+            this.request = request;
+            this.frecuenciasCreadas = frecuenciasCreadas;
+            this.advertencias = advertencias;
+        }
+
+        void generarRuta(RutaSeleccionada rutaSelec) {
+            rutasRecorridas++;
+            Terminal origen = matrizTerminales.obtenerTerminal(rutaSelec.getTerminalOrigenId());
+            Terminal destino = matrizTerminales.obtenerTerminal(rutaSelec.getTerminalDestinoId());
 
             if (origen == null || destino == null) {
                 advertencias.add("Ruta inválida: terminal origen o destino no encontrado");
                 errores++;
-                continue;
+                return;
             }
 
             // Buscar o crear ruta
@@ -370,7 +481,7 @@ public class GeneracionAutomaticaService {
                 try {
                     // Determinar tipo de frecuencia basado en la distancia
                     TipoFrecuencia tipoFrecuencia = determinarTipoFrecuencia(ruta, config);
-                    
+                
                     // Calcular tiempo mínimo de espera según tipo
                     int tiempoMinimoEspera = tipoFrecuencia == TipoFrecuencia.INTERPROVINCIAL 
                         ? (config != null ? config.getDescansoInterprovincialMinutos() : 120)
@@ -422,20 +533,23 @@ public class GeneracionAutomaticaService {
             }
         }
 
-        mensajes.add("Proceso completado");
-        mensajes.add("Frecuencias creadas: " + frecuenciasCreadas.size());
-        if (omitidas > 0) {
-            mensajes.add("Frecuencias omitidas (ya existían): " + omitidas);
+        /**
+         * Avanza la rotación de buses como si la ruta se hubiera generado, sin escribir nada
+         */
+        void saltarRuta(RutaSeleccionada rutaSelec) {
+            rutasRecorridas++;
+            if (matrizTerminales.obtenerTerminal(rutaSelec.getTerminalOrigenId()) == null
+                    || matrizTerminales.obtenerTerminal(rutaSelec.getTerminalDestinoId()) == null) {
+                return;
+            }
+            int duracionViaje = rutaSelec.getDuracionMinutos() != null ? rutaSelec.getDuracionMinutos() :
+                    (request.getDuracionViajeMinutos() != null ? request.getDuracionViajeMinutos() : 120);
+            LocalTime horaSalida = request.getHoraInicio();
+            while (!horaSalida.isAfter(request.getHoraFin().minusMinutes(duracionViaje))) {
+                busIndex++;
+                horaSalida = horaSalida.plusMinutes(request.getIntervaloMinutos());
+            }
         }
-
-        return ResultadoGeneracionAutomatica.builder()
-                .frecuenciasCreadas(frecuenciasCreadas.size())
-                .frecuenciasConAdvertencias(conAdvertencias)
-                .errores(errores)
-                .frecuenciasGeneradas(frecuenciasCreadas)
-                .mensajes(mensajes)
-                .advertencias(advertencias)
-                .build();
     }
 
     /**
@@ -458,12 +572,12 @@ public class GeneracionAutomaticaService {
         if (request.getRutasSeleccionadas() != null && !request.getRutasSeleccionadas().isEmpty()) {
             for (RutaSeleccionada ruta : request.getRutasSeleccionadas()) {
                 if (!terminalesAutorizados.contains(ruta.getTerminalOrigenId())) {
-                    Terminal t = terminalRepository.findById(ruta.getTerminalOrigenId()).orElse(null);
+                    Terminal t = matrizTerminales.obtenerTerminal(ruta.getTerminalOrigenId());
                     String nombreTerminal = t != null ? t.getNombre() : "ID: " + ruta.getTerminalOrigenId();
                     throw new IllegalArgumentException("Terminal origen '" + nombreTerminal + "' no está asignado a esta cooperativa");
                 }
                 if (!terminalesAutorizados.contains(ruta.getTerminalDestinoId())) {
-                    Terminal t = terminalRepository.findById(ruta.getTerminalDestinoId()).orElse(null);
+                    Terminal t = matrizTerminales.obtenerTerminal(ruta.getTerminalDestinoId());
                     String nombreTerminal = t != null ? t.getNombre() : "ID: " + ruta.getTerminalDestinoId();
                     throw new IllegalArgumentException("Terminal destino '" + nombreTerminal + "' no está asignado a esta cooperativa");
                 }
@@ -476,12 +590,12 @@ public class GeneracionAutomaticaService {
                 && !Boolean.TRUE.equals(request.getGenerarTodasLasRutas())) {
             // Validar que los terminales pertenezcan a la cooperativa
             if (!terminalesAutorizados.contains(request.getTerminalOrigenId())) {
-                Terminal t = terminalRepository.findById(request.getTerminalOrigenId()).orElse(null);
+                Terminal t = matrizTerminales.obtenerTerminal(request.getTerminalOrigenId());
                 String nombreTerminal = t != null ? t.getNombre() : "ID: " + request.getTerminalOrigenId();
                 throw new IllegalArgumentException("Terminal origen '" + nombreTerminal + "' no está asignado a esta cooperativa");
             }
             if (!terminalesAutorizados.contains(request.getTerminalDestinoId())) {
-                Terminal t = terminalRepository.findById(request.getTerminalDestinoId()).orElse(null);
+                Terminal t = matrizTerminales.obtenerTerminal(request.getTerminalDestinoId());
                 String nombreTerminal = t != null ? t.getNombre() : "ID: " + request.getTerminalDestinoId();
                 throw new IllegalArgumentException("Terminal destino '" + nombreTerminal + "' no está asignado a esta cooperativa");
             }
@@ -565,24 +679,11 @@ public class GeneracionAutomaticaService {
     }
 
     private double calcularDistanciaAproximada(Terminal origen, Terminal destino) {
-        // Aproximación simple basada en diferencia de coordenadas
-        // En producción usar API de mapas
-        if (origen.getLatitud() != null && origen.getLongitud() != null &&
-            destino.getLatitud() != null && destino.getLongitud() != null) {
-            
-            double dLat = Math.toRadians(destino.getLatitud() - origen.getLatitud());
-            double dLon = Math.toRadians(destino.getLongitud() - origen.getLongitud());
-            double lat1 = Math.toRadians(origen.getLatitud());
-            double lat2 = Math.toRadians(destino.getLatitud());
-
-            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                       Math.sin(dLon / 2) * Math.sin(dLon / 2) * Math.cos(lat1) * Math.cos(lat2);
-            double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-            return 6371 * c; // Radio de la tierra en km
-        }
-        
+        // Distancia en línea recta desde la matriz compartida de terminales
+        double distancia = matrizTerminales.distanciaDirectaKm(origen, destino);
+
         // Distancia por defecto si no hay coordenadas
-        return 100.0;
+        return Double.isNaN(distancia) ? 100.0 : distancia;
     }
 
     /**
@@ -1,29 +1,31 @@
 package com.andinobus.backendsmartcode.cooperativa.application.services;
 
-import com.andinobus.backendsmartcode.admin.domain.entities.FrecuenciaViaje;
 import com.andinobus.backendsmartcode.admin.domain.entities.Ruta;
 import com.andinobus.backendsmartcode.admin.domain.enums.TipoFrecuencia;
-import com.andinobus.backendsmartcode.admin.domain.repositories.DisponibilidadBusRepository;
 import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeRepository;
 import com.andinobus.backendsmartcode.admin.domain.repositories.RutaRepository;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.*;
 import com.andinobus.backendsmartcode.catalogos.domain.repositories.CooperativaTerminalRepository;
-import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.*;
 import com.andinobus.backendsmartcode.catalogos.domain.Camino;
+import com.andinobus.backendsmartcode.common.errors.NotFoundException;
 import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionInteligenteDtos.*;
+import com.andinobus.backendsmartcode.cooperativa.application.services.EscrituraMasivaFrecuencias.ClaveFrecuencia;
+import com.andinobus.backendsmartcode.cooperativa.application.services.EscrituraMasivaFrecuencias.NuevaFrecuencia;
 import com.andinobus.backendsmartcode.cooperativa.domain.entities.FrecuenciaConfigCooperativa;
 import com.andinobus.backendsmartcode.cooperativa.infrastructure.repositories.FrecuenciaConfigCooperativaRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.*;
 import java.time.format.TextStyle;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -46,19 +48,33 @@ import java.util.stream.Collectors;
 public class GeneracionFrecuenciasInteligenteService {
 
     private final CooperativaTerminalRepository cooperativaTerminalRepository;
-    private final TerminalRepository terminalRepository;
     private final BusRepository busRepository;
     private final BusChoferRepository busChoferRepository;
     private final FrecuenciaViajeRepository frecuenciaViajeRepository;
     private final FrecuenciaConfigCooperativaRepository configRepository;
     private final CooperativaRepository cooperativaRepository;
     private final RutaRepository rutaRepository;
-    private final DisponibilidadBusRepository disponibilidadBusRepository;
     private final CaminoRepository caminoRepository;
     private final com.andinobus.backendsmartcode.cooperativa.infrastructure.repositories.UsuarioCooperativaRepository usuarioCooperativaRepository;
-    
-    @PersistenceContext
-    private EntityManager entityManager;
+    private final EscrituraMasivaFrecuencias escrituraMasiva;
+    private final PurgaFrecuenciasCooperativa purgaFrecuencias;
+    private final MatrizTerminales matrizTerminales;
+
+    // Hilos del motor de generación (0 = uno por núcleo)
+    @Value("${app.generacion.motor.paralelismo:0}")
+    private int paralelismoMotor;
+
+    private ForkJoinPool poolMotor;
+
+    @PostConstruct
+    void iniciarPoolMotor() {
+        poolMotor = new ForkJoinPool(paralelismoMotor > 0 ? paralelismoMotor : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void detenerPoolMotor() {
+        poolMotor.shutdownNow();
+    }
 
     /**
      * Estado de cada bus durante la simulación
@@ -96,58 +112,6 @@ public class GeneracionFrecuenciasInteligenteService {
         }
     }
     
-    /**
-     * Clase para rastrear las horas trabajadas por chofer en la semana.
-     * Un chofer puede trabajar máximo 10 horas/día pero solo 2 días así por semana.
-     * Los demás días está limitado a 8 horas.
-     */
-    private static class EstadoChoferSemanal {
-        Long choferId;
-        String nombreChofer;
-        int diasExtendidos; // Días que ha trabajado más de 8 horas (máx 2 por semana)
-        double horasTotalesSemana;
-        int semanaActual; // Para resetear al cambiar de semana
-        
-        EstadoChoferSemanal(Long choferId, String nombre) {
-            this.choferId = choferId;
-            this.nombreChofer = nombre;
-            this.diasExtendidos = 0;
-            this.horasTotalesSemana = 0;
-            this.semanaActual = -1;
-        }
-        
-        /**
-         * Retorna las horas máximas que puede trabajar el chofer hoy.
-         * - Si ya usó sus 2 días extendidos: máximo 8 horas
-         * - Si aún le quedan días extendidos: máximo 10 horas
-         */
-        int getMaxHorasHoy() {
-            return diasExtendidos >= 2 ? 8 : 10;
-        }
-        
-        /**
-         * Registra las horas trabajadas en un día.
-         * Si trabajó más de 8 horas, cuenta como día extendido.
-         */
-        void registrarDia(double horasTrabajadas) {
-            horasTotalesSemana += horasTrabajadas;
-            if (horasTrabajadas > 8) {
-                diasExtendidos++;
-            }
-        }
-        
-        /**
-         * Resetea el contador semanal al inicio de una nueva semana
-         */
-        void resetSemana(int nuevaSemana) {
-            if (this.semanaActual != nuevaSemana) {
-                this.semanaActual = nuevaSemana;
-                this.diasExtendidos = 0;
-                this.horasTotalesSemana = 0;
-            }
-        }
-    }
-
     /**
      * Obtiene el estado inicial para la generación inteligente
      */
@@ -250,8 +214,8 @@ public class GeneracionFrecuenciasInteligenteService {
                 }
                 
                 if (rutaValida) {
-                    double distancia = calcularDistanciaKm(tOrigen, tDestino);
-                    int duracion = calcularDuracionMinutos(distancia);
+                    double distancia = matrizTerminales.distanciaCarreteraKm(tOrigen, tDestino);
+                    int duracion = matrizTerminales.duracionMinutos(tOrigen, tDestino);
                     int maxParadas = calcularMaxParadasPermitidas(duracion, tipo);
                     
                     rutas.add(RutaCircuito.builder()
@@ -263,7 +227,7 @@ public class GeneracionFrecuenciasInteligenteService {
                             .duracionMinutos(duracion)
                             .tipoFrecuencia(tipo.name())
                             .maxParadasPermitidas(maxParadas)
-                            .precioSugerido(calcularPrecioSugerido(distancia))
+                            .precioSugerido(matrizTerminales.precioSugerido(tOrigen, tDestino))
                             .provinciaOrigen(tOrigen.getProvincia())
                             .provinciaDestino(tDestino.getProvincia())
                             .cantonOrigen(tOrigen.getCanton())
@@ -379,23 +343,21 @@ public class GeneracionFrecuenciasInteligenteService {
                     .stream()
                     .collect(Collectors.groupingBy(bc -> bc.getBus().getId()));
 
-            // NUEVO: Crear pool global de buses disponibles (sin asignar a terminales específicos)
-            List<EstadoBus> poolBuses = new ArrayList<>();
+            // Pool global de buses con el primer chofer asignado de cada uno
+            List<MotorGeneracionFrecuencias.BusMotor> poolBuses = new ArrayList<>(buses.size());
             for (Bus bus : buses) {
-                EstadoBus estadoBus = new EstadoBus(bus, null, null);
-                
-                // Asignar el primer chofer disponible del bus
+                Long choferId = null;
+                String choferNombre = null;
                 List<BusChofer> choferes = choferesPorBus.get(bus.getId());
                 if (choferes != null && !choferes.isEmpty()) {
                     BusChofer asignacion = choferes.get(0);
-                    estadoBus.choferId = asignacion.getChofer().getId();
-                    estadoBus.choferNombre = asignacion.getChofer().getNombres() + " " + 
+                    choferId = asignacion.getChofer().getId();
+                    choferNombre = asignacion.getChofer().getNombres() + " " +
                             (asignacion.getChofer().getApellidos() != null ? asignacion.getChofer().getApellidos() : "");
                 }
-                poolBuses.add(estadoBus);
+                poolBuses.add(new MotorGeneracionFrecuencias.BusMotor(bus.getId(), bus.getPlaca(),
+                        bus.getCapacidadAsientos() != null ? bus.getCapacidadAsientos() : 40, choferId, choferNombre));
             }
-            
-            log.info("Pool global de {} buses creado para {} rutas", poolBuses.size(), rutasAOperar.size());
 
             // Validar fechas
             if (request.getFechaInicio() == null || request.getFechaFin() == null) {
@@ -403,88 +365,30 @@ public class GeneracionFrecuenciasInteligenteService {
                 return buildEmptyPreview(errores);
             }
 
-        // Crear mapa de estado semanal por chofer
-        // Un chofer puede trabajar máximo 10h/día pero solo 2 días así por semana
-        Map<Long, EstadoChoferSemanal> estadoChoferesSemanal = new HashMap<>();
-        for (EstadoBus bus : poolBuses) {
-            if (bus.choferId != null && !estadoChoferesSemanal.containsKey(bus.choferId)) {
-                estadoChoferesSemanal.put(bus.choferId, 
-                    new EstadoChoferSemanal(bus.choferId, bus.choferNombre));
-            }
-        }
-        log.info("Rastreando {} choferes para límite semanal de 10h (máx 2 días/semana)", 
-                estadoChoferesSemanal.size());
-
-        // Generar frecuencias por cada día
-        LocalDate fecha = request.getFechaInicio();
-        int totalDias = 0;
-        int semanaAnterior = -1;
-
-        while (!fecha.isAfter(request.getFechaFin())) {
-            String diaSemana = obtenerDiaSemana(fecha);
-            
-            // Detectar cambio de semana (usando número de semana del año)
-            int semanaActual = fecha.get(java.time.temporal.WeekFields.ISO.weekOfYear());
-            if (semanaActual != semanaAnterior) {
-                // Nueva semana: resetear contadores de días extendidos
-                log.info("=== NUEVA SEMANA {} (fecha: {}) - Reseteando contadores de choferes ===", 
-                        semanaActual, fecha);
-                for (EstadoChoferSemanal estado : estadoChoferesSemanal.values()) {
-                    estado.resetSemana(semanaActual);
+            // Capacidad diaria de salidas de cada terminal
+            Map<Long, Integer> capacidadPorTerminal = new HashMap<>();
+            for (CooperativaTerminal ct : terminales) {
+                if (ct.getTerminal() != null && ct.getTerminal().getMaxFrecuenciasDiarias() != null) {
+                    capacidadPorTerminal.put(ct.getTerminal().getId(), ct.getTerminal().getMaxFrecuenciasDiarias());
                 }
-                semanaAnterior = semanaActual;
-            }
-            
-            // Verificar si opera este día
-            if (request.getDiasOperacion() != null && !request.getDiasOperacion().isEmpty() 
-                    && !request.getDiasOperacion().contains(diaSemana)) {
-                fecha = fecha.plusDays(1);
-                continue;
             }
 
-            totalDias++;
-            
-            // Calcular horas máximas por chofer para HOY basado en su estado semanal
-            Map<Long, Integer> maxHorasPorChoferHoy = new HashMap<>();
-            for (EstadoBus bus : poolBuses) {
-                if (bus.choferId != null) {
-                    EstadoChoferSemanal estadoChofer = estadoChoferesSemanal.get(bus.choferId);
-                    int maxHoras = estadoChofer != null ? estadoChofer.getMaxHorasHoy() : 10;
-                    maxHorasPorChoferHoy.put(bus.choferId, maxHoras);
-                }
-            }
-            
-            // Reiniciar estado de buses para el nuevo día
-            for (EstadoBus estado : poolBuses) {
-                estado.resetDia(horaInicioOp);
-            }
-
-            // NUEVO: Generar viajes del día usando pool global de buses
-            LocalDate fechaActual = fecha;
-            generarViajesDelDiaV2(
-                    fechaActual, diaSemana, rutasAOperar, poolBuses,
-                    horaInicioOp, horaFinOp, maxHorasChofer,
-                    descansoInterprov, descansoIntraprov, umbralKm,
-                    frecuencias, frecuenciasPorRuta, frecuenciasPorBus,
-                    advertencias, request.getPermitirParadas(), request.getMaxParadasPersonalizado(),
-                    maxHorasPorChoferHoy // Nuevo parámetro: horas máximas personalizadas por chofer
-            );
-            
-            // Al final del día, registrar horas trabajadas por cada chofer
-            for (EstadoBus bus : poolBuses) {
-                if (bus.choferId != null && bus.horasTrabajadasChofer > 0) {
-                    EstadoChoferSemanal estadoChofer = estadoChoferesSemanal.get(bus.choferId);
-                    if (estadoChofer != null) {
-                        estadoChofer.registrarDia(bus.horasTrabajadasChofer);
-                        log.debug("Chofer {} trabajó {:.1f}h el {} (días extendidos esta semana: {})",
-                                bus.choferNombre, bus.horasTrabajadasChofer, fecha, 
-                                estadoChofer.diasExtendidos);
-                    }
-                }
-            }
-
-            fecha = fecha.plusDays(1);
-        }
+            long inicio = System.currentTimeMillis();
+            MotorGeneracionFrecuencias motor = new MotorGeneracionFrecuencias(
+                    new MotorGeneracionFrecuencias.Parametros(horaInicioOp, horaFinOp, maxHorasChofer,
+                            descansoInterprov, descansoIntraprov, umbralKm,
+                            request.getPermitirParadas(), request.getMaxParadasPersonalizado()),
+                    rutasAOperar, poolBuses, capacidadPorTerminal);
+            MotorGeneracionFrecuencias.Resultado resultado = motor.generar(
+                    request.getFechaInicio(), request.getFechaFin(), request.getDiasOperacion(), poolMotor);
+            frecuencias.addAll(resultado.frecuencias());
+            frecuenciasPorRuta.putAll(resultado.frecuenciasPorRuta());
+            frecuenciasPorBus.putAll(resultado.frecuenciasPorBus());
+            advertencias.addAll(resultado.advertencias());
+            int totalDias = resultado.diasOperacion();
+            log.info("Preview de cooperativa {}: {} frecuencias en {} días con {} buses y {} rutas ({} ms)",
+                    cooperativaId, frecuencias.size(), totalDias, poolBuses.size(), rutasAOperar.size(),
+                    System.currentTimeMillis() - inicio);
 
         // Estadísticas
         int totalFrecuencias = frecuencias.size();
@@ -828,258 +732,6 @@ public class GeneracionFrecuenciasInteligenteService {
         }
     }
 
-    /**
-     * NUEVO: Genera viajes del día distribuyendo buses entre TODAS las rutas
-     * Los buses rotan entre rutas en lugar de estar fijos en un terminal
-     * @param maxHorasPorChofer Mapa con horas máximas personalizadas por chofer (basado en días extendidos de la semana)
-     */
-    private void generarViajesDelDiaV2(
-            LocalDate fecha,
-            String diaSemana,
-            List<RutaCircuitoRequest> rutas,
-            List<EstadoBus> poolBuses,
-            LocalTime horaInicio,
-            LocalTime horaFin,
-            int maxHorasChoferDefault,
-            int descansoInterprov,
-            int descansoIntraprov,
-            int umbralKm,
-            List<FrecuenciaPreview> frecuencias,
-            Map<String, Integer> frecuenciasPorRuta,
-            Map<String, Integer> frecuenciasPorBus,
-            List<String> advertencias,
-            Boolean permitirParadas,
-            Integer maxParadasConfig,
-            Map<Long, Integer> maxHorasPorChofer) {
-
-        log.info("=== Generando viajes V2 para {} con {} rutas y {} buses ===", 
-                fecha, rutas.size(), poolBuses.size());
-
-        if (rutas.isEmpty() || poolBuses.isEmpty()) {
-            log.warn("No hay rutas o buses para generar viajes");
-            return;
-        }
-
-        // ESTRATEGIA: Asignar buses a rutas de forma equitativa
-        // Cada ruta tendrá buses asignados que harán circuitos ida-vuelta durante el día
-        
-        // Calcular cuántos buses asignar a cada ruta
-        int busesDisponibles = poolBuses.size();
-        int numRutas = rutas.size();
-        
-        // Distribuir buses entre rutas (al menos 1 por ruta si hay suficientes)
-        Map<Integer, List<EstadoBus>> busesAsignadosPorRuta = new HashMap<>();
-        int busIndex = 0;
-        
-        // Primera pasada: asignar al menos 1 bus por ruta
-        for (int i = 0; i < numRutas && busIndex < busesDisponibles; i++) {
-            List<EstadoBus> listaBuses = new ArrayList<>();
-            listaBuses.add(poolBuses.get(busIndex++));
-            busesAsignadosPorRuta.put(i, listaBuses);
-        }
-        
-        // Segunda pasada: distribuir buses restantes entre las rutas
-        int rutaIdx = 0;
-        while (busIndex < busesDisponibles) {
-            busesAsignadosPorRuta.get(rutaIdx % numRutas).add(poolBuses.get(busIndex++));
-            rutaIdx++;
-        }
-        
-        log.info("Distribución de buses por ruta:");
-        for (int i = 0; i < numRutas; i++) {
-            RutaCircuitoRequest ruta = rutas.get(i);
-            List<EstadoBus> buses = busesAsignadosPorRuta.getOrDefault(i, new ArrayList<>());
-            log.info("  Ruta {}: {} -> {} ({} buses)", i, 
-                    ruta.getTerminalOrigenNombre(), ruta.getTerminalDestinoNombre(), buses.size());
-        }
-
-        // Para cada ruta, generar viajes con los buses asignados
-        log.info(">>> INICIANDO LOOP DE GENERACIÓN para {} rutas", numRutas);
-        for (int rutaIndex = 0; rutaIndex < numRutas; rutaIndex++) {
-            RutaCircuitoRequest ruta = rutas.get(rutaIndex);
-            List<EstadoBus> busesDeRuta = busesAsignadosPorRuta.getOrDefault(rutaIndex, new ArrayList<>());
-            
-            log.info(">>> Procesando ruta {}/{}: {} -> {} con {} buses", 
-                    rutaIndex + 1, numRutas,
-                    ruta.getTerminalOrigenNombre(), ruta.getTerminalDestinoNombre(),
-                    busesDeRuta.size());
-            
-            if (busesDeRuta.isEmpty()) {
-                advertencias.add("Ruta " + ruta.getTerminalOrigenNombre() + " → " + 
-                        ruta.getTerminalDestinoNombre() + " sin buses asignados");
-                continue;
-            }
-            
-            // Calcular parámetros de la ruta
-            int duracionIda = ruta.getDuracionMinutos() != null ? ruta.getDuracionMinutos() : 120;
-            boolean esInterprovincial = ruta.getDistanciaKm() != null && ruta.getDistanciaKm() > umbralKm;
-            
-            // TIEMPO DE DESCANSO DINÁMICO basado en duración del viaje
-            // Fórmula: 25% del tiempo de viaje, mínimo 15 min, máximo 90 min
-            int tiempoDescansoCalculado = Math.max(15, Math.min(90, (int)(duracionIda * 0.25)));
-            // Usar el valor calculado o el configurado si es mayor (para seguridad)
-            int tiempoDescansoBase = esInterprovincial ? descansoInterprov : descansoIntraprov;
-            int tiempoDescanso = Math.max(tiempoDescansoCalculado, Math.min(tiempoDescansoBase, tiempoDescansoCalculado + 15));
-            
-            log.info(">>> Descanso para ruta {}: calculado={}min (25% de {}min), base={}min, final={}min",
-                    ruta.getTerminalOrigenNombre() + "-" + ruta.getTerminalDestinoNombre(),
-                    tiempoDescansoCalculado, duracionIda, tiempoDescansoBase, tiempoDescanso);
-            
-            TipoFrecuencia tipo = esInterprovincial ? TipoFrecuencia.INTERPROVINCIAL : TipoFrecuencia.INTRAPROVINCIAL;
-            Double distanciaKm = ruta.getDistanciaKm() != null ? ruta.getDistanciaKm() : 100.0;
-            Double costoCombustible = distanciaKm * 0.12 * 1.80;
-            
-            // Calcular paradas permitidas
-            int maxParadas = 0;
-            if (Boolean.TRUE.equals(permitirParadas) && esInterprovincial) {
-                maxParadas = maxParadasConfig != null ? maxParadasConfig : calcularMaxParadasPermitidas(duracionIda, tipo);
-            }
-            
-            // Tiempo total de un circuito completo (ida + descanso + vuelta + descanso)
-            int tiempoCircuitoMinutos = duracionIda * 2 + tiempoDescanso * 2;
-            double horasCircuito = tiempoCircuitoMinutos / 60.0;
-            double horasViajeSolo = duracionIda / 60.0; // Solo ida
-            
-            log.info(">>> Ruta {} ({}→{}): durIda={}min ({}h), descanso={}min, circuito={}min ({}h), maxHorasDefault={}", 
-                    rutaIndex, ruta.getTerminalOrigenNombre(), ruta.getTerminalDestinoNombre(),
-                    duracionIda, horasViajeSolo, tiempoDescanso, tiempoCircuitoMinutos, horasCircuito, maxHorasChoferDefault);
-            
-            // Verificar si la ruta es factible (al menos puede hacer ida con 10h máximo)
-            if (horasViajeSolo > 10) {
-                log.warn(">>> Ruta {} OMITIDA: duración ida ({}h) excede max horas posibles (10h)", 
-                        rutaIndex, horasViajeSolo);
-                advertencias.add("Ruta " + ruta.getTerminalOrigenNombre() + " → " + 
-                        ruta.getTerminalDestinoNombre() + " omitida: duración excede horas máximas del chofer");
-                continue;
-            }
-            
-            // Generar viajes para cada bus asignado a esta ruta
-            for (EstadoBus bus : busesDeRuta) {
-                // Obtener max horas personalizadas para este chofer (basado en días extendidos de la semana)
-                int maxHorasChoferHoy = maxHorasPorChofer != null && bus.choferId != null 
-                        ? maxHorasPorChofer.getOrDefault(bus.choferId, maxHorasChoferDefault) 
-                        : maxHorasChoferDefault;
-                
-                LocalTime horaActual = horaInicio;
-                
-                // Escalonar inicio de buses para evitar que salgan todos al mismo tiempo
-                int offsetMinutos = busesDeRuta.indexOf(bus) * 15; // 15 min entre cada bus
-                horaActual = horaActual.plusMinutes(offsetMinutos);
-                
-                log.info(">>> Bus {} asignado a ruta {}, inicio a las {}, horasTrabajadasChofer={}, maxHorasHoy={}", 
-                        bus.placa, rutaIndex, horaActual, bus.horasTrabajadasChofer, maxHorasChoferHoy);
-                
-                // Generar viajes mientras el chofer tenga horas disponibles para AL MENOS ida
-                // Usa maxHorasChoferHoy que considera el límite semanal de días extendidos
-                while (bus.horasTrabajadasChofer + horasViajeSolo <= maxHorasChoferHoy) {
-                    // Verificar que la hora actual + duración no exceda hora fin
-                    LocalTime horaLlegadaIda = horaActual.plusMinutes(duracionIda);
-                    if (horaLlegadaIda.isAfter(horaFin)) {
-                        break;
-                    }
-                    
-                    bus.ordenDiaActual++;
-                    String rutaIdaKey = ruta.getTerminalOrigenNombre() + " → " + ruta.getTerminalDestinoNombre();
-                    
-                    // === VIAJE DE IDA ===
-                    frecuencias.add(FrecuenciaPreview.builder()
-                            .fecha(fecha)
-                            .diaSemana(diaSemana)
-                            .horaSalida(horaActual)
-                            .horaLlegada(horaLlegadaIda)
-                            .terminalOrigenId(ruta.getTerminalOrigenId())
-                            .terminalOrigenNombre(ruta.getTerminalOrigenNombre())
-                            .terminalDestinoId(ruta.getTerminalDestinoId())
-                            .terminalDestinoNombre(ruta.getTerminalDestinoNombre())
-                            .busId(bus.busId)
-                            .busPlaca(bus.placa)
-                            .asientosDisponibles(bus.asientosDisponibles)
-                            .tipoFrecuencia(tipo.name())
-                            .duracionMinutos(duracionIda)
-                            .tiempoDescansoMinutos(tiempoDescanso)
-                            .paradasPermitidas(maxParadas)
-                            .precio(ruta.getPrecioBase())
-                            .distanciaKm(distanciaKm)
-                            .costoCombustibleEstimado(costoCombustible)
-                            .choferId(bus.choferId)
-                            .choferNombre(bus.choferNombre)
-                            .ordenDia(bus.ordenDiaActual)
-                            .esViajeDe("IDA")
-                            .build());
-                    
-                    frecuenciasPorRuta.merge(rutaIdaKey, 1, Integer::sum);
-                    frecuenciasPorBus.merge(bus.placa, 1, Integer::sum);
-                    bus.horasTrabajadasChofer += duracionIda / 60.0;
-                    bus.viajesHoy++;
-                    
-                    // === VIAJE DE VUELTA ===
-                    LocalTime horaSalidaVuelta = horaLlegadaIda.plusMinutes(tiempoDescanso);
-                    LocalTime horaLlegadaVuelta = horaSalidaVuelta.plusMinutes(duracionIda);
-                    
-                    // Verificar si puede hacer vuelta (usando maxHorasChoferHoy personalizado)
-                    if (!horaLlegadaVuelta.isAfter(horaFin) && 
-                        bus.horasTrabajadasChofer + (duracionIda / 60.0) <= maxHorasChoferHoy) {
-                        
-                        bus.ordenDiaActual++;
-                        String rutaVueltaKey = ruta.getTerminalDestinoNombre() + " → " + ruta.getTerminalOrigenNombre();
-                        
-                        frecuencias.add(FrecuenciaPreview.builder()
-                                .fecha(fecha)
-                                .diaSemana(diaSemana)
-                                .horaSalida(horaSalidaVuelta)
-                                .horaLlegada(horaLlegadaVuelta)
-                                .terminalOrigenId(ruta.getTerminalDestinoId())
-                                .terminalOrigenNombre(ruta.getTerminalDestinoNombre())
-                                .terminalDestinoId(ruta.getTerminalOrigenId())
-                                .terminalDestinoNombre(ruta.getTerminalOrigenNombre())
-                                .busId(bus.busId)
-                                .busPlaca(bus.placa)
-                                .asientosDisponibles(bus.asientosDisponibles)
-                                .tipoFrecuencia(tipo.name())
-                                .duracionMinutos(duracionIda)
-                                .tiempoDescansoMinutos(tiempoDescanso)
-                                .paradasPermitidas(maxParadas)
-                                .precio(ruta.getPrecioBase())
-                                .distanciaKm(distanciaKm)
-                                .costoCombustibleEstimado(costoCombustible)
-                                .choferId(bus.choferId)
-                                .choferNombre(bus.choferNombre)
-                                .ordenDia(bus.ordenDiaActual)
-                                .esViajeDe("VUELTA")
-                                .build());
-                        
-                        frecuenciasPorRuta.merge(rutaVueltaKey, 1, Integer::sum);
-                        frecuenciasPorBus.merge(bus.placa, 1, Integer::sum);
-                        bus.horasTrabajadasChofer += duracionIda / 60.0;
-                        bus.viajesHoy++;
-                        
-                        // Siguiente circuito empieza después del descanso de la vuelta
-                        horaActual = horaLlegadaVuelta.plusMinutes(tiempoDescanso);
-                    } else {
-                        // No puede hacer vuelta, terminar el día para este bus
-                        break;
-                    }
-                }
-                
-                log.info(">>> Bus {} terminó con {} viajes, {} horas trabajadas", 
-                        bus.placa, bus.viajesHoy, String.format("%.1f", bus.horasTrabajadasChofer));
-            }
-        }
-        
-        // Resumen por ruta
-        log.info("=== RESUMEN POR RUTA ===");
-        frecuenciasPorRuta.forEach((ruta, count) -> 
-            log.info("   Ruta {}: {} viajes", ruta, count));
-        
-        // Resumen por bus
-        log.info("=== RESUMEN POR BUS ===");
-        frecuenciasPorBus.forEach((placa, count) -> 
-            log.info("   Bus {}: {} viajes", placa, count));
-        
-        log.info("=== Fin generación V2: {} frecuencias totales en {} rutas distintas ===", 
-                frecuencias.size(), frecuenciasPorRuta.size());
-    }
-
     /**
      * Guarda las frecuencias generadas.
      * IMPORTANTE: Este método elimina TODAS las frecuencias existentes de la cooperativa
@@ -1137,111 +789,249 @@ public class GeneracionFrecuenciasInteligenteService {
         
         List<String> mensajes = new ArrayList<>();
         List<String> advertencias = new ArrayList<>(preview.getAdvertencias());
-        List<FrecuenciaViaje> frecuenciasAGuardar = new ArrayList<>();
-        
-        // IMPORTANTE: Los días de operación vienen del request, no del preview individual
-        String diasOperacionCSV = (request.getDiasOperacion() != null && !request.getDiasOperacion().isEmpty())
+        PersistenciaFrecuencias persistencia = new PersistenciaFrecuencias(cooperativa, diasOperacionCSV(request), advertencias);
+        persistirFrecuencias(persistencia, preview.getFrecuencias());
+        int creadas = persistencia.creadas;
+        int errores = persistencia.errores;
+        int duplicadosExistentes = persistencia.duplicadosExistentes;
+        int duplicadosEnLote = persistencia.duplicadosEnLote;
+
+        mensajes.add("Se crearon " + creadas + " frecuencias exitosamente");
+        if (duplicadosExistentes > 0) {
+            mensajes.add("Se omitieron " + duplicadosExistentes + " frecuencias que ya existían en la base de datos");
+        }
+        if (duplicadosEnLote > 0) {
+            mensajes.add("Se omitieron " + duplicadosEnLote + " frecuencias duplicadas en el mismo lote");
+        }
+        if (errores > 0) {
+            advertencias.add("Hubo " + errores + " errores al guardar frecuencias");
+        }
+
+        return ResultadoGeneracionInteligente.builder()
+                .exito(creadas > 0)
+                .frecuenciasCreadas(creadas)
+                .mensajes(mensajes)
+                .advertencias(advertencias)
+                .build();
+    }
+
+    /**
+     * Prepara la generación para correr como job por bloques: el bloque 0 elimina las frecuencias
+     * existentes y cada bloque siguiente guarda las de diasPorBloque días del preview. El preview es
+     * determinista, así que al reanudar se recalcula y se sigue en el primer bloque sin confirmar;
+     * las frecuencias ya confirmadas se omiten por la verificación de duplicados en BD
+     */
+    public EjecucionGeneracion planificarGeneracion(Long cooperativaId, GenerarInteligenteRequest request, int diasPorBloque) {
+        PreviewGeneracionInteligente preview = previewGeneracion(cooperativaId, request);
+        if (!preview.getEsViable()) {
+            throw new IllegalArgumentException(preview.getErrores().isEmpty()
+                    ? "No se generaron frecuencias en el preview"
+                    : String.join("; ", preview.getErrores()));
+        }
+        Cooperativa cooperativa = cooperativaRepository.findById(cooperativaId)
+                .orElseThrow(() -> new NotFoundException("Cooperativa no encontrada"));
+
+        // Frecuencias agrupadas por día (el preview viene en orden de fecha)
+        List<List<FrecuenciaPreview>> dias = new ArrayList<>();
+        LocalDate diaActual = null;
+        for (FrecuenciaPreview fp : preview.getFrecuencias()) {
+            if (!fp.getFecha().equals(diaActual)) {
+                dias.add(new ArrayList<>());
+                diaActual = fp.getFecha();
+            }
+            dias.get(dias.size() - 1).add(fp);
+        }
+        PersistenciaFrecuencias persistencia = new PersistenciaFrecuencias(cooperativa, diasOperacionCSV(request), new ArrayList<>());
+        int bloquesDias = (dias.size() + diasPorBloque - 1) / diasPorBloque;
+
+        return new EjecucionGeneracion() {
+            @Override
+            public int totalBloques() {
+                return 1 + bloquesDias;
+            }
+
+            @Override
+            public int diasTotales() {
+                return dias.size();
+            }
+
+            @Override
+            public ResultadoBloque procesarBloque(int indice) {
+                if (indice == 0) {
+                    int eliminadas = eliminarFrecuenciasExistentes(cooperativaId);
+                    List<String> advertencias = new ArrayList<>(preview.getAdvertencias());
+                    advertencias.add(0, "Se eliminaron " + eliminadas + " frecuencias existentes");
+                    return new ResultadoBloque(0, 0, 0, 0, advertencias);
+                }
+                int desde = (indice - 1) * diasPorBloque;
+                int hasta = Math.min(desde + diasPorBloque, dias.size());
+                List<FrecuenciaPreview> previews = new ArrayList<>();
+                dias.subList(desde, hasta).forEach(previews::addAll);
+
+                int creadas = persistencia.creadas;
+                int omitidas = persistencia.duplicadosExistentes + persistencia.duplicadosEnLote;
+                int errores = persistencia.errores;
+                persistencia.advertencias.clear();
+                persistencia.nuevoBloque();
+                persistirFrecuencias(persistencia, previews);
+                return new ResultadoBloque(hasta - desde,
+                        persistencia.creadas - creadas,
+                        persistencia.duplicadosExistentes + persistencia.duplicadosEnLote - omitidas,
+                        persistencia.errores - errores,
+                        new ArrayList<>(persistencia.advertencias));
+            }
+        };
+    }
+
+    /**
+     * Días de operación que se guardan en cada frecuencia: los del request, no el día individual
+     */
+    private static String diasOperacionCSV(GenerarInteligenteRequest request) {
+        return (request.getDiasOperacion() != null && !request.getDiasOperacion().isEmpty())
                 ? String.join(",", request.getDiasOperacion())
                 : "LUNES,MARTES,MIERCOLES,JUEVES,VIERNES,SABADO,DOMINGO";
-        
-        // Set para rastrear combinaciones únicas (evitar duplicados en el mismo lote)
+    }
+
+    /**
+     * Estado de la persistencia de un preview: cachés de entidades, claves (bus, ruta, hora) ya
+     * usadas y contadores. Un job lo reutiliza en todos sus bloques; las entidades en caché
+     * pertenecen a la transacción de un bloque y se vuelven a cargar en el siguiente
+     */
+    private static class PersistenciaFrecuencias {
+        final Cooperativa cooperativa;
+        final String diasOperacionCSV;
+        final List<String> advertencias;
+        // Claves ya guardadas en BD; se leen al primer uso, después de la limpieza previa
+        Set<ClaveFrecuencia> existentes;
         // Agrupamos por (bus, ruta, horaSalida) ignorando el día específico
-        Set<String> frecuenciasEnLote = new HashSet<>();
-        int duplicadosExistentes = 0;
-        int duplicadosEnLote = 0;
-        
-        // Cache de entidades para evitar múltiples consultas
-        Map<Long, Terminal> terminalesCache = new HashMap<>();
-        Map<Long, Bus> busesCache = new HashMap<>();
-        Map<String, Ruta> rutasCache = new HashMap<>();
+        final Set<ClaveFrecuencia> frecuenciasEnLote = new HashSet<>();
+        final Map<Long, Terminal> terminalesCache = new HashMap<>();
+        final Map<Long, Bus> busesCache = new HashMap<>();
+        final Map<String, Ruta> rutasCache = new HashMap<>();
+        final Map<Long, Optional<Camino>> caminosCache = new HashMap<>();
+        final Map<Long, Boolean> choferesCache = new HashMap<>();
+        int creadas;
+        int errores;
+        int duplicadosExistentes;
+        int duplicadosEnLote;
+
+        PersistenciaFrecuencias(Cooperativa cooperativa, String diasOperacionCSV, List<String> advertencias) {
+            this.cooperativa = cooperativa;
+            this.diasOperacionCSV = diasOperacionCSV;
+            this.advertencias = advertencias;
+        }
+
+        /**
+         * Olvida las entidades del bloque anterior: quedaron desconectadas al confirmar su transacción
+         */
+        void nuevoBloque() {
+            terminalesCache.clear();
+            busesCache.clear();
+            rutasCache.clear();
+            caminosCache.clear();
+        }
+    }
+
+    /**
+     * Valida las frecuencias del preview, omite las que ya existen y guarda el resto con la
+     * escritura masiva por JDBC
+     */
+    private void persistirFrecuencias(PersistenciaFrecuencias p, List<FrecuenciaPreview> previews) {
+        // Lo pendiente en JPA (rutas nuevas) debe llegar a la BD antes de usar JDBC
+        frecuenciaViajeRepository.flush();
+        if (p.existentes == null) {
+            p.existentes = escrituraMasiva.clavesExistentes(p.cooperativa.getId());
+        }
 
         // Fase 1: Validar y preparar todas las frecuencias
-        for (FrecuenciaPreview fp : preview.getFrecuencias()) {
+        List<NuevaFrecuencia> frecuenciasAGuardar = new ArrayList<>();
+        for (FrecuenciaPreview fp : previews) {
             try {
                 // Obtener terminal origen
-                Terminal terminalOrigen = terminalesCache.computeIfAbsent(
+                Terminal terminalOrigen = p.terminalesCache.computeIfAbsent(
                     fp.getTerminalOrigenId(),
-                    id -> terminalRepository.findById(id).orElse(null)
+                    matrizTerminales::obtenerTerminal
                 );
                 
                 // Obtener terminal destino
-                Terminal terminalDestino = terminalesCache.computeIfAbsent(
+                Terminal terminalDestino = p.terminalesCache.computeIfAbsent(
                     fp.getTerminalDestinoId(),
-                    id -> terminalRepository.findById(id).orElse(null)
+                    matrizTerminales::obtenerTerminal
                 );
                 
                 // Obtener bus
-                Bus bus = busesCache.computeIfAbsent(
+                Bus bus = p.busesCache.computeIfAbsent(
                     fp.getBusId(),
                     id -> busRepository.findById(id).orElse(null)
                 );
                 
                 // Validaciones
                 if (terminalOrigen == null) {
-                    advertencias.add("Terminal origen ID " + fp.getTerminalOrigenId() + " no encontrado");
+                    p.advertencias.add("Terminal origen ID " + fp.getTerminalOrigenId() + " no encontrado");
                     continue;
                 }
                 if (terminalDestino == null) {
-                    advertencias.add("Terminal destino ID " + fp.getTerminalDestinoId() + " no encontrado");
+                    p.advertencias.add("Terminal destino ID " + fp.getTerminalDestinoId() + " no encontrado");
                     continue;
                 }
                 if (bus == null) {
-                    advertencias.add("Bus ID " + fp.getBusId() + " no encontrado");
+                    p.advertencias.add("Bus ID " + fp.getBusId() + " no encontrado");
                     continue;
                 }
                 if (fp.getHoraSalida() == null) {
-                    advertencias.add("Hora de salida nula para frecuencia");
+                    p.advertencias.add("Hora de salida nula para frecuencia");
                     continue;
                 }
                 
                 // Obtener o crear ruta
                 String rutaKey = terminalOrigen.getId() + "-" + terminalDestino.getId();
-                Ruta ruta = rutasCache.get(rutaKey);
+                Ruta ruta = p.rutasCache.get(rutaKey);
                 if (ruta == null) {
-                    ruta = obtenerOCrearRuta(terminalOrigen, terminalDestino, cooperativa);
+                    ruta = obtenerOCrearRuta(terminalOrigen, terminalDestino, p.cooperativa);
                     if (ruta != null) {
-                        rutasCache.put(rutaKey, ruta);
+                        p.rutasCache.put(rutaKey, ruta);
                     }
                 }
                 
                 if (ruta == null) {
-                    advertencias.add("No se pudo crear ruta de " + terminalOrigen.getNombre() + " a " + terminalDestino.getNombre());
+                    p.advertencias.add("No se pudo crear ruta de " + terminalOrigen.getNombre() + " a " + terminalDestino.getNombre());
                     continue;
                 }
                 
                 // Verificar duplicados en BD
-                if (frecuenciaViajeRepository.existsByBusIdAndRutaIdAndHoraSalidaAndActivoTrue(
-                        bus.getId(), ruta.getId(), fp.getHoraSalida())) {
-                    duplicadosExistentes++;
+                ClaveFrecuencia clave = new ClaveFrecuencia(bus.getId(), ruta.getId(), fp.getHoraSalida());
+                if (p.existentes.contains(clave)) {
+                    p.duplicadosExistentes++;
                     continue;
                 }
                 
                 // Verificar duplicados en el lote actual
-                String claveUnica = bus.getId() + "-" + ruta.getId() + "-" + fp.getHoraSalida();
-                if (frecuenciasEnLote.contains(claveUnica)) {
-                    duplicadosEnLote++;
+                if (!p.frecuenciasEnLote.add(clave)) {
+                    p.duplicadosEnLote++;
                     continue;
                 }
-                frecuenciasEnLote.add(claveUnica);
                 
-                // Obtener camino principal de la ruta
-                Camino caminoPrincipal = null;
-                List<Camino> caminos = caminoRepository.findActiveByRutaIdOrdered(ruta.getId());
-                if (!caminos.isEmpty()) {
+                // Obtener camino principal de la ruta (una consulta por ruta)
+                Camino caminoPrincipal = p.caminosCache.computeIfAbsent(ruta.getId(), rutaId -> {
+                    List<Camino> caminos = caminoRepository.findActiveByRutaIdOrdered(rutaId);
+                    if (caminos.isEmpty()) {
+                        return Optional.empty();
+                    }
                     // Preferir RAPIDO, luego NORMAL
-                    caminoPrincipal = caminos.stream()
+                    return Optional.of(caminos.stream()
                             .filter(c -> c.getTipo() == Camino.TipoCamino.RAPIDO)
                             .findFirst()
                             .orElse(caminos.stream()
                                     .filter(c -> c.getTipo() == Camino.TipoCamino.NORMAL)
                                     .findFirst()
-                                    .orElse(caminos.get(0)));
-                }
+                                    .orElse(caminos.get(0))));
+                }).orElse(null);
                 
                 // Obtener chofer si está asignado
-                com.andinobus.backendsmartcode.cooperativa.domain.entities.UsuarioCooperativa chofer = null;
-                if (fp.getChoferId() != null) {
-                    chofer = usuarioCooperativaRepository.findById(fp.getChoferId()).orElse(null);
+                Long choferId = null;
+                if (fp.getChoferId() != null && p.choferesCache.computeIfAbsent(
+                        fp.getChoferId(), usuarioCooperativaRepository::existsById)) {
+                    choferId = fp.getChoferId();
                 }
                 
                 // Calcular valores por defecto
@@ -1254,85 +1044,40 @@ public class GeneracionFrecuenciasInteligenteService {
                         (kilometros * 0.12 * 1.80);  // 0.12 L/km * $1.80/L
                 
                 // Construir frecuencia con TODOS los campos
-                FrecuenciaViaje frecuencia = FrecuenciaViaje.builder()
-                        .bus(bus)
-                        .ruta(ruta)
-                        .cooperativa(cooperativa)
-                        .chofer(chofer)
-                        .camino(caminoPrincipal)
-                        .terminalOrigen(terminalOrigen)
-                        .terminalDestino(terminalDestino)
-                        .horaSalida(fp.getHoraSalida())
-                        .horaLlegadaEstimada(fp.getHoraLlegada() != null ? fp.getHoraLlegada() : fp.getHoraSalida().plusHours(2))
-                        .precioBase(fp.getPrecio() != null ? fp.getPrecio() : 5.0)
-                        .diasOperacion(diasOperacionCSV)  // Usar los días del request, no el día individual
-                        .asientosDisponibles(asientos)
-                        .duracionEstimadaMinutos(duracionMinutos)
-                        .kilometrosRuta(kilometros)
-                        .costoCombustibleEstimado(costoCombustible)
-                        .ordenDia(fp.getOrdenDia())
-                        .tipoFrecuencia(fp.getTipoFrecuencia() != null ? TipoFrecuencia.valueOf(fp.getTipoFrecuencia()) : TipoFrecuencia.INTERPROVINCIAL)
-                        .tiempoMinimoEsperaMinutos(fp.getTiempoDescansoMinutos() != null ? fp.getTiempoDescansoMinutos() : 45)
-                        .estado("ACTIVA")
-                        .activo(true)
-                        .createdAt(LocalDateTime.now())
-                        .build();
-                
-                frecuenciasAGuardar.add(frecuencia);
+                frecuenciasAGuardar.add(new NuevaFrecuencia(
+                        bus.getId(),
+                        ruta.getId(),
+                        p.cooperativa.getId(),
+                        choferId,
+                        caminoPrincipal != null ? caminoPrincipal.getId() : null,
+                        terminalOrigen.getId(),
+                        terminalDestino.getId(),
+                        fp.getHoraSalida(),
+                        fp.getHoraLlegada() != null ? fp.getHoraLlegada() : fp.getHoraSalida().plusHours(2),
+                        p.diasOperacionCSV,  // Usar los días del request, no el día individual
+                        fp.getPrecio() != null ? fp.getPrecio() : 5.0,
+                        asientos,
+                        duracionMinutos,
+                        kilometros,
+                        costoCombustible,
+                        fp.getOrdenDia(),
+                        fp.getTipoFrecuencia() != null ? TipoFrecuencia.valueOf(fp.getTipoFrecuencia()) : TipoFrecuencia.INTERPROVINCIAL,
+                        fp.getTiempoDescansoMinutos() != null ? fp.getTiempoDescansoMinutos() : 45,
+                        false,
+                        List.of()));
             } catch (Exception e) {
                 log.error("Error preparando frecuencia: {}", e.getMessage(), e);
-                advertencias.add("Error preparando frecuencia: " + e.getMessage());
+                p.advertencias.add("Error preparando frecuencia: " + e.getMessage());
             }
         }
 
-        // Fase 2: Guardar todas las frecuencias en lotes
-        int creadas = 0;
-        int errores = 0;
+        // Fase 2: Guardar todas las frecuencias en una escritura masiva
         if (!frecuenciasAGuardar.isEmpty()) {
-            log.info("Intentando guardar {} frecuencias", frecuenciasAGuardar.size());
-            
-            // Guardar en lotes de 50 para mejor rendimiento
-            int batchSize = 50;
-            for (int i = 0; i < frecuenciasAGuardar.size(); i += batchSize) {
-                int end = Math.min(i + batchSize, frecuenciasAGuardar.size());
-                List<FrecuenciaViaje> batch = frecuenciasAGuardar.subList(i, end);
-                
-                try {
-                    for (FrecuenciaViaje frecuencia : batch) {
-                        entityManager.persist(frecuencia);
-                        creadas++;
-                    }
-                    entityManager.flush();
-                    entityManager.clear();
-                    log.info("Lote guardado: {} de {}", end, frecuenciasAGuardar.size());
-                } catch (Exception e) {
-                    log.error("Error guardando lote de frecuencias: {}", e.getMessage(), e);
-                    errores += batch.size();
-                    advertencias.add("Error guardando lote: " + e.getMessage());
-                    // Limpiar el entity manager para poder continuar
-                    entityManager.clear();
-                }
-            }
-            log.info("Se guardaron {} frecuencias, {} errores", creadas, errores);
-        }
-
-        mensajes.add("Se crearon " + creadas + " frecuencias exitosamente");
-        if (duplicadosExistentes > 0) {
-            mensajes.add("Se omitieron " + duplicadosExistentes + " frecuencias que ya existían en la base de datos");
-        }
-        if (duplicadosEnLote > 0) {
-            mensajes.add("Se omitieron " + duplicadosEnLote + " frecuencias duplicadas en el mismo lote");
-        }
-        if (errores > 0) {
-            advertencias.add("Hubo " + errores + " errores al guardar frecuencias");
+            EscrituraMasivaFrecuencias.Resultado resultado = escrituraMasiva.escribir(frecuenciasAGuardar);
+            p.creadas += resultado.creadas();
+            // Filas que otra escritura concurrente insertó antes
+            p.duplicadosExistentes += resultado.omitidas();
         }
-
-        return ResultadoGeneracionInteligente.builder()
-                .exito(creadas > 0)
-                .frecuenciasCreadas(creadas)
-                .mensajes(mensajes)
-                .advertencias(advertencias)
-                .build();
     }
 
     /**
@@ -1352,7 +1097,7 @@ public class GeneracionFrecuenciasInteligenteService {
                 log.info("Creando nueva ruta: {} -> {}", origen.getNombre(), destino.getNombre());
                 // Crear nueva ruta
                 String nombreRuta = origen.getNombre() + " - " + destino.getNombre();
-                double distancia = calcularDistanciaKm(origen, destino);
+                double distancia = matrizTerminales.distanciaCarreteraKm(origen, destino);
                 ruta = Ruta.builder()
                         .nombre(nombreRuta)
                         .origen(origen.getNombre())
@@ -1360,7 +1105,7 @@ public class GeneracionFrecuenciasInteligenteService {
                         .terminalOrigen(origen)
                         .terminalDestino(destino)
                         .distanciaKm(distancia)
-                        .duracionEstimadaMinutos(calcularDuracionMinutos(distancia))
+                        .duracionEstimadaMinutos(matrizTerminales.duracionMinutos(origen, destino))
                         .activo(true)
                         .aprobadaAnt(false)
                         .tipoRuta(origen.getProvincia() != null && destino.getProvincia() != null 
@@ -1380,39 +1125,6 @@ public class GeneracionFrecuenciasInteligenteService {
 
     // ============ Métodos auxiliares ============
 
-    private double calcularDistanciaKm(Terminal origen, Terminal destino) {
-        if (origen.getLatitud() == null || origen.getLongitud() == null ||
-            destino.getLatitud() == null || destino.getLongitud() == null) {
-            return 150.0; // Distancia por defecto si no hay coordenadas
-        }
-        
-        double lat1 = origen.getLatitud();
-        double lon1 = origen.getLongitud();
-        double lat2 = destino.getLatitud();
-        double lon2 = destino.getLongitud();
-        
-        // Fórmula Haversine
-        double R = 6371;
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat/2) * Math.sin(dLat/2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLon/2) * Math.sin(dLon/2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-        
-        return R * c * 1.3; // Factor de corrección por carretera
-    }
-
-    private int calcularDuracionMinutos(double distanciaKm) {
-        // Velocidad promedio ~50 km/h considerando paradas y tráfico
-        return (int) (distanciaKm / 50.0 * 60);
-    }
-
-    private double calcularPrecioSugerido(double distanciaKm) {
-        // ~$0.04 por km
-        return Math.round(distanciaKm * 0.04 * 100.0) / 100.0;
-    }
-
     /**
      * Calcula máximo de paradas permitidas según duración y tipo
      * - Intraprovincial: 0 paradas
@@ -1420,7 +1132,7 @@ public class GeneracionFrecuenciasInteligenteService {
      * - Interprovincial 4-6h: 2 paradas
      * - Interprovincial >8h: 3 paradas
      */
-    private int calcularMaxParadasPermitidas(int duracionMinutos, TipoFrecuencia tipo) {
+    static int calcularMaxParadasPermitidas(int duracionMinutos, TipoFrecuencia tipo) {
         if (tipo == TipoFrecuencia.INTRAPROVINCIAL) {
             return 0;
         }
@@ -1431,7 +1143,7 @@ public class GeneracionFrecuenciasInteligenteService {
         return 3;
     }
 
-    private String obtenerDiaSemana(LocalDate fecha) {
+    static String obtenerDiaSemana(LocalDate fecha) {
         return fecha.getDayOfWeek()
                 .getDisplayName(TextStyle.FULL, new Locale("es", "ES"))
                 .toUpperCase()
@@ -1456,28 +1168,24 @@ public class GeneracionFrecuenciasInteligenteService {
     }
 
     /**
-     * Elimina físicamente todas las frecuencias existentes de la cooperativa.
-     * Primero elimina las referencias en disponibilidad_bus para evitar violación de FK.
+     * Cuenta lo que eliminaría la generación antes de crear las nuevas frecuencias, sin borrar nada
+     */
+    @Transactional(readOnly = true)
+    public ResultadoLimpiezaFrecuencias simularLimpieza(Long cooperativaId) {
+        PurgaFrecuenciasCooperativa.Resultado resultado = purgaFrecuencias.purgar(cooperativaId, true);
+        return ResultadoLimpiezaFrecuencias.builder()
+                .frecuencias(resultado.frecuencias())
+                .paradas(resultado.paradas())
+                .disponibilidades(resultado.disponibilidades())
+                .asignacionesRotacion(resultado.asignacionesDesvinculadas())
+                .build();
+    }
+
+    /**
+     * Elimina físicamente todas las frecuencias existentes de la cooperativa, con sus paradas
+     * y las disponibilidades que las referencian
      */
     private int eliminarFrecuenciasExistentes(Long cooperativaId) {
-        // Primero eliminar todas las referencias en disponibilidad_bus
-        disponibilidadBusRepository.deleteByCooperativaId(cooperativaId);
-        
-        // Obtener todas las frecuencias de buses de esta cooperativa
-        List<FrecuenciaViaje> frecuenciasAEliminar = frecuenciaViajeRepository.findAll().stream()
-                .filter(f -> f.getBus() != null 
-                        && f.getBus().getCooperativa() != null 
-                        && f.getBus().getCooperativa().getId().equals(cooperativaId))
-                .toList();
-        
-        int cantidad = frecuenciasAEliminar.size();
-        
-        if (cantidad > 0) {
-            log.info("Eliminando {} frecuencias para cooperativa {}", cantidad, cooperativaId);
-            // Eliminar físicamente (las paradas se eliminan por CASCADE)
-            frecuenciaViajeRepository.deleteAll(frecuenciasAEliminar);
-        }
-        
-        return cantidad;
+        return purgaFrecuencias.purgar(cooperativaId, false).frecuencias();
     }
 }
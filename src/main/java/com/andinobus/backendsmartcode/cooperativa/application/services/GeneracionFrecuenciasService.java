@@ -364,6 +364,32 @@ public class GeneracionFrecuenciasService {
                 .build();
     }
 
+    /**
+     * Prepara la generación por plantilla para correr como job. Todavía no persiste frecuencias,
+     * así que se ejecuta en un único bloque
+     */
+    public EjecucionGeneracion planificarGeneracion(Long cooperativaId, GenerarFrecuenciasRequest request) {
+        int dias = (int) ChronoUnit.DAYS.between(request.getFechaInicio(), request.getFechaFin()) + 1;
+        return new EjecucionGeneracion() {
+            @Override
+            public int totalBloques() {
+                return 1;
+            }
+
+            @Override
+            public int diasTotales() {
+                return Math.max(dias, 0);
+            }
+
+            @Override
+            public ResultadoBloque procesarBloque(int indice) {
+                ResultadoGeneracionResponse resultado = generarFrecuencias(cooperativaId, request);
+                return new ResultadoBloque(Math.max(dias, 0), resultado.getFrecuenciasCreadas(),
+                        resultado.getFrecuenciasOmitidas(), resultado.getErrores(), List.of());
+            }
+        };
+    }
+
     /**
      * Busca un chofer disponible para un bus en una fecha
      */
@@ -0,0 +1,419 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import com.andinobus.backendsmartcode.common.errors.NotFoundException;
+import com.andinobus.backendsmartcode.common.errors.ServiceUnavailableException;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionAutomaticaDtos.GenerarAutomaticoRequest;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionFrecuenciasDtos.GenerarFrecuenciasRequest;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionInteligenteDtos.GenerarInteligenteRequest;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionJobDtos.GeneracionJobResponse;
+import com.andinobus.backendsmartcode.cooperativa.domain.entities.GeneracionJob;
+import com.andinobus.backendsmartcode.cooperativa.domain.entities.GeneracionJob.Estado;
+import com.andinobus.backendsmartcode.cooperativa.infrastructure.repositories.GeneracionJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta la generación de frecuencias como job en segundo plano.
+ *
+ * El request se guarda en generacion_job y un pool acotado procesa los jobs bloque por bloque.
+ * Cada bloque se confirma en su propia transacción junto con el avance del punto de control
+ * (bloques_procesados), que solo avanza si sigue en ese bloque: si la instancia cae, el job se
+ * retoma al arrancar desde el primer bloque sin confirmar, y dos hilos nunca confirman el mismo
+ * bloque. La fila del job no queda bloqueada mientras se genera, así que cancelar no espera; la
+ * cancelación se revisa entre bloques y lo ya confirmado se conserva.
+ */
+@Slf4j
+@Service
+public class GeneracionJobService {
+
+    private static final List<Estado> ESTADOS_ACTIVOS = List.of(Estado.PENDIENTE, Estado.EN_CURSO);
+    private static final int MAX_ADVERTENCIAS = 200;
+
+    private final GeneracionJobRepository jobRepository;
+    private final GeneracionFrecuenciasInteligenteService inteligenteService;
+    private final GeneracionAutomaticaService automaticaService;
+    private final GeneracionFrecuenciasService plantillaService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.generacion.jobs.hilos:2}")
+    private int hilos;
+
+    @Value("${app.generacion.jobs.cola:20}")
+    private int capacidadCola;
+
+    @Value("${app.generacion.jobs.dias-por-bloque:7}")
+    private int diasPorBloque;
+
+    private ThreadPoolExecutor executor;
+    private final Set<Long> enCola = ConcurrentHashMap.newKeySet();
+
+    public GeneracionJobService(GeneracionJobRepository jobRepository,
+                                GeneracionFrecuenciasInteligenteService inteligenteService,
+                                GeneracionAutomaticaService automaticaService,
+                                GeneracionFrecuenciasService plantillaService,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.jobRepository = jobRepository;
+        this.inteligenteService = inteligenteService;
+        this.automaticaService = automaticaService;
+        this.plantillaService = plantillaService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        AtomicInteger secuencia = new AtomicInteger();
+        executor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                r -> {
+                    Thread t = new Thread(r, "generacion-job-" + secuencia.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        log.info("Jobs de generación de frecuencias: hilos={}, cola={}, días por bloque={}", hilos, capacidadCola, diasPorBloque);
+    }
+
+    /**
+     * Los jobs interrumpidos quedan EN_CURSO con su punto de control y se retoman al arrancar
+     */
+    @PreDestroy
+    void detener() {
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reanudarPendientes() {
+        List<GeneracionJob> pendientes = jobRepository.findByEstadoInOrderByCreatedAtAsc(ESTADOS_ACTIVOS);
+        for (GeneracionJob job : pendientes) {
+            try {
+                encolar(job.getId());
+            } catch (RejectedExecutionException e) {
+                log.warn("Cola de generación llena, el job {} queda pendiente hasta el próximo arranque", job.getId());
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            log.info("Se retomaron {} jobs de generación pendientes", pendientes.size());
+        }
+    }
+
+    // ============ API ============
+
+    public GeneracionJobResponse enviarInteligente(Long cooperativaId, GenerarInteligenteRequest request) {
+        return enviar(cooperativaId, GeneracionJob.Tipo.INTELIGENTE, request);
+    }
+
+    public GeneracionJobResponse enviarAutomatica(Long cooperativaId, GenerarAutomaticoRequest request) {
+        return enviar(cooperativaId, GeneracionJob.Tipo.AUTOMATICA, request);
+    }
+
+    public GeneracionJobResponse enviarPlantilla(Long cooperativaId, GenerarFrecuenciasRequest request) {
+        return enviar(cooperativaId, GeneracionJob.Tipo.PLANTILLA, request);
+    }
+
+    public GeneracionJobResponse obtener(Long cooperativaId, Long jobId) {
+        return toResponse(buscar(cooperativaId, jobId));
+    }
+
+    public List<GeneracionJobResponse> listar(Long cooperativaId) {
+        return jobRepository.findTop20ByCooperativaIdOrderByCreatedAtDesc(cooperativaId).stream()
+                .map(this::toResponse)
+                .toList();
+    }
+
+    /**
+     * Un job pendiente se cancela de inmediato; uno en curso se detiene al terminar el bloque actual
+     */
+    public GeneracionJobResponse cancelar(Long cooperativaId, Long jobId) {
+        buscar(cooperativaId, jobId);
+        boolean marcado = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            return jobRepository.cambiarEstado(jobId, Estado.PENDIENTE, Estado.CANCELADO, "Cancelado antes de iniciar", ahora) > 0
+                    || jobRepository.solicitarCancelacion(jobId, Estado.EN_CURSO, ahora) > 0;
+        }));
+        GeneracionJob job = buscar(cooperativaId, jobId);
+        if (!marcado) {
+            throw new IllegalArgumentException("El job ya terminó con estado " + job.getEstado());
+        }
+        return toResponse(job);
+    }
+
+    /**
+     * Vuelve a encolar un job fallido o cancelado; continúa desde su último bloque confirmado
+     */
+    public GeneracionJobResponse reanudar(Long cooperativaId, Long jobId) {
+        buscar(cooperativaId, jobId);
+        GeneracionJob job;
+        try {
+            job = transactionTemplate.execute(status -> {
+                GeneracionJob j = jobRepository.findByIdForUpdate(jobId).orElseThrow();
+                if (j.getEstado() != Estado.FALLIDO && j.getEstado() != Estado.CANCELADO) {
+                    throw new IllegalArgumentException("Solo se pueden reanudar jobs fallidos o cancelados");
+                }
+                j.setEstado(Estado.PENDIENTE);
+                j.setCancelacionSolicitada(false);
+                j.setMensaje(null);
+                j.setTerminadoEn(null);
+                return jobRepository.saveAndFlush(j);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("La cooperativa ya tiene una generación de frecuencias en curso");
+        }
+        encolarOFallar(job);
+        return toResponse(job);
+    }
+
+    // ============ Ejecución ============
+
+    private GeneracionJobResponse enviar(Long cooperativaId, GeneracionJob.Tipo tipo, Object request) {
+        if (jobRepository.existsByCooperativaIdAndEstadoIn(cooperativaId, ESTADOS_ACTIVOS)) {
+            throw new IllegalArgumentException("La cooperativa ya tiene una generación de frecuencias en curso");
+        }
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new ServiceUnavailableException("Cola de generación saturada, reintente en unos minutos");
+        }
+        String solicitud;
+        try {
+            solicitud = objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Solicitud de generación inválida: " + e.getOriginalMessage());
+        }
+
+        GeneracionJob job;
+        try {
+            job = jobRepository.saveAndFlush(GeneracionJob.builder()
+                    .cooperativaId(cooperativaId)
+                    .tipo(tipo)
+                    .solicitud(solicitud)
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Índice único parcial: otra solicitud de la misma cooperativa ganó la carrera
+            throw new IllegalArgumentException("La cooperativa ya tiene una generación de frecuencias en curso");
+        }
+        encolarOFallar(job);
+        log.info("Job de generación {} ({}) encolado para cooperativa {}", job.getId(), tipo, cooperativaId);
+        return toResponse(job);
+    }
+
+    private void encolarOFallar(GeneracionJob job) {
+        try {
+            encolar(job.getId());
+        } catch (RejectedExecutionException e) {
+            transactionTemplate.executeWithoutResult(status -> jobRepository.findByIdForUpdate(job.getId()).ifPresent(j -> {
+                j.setEstado(Estado.FALLIDO);
+                j.setMensaje("Cola de generación saturada");
+                j.setTerminadoEn(LocalDateTime.now());
+            }));
+            throw new ServiceUnavailableException("Cola de generación saturada, reintente en unos minutos");
+        }
+    }
+
+    private void encolar(Long jobId) {
+        if (!enCola.add(jobId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    ejecutar(jobId);
+                } finally {
+                    enCola.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            enCola.remove(jobId);
+            throw e;
+        }
+    }
+
+    void ejecutar(Long jobId) {
+        GeneracionJob job = transactionTemplate.execute(status -> {
+            GeneracionJob j = jobRepository.findByIdForUpdate(jobId).orElse(null);
+            if (j == null || !j.getEstado().esActivo()) {
+                return null;
+            }
+            j.setEstado(Estado.EN_CURSO);
+            if (j.getIniciadoEn() == null) {
+                j.setIniciadoEn(LocalDateTime.now());
+            }
+            return jobRepository.save(j);
+        });
+        if (job == null) {
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            EjecucionGeneracion ejecucion = transactionTemplate.execute(status -> planificar(job));
+            int totalBloques = ejecucion.totalBloques();
+            transactionTemplate.executeWithoutResult(status -> jobRepository.findByIdForUpdate(jobId).ifPresent(j -> {
+                j.setTotalBloques(totalBloques);
+                j.setDiasTotales(ejecucion.diasTotales());
+            }));
+
+            for (int indice = job.getBloquesProcesados(); indice < totalBloques; indice++) {
+                int bloque = indice;
+                Boolean continuar = transactionTemplate.execute(status -> procesarBloque(jobId, ejecucion, bloque, status));
+                if (!Boolean.TRUE.equals(continuar)) {
+                    return;
+                }
+            }
+
+            transactionTemplate.executeWithoutResult(status -> jobRepository.findByIdForUpdate(jobId).ifPresent(j -> {
+                if (j.getEstado() != Estado.EN_CURSO) {
+                    return;
+                }
+                j.setEstado(Estado.COMPLETADO);
+                j.setMensaje("Se crearon " + j.getFrecuenciasCreadas() + " frecuencias, se omitieron "
+                        + j.getFrecuenciasOmitidas() + " y hubo " + j.getErrores() + " errores");
+                j.setTerminadoEn(LocalDateTime.now());
+            }));
+            log.info("Job de generación {} completado en {} ms", jobId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        } catch (Exception e) {
+            if (executor.isShutdown()) {
+                log.info("Job de generación {} interrumpido por apagado, se retomará al arrancar", jobId);
+                return;
+            }
+            log.error("Job de generación {} falló: {}", jobId, e.getMessage(), e);
+            String mensaje = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            transactionTemplate.executeWithoutResult(status -> jobRepository.findByIdForUpdate(jobId).ifPresent(j -> {
+                if (j.getEstado() == Estado.EN_CURSO) {
+                    j.setEstado(Estado.FALLIDO);
+                    j.setMensaje(mensaje);
+                    j.setTerminadoEn(LocalDateTime.now());
+                }
+            }));
+        }
+    }
+
+    /**
+     * Procesa un bloque si el punto de control sigue en él. Devuelve false si el job debe detenerse
+     */
+    private boolean procesarBloque(Long jobId, EjecucionGeneracion ejecucion, int indice, TransactionStatus status) {
+        GeneracionJob j = jobRepository.findById(jobId).orElse(null);
+        if (j == null || j.getEstado() != Estado.EN_CURSO || j.getBloquesProcesados() != indice) {
+            return false;
+        }
+        if (Boolean.TRUE.equals(j.getCancelacionSolicitada())) {
+            jobRepository.cambiarEstado(jobId, Estado.EN_CURSO, Estado.CANCELADO,
+                    "Cancelado tras " + indice + " de " + j.getTotalBloques() + " bloques", LocalDateTime.now());
+            return false;
+        }
+
+        EjecucionGeneracion.ResultadoBloque resultado = ejecucion.procesarBloque(indice);
+
+        // El job no se modifica como entidad (su flush pisaría una cancelación concurrente): el punto de
+        // control avanza con una sentencia condicional y, si otro hilo ya confirmó el bloque, se descarta
+        int avanzado = jobRepository.avanzarPuntoDeControl(jobId, indice, Estado.EN_CURSO, resultado.dias(),
+                resultado.creadas(), resultado.omitidas(), resultado.errores(),
+                agregarAdvertencias(j.getAdvertencias(), resultado.advertencias()), LocalDateTime.now());
+        if (avanzado == 0) {
+            log.warn("El bloque {} del job {} ya fue confirmado por otro proceso", indice, jobId);
+            status.setRollbackOnly();
+            return false;
+        }
+        return true;
+    }
+
+    private EjecucionGeneracion planificar(GeneracionJob job) {
+        try {
+            return switch (job.getTipo()) {
+                case INTELIGENTE -> inteligenteService.planificarGeneracion(job.getCooperativaId(),
+                        objectMapper.readValue(job.getSolicitud(), GenerarInteligenteRequest.class), Math.max(1, diasPorBloque));
+                case AUTOMATICA -> automaticaService.planificarGeneracion(job.getCooperativaId(),
+                        objectMapper.readValue(job.getSolicitud(), GenerarAutomaticoRequest.class));
+                case PLANTILLA -> plantillaService.planificarGeneracion(job.getCooperativaId(),
+                        objectMapper.readValue(job.getSolicitud(), GenerarFrecuenciasRequest.class));
+            };
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Solicitud del job " + job.getId() + " ilegible: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private String agregarAdvertencias(String advertencias, List<String> nuevas) {
+        if (nuevas == null || nuevas.isEmpty()) {
+            return advertencias;
+        }
+        List<String> actuales = separarAdvertencias(advertencias);
+        if (actuales.size() > MAX_ADVERTENCIAS) {
+            return advertencias;
+        }
+        for (String advertencia : nuevas) {
+            if (actuales.size() == MAX_ADVERTENCIAS) {
+                actuales.add("Se alcanzó el límite de " + MAX_ADVERTENCIAS + " advertencias; las siguientes no se registran");
+                break;
+            }
+            actuales.add(advertencia.replace('\n', ' '));
+        }
+        return String.join("\n", actuales);
+    }
+
+    private static List<String> separarAdvertencias(String advertencias) {
+        if (advertencias == null || advertencias.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(advertencias.split("\n")));
+    }
+
+    private GeneracionJob buscar(Long cooperativaId, Long jobId) {
+        return jobRepository.findById(jobId)
+                .filter(j -> j.getCooperativaId().equals(cooperativaId))
+                .orElseThrow(() -> new NotFoundException("Job de generación no encontrado"));
+    }
+
+    private GeneracionJobResponse toResponse(GeneracionJob job) {
+        int porcentaje;
+        if (job.getEstado() == Estado.COMPLETADO) {
+            porcentaje = 100;
+        } else if (job.getTotalBloques() > 0) {
+            porcentaje = job.getBloquesProcesados() * 100 / job.getTotalBloques();
+        } else {
+            porcentaje = 0;
+        }
+        return GeneracionJobResponse.builder()
+                .id(job.getId())
+                .cooperativaId(job.getCooperativaId())
+                .tipo(job.getTipo().name())
+                .estado(job.getEstado().name())
+                .totalBloques(job.getTotalBloques())
+                .bloquesProcesados(job.getBloquesProcesados())
+                .diasTotales(job.getDiasTotales())
+                .diasProcesados(job.getDiasProcesados())
+                .porcentaje(porcentaje)
+                .frecuenciasCreadas(job.getFrecuenciasCreadas())
+                .frecuenciasOmitidas(job.getFrecuenciasOmitidas())
+                .errores(job.getErrores())
+                .cancelacionSolicitada(job.getCancelacionSolicitada())
+                .mensaje(job.getMensaje())
+                .advertencias(separarAdvertencias(job.getAdvertencias()))
+                .createdAt(job.getCreatedAt())
+                .iniciadoEn(job.getIniciadoEn())
+                .actualizadoEn(job.getActualizadoEn())
+                .terminadoEn(job.getTerminadoEn())
+                .build();
+    }
+}
@@ -0,0 +1,403 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import com.andinobus.backendsmartcode.catalogos.domain.Camino;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
+import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.CaminoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Matriz densa de distancia, duración y precio sugerido entre todas las terminales activas,
+ * compartida por los servicios de generación de frecuencias.
+ *
+ * Cada celda (origen, destino) vive en arreglos primitivos indexados por origen * n + destino.
+ * La distancia por carretera toma el camino activo de la ruta entre ambas terminales cuando
+ * existe (prefiriendo el RAPIDO) y si no la distancia Haversine con factor de carretera.
+ * La matriz solo guarda ids y coordenadas, nunca entidades: se comparte entre hilos y
+ * transacciones. Se actualiza cuando cambia la huella de terminales o caminos, verificada como
+ * máximo una vez por intervalo: se leen solo las terminales modificadas desde la última versión,
+ * se recalculan sus filas y columnas (O(k·n)) y los caminos se vuelven a superponer sobre las
+ * celdas. Una baja o un cambio que no se explica por fechas reconstruye la matriz completa.
+ */
+@Component
+@Slf4j
+public class MatrizTerminales {
+
+    private static final double RADIO_TIERRA_KM = 6371;
+    private static final double FACTOR_CARRETERA = 1.3;
+    private static final double DISTANCIA_SIN_COORDENADAS_KM = 150.0;
+    // Velocidad promedio ~50 km/h considerando paradas y tráfico
+    private static final double VELOCIDAD_PROMEDIO_KMH = 50.0;
+    private static final double PRECIO_POR_KM = 0.04;
+    private static final List<Camino.TipoCamino> PREFERENCIA_CAMINO = List.of(
+            Camino.TipoCamino.RAPIDO,
+            Camino.TipoCamino.NORMAL,
+            Camino.TipoCamino.ECONOMICO,
+            Camino.TipoCamino.TURISTICO
+    );
+
+    private final TerminalRepository terminalRepository;
+    private final CaminoRepository caminoRepository;
+
+    @Value("${app.generacion.matriz.verificacion-ms:5000}")
+    private long verificacionMs;
+
+    private volatile Matriz matriz;
+    private volatile long verificadoEn;
+
+    public MatrizTerminales(TerminalRepository terminalRepository, CaminoRepository caminoRepository) {
+        this.terminalRepository = terminalRepository;
+        this.caminoRepository = caminoRepository;
+    }
+
+    private record Huella(long terminales, LocalDateTime terminalesModificadas,
+                          long caminos, LocalDateTime caminosModificados, LocalDateTime rutasModificadas) {
+    }
+
+    /**
+     * Los arreglos de una matriz publicada no se modifican; una actualización trabaja sobre copias.
+     * latitud/longitud son NaN si faltan; directa es Haversine sin factor (NaN si falta alguna
+     * coordenada); carretera, duracion y precio ya incluyen los caminos, cuyas celdas se guardan
+     * para restaurar la estimación en la siguiente actualización
+     */
+    private record Matriz(
+            Huella huella,
+            int n,
+            Map<Long, Integer> indices,
+            long[] ids,
+            double[] latitud,
+            double[] longitud,
+            LocalDateTime[] modificadas,
+            double[] directa,
+            double[] carretera,
+            int[] duracion,
+            double[] precio,
+            int[] celdasConCamino
+    ) {
+    }
+
+    /**
+     * Terminal por id en el contexto de persistencia del llamador: las activas se resuelven con
+     * getReferenceById (sin consulta hasta que se lee un campo) y las inactivas se buscan en la BD.
+     * Se debe llamar dentro de la transacción en la que se usa la terminal
+     */
+    public Terminal obtenerTerminal(Long terminalId) {
+        if (terminalId == null) {
+            return null;
+        }
+        if (obtenerMatriz().indices().containsKey(terminalId)) {
+            return terminalRepository.getReferenceById(terminalId);
+        }
+        return terminalRepository.findById(terminalId).orElse(null);
+    }
+
+    /**
+     * Distancia en línea recta (Haversine) en km; NaN si alguna terminal no tiene coordenadas
+     */
+    public double distanciaDirectaKm(Terminal origen, Terminal destino) {
+        Matriz actual = obtenerMatriz();
+        int celda = celda(actual, origen, destino);
+        return celda >= 0 ? actual.directa()[celda] : haversineKm(origen, destino);
+    }
+
+    /**
+     * Distancia por carretera en km: camino registrado o Haversine con factor de carretera
+     */
+    public double distanciaCarreteraKm(Terminal origen, Terminal destino) {
+        Matriz actual = obtenerMatriz();
+        int celda = celda(actual, origen, destino);
+        return celda >= 0 ? actual.carretera()[celda] : distanciaCarretera(haversineKm(origen, destino));
+    }
+
+    /**
+     * Duración estimada en minutos: la del camino registrado o la distancia a velocidad promedio
+     */
+    public int duracionMinutos(Terminal origen, Terminal destino) {
+        Matriz actual = obtenerMatriz();
+        int celda = celda(actual, origen, destino);
+        return celda >= 0 ? actual.duracion()[celda] : duracion(distanciaCarretera(haversineKm(origen, destino)));
+    }
+
+    /**
+     * Precio sugerido (~$0.04 por km de carretera), redondeado a centavos
+     */
+    public double precioSugerido(Terminal origen, Terminal destino) {
+        Matriz actual = obtenerMatriz();
+        int celda = celda(actual, origen, destino);
+        return celda >= 0 ? actual.precio()[celda] : precio(distanciaCarretera(haversineKm(origen, destino)));
+    }
+
+    /**
+     * Fuerza la verificación de la huella en el próximo acceso
+     */
+    public void invalidar() {
+        verificadoEn = 0;
+    }
+
+    private static int celda(Matriz actual, Terminal origen, Terminal destino) {
+        Integer i = actual.indices().get(origen.getId());
+        Integer j = actual.indices().get(destino.getId());
+        if (i == null || j == null) {
+            return -1;
+        }
+        return i * actual.n() + j;
+    }
+
+    private Matriz obtenerMatriz() {
+        Matriz actual = matriz;
+        if (actual != null && System.currentTimeMillis() - verificadoEn < verificacionMs) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = matriz;
+            if (actual != null && System.currentTimeMillis() - verificadoEn < verificacionMs) {
+                return actual;
+            }
+            Huella huella = obtenerHuella();
+            if (actual == null || !actual.huella().equals(huella)) {
+                actual = construirMatriz(huella, actual);
+                matriz = actual;
+            }
+            verificadoEn = System.currentTimeMillis();
+            return actual;
+        }
+    }
+
+    private Huella obtenerHuella() {
+        Object[] terminales = primeraFila(terminalRepository.obtenerHuella(), 2);
+        Object[] caminos = primeraFila(caminoRepository.obtenerHuella(), 3);
+        return new Huella(
+                terminales[0] != null ? ((Number) terminales[0]).longValue() : 0,
+                (LocalDateTime) terminales[1],
+                caminos[0] != null ? ((Number) caminos[0]).longValue() : 0,
+                (LocalDateTime) caminos[1],
+                (LocalDateTime) caminos[2]);
+    }
+
+    private static Object[] primeraFila(List<Object[]> filas, int columnas) {
+        return filas.isEmpty() ? new Object[columnas] : filas.get(0);
+    }
+
+    private Matriz construirMatriz(Huella huella, Matriz anterior) {
+        long inicio = System.nanoTime();
+        Matriz nueva = null;
+        if (anterior != null && anterior.huella().terminalesModificadas() != null) {
+            nueva = actualizarMatriz(huella, anterior);
+        }
+        boolean completa = nueva == null;
+        if (completa) {
+            nueva = matrizCompleta(huella);
+        }
+        log.info("Matriz de terminales {}: {} terminales, {} pares con camino en {} ms",
+                completa ? "construida" : "actualizada", nueva.n(), nueva.celdasConCamino().length,
+                (System.nanoTime() - inicio) / 1_000_000);
+        return nueva;
+    }
+
+    private Matriz matrizCompleta(Huella huella) {
+        List<Object[]> filas = terminalRepository.findCoordenadasActivas();
+        int n = filas.size();
+        Map<Long, Integer> indices = new HashMap<>(n * 2);
+        long[] ids = new long[n];
+        double[] latitud = new double[n];
+        double[] longitud = new double[n];
+        LocalDateTime[] modificadas = new LocalDateTime[n];
+        for (int i = 0; i < n; i++) {
+            copiarTerminal(filas.get(i), i, ids, latitud, longitud, modificadas);
+            indices.put(ids[i], i);
+        }
+
+        double[] directa = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double km = haversineKm(latitud[i], longitud[i], latitud[j], longitud[j]);
+                directa[i * n + j] = km;
+                directa[j * n + i] = km;
+            }
+        }
+        double[] carretera = new double[n * n];
+        int[] duracion = new int[n * n];
+        double[] precio = new double[n * n];
+        for (int k = 0; k < n * n; k++) {
+            estimar(k, directa, carretera, duracion, precio);
+        }
+        int[] conCamino = superponerCaminos(indices, n, carretera, duracion, precio);
+        return new Matriz(huella, n, indices, ids, latitud, longitud, modificadas,
+                directa, carretera, duracion, precio, conCamino);
+    }
+
+    /**
+     * Aplica sobre una copia de la matriz anterior las terminales modificadas desde su versión.
+     * Devuelve null si hace falta reconstruirla completa (bajas, borrados o altas sin fecha)
+     */
+    private Matriz actualizarMatriz(Huella huella, Matriz anterior) {
+        List<Object[]> filas = terminalRepository.findCoordenadasModificadasDesde(anterior.huella().terminalesModificadas());
+        List<Object[]> cambiadas = new ArrayList<>();
+        List<Object[]> altas = new ArrayList<>();
+        for (Object[] fila : filas) {
+            Integer k = anterior.indices().get((Long) fila[0]);
+            if (!Boolean.TRUE.equals(fila[4])) {
+                if (k != null) {
+                    return null;
+                }
+            } else if (k == null) {
+                altas.add(fila);
+            } else if (!Objects.equals(anterior.modificadas()[k], fila[3])) {
+                cambiadas.add(fila);
+            }
+        }
+        int previa = anterior.n();
+        int n = previa + altas.size();
+        if (n != terminalRepository.countByActivoTrue()) {
+            return null;
+        }
+
+        Map<Long, Integer> indices = new HashMap<>(anterior.indices());
+        long[] ids = Arrays.copyOf(anterior.ids(), n);
+        double[] latitud = Arrays.copyOf(anterior.latitud(), n);
+        double[] longitud = Arrays.copyOf(anterior.longitud(), n);
+        LocalDateTime[] modificadas = Arrays.copyOf(anterior.modificadas(), n);
+        int[] recalcular = new int[cambiadas.size() + altas.size()];
+        int r = 0;
+        for (Object[] fila : cambiadas) {
+            int i = indices.get((Long) fila[0]);
+            copiarTerminal(fila, i, ids, latitud, longitud, modificadas);
+            recalcular[r++] = i;
+        }
+        for (int a = 0; a < altas.size(); a++) {
+            int i = previa + a;
+            copiarTerminal(altas.get(a), i, ids, latitud, longitud, modificadas);
+            indices.put(ids[i], i);
+            recalcular[r++] = i;
+        }
+
+        double[] directa = ampliar(anterior.directa(), previa, n);
+        double[] carretera = ampliar(anterior.carretera(), previa, n);
+        int[] duracion = ampliar(anterior.duracion(), previa, n);
+        double[] precio = ampliar(anterior.precio(), previa, n);
+
+        // Las celdas que tenían camino vuelven a la estimación; los caminos se superponen de nuevo
+        for (int celdaPrevia : anterior.celdasConCamino()) {
+            estimar((celdaPrevia / previa) * n + celdaPrevia % previa, directa, carretera, duracion, precio);
+        }
+        for (int i : recalcular) {
+            for (int j = 0; j < n; j++) {
+                double km = i == j ? 0 : haversineKm(latitud[i], longitud[i], latitud[j], longitud[j]);
+                directa[i * n + j] = km;
+                directa[j * n + i] = km;
+                estimar(i * n + j, directa, carretera, duracion, precio);
+                estimar(j * n + i, directa, carretera, duracion, precio);
+            }
+        }
+        int[] conCamino = superponerCaminos(indices, n, carretera, duracion, precio);
+        return new Matriz(huella, n, indices, ids, latitud, longitud, modificadas,
+                directa, carretera, duracion, precio, conCamino);
+    }
+
+    private static void copiarTerminal(Object[] fila, int i, long[] ids, double[] latitud, double[] longitud,
+                                       LocalDateTime[] modificadas) {
+        ids[i] = (Long) fila[0];
+        latitud[i] = fila[1] != null ? ((Number) fila[1]).doubleValue() : Double.NaN;
+        longitud[i] = fila[2] != null ? ((Number) fila[2]).doubleValue() : Double.NaN;
+        modificadas[i] = (LocalDateTime) fila[3];
+    }
+
+    /**
+     * Copia una matriz previa x previa en una n x n; las filas y columnas nuevas quedan en cero
+     */
+    private static double[] ampliar(double[] origen, int previa, int n) {
+        if (previa == n) {
+            return origen.clone();
+        }
+        double[] destino = new double[n * n];
+        for (int i = 0; i < previa; i++) {
+            System.arraycopy(origen, i * previa, destino, i * n, previa);
+        }
+        return destino;
+    }
+
+    private static int[] ampliar(int[] origen, int previa, int n) {
+        if (previa == n) {
+            return origen.clone();
+        }
+        int[] destino = new int[n * n];
+        for (int i = 0; i < previa; i++) {
+            System.arraycopy(origen, i * previa, destino, i * n, previa);
+        }
+        return destino;
+    }
+
+    private static void estimar(int celda, double[] directa, double[] carretera, int[] duracion, double[] precio) {
+        carretera[celda] = distanciaCarretera(directa[celda]);
+        duracion[celda] = duracion(carretera[celda]);
+        precio[celda] = precio(carretera[celda]);
+    }
+
+    /**
+     * Reemplaza la estimación por el camino registrado entre cada par de terminales activas.
+     * Devuelve las celdas modificadas
+     */
+    private int[] superponerCaminos(Map<Long, Integer> indices, int n, double[] carretera, int[] duracion, double[] precio) {
+        Map<Integer, Integer> preferencia = new HashMap<>();
+        for (Object[] fila : caminoRepository.findDistanciasEntreTerminales()) {
+            Integer i = indices.get((Long) fila[0]);
+            Integer j = indices.get((Long) fila[1]);
+            if (i == null || j == null || i.equals(j)) {
+                continue;
+            }
+            int celda = i * n + j;
+            int rango = PREFERENCIA_CAMINO.indexOf((Camino.TipoCamino) fila[2]);
+            Integer actual = preferencia.get(celda);
+            if (actual != null && actual <= rango) {
+                continue;
+            }
+            preferencia.put(celda, rango);
+            carretera[celda] = ((Number) fila[3]).doubleValue();
+            duracion[celda] = fila[4] != null ? ((Number) fila[4]).intValue() : duracion(carretera[celda]);
+            precio[celda] = precio(carretera[celda]);
+        }
+        return preferencia.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static double haversineKm(Terminal origen, Terminal destino) {
+        if (origen.getLatitud() == null || origen.getLongitud() == null ||
+            destino.getLatitud() == null || destino.getLongitud() == null) {
+            return Double.NaN;
+        }
+        return haversineKm(origen.getLatitud(), origen.getLongitud(), destino.getLatitud(), destino.getLongitud());
+    }
+
+    /**
+     * NaN si alguna coordenada es NaN
+     */
+    static double haversineKm(double latOrigen, double lonOrigen, double latDestino, double lonDestino) {
+        double dLat = Math.toRadians(latDestino - latOrigen);
+        double dLon = Math.toRadians(lonDestino - lonOrigen);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(latOrigen)) * Math.cos(Math.toRadians(latDestino)) *
+                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return RADIO_TIERRA_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static double distanciaCarretera(double directaKm) {
+        return Double.isNaN(directaKm) ? DISTANCIA_SIN_COORDENADAS_KM : directaKm * FACTOR_CARRETERA;
+    }
+
+    private static int duracion(double distanciaKm) {
+        return (int) (distanciaKm / VELOCIDAD_PROMEDIO_KMH * 60);
+    }
+
+    private static double precio(double distanciaKm) {
+        return Math.round(distanciaKm * PRECIO_POR_KM * 100.0) / 100.0;
+    }
+}
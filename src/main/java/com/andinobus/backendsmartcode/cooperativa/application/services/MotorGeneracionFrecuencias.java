@@ -0,0 +1,473 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import com.andinobus.backendsmartcode.admin.domain.enums.TipoFrecuencia;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionInteligenteDtos.FrecuenciaPreview;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionInteligenteDtos.RutaCircuitoRequest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Motor de programación del preview de generación inteligente.
+ *
+ * Aplica las reglas del circuito ida/vuelta (reparto de buses por ruta, salidas escalonadas cada
+ * 15 min, descanso dinámico, jornada del chofer de 10h con máximo 2 días extendidos por semana y
+ * luego 8h) sobre arreglos primitivos indexados por bus, chofer y terminal en lugar de mapas de
+ * objetos por día.
+ *
+ * El itinerario de un bus en un día depende solo de su ruta, su posición en ella y las horas
+ * máximas del chofer ese día, así que se calcula una vez por combinación y cada día solo se copia.
+ * Los días extendidos se reinician con cada semana ISO, por lo que las semanas son independientes y
+ * se reparten en un ForkJoinPool; sus resultados se concatenan en orden de fecha y la lista de
+ * FrecuenciaPreview es la misma que la del recorrido secuencial día por día.
+ */
+public class MotorGeneracionFrecuencias {
+
+    static final int HORAS_EXTENDIDAS = 10;
+    static final int HORAS_NORMALES = 8;
+    static final int MAX_DIAS_EXTENDIDOS = 2;
+
+    private static final int SEGUNDOS_DIA = 24 * 60 * 60;
+    private static final int ESCALONAMIENTO_MINUTOS = 15;
+    private static final Itinerario SIN_VIAJES = new Itinerario(new LocalTime[0], new LocalTime[0], 0);
+
+    /**
+     * Configuración de la cooperativa que usa la generación
+     */
+    public record Parametros(LocalTime horaInicio, LocalTime horaFin, int maxHorasChofer,
+                             int descansoInterprov, int descansoIntraprov, int umbralKm,
+                             Boolean permitirParadas, Integer maxParadasPersonalizado) {
+    }
+
+    /**
+     * Bus del pool con su primer chofer asignado (choferId null si no tiene)
+     */
+    public record BusMotor(Long busId, String placa, Integer asientos, Long choferId, String choferNombre) {
+    }
+
+    public record Resultado(List<FrecuenciaPreview> frecuencias, Map<String, Integer> frecuenciasPorRuta,
+                            Map<String, Integer> frecuenciasPorBus, List<String> advertencias, int diasOperacion) {
+    }
+
+    /**
+     * Viajes de un bus en un día: salidas y llegadas alternando IDA y VUELTA
+     */
+    private record Itinerario(LocalTime[] salidas, LocalTime[] llegadas, double horas) {
+    }
+
+    private final Parametros parametros;
+    private final List<RutaCircuitoRequest> rutas;
+    private final List<BusMotor> buses;
+
+    // Rutas
+    private final int[] duracionRuta;
+    private final int[] descansoRuta;
+    private final int[] paradasRuta;
+    private final int[] terminalOrigenRuta;
+    private final int[] terminalDestinoRuta;
+    private final String[] tipoRuta;
+    private final Double[] distanciaRuta;
+    private final Double[] costoRuta;
+    private final String[] claveIdaRuta;
+    private final String[] claveVueltaRuta;
+    private final String[] advertenciaRuta;
+    private final int[][] busesPorRuta;
+
+    // Buses y choferes
+    private final int[] choferBus;
+    private final int numChoferes;
+    private final int[] variantesHoras;
+    private final Itinerario[][] itinerarios;
+
+    // Terminales
+    private final String[] nombreTerminal;
+    private final int[] capacidadTerminal;
+
+    /**
+     * @param capacidadPorTerminal salidas diarias admitidas por terminal (maxFrecuenciasDiarias);
+     *                             los terminales sin dato no se controlan
+     */
+    public MotorGeneracionFrecuencias(Parametros parametros, List<RutaCircuitoRequest> rutas, List<BusMotor> buses,
+                                      Map<Long, Integer> capacidadPorTerminal) {
+        this.parametros = parametros;
+        this.rutas = rutas;
+        this.buses = buses;
+
+        int numRutas = rutas.size();
+        duracionRuta = new int[numRutas];
+        descansoRuta = new int[numRutas];
+        paradasRuta = new int[numRutas];
+        terminalOrigenRuta = new int[numRutas];
+        terminalDestinoRuta = new int[numRutas];
+        tipoRuta = new String[numRutas];
+        distanciaRuta = new Double[numRutas];
+        costoRuta = new Double[numRutas];
+        claveIdaRuta = new String[numRutas];
+        claveVueltaRuta = new String[numRutas];
+        advertenciaRuta = new String[numRutas];
+
+        Map<Long, Integer> slotTerminal = new HashMap<>();
+        List<String> nombres = new ArrayList<>();
+        for (int r = 0; r < numRutas; r++) {
+            RutaCircuitoRequest ruta = rutas.get(r);
+            int duracion = ruta.getDuracionMinutos() != null ? ruta.getDuracionMinutos() : 120;
+            boolean esInterprovincial = ruta.getDistanciaKm() != null && ruta.getDistanciaKm() > parametros.umbralKm();
+
+            // Descanso dinámico: 25% del viaje entre 15 y 90 min, hasta 15 min más si la configuración lo pide
+            int descansoCalculado = Math.max(15, Math.min(90, (int) (duracion * 0.25)));
+            int descansoBase = esInterprovincial ? parametros.descansoInterprov() : parametros.descansoIntraprov();
+            TipoFrecuencia tipo = esInterprovincial ? TipoFrecuencia.INTERPROVINCIAL : TipoFrecuencia.INTRAPROVINCIAL;
+
+            duracionRuta[r] = duracion;
+            descansoRuta[r] = Math.max(descansoCalculado, Math.min(descansoBase, descansoCalculado + 15));
+            tipoRuta[r] = tipo.name();
+            distanciaRuta[r] = ruta.getDistanciaKm() != null ? ruta.getDistanciaKm() : 100.0;
+            costoRuta[r] = distanciaRuta[r] * 0.12 * 1.80;
+            if (Boolean.TRUE.equals(parametros.permitirParadas()) && esInterprovincial) {
+                paradasRuta[r] = parametros.maxParadasPersonalizado() != null
+                        ? parametros.maxParadasPersonalizado()
+                        : GeneracionFrecuenciasInteligenteService.calcularMaxParadasPermitidas(duracion, tipo);
+            }
+            claveIdaRuta[r] = ruta.getTerminalOrigenNombre() + " → " + ruta.getTerminalDestinoNombre();
+            claveVueltaRuta[r] = ruta.getTerminalDestinoNombre() + " → " + ruta.getTerminalOrigenNombre();
+            terminalOrigenRuta[r] = slotTerminal.computeIfAbsent(ruta.getTerminalOrigenId(), id -> {
+                nombres.add(ruta.getTerminalOrigenNombre());
+                return nombres.size() - 1;
+            });
+            terminalDestinoRuta[r] = slotTerminal.computeIfAbsent(ruta.getTerminalDestinoId(), id -> {
+                nombres.add(ruta.getTerminalDestinoNombre());
+                return nombres.size() - 1;
+            });
+        }
+
+        nombreTerminal = nombres.toArray(new String[0]);
+        capacidadTerminal = new int[nombreTerminal.length];
+        Arrays.fill(capacidadTerminal, Integer.MAX_VALUE);
+        slotTerminal.forEach((terminalId, slot) -> {
+            Integer capacidad = capacidadPorTerminal.get(terminalId);
+            if (capacidad != null && capacidad > 0) {
+                capacidadTerminal[slot] = capacidad;
+            }
+        });
+
+        // Reparto de buses: uno por ruta y el resto en rueda
+        int numBuses = buses.size();
+        int[] cantidadPorRuta = new int[numRutas];
+        int[] rutaBus = new int[numBuses];
+        for (int b = 0; b < numBuses; b++) {
+            rutaBus[b] = b % numRutas;
+            cantidadPorRuta[rutaBus[b]]++;
+        }
+        busesPorRuta = new int[numRutas][];
+        for (int r = 0; r < numRutas; r++) {
+            busesPorRuta[r] = new int[cantidadPorRuta[r]];
+            cantidadPorRuta[r] = 0;
+        }
+        for (int b = 0; b < numBuses; b++) {
+            busesPorRuta[rutaBus[b]][cantidadPorRuta[rutaBus[b]]++] = b;
+        }
+
+        for (int r = 0; r < numRutas; r++) {
+            RutaCircuitoRequest ruta = rutas.get(r);
+            if (busesPorRuta[r].length == 0) {
+                advertenciaRuta[r] = "Ruta " + ruta.getTerminalOrigenNombre() + " → " +
+                        ruta.getTerminalDestinoNombre() + " sin buses asignados";
+            } else if (duracionRuta[r] / 60.0 > HORAS_EXTENDIDAS) {
+                advertenciaRuta[r] = "Ruta " + ruta.getTerminalOrigenNombre() + " → " +
+                        ruta.getTerminalDestinoNombre() + " omitida: duración excede horas máximas del chofer";
+            } else if (duracionRuta[r] <= 0) {
+                advertenciaRuta[r] = "Ruta " + ruta.getTerminalOrigenNombre() + " → " +
+                        ruta.getTerminalDestinoNombre() + " omitida: duración inválida";
+            }
+        }
+
+        // Choferes: un slot por chofer distinto (varios buses pueden compartirlo)
+        Map<Long, Integer> slotChofer = new HashMap<>();
+        choferBus = new int[numBuses];
+        for (int b = 0; b < numBuses; b++) {
+            Long choferId = buses.get(b).choferId();
+            choferBus[b] = choferId == null ? -1 : slotChofer.computeIfAbsent(choferId, id -> slotChofer.size());
+        }
+        numChoferes = slotChofer.size();
+
+        // Horas máximas posibles en un día: la configurada (buses sin chofer), 10h u 8h
+        variantesHoras = Arrays.stream(new int[]{parametros.maxHorasChofer(), HORAS_EXTENDIDAS, HORAS_NORMALES})
+                .distinct().toArray();
+        itinerarios = new Itinerario[numBuses][];
+        for (int r = 0; r < numRutas; r++) {
+            for (int posicion = 0; posicion < busesPorRuta[r].length; posicion++) {
+                Itinerario[] porVariante = new Itinerario[variantesHoras.length];
+                for (int v = 0; v < variantesHoras.length; v++) {
+                    porVariante[v] = advertenciaRuta[r] != null
+                            ? SIN_VIAJES
+                            : calcularItinerario(r, posicion, variantesHoras[v]);
+                }
+                itinerarios[busesPorRuta[r][posicion]] = porVariante;
+            }
+        }
+    }
+
+    /**
+     * Genera las frecuencias de [fechaInicio, fechaFin] en los días de operación indicados
+     * (todos si diasOperacion es null o vacío). Con pool null las semanas se procesan en el hilo actual
+     */
+    public Resultado generar(LocalDate fechaInicio, LocalDate fechaFin, Collection<String> diasOperacion, ForkJoinPool pool) {
+        List<List<LocalDate>> semanas = new ArrayList<>();
+        List<LocalDate> semana = null;
+        int semanaAnterior = -1;
+        int totalDias = 0;
+        for (LocalDate fecha = fechaInicio; !fecha.isAfter(fechaFin); fecha = fecha.plusDays(1)) {
+            int numeroSemana = fecha.get(WeekFields.ISO.weekOfYear());
+            if (numeroSemana != semanaAnterior) {
+                semana = new ArrayList<>(7);
+                semanas.add(semana);
+                semanaAnterior = numeroSemana;
+            }
+            if (diasOperacion == null || diasOperacion.isEmpty()
+                    || diasOperacion.contains(GeneracionFrecuenciasInteligenteService.obtenerDiaSemana(fecha))) {
+                semana.add(fecha);
+                totalDias++;
+            }
+        }
+        semanas.removeIf(List::isEmpty);
+
+        List<ResultadoSemana> resultados = new ArrayList<>(semanas.size());
+        if (pool == null || semanas.size() < 2) {
+            for (List<LocalDate> dias : semanas) {
+                resultados.add(generarSemana(dias));
+            }
+        } else {
+            List<ForkJoinTask<ResultadoSemana>> tareas = new ArrayList<>(semanas.size());
+            for (List<LocalDate> dias : semanas) {
+                tareas.add(pool.submit(() -> generarSemana(dias)));
+            }
+            for (ForkJoinTask<ResultadoSemana> tarea : tareas) {
+                resultados.add(tarea.join());
+            }
+        }
+        return combinar(resultados, totalDias);
+    }
+
+    /**
+     * Días de operación de una semana ISO: los días extendidos de cada chofer empiezan en cero
+     */
+    private ResultadoSemana generarSemana(List<LocalDate> dias) {
+        ResultadoSemana resultado = new ResultadoSemana(rutas.size(), buses.size(), nombreTerminal.length);
+        int[] diasExtendidos = new int[numChoferes];
+        int[] varianteHoy = new int[buses.size()];
+        int[] salidasTerminal = new int[nombreTerminal.length];
+
+        for (LocalDate fecha : dias) {
+            String diaSemana = GeneracionFrecuenciasInteligenteService.obtenerDiaSemana(fecha);
+
+            // Las horas máximas del día se fijan antes de generar (dos buses pueden compartir chofer)
+            for (int b = 0; b < varianteHoy.length; b++) {
+                int chofer = choferBus[b];
+                int maxHoras = chofer < 0
+                        ? parametros.maxHorasChofer()
+                        : diasExtendidos[chofer] >= MAX_DIAS_EXTENDIDOS ? HORAS_NORMALES : HORAS_EXTENDIDAS;
+                varianteHoy[b] = variante(maxHoras);
+            }
+            Arrays.fill(salidasTerminal, 0);
+
+            for (int r = 0; r < busesPorRuta.length; r++) {
+                if (advertenciaRuta[r] != null) {
+                    resultado.advertencias.add(advertenciaRuta[r]);
+                    continue;
+                }
+                for (int b : busesPorRuta[r]) {
+                    Itinerario itinerario = itinerarios[b][varianteHoy[b]];
+                    for (int v = 0; v < itinerario.salidas().length; v++) {
+                        boolean ida = (v & 1) == 0;
+                        resultado.frecuencias.add(preview(fecha, diaSemana, r, b, itinerario, v, ida));
+                        if (ida) {
+                            resultado.idasPorRuta[r]++;
+                            salidasTerminal[terminalOrigenRuta[r]]++;
+                        } else {
+                            resultado.vueltasPorRuta[r]++;
+                            salidasTerminal[terminalDestinoRuta[r]]++;
+                        }
+                    }
+                    resultado.viajesPorBus[b] += itinerario.salidas().length;
+                }
+            }
+
+            // Cierre del día: más de 8h cuenta como día extendido del chofer
+            for (int b = 0; b < varianteHoy.length; b++) {
+                if (choferBus[b] >= 0 && itinerarios[b][varianteHoy[b]].horas() > HORAS_NORMALES) {
+                    diasExtendidos[choferBus[b]]++;
+                }
+            }
+            for (int t = 0; t < salidasTerminal.length; t++) {
+                if (salidasTerminal[t] > capacidadTerminal[t]) {
+                    resultado.diasExcedidosTerminal[t]++;
+                    resultado.maxSalidasTerminal[t] = Math.max(resultado.maxSalidasTerminal[t], salidasTerminal[t]);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    private FrecuenciaPreview preview(LocalDate fecha, String diaSemana, int r, int b, Itinerario itinerario, int v, boolean ida) {
+        RutaCircuitoRequest ruta = rutas.get(r);
+        BusMotor bus = buses.get(b);
+        return FrecuenciaPreview.builder()
+                .fecha(fecha)
+                .diaSemana(diaSemana)
+                .horaSalida(itinerario.salidas()[v])
+                .horaLlegada(itinerario.llegadas()[v])
+                .terminalOrigenId(ida ? ruta.getTerminalOrigenId() : ruta.getTerminalDestinoId())
+                .terminalOrigenNombre(ida ? ruta.getTerminalOrigenNombre() : ruta.getTerminalDestinoNombre())
+                .terminalDestinoId(ida ? ruta.getTerminalDestinoId() : ruta.getTerminalOrigenId())
+                .terminalDestinoNombre(ida ? ruta.getTerminalDestinoNombre() : ruta.getTerminalOrigenNombre())
+                .busId(bus.busId())
+                .busPlaca(bus.placa())
+                .asientosDisponibles(bus.asientos())
+                .tipoFrecuencia(tipoRuta[r])
+                .duracionMinutos(duracionRuta[r])
+                .tiempoDescansoMinutos(descansoRuta[r])
+                .paradasPermitidas(paradasRuta[r])
+                .precio(ruta.getPrecioBase())
+                .distanciaKm(distanciaRuta[r])
+                .costoCombustibleEstimado(costoRuta[r])
+                .choferId(bus.choferId())
+                .choferNombre(bus.choferNombre())
+                .ordenDia(v + 1)
+                .esViajeDe(ida ? "IDA" : "VUELTA")
+                .build();
+    }
+
+    /**
+     * Circuitos ida/vuelta de un bus desde su hora de inicio escalonada mientras el chofer tenga
+     * horas para la ida y la llegada no pase de la hora fin. Las horas del día se manejan en
+     * segundos módulo 24h, igual que LocalTime.plusMinutes
+     */
+    private Itinerario calcularItinerario(int r, int posicion, int maxHoras) {
+        int duracion = duracionRuta[r] * 60;
+        int descanso = descansoRuta[r] * 60;
+        double horasViaje = duracionRuta[r] / 60.0;
+        int fin = parametros.horaFin().toSecondOfDay();
+
+        List<LocalTime> salidas = new ArrayList<>();
+        List<LocalTime> llegadas = new ArrayList<>();
+        double horas = 0;
+        int hora = enDia(parametros.horaInicio().toSecondOfDay() + (long) posicion * ESCALONAMIENTO_MINUTOS * 60);
+        while (horas + horasViaje <= maxHoras) {
+            int llegadaIda = enDia(hora + (long) duracion);
+            if (llegadaIda > fin) {
+                break;
+            }
+            salidas.add(LocalTime.ofSecondOfDay(hora));
+            llegadas.add(LocalTime.ofSecondOfDay(llegadaIda));
+            horas += horasViaje;
+
+            int salidaVuelta = enDia(llegadaIda + (long) descanso);
+            int llegadaVuelta = enDia(salidaVuelta + (long) duracion);
+            if (llegadaVuelta > fin || horas + horasViaje > maxHoras) {
+                break;
+            }
+            salidas.add(LocalTime.ofSecondOfDay(salidaVuelta));
+            llegadas.add(LocalTime.ofSecondOfDay(llegadaVuelta));
+            horas += horasViaje;
+            hora = enDia(llegadaVuelta + (long) descanso);
+        }
+        return new Itinerario(salidas.toArray(new LocalTime[0]), llegadas.toArray(new LocalTime[0]), horas);
+    }
+
+    private static int enDia(long segundos) {
+        return (int) Math.floorMod(segundos, (long) SEGUNDOS_DIA);
+    }
+
+    private int variante(int maxHoras) {
+        for (int v = 0; v < variantesHoras.length; v++) {
+            if (variantesHoras[v] == maxHoras) {
+                return v;
+            }
+        }
+        throw new IllegalStateException("Horas máximas sin itinerario: " + maxHoras);
+    }
+
+    private Resultado combinar(List<ResultadoSemana> semanas, int totalDias) {
+        int total = 0;
+        for (ResultadoSemana semana : semanas) {
+            total += semana.frecuencias.size();
+        }
+        List<FrecuenciaPreview> frecuencias = new ArrayList<>(total);
+        List<String> advertencias = new ArrayList<>();
+        int[] idas = new int[rutas.size()];
+        int[] vueltas = new int[rutas.size()];
+        int[] viajesBus = new int[buses.size()];
+        int[] diasExcedidos = new int[nombreTerminal.length];
+        int[] maxSalidas = new int[nombreTerminal.length];
+        for (ResultadoSemana semana : semanas) {
+            frecuencias.addAll(semana.frecuencias);
+            advertencias.addAll(semana.advertencias);
+            sumar(idas, semana.idasPorRuta);
+            sumar(vueltas, semana.vueltasPorRuta);
+            sumar(viajesBus, semana.viajesPorBus);
+            sumar(diasExcedidos, semana.diasExcedidosTerminal);
+            for (int t = 0; t < maxSalidas.length; t++) {
+                maxSalidas[t] = Math.max(maxSalidas[t], semana.maxSalidasTerminal[t]);
+            }
+        }
+
+        Map<String, Integer> porRuta = new HashMap<>();
+        for (int r = 0; r < idas.length; r++) {
+            if (idas[r] > 0) {
+                porRuta.merge(claveIdaRuta[r], idas[r], Integer::sum);
+            }
+            if (vueltas[r] > 0) {
+                porRuta.merge(claveVueltaRuta[r], vueltas[r], Integer::sum);
+            }
+        }
+        Map<String, Integer> porBus = new HashMap<>();
+        for (int b = 0; b < viajesBus.length; b++) {
+            if (viajesBus[b] > 0) {
+                porBus.merge(buses.get(b).placa(), viajesBus[b], Integer::sum);
+            }
+        }
+        for (int t = 0; t < diasExcedidos.length; t++) {
+            if (diasExcedidos[t] > 0) {
+                advertencias.add("Terminal " + nombreTerminal[t] + " supera su capacidad de " + capacidadTerminal[t] +
+                        " salidas diarias en " + diasExcedidos[t] + " día(s) (máximo " + maxSalidas[t] + " salidas)");
+            }
+        }
+        return new Resultado(frecuencias, porRuta, porBus, advertencias, totalDias);
+    }
+
+    private static void sumar(int[] destino, int[] origen) {
+        for (int i = 0; i < destino.length; i++) {
+            destino[i] += origen[i];
+        }
+    }
+
+    /**
+     * Lo generado en una semana: frecuencias y advertencias en orden de fecha, contadores por índice
+     */
+    private static final class ResultadoSemana {
+        private final List<FrecuenciaPreview> frecuencias = new ArrayList<>();
+        private final List<String> advertencias = new ArrayList<>();
+        private final int[] idasPorRuta;
+        private final int[] vueltasPorRuta;
+        private final int[] viajesPorBus;
+        private final int[] diasExcedidosTerminal;
+        private final int[] maxSalidasTerminal;
+
+        private ResultadoSemana(int rutas, int buses, int terminales) {
+            idasPorRuta = new int[rutas];
+            vueltasPorRuta = new int[rutas];
+            viajesPorBus = new int[buses];
+            diasExcedidosTerminal = new int[terminales];
+            maxSalidasTerminal = new int[terminales];
+        }
+    }
+}
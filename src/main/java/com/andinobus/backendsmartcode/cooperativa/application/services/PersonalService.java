@@ -9,6 +9,7 @@ import com.andinobus.backendsmartcode.cooperativa.domain.enums.RolCooperativa;
 import com.andinobus.backendsmartcode.cooperativa.domain.entities.UsuarioCooperativa;
 import com.andinobus.backendsmartcode.cooperativa.infrastructure.repositories.UsuarioCooperativaRepository;
 import com.andinobus.backendsmartcode.email.EmailService;
+import com.andinobus.backendsmartcode.usuarios.application.services.CacheSesiones;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
@@ -30,6 +31,7 @@ public class PersonalService {
     private final BusChoferRepository busChoferRepository;
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
+    private final CacheSesiones cacheSesiones;
 
     @Transactional
     public PersonalDtos.PersonalResponse createPersonal(PersonalDtos.CreatePersonalRequest request) {
@@ -190,6 +192,7 @@ public class PersonalService {
 
         usuario.setUpdatedAt(LocalDateTime.now());
         UsuarioCooperativa savedUsuario = usuarioCooperativaRepository.save(usuario);
+        cacheSesiones.invalidarUsuario("COOPERATIVA", savedUsuario.getId());
         return mapToResponse(savedUsuario);
     }
 
@@ -202,6 +205,7 @@ public class PersonalService {
         usuario.setActivo(false);
         usuario.setUpdatedAt(LocalDateTime.now());
         usuarioCooperativaRepository.save(usuario);
+        cacheSesiones.invalidarUsuario("COOPERATIVA", usuario.getId());
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,84 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Limpieza de las frecuencias de una cooperativa con sentencias por conjuntos.
+ *
+ * Antes se cargaba frecuencia_viaje completa (todas las cooperativas), se filtraba en Java y se
+ * borraba fila por fila con sus paradas. Aquí cada tabla se limpia con una sola sentencia acotada
+ * a los buses de la cooperativa, así que el costo depende de sus filas y no del tamaño de la tabla.
+ * Las frecuencias se identifican por el bus, igual que la limpieza anterior.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PurgaFrecuenciasCooperativa {
+
+    private static final String FRECUENCIAS_COOPERATIVA =
+            "SELECT f.id FROM frecuencia_viaje f JOIN bus b ON b.id = f.bus_id WHERE b.cooperativa_id = ?";
+
+    // Incluye las disponibilidades de otra cooperativa que apunten a estas frecuencias (bloquearían el DELETE)
+    private static final String DISPONIBILIDADES_COOPERATIVA =
+            "cooperativa_id = ? " +
+            "OR frecuencia_origen_id IN (" + FRECUENCIAS_COOPERATIVA + ") " +
+            "OR frecuencia_siguiente_id IN (" + FRECUENCIAS_COOPERATIVA + ")";
+
+    // La simulación cuenta con los mismos predicados que usan los DELETE
+    private static final String SQL_CONTEOS =
+            "SELECT (SELECT count(*) FROM frecuencia_viaje f JOIN bus b ON b.id = f.bus_id WHERE b.cooperativa_id = ?), " +
+            "(SELECT count(*) FROM parada_frecuencia WHERE frecuencia_viaje_id IN (" + FRECUENCIAS_COOPERATIVA + ")), " +
+            "(SELECT count(*) FROM disponibilidad_bus WHERE " + DISPONIBILIDADES_COOPERATIVA + "), " +
+            "(SELECT count(*) FROM asignacion_rotacion WHERE frecuencia_viaje_id IN (" + FRECUENCIAS_COOPERATIVA + "))";
+
+    private static final String SQL_DELETE_DISPONIBILIDADES =
+            "DELETE FROM disponibilidad_bus WHERE " + DISPONIBILIDADES_COOPERATIVA;
+
+    // La asignación de rotación pertenece al ciclo, no a la frecuencia: solo se desvincula
+    private static final String SQL_DESVINCULAR_ASIGNACIONES =
+            "UPDATE asignacion_rotacion SET frecuencia_viaje_id = NULL WHERE frecuencia_viaje_id IN (" + FRECUENCIAS_COOPERATIVA + ")";
+
+    private static final String SQL_DELETE_PARADAS =
+            "DELETE FROM parada_frecuencia WHERE frecuencia_viaje_id IN (" + FRECUENCIAS_COOPERATIVA + ")";
+
+    private static final String SQL_DELETE_FRECUENCIAS =
+            "DELETE FROM frecuencia_viaje f USING bus b WHERE b.id = f.bus_id AND b.cooperativa_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Resultado(boolean simulacion, int frecuencias, int paradas, int disponibilidades,
+                            int asignacionesDesvinculadas, long milisegundos) {
+    }
+
+    /**
+     * Elimina las frecuencias de la cooperativa con sus paradas y disponibilidades. En modo
+     * simulación solo cuenta lo que se eliminaría. Se une a la transacción del llamador
+     */
+    @Transactional
+    public Resultado purgar(Long cooperativaId, boolean simulacion) {
+        long inicio = System.nanoTime();
+        Resultado resultado;
+        if (simulacion) {
+            resultado = jdbcTemplate.queryForObject(SQL_CONTEOS, (rs, i) -> new Resultado(true,
+                    rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), 0),
+                    cooperativaId, cooperativaId, cooperativaId, cooperativaId, cooperativaId, cooperativaId);
+        } else {
+            int disponibilidades = jdbcTemplate.update(SQL_DELETE_DISPONIBILIDADES, cooperativaId, cooperativaId, cooperativaId);
+            int asignaciones = jdbcTemplate.update(SQL_DESVINCULAR_ASIGNACIONES, cooperativaId);
+            int paradas = jdbcTemplate.update(SQL_DELETE_PARADAS, cooperativaId);
+            int frecuencias = jdbcTemplate.update(SQL_DELETE_FRECUENCIAS, cooperativaId);
+            resultado = new Resultado(false, frecuencias, paradas, disponibilidades, asignaciones, 0);
+        }
+        long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+        log.info("Limpieza de frecuencias{} para cooperativa {}: {} frecuencias, {} paradas, {} disponibilidades, " +
+                        "{} asignaciones de rotación desvinculadas en {} ms",
+                simulacion ? " (simulación)" : "", cooperativaId, resultado.frecuencias(), resultado.paradas(),
+                resultado.disponibilidades(), resultado.asignacionesDesvinculadas(), milisegundos);
+        return new Resultado(resultado.simulacion(), resultado.frecuencias(), resultado.paradas(),
+                resultado.disponibilidades(), resultado.asignacionesDesvinculadas(), milisegundos);
+    }
+}
@@ -6,12 +6,14 @@ import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeR
 import com.andinobus.backendsmartcode.admin.domain.repositories.RutaRepository;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.Bus;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.BusChofer;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Frecuencia;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusChoferRepository;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusRepository;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.FrecuenciaRepository;
 import com.andinobus.backendsmartcode.cooperativa.api.dto.ReporteCooperativaDtos.*;
 import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
-import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import com.andinobus.backendsmartcode.ventas.application.services.CuboVentasService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -38,7 +40,8 @@ public class ReporteCooperativaService {
     private final BusRepository busRepository;
     private final BusChoferRepository busChoferRepository;
     private final RutaRepository rutaRepository;
-    private final ReservaRepository reservaRepository;
+    private final FrecuenciaRepository frecuenciaRepository;
+    private final CuboVentasService cuboVentasService;
 
     /**
      * Obtiene el resumen general de la cooperativa
@@ -104,41 +107,52 @@ public class ReporteCooperativaService {
     }
 
     /**
-     * Obtiene el reporte de ventas REALES de la cooperativa
+     * Obtiene el reporte de ventas REALES de la cooperativa.
+     * Una sola lectura del cubo de ventas cubre el periodo y el periodo anterior de la comparación
      */
     @Transactional(readOnly = true)
     public ReporteVentasResponse obtenerReporteVentas(Long cooperativaId, LocalDate fechaInicio, LocalDate fechaFin) {
         log.info("Generando reporte de ventas REALES para cooperativa {} desde {} hasta {}", 
                 cooperativaId, fechaInicio, fechaFin);
         
-        // Obtener ventas reales desde reservas pagadas
-        BigDecimal ventasTotales = reservaRepository.sumVentasByCooperativaIdAndFechaRango(
-                cooperativaId, fechaInicio, fechaFin);
-        if (ventasTotales == null) ventasTotales = BigDecimal.ZERO;
-        
-        long totalTransacciones = reservaRepository.countTransaccionesByCooperativaIdAndFechaRango(
-                cooperativaId, fechaInicio, fechaFin);
-        
-        // Obtener ventas por día reales
-        List<Object[]> ventasPorDiaRaw = reservaRepository.findVentasPorDiaByCooperativaId(
-                cooperativaId, fechaInicio, fechaFin);
-        
-        List<VentaDiariaDto> ventasPorDia = new ArrayList<>();
-        for (Object[] row : ventasPorDiaRaw) {
-            LocalDate fecha = (LocalDate) row[0];
-            BigDecimal monto = (BigDecimal) row[1];
-            Long transacciones = (Long) row[2];
+        int diasEnRango = calcularDiasEnRango(fechaInicio, fechaFin);
+        LocalDate fechaInicioAnterior = fechaInicio.minusDays(diasEnRango);
+        List<CuboVentasService.Celda> celdas = cuboVentasService.consultar(
+                cooperativaId, fechaInicioAnterior, fechaFin, CuboVentasService.PAGADO);
+        
+        // Acumular el periodo, el periodo anterior, los días y las frecuencias en una pasada
+        BigDecimal ventasTotales = BigDecimal.ZERO;
+        BigDecimal ventasAnteriores = BigDecimal.ZERO;
+        long totalTransacciones = 0;
+        Map<LocalDate, VentaDiariaDto> ventasPorFecha = new TreeMap<>();
+        Map<Long, RutaVentasDto> ventasPorFrecuencia = new HashMap<>();
+        for (CuboVentasService.Celda celda : celdas) {
+            if (celda.fecha().isBefore(fechaInicio)) {
+                ventasAnteriores = ventasAnteriores.add(celda.monto());
+                continue;
+            }
+            ventasTotales = ventasTotales.add(celda.monto());
+            totalTransacciones += celda.reservas();
             
-            ventasPorDia.add(VentaDiariaDto.builder()
+            VentaDiariaDto dia = ventasPorFecha.computeIfAbsent(celda.fecha(), fecha -> VentaDiariaDto.builder()
                     .fecha(fecha)
                     .diaSemana(obtenerNombreDia(fecha.getDayOfWeek()))
-                    .monto(monto != null ? monto : BigDecimal.ZERO)
-                    .transacciones(transacciones != null ? transacciones.intValue() : 0)
+                    .monto(BigDecimal.ZERO)
+                    .transacciones(0)
+                    .build());
+            dia.setMonto(dia.getMonto().add(celda.monto()));
+            dia.setTransacciones(dia.getTransacciones() + celda.reservas());
+            
+            RutaVentasDto ruta = ventasPorFrecuencia.computeIfAbsent(celda.frecuenciaId(), id -> RutaVentasDto.builder()
+                    .ventas(BigDecimal.ZERO)
+                    .boletos(0)
                     .build());
+            ruta.setVentas(ruta.getVentas().add(celda.monto()));
+            ruta.setBoletos(ruta.getBoletos() + celda.reservas());
         }
+        List<VentaDiariaDto> ventasPorDia = new ArrayList<>(ventasPorFecha.values());
         
         // Calcular promedios
-        int diasEnRango = calcularDiasEnRango(fechaInicio, fechaFin);
         BigDecimal ventasDiarias = diasEnRango > 0 
                 ? ventasTotales.divide(BigDecimal.valueOf(diasEnRango), 2, RoundingMode.HALF_UP)
                 : BigDecimal.ZERO;
@@ -147,27 +161,20 @@ public class ReporteCooperativaService {
                 ? ventasTotales.divide(BigDecimal.valueOf(totalTransacciones), 2, RoundingMode.HALF_UP)
                 : BigDecimal.ZERO;
         
-        // Top rutas por ventas reales
-        List<Object[]> rutasVentasRaw = reservaRepository.findVentasPorRutaByCooperativaId(
-                cooperativaId, fechaInicio, fechaFin);
-        
+        // Top rutas por ventas reales (origen/destino de la frecuencia)
+        Map<Long, Frecuencia> frecuencias = frecuenciaRepository.findAllById(ventasPorFrecuencia.keySet()).stream()
+                .collect(Collectors.toMap(Frecuencia::getId, f -> f));
         List<RutaVentasDto> topRutas = new ArrayList<>();
-        for (Object[] row : rutasVentasRaw) {
-            String origen = (String) row[1];
-            String destino = (String) row[2];
-            BigDecimal ventas = (BigDecimal) row[3];
-            Long boletos = (Long) row[4];
-            
-            topRutas.add(RutaVentasDto.builder()
-                    .terminalOrigen(origen != null ? origen : "N/A")
-                    .terminalDestino(destino != null ? destino : "N/A")
-                    .ventas(ventas != null ? ventas : BigDecimal.ZERO)
-                    .boletos(boletos != null ? boletos.intValue() : 0)
-                    .build());
-        }
+        ventasPorFrecuencia.forEach((frecuenciaId, ruta) -> {
+            Frecuencia frecuencia = frecuencias.get(frecuenciaId);
+            ruta.setTerminalOrigen(frecuencia != null && frecuencia.getOrigen() != null ? frecuencia.getOrigen() : "N/A");
+            ruta.setTerminalDestino(frecuencia != null && frecuencia.getDestino() != null ? frecuencia.getDestino() : "N/A");
+            topRutas.add(ruta);
+        });
+        topRutas.sort((a, b) -> b.getVentas().compareTo(a.getVentas()));
         
         // Calcular cambio de ventas (comparar con periodo anterior)
-        BigDecimal cambioVentas = calcularCambioVentas(cooperativaId, fechaInicio, fechaFin);
+        BigDecimal cambioVentas = calcularCambioVentas(ventasTotales, ventasAnteriores);
         
         return ReporteVentasResponse.builder()
                 .ventasTotales(ventasTotales)
@@ -183,18 +190,8 @@ public class ReporteCooperativaService {
     /**
      * Calcula el porcentaje de cambio de ventas respecto al periodo anterior
      */
-    private BigDecimal calcularCambioVentas(Long cooperativaId, LocalDate fechaInicio, LocalDate fechaFin) {
-        int diasPeriodo = calcularDiasEnRango(fechaInicio, fechaFin);
-        LocalDate fechaInicioAnterior = fechaInicio.minusDays(diasPeriodo);
-        LocalDate fechaFinAnterior = fechaInicio.minusDays(1);
-        
-        BigDecimal ventasActuales = reservaRepository.sumVentasByCooperativaIdAndFechaRango(
-                cooperativaId, fechaInicio, fechaFin);
-        BigDecimal ventasAnteriores = reservaRepository.sumVentasByCooperativaIdAndFechaRango(
-                cooperativaId, fechaInicioAnterior, fechaFinAnterior);
-        
-        if (ventasActuales == null) ventasActuales = BigDecimal.ZERO;
-        if (ventasAnteriores == null || ventasAnteriores.compareTo(BigDecimal.ZERO) == 0) {
+    private BigDecimal calcularCambioVentas(BigDecimal ventasActuales, BigDecimal ventasAnteriores) {
+        if (ventasAnteriores.compareTo(BigDecimal.ZERO) == 0) {
             return ventasActuales.compareTo(BigDecimal.ZERO) > 0 ? BigDecimal.valueOf(100) : BigDecimal.ZERO;
         }
         
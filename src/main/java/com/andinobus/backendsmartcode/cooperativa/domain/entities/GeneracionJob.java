@@ -0,0 +1,108 @@
+package com.andinobus.backendsmartcode.cooperativa.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job asíncrono de generación de frecuencias con su punto de control.
+ * bloques_procesados avanza en la misma transacción que confirma las frecuencias de cada bloque.
+ */
+@Entity
+@Table(name = "generacion_job")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GeneracionJob {
+
+    public enum Tipo {
+        INTELIGENTE, AUTOMATICA, PLANTILLA
+    }
+
+    public enum Estado {
+        PENDIENTE, EN_CURSO, COMPLETADO, CANCELADO, FALLIDO;
+
+        public boolean esActivo() {
+            return this == PENDIENTE || this == EN_CURSO;
+        }
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cooperativa_id", nullable = false)
+    private Long cooperativaId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Tipo tipo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private Estado estado = Estado.PENDIENTE;
+
+    /** Request original en JSON, para reanudar el job */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String solicitud;
+
+    @Column(name = "total_bloques", nullable = false)
+    @Builder.Default
+    private Integer totalBloques = 0;
+
+    @Column(name = "bloques_procesados", nullable = false)
+    @Builder.Default
+    private Integer bloquesProcesados = 0;
+
+    @Column(name = "dias_totales", nullable = false)
+    @Builder.Default
+    private Integer diasTotales = 0;
+
+    @Column(name = "dias_procesados", nullable = false)
+    @Builder.Default
+    private Integer diasProcesados = 0;
+
+    @Column(name = "frecuencias_creadas", nullable = false)
+    @Builder.Default
+    private Integer frecuenciasCreadas = 0;
+
+    @Column(name = "frecuencias_omitidas", nullable = false)
+    @Builder.Default
+    private Integer frecuenciasOmitidas = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer errores = 0;
+
+    @Column(name = "cancelacion_solicitada", nullable = false)
+    @Builder.Default
+    private Boolean cancelacionSolicitada = false;
+
+    @Column(columnDefinition = "TEXT")
+    private String mensaje;
+
+    /** Advertencias acumuladas, una por línea */
+    @Column(columnDefinition = "TEXT")
+    private String advertencias;
+
+    @Column(name = "created_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "iniciado_en")
+    private LocalDateTime iniciadoEn;
+
+    @Column(name = "actualizado_en")
+    private LocalDateTime actualizadoEn;
+
+    @Column(name = "terminado_en")
+    private LocalDateTime terminadoEn;
+
+    @PreUpdate
+    protected void onUpdate() {
+        actualizadoEn = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,63 @@
+package com.andinobus.backendsmartcode.cooperativa.infrastructure.repositories;
+
+import com.andinobus.backendsmartcode.cooperativa.domain.entities.GeneracionJob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GeneracionJobRepository extends JpaRepository<GeneracionJob, Long> {
+
+    /**
+     * Bloquea la fila del job para los cambios de estado, que son breves; los bloques no la bloquean
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM GeneracionJob j WHERE j.id = :id")
+    Optional<GeneracionJob> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Marca la cancelación de un job en curso sin leer la fila; el bloque en proceso no la retiene
+     */
+    @Modifying
+    @Query("UPDATE GeneracionJob j SET j.cancelacionSolicitada = true, j.actualizadoEn = :ahora " +
+           "WHERE j.id = :id AND j.estado = :estado")
+    int solicitarCancelacion(@Param("id") Long id, @Param("estado") GeneracionJob.Estado estado,
+                             @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query("UPDATE GeneracionJob j SET j.estado = :nuevo, j.mensaje = :mensaje, j.terminadoEn = :ahora, " +
+           "j.actualizadoEn = :ahora WHERE j.id = :id AND j.estado = :actual")
+    int cambiarEstado(@Param("id") Long id, @Param("actual") GeneracionJob.Estado actual,
+                      @Param("nuevo") GeneracionJob.Estado nuevo, @Param("mensaje") String mensaje,
+                      @Param("ahora") LocalDateTime ahora);
+
+    /**
+     * Avanza el punto de control solo si sigue en el bloque procesado; no toca estado ni cancelación
+     */
+    @Modifying
+    @Query("UPDATE GeneracionJob j SET j.bloquesProcesados = :indice + 1, " +
+           "j.diasProcesados = j.diasProcesados + :dias, " +
+           "j.frecuenciasCreadas = j.frecuenciasCreadas + :creadas, " +
+           "j.frecuenciasOmitidas = j.frecuenciasOmitidas + :omitidas, " +
+           "j.errores = j.errores + :errores, j.advertencias = :advertencias, j.actualizadoEn = :ahora " +
+           "WHERE j.id = :id AND j.bloquesProcesados = :indice AND j.estado = :estado")
+    int avanzarPuntoDeControl(@Param("id") Long id, @Param("indice") int indice, @Param("estado") GeneracionJob.Estado estado,
+                              @Param("dias") int dias, @Param("creadas") int creadas, @Param("omitidas") int omitidas,
+                              @Param("errores") int errores, @Param("advertencias") String advertencias,
+                              @Param("ahora") LocalDateTime ahora);
+
+    List<GeneracionJob> findTop20ByCooperativaIdOrderByCreatedAtDesc(Long cooperativaId);
+
+    List<GeneracionJob> findByEstadoInOrderByCreatedAtAsc(Collection<GeneracionJob.Estado> estados);
+
+    boolean existsByCooperativaIdAndEstadoIn(Long cooperativaId, Collection<GeneracionJob.Estado> estados);
+}
@@ -0,0 +1,322 @@
+package com.andinobus.backendsmartcode.email;
+
+import com.andinobus.backendsmartcode.common.transacciones.Transacciones;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.UnsupportedEncodingException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bandeja de salida durable de emails (tabla email_outbox) y su despachador.
+ *
+ * encolar inserta el email ya renderizado en la transacción del llamador y, al confirmarse, despierta
+ * al despachador; un sondeo periódico recoge lo que quede pendiente (reintentos, otras instancias,
+ * reinicios). El despachador reclama lotes con FOR UPDATE SKIP LOCKED, agrupa los emails por
+ * destinatario y reparte los grupos entre un número fijo de hilos: cada hilo envía su parte en una
+ * sola conexión SMTP. Un email enviado se elimina (puede contener credenciales); uno fallido se
+ * reprograma con backoff exponencial hasta maxIntentos y luego queda FALLIDO, sin su cuerpo HTML
+ * (solo destinatario, asunto y último error para diagnóstico).
+ */
+@Component
+@Slf4j
+public class EmailOutbox {
+
+    private static final String SQL_ENCOLAR =
+            "INSERT INTO email_outbox (destinatario, asunto, html) VALUES (?, ?, ?)";
+
+    private static final String SQL_RECLAMAR =
+            "UPDATE email_outbox SET estado = 'ENVIANDO', proximo_intento = now() + make_interval(secs => ?) " +
+            "WHERE id IN (SELECT id FROM email_outbox " +
+            "             WHERE estado IN ('PENDIENTE', 'ENVIANDO') AND proximo_intento <= now() " +
+            "             ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, destinatario, asunto, html, intentos";
+
+    private static final String SQL_ELIMINAR_ENVIADOS =
+            "DELETE FROM email_outbox WHERE id = ANY(?)";
+
+    // Al quedar FALLIDO se borra el cuerpo: puede contener credenciales y ya no se va a enviar
+    private static final String SQL_REPROGRAMAR =
+            "UPDATE email_outbox SET estado = CASE WHEN intentos + 1 >= ? THEN 'FALLIDO' ELSE 'PENDIENTE' END, " +
+            "html = CASE WHEN intentos + 1 >= ? THEN '' ELSE html END, " +
+            "intentos = intentos + 1, proximo_intento = now() + make_interval(secs => ?), ultimo_error = ? " +
+            "WHERE id = ?";
+
+    private static final String SQL_PROFUNDIDAD =
+            "SELECT count(*) FILTER (WHERE estado <> 'FALLIDO'), count(*) FILTER (WHERE estado = 'FALLIDO') FROM email_outbox";
+
+    private static final long BACKOFF_MAXIMO_MS = 3_600_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JavaMailSender mailSender;
+
+    @Value("${app.mail.from-name:AndinoBus}")
+    private String fromName;
+
+    @Value("${app.mail.from-address:noreply.andinobus@gmail.com}")
+    private String fromAddress;
+
+    @Value("${app.mail.outbox.hilos:4}")
+    private int hilos;
+
+    @Value("${app.mail.outbox.lote:100}")
+    private int tamanoLote;
+
+    @Value("${app.mail.outbox.max-intentos:6}")
+    private int maxIntentos;
+
+    @Value("${app.mail.outbox.backoff-ms:30000}")
+    private long backoffMs;
+
+    @Value("${app.mail.outbox.reclamo-ms:300000}")
+    private long reclamoMs;
+
+    private ExecutorService coordinador;
+    private ExecutorService envios;
+    private final AtomicBoolean programado = new AtomicBoolean();
+
+    private final LongAdder enviados = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder conexiones = new LongAdder();
+    private final LongAdder latenciaTotalMs = new LongAdder();
+    private final LongAccumulator latenciaMaximaMs = new LongAccumulator(Math::max, 0);
+    private long enviosReportados = -1;
+
+    public EmailOutbox(JdbcTemplate jdbcTemplate, JavaMailSender mailSender) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mailSender = mailSender;
+    }
+
+    private record Correo(long id, String destinatario, String asunto, String html, int intentos) {
+    }
+
+    public record Estadisticas(long pendientes, long fallidos, long enviados, long fallos,
+                               long conexiones, double latenciaPromedioMs, long latenciaMaximaMs) {
+    }
+
+    @PostConstruct
+    void iniciar() {
+        coordinador = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("email-outbox").daemon().factory());
+        envios = Executors.newFixedThreadPool(Math.max(1, hilos), Thread.ofPlatform().name("email-envio-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void detener() {
+        coordinador.shutdownNow();
+        envios.shutdownNow();
+    }
+
+    /**
+     * Guarda el email en la bandeja dentro de la transacción en curso; se envía después de confirmarse
+     */
+    public void encolar(String destinatario, String asunto, String html) {
+        jdbcTemplate.update(SQL_ENCOLAR, destinatario, asunto, html);
+        Transacciones.alConfirmar(this::despertar);
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-ms:5000}", initialDelayString = "${app.mail.outbox.poll-ms:5000}")
+    public void sondear() {
+        despertar();
+    }
+
+    /**
+     * Programa una pasada del despachador si no hay una ya en cola
+     */
+    private void despertar() {
+        if (programado.compareAndSet(false, true)) {
+            coordinador.execute(this::despachar);
+        }
+    }
+
+    private void despachar() {
+        programado.set(false);
+        try {
+            while (true) {
+                List<Correo> lote = reclamar();
+                if (lote.isEmpty()) {
+                    return;
+                }
+                enviar(lote);
+                if (lote.size() < tamanoLote) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Error despachando la bandeja de emails: {}", e.getMessage(), e);
+        }
+    }
+
+    private List<Correo> reclamar() {
+        List<Correo> lote = new ArrayList<>(jdbcTemplate.query(SQL_RECLAMAR, (rs, i) -> new Correo(
+                rs.getLong("id"),
+                rs.getString("destinatario"),
+                rs.getString("asunto"),
+                rs.getString("html"),
+                rs.getInt("intentos")
+        ), reclamoMs / 1000.0, tamanoLote));
+        lote.sort(Comparator.comparingLong(Correo::id));
+        return lote;
+    }
+
+    /**
+     * Reparte el lote por destinatario entre los hilos de envío y espera a que terminen
+     */
+    private void enviar(List<Correo> lote) {
+        Map<String, List<Correo>> porDestinatario = new LinkedHashMap<>();
+        for (Correo correo : lote) {
+            porDestinatario.computeIfAbsent(correo.destinatario().toLowerCase(), d -> new ArrayList<>()).add(correo);
+        }
+        int partes = Math.min(Math.max(1, hilos), porDestinatario.size());
+        List<List<Correo>> reparto = new ArrayList<>(partes);
+        for (int i = 0; i < partes; i++) {
+            reparto.add(new ArrayList<>());
+        }
+        int siguiente = 0;
+        for (List<Correo> grupo : porDestinatario.values()) {
+            reparto.get(siguiente++ % partes).addAll(grupo);
+        }
+
+        List<Future<?>> tareas = new ArrayList<>(partes);
+        for (List<Correo> parte : reparto) {
+            tareas.add(envios.submit(() -> enviarPorConexion(parte)));
+        }
+        for (Future<?> tarea : tareas) {
+            try {
+                tarea.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Error en un hilo de envío de emails: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Envía los emails en una sola conexión SMTP y registra el resultado de cada uno
+     */
+    private void enviarPorConexion(List<Correo> correos) {
+        Map<MimeMessage, Correo> mensajes = new LinkedHashMap<>();
+        Map<Correo, String> errores = new LinkedHashMap<>();
+        for (Correo correo : correos) {
+            try {
+                mensajes.put(construir(correo), correo);
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                errores.put(correo, e.getMessage());
+            }
+        }
+
+        if (!mensajes.isEmpty()) {
+            long inicio = System.nanoTime();
+            try {
+                mailSender.send(mensajes.keySet().toArray(MimeMessage[]::new));
+            } catch (MailSendException e) {
+                if (e.getFailedMessages().isEmpty()) {
+                    mensajes.values().forEach(c -> errores.put(c, e.getMessage()));
+                } else {
+                    e.getFailedMessages().forEach((mensaje, causa) -> {
+                        Correo correo = mensajes.get(mensaje);
+                        if (correo != null) {
+                            errores.put(correo, causa.getMessage());
+                        }
+                    });
+                }
+            } catch (RuntimeException e) {
+                mensajes.values().forEach(c -> errores.put(c, e.getMessage()));
+            }
+            long latenciaMs = (System.nanoTime() - inicio) / 1_000_000;
+            conexiones.increment();
+            latenciaTotalMs.add(latenciaMs);
+            latenciaMaximaMs.accumulate(latenciaMs);
+        }
+
+        Long[] enviadosIds = correos.stream()
+                .filter(c -> !errores.containsKey(c))
+                .map(Correo::id)
+                .toArray(Long[]::new);
+        if (enviadosIds.length > 0) {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(SQL_ELIMINAR_ENVIADOS);
+                ps.setArray(1, con.createArrayOf("bigint", enviadosIds));
+                return ps;
+            });
+            enviados.add(enviadosIds.length);
+            log.info("{} emails enviados en una conexión", enviadosIds.length);
+        }
+        if (!errores.isEmpty()) {
+            reprogramar(errores);
+        }
+    }
+
+    private void reprogramar(Map<Correo, String> errores) {
+        List<Object[]> filas = new ArrayList<>(errores.size());
+        errores.forEach((correo, error) -> {
+            long espera = Math.min(BACKOFF_MAXIMO_MS, backoffMs << Math.min(correo.intentos(), 20));
+            String mensaje = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+            filas.add(new Object[]{maxIntentos, maxIntentos, espera / 1000.0, mensaje, correo.id()});
+            if (correo.intentos() + 1 >= maxIntentos) {
+                log.error("Email {} a {} descartado tras {} intentos: {}", correo.id(), correo.destinatario(), correo.intentos() + 1, error);
+            } else {
+                log.warn("Error al enviar email {} a {} (intento {}), se reintenta en {} ms: {}",
+                        correo.id(), correo.destinatario(), correo.intentos() + 1, espera, error);
+            }
+        });
+        jdbcTemplate.batchUpdate(SQL_REPROGRAMAR, filas);
+        fallos.add(errores.size());
+    }
+
+    private MimeMessage construir(Correo correo) throws MessagingException, UnsupportedEncodingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(fromAddress, fromName);
+        helper.setTo(correo.destinatario());
+        helper.setSubject(correo.asunto());
+        helper.setText(correo.html(), true);
+        return message;
+    }
+
+    public Estadisticas estadisticas() {
+        long[] profundidad = jdbcTemplate.queryForObject(SQL_PROFUNDIDAD,
+                (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long c = conexiones.sum();
+        double promedio = c == 0 ? 0 : Math.round((double) latenciaTotalMs.sum() / c * 10.0) / 10.0;
+        return new Estadisticas(profundidad[0], profundidad[1], enviados.sum(), fallos.sum(),
+                c, promedio, latenciaMaximaMs.get());
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.reporte-ms:300000}", initialDelayString = "${app.mail.outbox.reporte-ms:300000}")
+    public void reportar() {
+        Estadisticas e = estadisticas();
+        long envios = e.enviados() + e.fallos();
+        if (envios == enviosReportados && e.pendientes() == 0) {
+            return;
+        }
+        enviosReportados = envios;
+        log.info("Bandeja de emails: {} pendientes, {} fallidos; {} enviados, {} fallos, {} conexiones SMTP " +
+                        "(latencia promedio {} ms, máxima {} ms)",
+                e.pendientes(), e.fallidos(), e.enviados(), e.fallos(), e.conexiones(),
+                e.latenciaPromedioMs(), e.latenciaMaximaMs());
+    }
+}
@@ -1,14 +1,9 @@
 package com.andinobus.backendsmartcode.email;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
@@ -20,49 +15,32 @@ import java.util.Map;
 @Slf4j
 public class EmailService {
 
-    private final JavaMailSender mailSender;
+    private final EmailOutbox emailOutbox;
     private final TemplateEngine templateEngine;
 
-    @Value("${app.mail.from-name:AndinoBus}")
-    private String fromName;
-
-    @Value("${app.mail.from-address:noreply.andinobus@gmail.com}")
-    private String fromAddress;
-
     @Value("${app.frontend.url:http://localhost:3000}")
     private String frontendUrl;
 
     /**
-     * Envía un email HTML usando un template Thymeleaf
+     * Renderiza un template Thymeleaf y deja el email en la bandeja de salida (EmailOutbox).
+     * Dentro de una transacción se envía solo si esta se confirma
      */
-    @Async
     public void sendHtmlEmail(String to, String subject, String templateName, Map<String, Object> variables) {
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
             // Agregar variables comunes a todos los templates
             Context context = new Context();
             context.setVariables(variables);
             context.setVariable("frontendUrl", frontendUrl);
 
-            // Procesar el template
+            // Procesar el template (Thymeleaf mantiene en caché los templates ya parseados)
             String htmlContent = templateEngine.process(templateName, context);
 
-            helper.setFrom(fromAddress, fromName);
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-            log.info("Email enviado exitosamente a: {}", to);
+            emailOutbox.encolar(to, subject, htmlContent);
+            log.info("Email encolado para: {}", to);
 
-        } catch (MessagingException e) {
-            log.error("Error al enviar email a {}: {}", to, e.getMessage());
-            throw new RuntimeException("Error al enviar email: " + e.getMessage());
         } catch (Exception e) {
-            log.error("Error inesperado al enviar email a {}: {}", to, e.getMessage());
-            throw new RuntimeException("Error inesperado al enviar email: " + e.getMessage());
+            log.error("Error al encolar email para {}: {}", to, e.getMessage());
+            throw new RuntimeException("Error al encolar email: " + e.getMessage());
         }
     }
 
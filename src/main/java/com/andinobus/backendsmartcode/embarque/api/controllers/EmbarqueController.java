@@ -1,21 +1,30 @@
 package com.andinobus.backendsmartcode.embarque.api.controllers;
 
 import com.andinobus.backendsmartcode.embarque.api.dto.EmbarqueDtos;
+import com.andinobus.backendsmartcode.embarque.application.services.RegistroEmbarque;
+import com.andinobus.backendsmartcode.ventas.application.services.FirmaBoletos;
+import com.andinobus.backendsmartcode.ventas.application.services.FirmaBoletos.BoletoFirmado;
 import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-
+/**
+ * Escaneo de boletos al embarcar. El código es el token firmado del QR: la firma y el vencimiento
+ * se validan sin consultar la BD y los asientos embarcados se registran por viaje (RegistroEmbarque)
+ */
 @RestController
 public class EmbarqueController {
 
-    private static final Set<String> USADOS = ConcurrentHashMap.newKeySet();
+    private final FirmaBoletos firmaBoletos;
+    private final RegistroEmbarque registroEmbarque;
     private final JdbcTemplate jdbcTemplate; // puede ser null si no hay DataSource (perfil por defecto)
 
-    public EmbarqueController(ObjectProvider<JdbcTemplate> jdbcProvider) {
+    public EmbarqueController(FirmaBoletos firmaBoletos,
+                              RegistroEmbarque registroEmbarque,
+                              ObjectProvider<JdbcTemplate> jdbcProvider) {
+        this.firmaBoletos = firmaBoletos;
+        this.registroEmbarque = registroEmbarque;
         this.jdbcTemplate = jdbcProvider != null ? jdbcProvider.getIfAvailable() : null;
     }
 
@@ -27,27 +36,43 @@ public class EmbarqueController {
             logScan(codigo, "invalido", "codigo es requerido");
             throw new IllegalArgumentException("codigo es requerido");
         }
-        boolean valido = codigo.length() >= 6; // regla mock
-        String estado = "emitido";
-        String message = "OK";
+        BoletoFirmado boleto = firmaBoletos.verificar(codigo);
+        boolean valido = boleto != null;
+        String estado;
+        String message;
         if (!valido) {
             estado = "invalido";
             message = "Código no válido";
-        } else if (USADOS.contains(codigo)) {
-            estado = "usado";
-            message = "Boleto ya fue usado";
+        } else if (boleto.vencido()) {
+            valido = false;
+            estado = "vencido";
+            message = "Boleto vencido";
         } else {
-            // marcar como usado en esta llamada (simula scan de acceso)
-            USADOS.add(codigo);
-            estado = "usado";
-            message = "Acceso registrado";
+            switch (registroEmbarque.registrar(boleto.viajeId(), boleto.reservaId(), boleto.asientos())) {
+                case USADO -> {
+                    estado = "usado";
+                    message = "Boleto ya fue usado";
+                }
+                case ANULADO -> {
+                    valido = false;
+                    estado = "anulado";
+                    message = "Los asientos del boleto ya no pertenecen a la reserva";
+                }
+                default -> {
+                    estado = "usado";
+                    message = "Acceso registrado";
+                }
+            }
         }
-        logScan(codigo, (valido ? estado : "invalido"), message);
+        logScan(codigo, estado, message);
         return EmbarqueDtos.ScanResponse.builder()
                 .codigo(codigo)
                 .valido(valido)
                 .estado(estado)
                 .message(message)
+                .reservaId(boleto != null ? boleto.reservaId() : null)
+                .viajeId(boleto != null ? boleto.viajeId() : null)
+                .asientos(boleto != null ? boleto.asientos().size() : 0)
                 .build();
     }
 
@@ -0,0 +1,102 @@
+package com.andinobus.backendsmartcode.embarque.api.controllers;
+
+import com.andinobus.backendsmartcode.embarque.api.dto.EmbarqueDtos;
+import com.andinobus.backendsmartcode.embarque.application.services.ManifiestoViaje;
+import com.andinobus.backendsmartcode.embarque.application.services.RegistroEmbarque;
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Manifiesto de pasajeros para el dispositivo del chofer: descarga completa, cambios de embarque
+ * desde una versión y sincronización de los escaneos hechos sin conexión. Solo el chofer asignado
+ * al viaje
+ */
+@RestController
+@RequestMapping("/api/chofer/viaje/{viajeId}/manifiesto")
+@RequiredArgsConstructor
+public class ManifiestoController {
+
+    private final ManifiestoViaje manifiestoViaje;
+    private final ControlAcceso controlAcceso;
+
+    /**
+     * GET /api/chofer/viaje/{viajeId}/manifiesto
+     */
+    @GetMapping
+    public ResponseEntity<EmbarqueDtos.ManifiestoResponse> getManifiesto(@PathVariable Long viajeId,
+                                                                         HttpServletRequest httpRequest) {
+        controlAcceso.requerirChoferDelViaje(httpRequest, viajeId);
+        ManifiestoViaje.Manifiesto manifiesto = manifiestoViaje.obtener(viajeId);
+        RegistroEmbarque.Cambios embarques = manifiestoViaje.embarques(viajeId, null, null);
+        List<EmbarqueDtos.AsientoManifiesto> asientos = manifiesto.asientos().stream()
+                .map(a -> EmbarqueDtos.AsientoManifiesto.builder()
+                        .numero(a.numero())
+                        .reservaId(a.reservaId())
+                        .clienteEmail(a.clienteEmail())
+                        .estadoReserva(a.estadoReserva())
+                        .build())
+                .toList();
+        return ResponseEntity.ok(EmbarqueDtos.ManifiestoResponse.builder()
+                .viajeId(viajeId)
+                .generacion(embarques.generacion())
+                .version(embarques.version())
+                .asientos(asientos)
+                .embarcados(embarques.asientos())
+                .build());
+    }
+
+    /**
+     * GET /api/chofer/viaje/{viajeId}/manifiesto/embarques?generacion=..&version=..
+     */
+    @GetMapping("/embarques")
+    public ResponseEntity<EmbarqueDtos.EmbarquesResponse> getEmbarques(
+            @PathVariable Long viajeId,
+            @RequestParam(required = false) Long generacion,
+            @RequestParam(required = false) Integer version,
+            HttpServletRequest httpRequest) {
+        controlAcceso.requerirChoferDelViaje(httpRequest, viajeId);
+        return ResponseEntity.ok(embarques(viajeId, generacion, version));
+    }
+
+    /**
+     * Sube los códigos escaneados sin conexión y devuelve los embarques que el dispositivo no tenía
+     *
+     * POST /api/chofer/viaje/{viajeId}/manifiesto/embarques
+     */
+    @PostMapping("/embarques")
+    public ResponseEntity<EmbarqueDtos.SincronizarResponse> sincronizar(
+            @PathVariable Long viajeId,
+            @RequestBody EmbarqueDtos.SincronizarRequest request,
+            HttpServletRequest httpRequest) {
+        controlAcceso.requerirChoferDelViaje(httpRequest, viajeId);
+        List<String> codigos = request.getCodigos() != null ? request.getCodigos() : List.of();
+        List<EmbarqueDtos.ResultadoEscaneo> resultados = manifiestoViaje.sincronizar(viajeId, codigos).stream()
+                .map(r -> EmbarqueDtos.ResultadoEscaneo.builder()
+                        .codigo(r.codigo())
+                        .estado(r.estado())
+                        .reservaId(r.reservaId())
+                        .build())
+                .toList();
+        return ResponseEntity.ok(EmbarqueDtos.SincronizarResponse.builder()
+                .resultados(resultados)
+                .embarques(embarques(viajeId, request.getGeneracion(), request.getVersion()))
+                .build());
+    }
+
+    private EmbarqueDtos.EmbarquesResponse embarques(Long viajeId, Long generacion, Integer version) {
+        RegistroEmbarque.Cambios cambios = manifiestoViaje.embarques(viajeId, generacion, version);
+        boolean completo = cambios.asientos().length == cambios.version();
+        return EmbarqueDtos.EmbarquesResponse.builder()
+                .viajeId(viajeId)
+                .generacion(cambios.generacion())
+                .version(cambios.version())
+                .completo(completo)
+                .embarcados(cambios.asientos())
+                .build();
+    }
+}
@@ -3,6 +3,8 @@ package com.andinobus.backendsmartcode.embarque.api.dto;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class EmbarqueDtos {
     @Data
@@ -15,7 +17,61 @@ public class EmbarqueDtos {
     public static class ScanResponse {
         private String codigo;
         private boolean valido;
-        private String estado; // emitido/usado/anulado
+        private String estado; // emitido/usado/anulado/vencido/invalido
         private String message;
+        private Long reservaId;
+        private Long viajeId;
+        private int asientos; // asientos que embarcan con el boleto
+    }
+
+    @Data
+    @Builder
+    public static class AsientoManifiesto {
+        private String numero; // número de asiento, el mismo que lleva el boleto firmado
+        private Long reservaId;
+        private String clienteEmail;
+        private String estadoReserva; // PAGADO | PENDIENTE
+    }
+
+    @Data
+    @Builder
+    public static class ManifiestoResponse {
+        private Long viajeId;
+        private long generacion;
+        private int version;
+        private List<AsientoManifiesto> asientos;
+        private String[] embarcados; // números de asiento ya embarcados
+    }
+
+    @Data
+    @Builder
+    public static class EmbarquesResponse {
+        private Long viajeId;
+        private long generacion;
+        private int version;
+        private boolean completo; // true: reemplazar los embarcados locales en vez de agregarlos
+        private String[] embarcados;
+    }
+
+    @Data
+    public static class SincronizarRequest {
+        private Long generacion;
+        private Integer version;
+        private List<String> codigos; // códigos escaneados sin conexión
+    }
+
+    @Data
+    @Builder
+    public static class ResultadoEscaneo {
+        private String codigo;
+        private String estado; // registrado/usado/anulado/vencido/invalido/otro_viaje
+        private Long reservaId;
+    }
+
+    @Data
+    @Builder
+    public static class SincronizarResponse {
+        private List<ResultadoEscaneo> resultados;
+        private EmbarquesResponse embarques;
     }
 }
@@ -0,0 +1,141 @@
+package com.andinobus.backendsmartcode.embarque.application.services;
+
+import com.andinobus.backendsmartcode.common.cache.CacheAcotada;
+import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
+import com.andinobus.backendsmartcode.ventas.application.services.FirmaBoletos;
+import com.andinobus.backendsmartcode.ventas.application.services.FirmaBoletos.BoletoFirmado;
+import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Manifiesto de pasajeros por viaje: asiento → reserva y pasajero, con el estado de embarque.
+ *
+ * La parte estática (asientos ocupados por reservas activas) se materializa cuando el viaje pasa a
+ * EN_TERMINAL, o en la primera consulta, y se guarda en memoria (LRU, vence tras ttlMs para recoger
+ * ventas de último momento). El estado de embarque no se copia: sale de RegistroEmbarque, que se
+ * actualiza con cada escaneo y entrega solo los cambios posteriores a la versión del cliente. El
+ * dispositivo del chofer descarga el manifiesto completo una vez, escanea sin conexión y al
+ * reconectarse sube los códigos escaneados y recibe los embarques que no tenía.
+ */
+@Component
+@Slf4j
+public class ManifiestoViaje {
+
+    private static final Set<String> ESTADOS_ACTIVOS = Set.of("PENDIENTE", "PAGADO");
+
+    private final ViajeAsientoRepository viajeAsientoRepository;
+    private final RegistroEmbarque registroEmbarque;
+    private final FirmaBoletos firmaBoletos;
+    private final TransactionTemplate lectura;
+
+    @Value("${app.embarque.manifiesto.max-viajes:500}")
+    private int maxViajes;
+
+    @Value("${app.embarque.manifiesto.ttl-ms:60000}")
+    private long ttlMs;
+
+    private final CacheAcotada<Long, Manifiesto> manifiestos = CacheAcotada.porEntradas(() -> maxViajes, () -> ttlMs);
+
+    public ManifiestoViaje(ViajeAsientoRepository viajeAsientoRepository,
+                           RegistroEmbarque registroEmbarque,
+                           FirmaBoletos firmaBoletos,
+                           PlatformTransactionManager transactionManager) {
+        this.viajeAsientoRepository = viajeAsientoRepository;
+        this.registroEmbarque = registroEmbarque;
+        this.firmaBoletos = firmaBoletos;
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+    }
+
+    /**
+     * Asiento ocupado del viaje; el número es el mismo que lleva el boleto firmado
+     */
+    public record AsientoManifiesto(String numero, Long reservaId, String clienteEmail, String estadoReserva) {
+    }
+
+    public record Manifiesto(long viajeId, List<AsientoManifiesto> asientos, long construidoEn) {
+    }
+
+    /**
+     * Resultado de un código escaneado sin conexión: registrado, usado, anulado, vencido, invalido u otro_viaje
+     */
+    public record ResultadoSincronizacion(String codigo, String estado, Long reservaId) {
+    }
+
+    /**
+     * Construye el manifiesto del viaje desde la BD y lo deja en memoria
+     */
+    public Manifiesto materializar(long viajeId) {
+        List<ViajeAsiento> asientosViaje = lectura.execute(status -> viajeAsientoRepository.findByViajeIdConReserva(viajeId));
+        List<AsientoManifiesto> ocupados = new ArrayList<>();
+        for (ViajeAsiento asiento : asientosViaje) {
+            Reserva reserva = asiento.getReserva();
+            if (reserva != null && ESTADOS_ACTIVOS.contains(reserva.getEstado())) {
+                ocupados.add(new AsientoManifiesto(asiento.getNumeroAsiento(), reserva.getId(),
+                        reserva.getClienteEmail(), reserva.getEstado()));
+            }
+        }
+        Manifiesto manifiesto = new Manifiesto(viajeId, List.copyOf(ocupados), System.currentTimeMillis());
+        manifiestos.guardar(viajeId, manifiesto);
+        log.debug("Manifiesto del viaje {} materializado: {} asientos ocupados de {}", viajeId, ocupados.size(), asientosViaje.size());
+        return manifiesto;
+    }
+
+    /**
+     * Manifiesto en memoria del viaje, materializado de nuevo si no existe o venció
+     */
+    public Manifiesto obtener(long viajeId) {
+        Manifiesto manifiesto = manifiestos.obtener(viajeId);
+        return manifiesto != null ? manifiesto : materializar(viajeId);
+    }
+
+    /**
+     * Embarques del viaje posteriores a la versión del cliente (todos si la generación cambió)
+     */
+    public RegistroEmbarque.Cambios embarques(long viajeId, Long generacion, Integer version) {
+        return registroEmbarque.cambiosDesde(viajeId, generacion, version);
+    }
+
+    /**
+     * Números de asiento ya embarcados del viaje
+     */
+    public Set<String> embarcados(long viajeId) {
+        return Set.of(registroEmbarque.cambiosDesde(viajeId, null, null).asientos());
+    }
+
+    /**
+     * Registra los códigos escaneados sin conexión para el viaje, en el orden recibido
+     */
+    public List<ResultadoSincronizacion> sincronizar(long viajeId, List<String> codigos) {
+        List<ResultadoSincronizacion> resultados = new ArrayList<>(codigos.size());
+        for (String codigo : codigos) {
+            BoletoFirmado boleto = codigo != null ? firmaBoletos.verificar(codigo) : null;
+            String estado;
+            if (boleto == null) {
+                estado = "invalido";
+            } else if (boleto.viajeId() != viajeId) {
+                estado = "otro_viaje";
+            } else if (boleto.vencido()) {
+                estado = "vencido";
+            } else {
+                estado = switch (registroEmbarque.registrar(viajeId, boleto.reservaId(), boleto.asientos())) {
+                    case USADO -> "usado";
+                    case ANULADO -> "anulado";
+                    case REGISTRADO -> "registrado";
+                };
+            }
+            resultados.add(new ResultadoSincronizacion(codigo, estado, boleto != null ? boleto.reservaId() : null));
+        }
+        log.info("Viaje {}: {} escaneos sincronizados", viajeId, resultados.size());
+        return resultados;
+    }
+}
@@ -0,0 +1,176 @@
+package com.andinobus.backendsmartcode.embarque.application.services;
+
+import com.andinobus.backendsmartcode.common.cache.CacheAcotada;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asientos ya embarcados por viaje: un conjunto en memoria de números de asiento, respaldado por
+ * embarque_asiento.
+ *
+ * Un escaneo repetido se detecta en O(1) contra el conjunto del viaje. Los asientos nuevos se
+ * insertan en una sola sentencia con ON CONFLICT, que además comprueba que sigan asignados a la
+ * reserva del boleto: el boleto de una reserva cancelada cuyos asientos se revendieron no embarca
+ * ni deja como usado al nuevo comprador. Si otra instancia ya los marcó, la inserción queda corta y
+ * el boleto cuenta como usado. El conjunto de un viaje se carga una vez desde la BD, así que el
+ * registro sobrevive reinicios; la caché está acotada (LRU).
+ *
+ * Cada viaje guarda además el orden en que se embarcaron sus asientos: el manifiesto del chofer
+ * pide solo los embarques posteriores a la versión que ya tiene. La generación cambia cada vez
+ * que el viaje se carga de nuevo desde la BD, y entonces el cliente debe pedir el estado completo.
+ */
+@Component
+@Slf4j
+public class RegistroEmbarque {
+
+    private static final String SQL_CARGAR =
+            "SELECT numero_asiento FROM embarque_asiento WHERE viaje_id = ? ORDER BY usado_en";
+
+    // Marca los asientos solo si todos siguen asignados a la reserva; devuelve (vigentes, marcados)
+    private static final String SQL_MARCAR =
+            "WITH vigentes AS (" +
+            "    SELECT va.numero_asiento FROM viaje_asiento va " +
+            "      JOIN reserva r ON r.id = va.reserva_id " +
+            "     WHERE va.viaje_id = ? AND va.reserva_id = ? AND r.estado = 'PAGADO' " +
+            "       AND va.numero_asiento = ANY(?)" +
+            "), marcados AS (" +
+            "    INSERT INTO embarque_asiento (viaje_id, numero_asiento, reserva_id) " +
+            "    SELECT ?, numero_asiento, ? FROM vigentes " +
+            "     WHERE (SELECT COUNT(*) FROM vigentes) = ? " +
+            "    ON CONFLICT (viaje_id, numero_asiento) DO NOTHING " +
+            "    RETURNING 1" +
+            ") " +
+            "SELECT (SELECT COUNT(*) FROM vigentes), (SELECT COUNT(*) FROM marcados)";
+
+    // Las generaciones de un viaje no se repiten aunque se recargue varias veces en el mismo milisegundo
+    private static final AtomicLong GENERACIONES = new AtomicLong(System.currentTimeMillis());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.embarque.max-viajes:2000}")
+    private int maxViajes;
+
+    private final CacheAcotada<Long, EmbarqueViaje> usadosPorViaje = CacheAcotada.porEntradas(() -> maxViajes);
+
+    public RegistroEmbarque(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public enum Resultado {
+        REGISTRADO,
+        USADO,
+        ANULADO // los asientos ya no pertenecen a la reserva del boleto
+    }
+
+    /**
+     * Asientos embarcados de un viaje después de una versión dada
+     */
+    public record Cambios(long generacion, int version, String[] asientos) {
+    }
+
+    /**
+     * Asientos embarcados de un viaje y el orden en que se registraron
+     */
+    private static final class EmbarqueViaje {
+        private final long generacion = GENERACIONES.incrementAndGet();
+        private final Set<String> usados = new HashSet<>();
+        private String[] orden = new String[16];
+        private int total;
+
+        private void marcar(List<String> asientos) {
+            for (String numero : asientos) {
+                if (!usados.add(numero)) {
+                    continue;
+                }
+                if (total == orden.length) {
+                    orden = Arrays.copyOf(orden, total * 2);
+                }
+                orden[total++] = numero;
+            }
+        }
+
+        private boolean algunoUsado(List<String> asientos) {
+            for (String numero : asientos) {
+                if (usados.contains(numero)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Marca como embarcados los asientos del boleto; USADO si alguno ya lo estaba y ANULADO si
+     * alguno dejó de pertenecer a la reserva (no se marca ninguno)
+     */
+    public Resultado registrar(long viajeId, long reservaId, List<String> asientos) {
+        EmbarqueViaje embarque = embarque(viajeId);
+        synchronized (embarque) {
+            if (embarque.algunoUsado(asientos)) {
+                return Resultado.USADO;
+            }
+            String[] numeros = asientos.toArray(String[]::new);
+            int[] conteos = jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SQL_MARCAR);
+                ps.setLong(1, viajeId);
+                ps.setLong(2, reservaId);
+                ps.setArray(3, con.createArrayOf("varchar", numeros));
+                ps.setLong(4, viajeId);
+                ps.setLong(5, reservaId);
+                ps.setInt(6, numeros.length);
+                return ps;
+            }, rs -> {
+                rs.next();
+                return new int[]{rs.getInt(1), rs.getInt(2)};
+            });
+            if (conteos[0] < numeros.length) {
+                log.warn("Boleto de la reserva {} con asientos que ya no le pertenecen en el viaje {}", reservaId, viajeId);
+                return Resultado.ANULADO;
+            }
+            embarque.marcar(asientos);
+            if (conteos[1] < numeros.length) {
+                log.warn("Boleto de la reserva {} ya registrado en otra instancia para el viaje {}", reservaId, viajeId);
+                return Resultado.USADO;
+            }
+            return Resultado.REGISTRADO;
+        }
+    }
+
+    /**
+     * Embarques del viaje registrados después de la versión indicada; si la generación no coincide
+     * (o la versión es inválida) devuelve todos
+     */
+    public Cambios cambiosDesde(long viajeId, Long generacion, Integer version) {
+        EmbarqueViaje embarque = embarque(viajeId);
+        synchronized (embarque) {
+            int desde = generacion != null && generacion == embarque.generacion
+                    && version != null && version >= 0 && version <= embarque.total ? version : 0;
+            return new Cambios(embarque.generacion, embarque.total,
+                    Arrays.copyOfRange(embarque.orden, desde, embarque.total));
+        }
+    }
+
+    private EmbarqueViaje embarque(long viajeId) {
+        EmbarqueViaje embarque = usadosPorViaje.obtener(viajeId);
+        if (embarque != null) {
+            return embarque;
+        }
+        List<String> usados = new ArrayList<>();
+        jdbcTemplate.query(SQL_CARGAR, rs -> {
+            usados.add(rs.getString(1));
+        }, viajeId);
+        EmbarqueViaje cargado = new EmbarqueViaje();
+        cargado.marcar(usados);
+        return usadosPorViaje.guardarSiFalta(viajeId, cargado);
+    }
+}
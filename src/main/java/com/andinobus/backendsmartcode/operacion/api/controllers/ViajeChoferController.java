@@ -2,6 +2,8 @@ package com.andinobus.backendsmartcode.operacion.api.controllers;
 
 import com.andinobus.backendsmartcode.operacion.api.dto.ViajeChoferDtos.*;
 import com.andinobus.backendsmartcode.operacion.application.services.ViajeChoferService;
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -20,6 +22,7 @@ import java.util.List;
 public class ViajeChoferController {
 
     private final ViajeChoferService viajeChoferService;
+    private final ControlAcceso controlAcceso;
 
     /**
      * Obtiene el viaje del día del chofer con lista de pasajeros
@@ -41,6 +44,20 @@ public class ViajeChoferController {
         return ResponseEntity.ok(viaje);
     }
 
+    /**
+     * Marca el viaje en terminal (cambia estado a EN_TERMINAL) y prepara el manifiesto de pasajeros.
+     * Solo el chofer asignado al viaje
+     * 
+     * POST /api/chofer/viaje/{viajeId}/en-terminal
+     */
+    @PostMapping("/viaje/{viajeId}/en-terminal")
+    public ResponseEntity<ViajeOperacionResponse> marcarEnTerminal(@PathVariable Long viajeId,
+                                                                   HttpServletRequest httpRequest) {
+        controlAcceso.requerirChoferDelViaje(httpRequest, viajeId);
+        ViajeOperacionResponse response = viajeChoferService.marcarEnTerminal(viajeId);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Inicia un viaje (cambia estado a EN_RUTA)
      * 
@@ -0,0 +1,30 @@
+package com.andinobus.backendsmartcode.operacion.application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Métricas de la cola de ingesta asíncrona de posiciones GPS
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IngestaPosicionStatsDTO {
+
+    private boolean asincrona;
+    private int capacidadCola;
+    private int profundidadCola;
+    private long posicionesAceptadas;
+    private long posicionesRechazadas;
+    private long posicionesPersistidas;
+    private long posicionesDescartadas;
+    private long lotesEscritos;
+    private int ultimoTamanoLote;
+    private double promedioTamanoLote;
+    private double ultimaLatenciaFlushMs;
+    private double maximaLatenciaFlushMs;
+    private double promedioLatenciaFlushMs;
+}
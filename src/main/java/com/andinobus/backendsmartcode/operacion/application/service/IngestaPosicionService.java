@@ -0,0 +1,253 @@
+package com.andinobus.backendsmartcode.operacion.application.service;
+
+import com.andinobus.backendsmartcode.operacion.application.dto.IngestaPosicionStatsDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cola acotada de posiciones GPS pendientes de escritura.
+ *
+ * Los pings del chofer se encolan y un hilo escritor los vacía en lotes:
+ * un INSERT por lotes sobre posicion_viaje y un único UPDATE de la posición
+ * actual por viaje (se conserva solo la última posición de cada viaje del lote).
+ * Si la cola está llena el ping se rechaza para que la app reintente.
+ */
+@Service
+@Slf4j
+public class IngestaPosicionService {
+
+    private static final String SQL_INSERT_POSICION =
+            "INSERT INTO posicion_viaje (viaje_id, latitud, longitud, velocidad_kmh, precision, timestamp, provider, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_UPDATE_POSICION_ACTUAL =
+            "UPDATE viaje SET latitud_actual = ?, longitud_actual = ?, ultima_actualizacion = ?, updated_at = ? " +
+            "WHERE id = ? AND (ultima_actualizacion IS NULL OR ultima_actualizacion <= ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.tracking.ingesta.asincrona:true}")
+    private boolean asincrona;
+
+    @Value("${app.tracking.ingesta.capacidad-cola:20000}")
+    private int capacidadCola;
+
+    @Value("${app.tracking.ingesta.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${app.tracking.ingesta.intervalo-flush-ms:200}")
+    private long intervaloFlushMs;
+
+    @Value("${app.tracking.ingesta.espera-encolado-ms:50}")
+    private long esperaEncoladoMs;
+
+    private BlockingQueue<PosicionPendiente> cola;
+    private Thread escritor;
+    private volatile boolean corriendo;
+
+    // Métricas
+    private final AtomicLong aceptadas = new AtomicLong();
+    private final AtomicLong rechazadas = new AtomicLong();
+    private final AtomicLong persistidas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong nanosFlushTotal = new AtomicLong();
+    private volatile int ultimoTamanoLote;
+    private volatile long ultimaLatenciaFlushNanos;
+    private volatile long maximaLatenciaFlushNanos;
+
+    public IngestaPosicionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Posición validada a la espera de ser persistida
+     */
+    public record PosicionPendiente(
+            Long viajeId,
+            Double latitud,
+            Double longitud,
+            Double velocidadKmh,
+            Double precision,
+            LocalDateTime timestamp,
+            String provider,
+            LocalDateTime recibidaEn
+    ) {
+    }
+
+    @PostConstruct
+    void iniciar() {
+        if (!asincrona) {
+            log.info("Ingesta de posiciones en modo síncrono");
+            return;
+        }
+        cola = new ArrayBlockingQueue<>(capacidadCola);
+        corriendo = true;
+        escritor = new Thread(this::ejecutarEscritor, "posicion-ingesta-writer");
+        escritor.setDaemon(true);
+        escritor.start();
+        log.info("Ingesta asíncrona de posiciones iniciada: cola={}, lote={}, flush={}ms",
+                capacidadCola, tamanoLote, intervaloFlushMs);
+    }
+
+    @PreDestroy
+    void detener() {
+        if (escritor == null) {
+            return;
+        }
+        corriendo = false;
+        escritor.interrupt();
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Vaciar lo que quede antes de apagar
+        List<PosicionPendiente> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        for (int i = 0; i < restantes.size(); i += tamanoLote) {
+            escribirLote(restantes.subList(i, Math.min(i + tamanoLote, restantes.size())));
+        }
+        log.info("Ingesta de posiciones detenida");
+    }
+
+    public boolean isAsincrona() {
+        return asincrona;
+    }
+
+    /**
+     * Encola una posición ya validada. Devuelve false si la cola sigue llena
+     * después de la espera configurada (back-pressure).
+     */
+    public boolean encolar(PosicionPendiente posicion) {
+        try {
+            if (cola.offer(posicion, esperaEncoladoMs, TimeUnit.MILLISECONDS)) {
+                aceptadas.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rechazadas.incrementAndGet();
+        return false;
+    }
+
+    private void ejecutarEscritor() {
+        List<PosicionPendiente> lote = new ArrayList<>(tamanoLote);
+        while (corriendo) {
+            try {
+                PosicionPendiente primera = cola.poll(intervaloFlushMs, TimeUnit.MILLISECONDS);
+                if (primera == null) {
+                    continue;
+                }
+                lote.add(primera);
+                cola.drainTo(lote, tamanoLote - 1);
+                escribirLote(lote);
+            } catch (InterruptedException e) {
+                if (!corriendo) {
+                    break;
+                }
+            } catch (Exception e) {
+                log.error("Error inesperado en el escritor de posiciones: {}", e.getMessage(), e);
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void escribirLote(List<PosicionPendiente> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+
+        // Solo la última posición de cada viaje actualiza el viaje
+        Map<Long, PosicionPendiente> ultimaPorViaje = new LinkedHashMap<>();
+        for (PosicionPendiente p : lote) {
+            PosicionPendiente actual = ultimaPorViaje.get(p.viajeId());
+            if (actual == null || !p.timestamp().isBefore(actual.timestamp())) {
+                ultimaPorViaje.put(p.viajeId(), p);
+            }
+        }
+        List<PosicionPendiente> actualizaciones = new ArrayList<>(ultimaPorViaje.values());
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(SQL_INSERT_POSICION, lote, lote.size(), (ps, p) -> {
+                    ps.setLong(1, p.viajeId());
+                    ps.setDouble(2, p.latitud());
+                    ps.setDouble(3, p.longitud());
+                    ps.setObject(4, p.velocidadKmh(), Types.DOUBLE);
+                    ps.setObject(5, p.precision(), Types.DOUBLE);
+                    ps.setTimestamp(6, Timestamp.valueOf(p.timestamp()));
+                    ps.setString(7, p.provider());
+                    ps.setTimestamp(8, Timestamp.valueOf(p.recibidaEn()));
+                });
+                jdbcTemplate.batchUpdate(SQL_UPDATE_POSICION_ACTUAL, actualizaciones, actualizaciones.size(), (ps, p) -> {
+                    Timestamp recibida = Timestamp.valueOf(p.recibidaEn());
+                    ps.setDouble(1, p.latitud());
+                    ps.setDouble(2, p.longitud());
+                    ps.setTimestamp(3, recibida);
+                    ps.setTimestamp(4, recibida);
+                    ps.setLong(5, p.viajeId());
+                    ps.setTimestamp(6, recibida);
+                });
+            });
+            persistidas.addAndGet(lote.size());
+        } catch (Exception e) {
+            descartadas.addAndGet(lote.size());
+            log.error("No se pudo persistir un lote de {} posiciones: {}", lote.size(), e.getMessage());
+        }
+
+        long duracion = System.nanoTime() - inicio;
+        lotes.incrementAndGet();
+        nanosFlushTotal.addAndGet(duracion);
+        ultimoTamanoLote = lote.size();
+        ultimaLatenciaFlushNanos = duracion;
+        if (duracion > maximaLatenciaFlushNanos) {
+            maximaLatenciaFlushNanos = duracion;
+        }
+        log.debug("Lote de {} posiciones ({} viajes) escrito en {} ms",
+                lote.size(), actualizaciones.size(), duracion / 1_000_000.0);
+    }
+
+    public IngestaPosicionStatsDTO obtenerEstadisticas() {
+        long totalLotes = lotes.get();
+        long totalEscritas = persistidas.get() + descartadas.get();
+        return IngestaPosicionStatsDTO.builder()
+                .asincrona(asincrona)
+                .capacidadCola(asincrona ? capacidadCola : 0)
+                .profundidadCola(cola != null ? cola.size() : 0)
+                .posicionesAceptadas(aceptadas.get())
+                .posicionesRechazadas(rechazadas.get())
+                .posicionesPersistidas(persistidas.get())
+                .posicionesDescartadas(descartadas.get())
+                .lotesEscritos(totalLotes)
+                .ultimoTamanoLote(ultimoTamanoLote)
+                .promedioTamanoLote(totalLotes > 0 ? (double) totalEscritas / totalLotes : 0)
+                .ultimaLatenciaFlushMs(ultimaLatenciaFlushNanos / 1_000_000.0)
+                .maximaLatenciaFlushMs(maximaLatenciaFlushNanos / 1_000_000.0)
+                .promedioLatenciaFlushMs(totalLotes > 0 ? nanosFlushTotal.get() / 1_000_000.0 / totalLotes : 0)
+                .build();
+    }
+}
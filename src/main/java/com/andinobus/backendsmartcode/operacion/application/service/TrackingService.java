@@ -1,18 +1,24 @@
 package com.andinobus.backendsmartcode.operacion.application.service;
 
+import com.andinobus.backendsmartcode.common.errors.ServiceUnavailableException;
 import com.andinobus.backendsmartcode.operacion.application.dto.ActualizarPosicionRequest;
 import com.andinobus.backendsmartcode.operacion.application.dto.PosicionViajeDTO;
 import com.andinobus.backendsmartcode.operacion.domain.PosicionViaje;
 import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
 import com.andinobus.backendsmartcode.operacion.infrastructure.repositories.PosicionViajeRepository;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
+import com.andinobus.backendsmartcode.tracking.domain.services.FlotaEnVivoStore;
+import com.andinobus.backendsmartcode.tracking.domain.services.ViajeTrackingQueryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,6 +28,110 @@ public class TrackingService {
 
     private final ViajeRepository viajeRepository;
     private final PosicionViajeRepository posicionViajeRepository;
+    private final IngestaPosicionService ingestaPosicionService;
+    private final FlotaEnVivoStore flotaEnVivoStore;
+    private final ViajeTrackingQueryService viajeTrackingQueryService;
+
+    /**
+     * Viajes EN_CURSO ya validados (viajeId → chofer y momento de la validación), para no releer el
+     * viaje en cada ping. Las entradas vencen tras permisoTtlMs y se descartan cuando el viaje termina
+     * o cambia de chofer; ante una entrada vencida o que no coincide se vuelve a consultar la BD.
+     */
+    private final Map<Long, ViajeValidado> viajesEnCurso = new ConcurrentHashMap<>();
+
+    @Value("${app.tracking.permisos.ttl-ms:60000}")
+    private long permisoTtlMs;
+
+    private record ViajeValidado(Long choferId, long validadoEn) {
+    }
+
+    /**
+     * Registra un ping GPS del chofer.
+     * En modo asíncrono solo valida el viaje, encola la posición y responde de inmediato;
+     * la escritura en BD la hace IngestaPosicionService por lotes.
+     */
+    public PosicionViajeDTO registrarPosicion(Long viajeId, ActualizarPosicionRequest request) {
+        if (!ingestaPosicionService.isAsincrona()) {
+            return actualizarPosicion(viajeId, request);
+        }
+
+        if (validado(viajeId) == null) {
+            validarViajeEnCurso(viajeId);
+        }
+
+        boolean encolada = ingestaPosicionService.encolar(new IngestaPosicionService.PosicionPendiente(
+                viajeId,
+                request.getLatitud(),
+                request.getLongitud(),
+                request.getVelocidadKmh(),
+                request.getPrecision(),
+                request.getTimestamp(),
+                request.getProvider(),
+                LocalDateTime.now()
+        ));
+        if (!encolada) {
+            throw new ServiceUnavailableException("Cola de posiciones saturada, reintente en unos segundos");
+        }
+        flotaEnVivoStore.actualizarPosicion(viajeId, request.getLatitud(), request.getLongitud(),
+                request.getVelocidadKmh(), LocalDateTime.now());
+
+        return PosicionViajeDTO.builder()
+                .viajeId(viajeId)
+                .latitud(request.getLatitud())
+                .longitud(request.getLongitud())
+                .velocidadKmh(request.getVelocidadKmh())
+                .precision(request.getPrecision())
+                .timestamp(request.getTimestamp())
+                .provider(request.getProvider())
+                .build();
+    }
+
+    /**
+     * Verifica que el viaje acepte posiciones (iniciándolo si está PROGRAMADO)
+     * y lo registra como EN_CURSO validado
+     */
+    private void validarViajeEnCurso(Long viajeId) {
+        Viaje viaje = viajeRepository.findById(viajeId)
+                .orElseThrow(() -> new RuntimeException("Viaje no encontrado: " + viajeId));
+
+        if (!viaje.isEnCurso() && !"PROGRAMADO".equals(viaje.getEstado())) {
+            throw new RuntimeException("El viaje no está en curso");
+        }
+
+        if ("PROGRAMADO".equals(viaje.getEstado())) {
+            viaje.setEstado("EN_CURSO");
+            viaje.setHoraInicioReal(LocalDateTime.now());
+            viajeRepository.save(viaje);
+            notificarCambioEstado(viaje);
+            log.info("Viaje {} iniciado automáticamente", viajeId);
+        }
+
+        if (viaje.getChofer() != null) {
+            viajesEnCurso.put(viajeId, new ViajeValidado(viaje.getChofer().getId(), System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Entrada vigente del viaje validado, o null si no existe o venció
+     */
+    private ViajeValidado validado(Long viajeId) {
+        ViajeValidado entrada = viajesEnCurso.get(viajeId);
+        if (entrada == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entrada.validadoEn() > permisoTtlMs) {
+            viajesEnCurso.remove(viajeId, entrada);
+            return null;
+        }
+        return entrada;
+    }
+
+    /**
+     * Descarta la validación en memoria del viaje (finalizado, cancelado o con otro chofer)
+     */
+    public void olvidarViaje(Long viajeId) {
+        viajesEnCurso.remove(viajeId);
+    }
 
     /**
      * Actualiza la posición GPS de un viaje en curso
@@ -40,9 +150,11 @@ public class TrackingService {
         }
 
         // Si el viaje está PROGRAMADO, iniciar el viaje automáticamente
+        boolean iniciado = false;
         if ("PROGRAMADO".equals(viaje.getEstado())) {
             viaje.setEstado("EN_CURSO");
             viaje.setHoraInicioReal(LocalDateTime.now());
+            iniciado = true;
             log.info("Viaje {} iniciado automáticamente", viajeId);
         }
 
@@ -62,6 +174,12 @@ public class TrackingService {
         viaje.actualizarPosicion(request.getLatitud(), request.getLongitud());
         viajeRepository.save(viaje);
 
+        if (iniciado) {
+            notificarCambioEstado(viaje);
+        }
+        flotaEnVivoStore.actualizarPosicion(viajeId, request.getLatitud(), request.getLongitud(),
+                request.getVelocidadKmh(), viaje.getUltimaActualizacion());
+
         log.info("Posición actualizada para viaje {}", viajeId);
         return PosicionViajeDTO.fromEntity(posicion);
     }
@@ -109,6 +227,7 @@ public class TrackingService {
         viaje.setEstado("EN_CURSO");
         viaje.setHoraInicioReal(LocalDateTime.now());
         viajeRepository.save(viaje);
+        notificarCambioEstado(viaje);
 
         log.info("Viaje {} iniciado manualmente", viajeId);
     }
@@ -128,16 +247,43 @@ public class TrackingService {
         viaje.setEstado("FINALIZADO");
         viaje.setHoraFinReal(LocalDateTime.now());
         viajeRepository.save(viaje);
+        viajesEnCurso.remove(viajeId);
+        notificarCambioEstado(viaje);
 
         log.info("Viaje {} finalizado", viajeId);
     }
 
+    /**
+     * Propaga una transición de estado a la flota en vivo
+     */
+    private void notificarCambioEstado(Viaje viaje) {
+        if (flotaEnVivoStore.contiene(viaje.getId()) || !FlotaEnVivoStore.esEstadoActivo(viaje.getEstado())) {
+            flotaEnVivoStore.actualizarEstado(viaje.getId(), viaje.getEstado(), viaje.getHoraInicioReal());
+        } else {
+            viajeTrackingQueryService.registrarEnFlota(viaje.getId());
+        }
+    }
+
     /**
      * Verifica si el chofer tiene permiso para actualizar este viaje
      */
     public boolean choferTienePermisoParaViaje(Long viajeId, Long choferId) {
-        return viajeRepository.findById(viajeId)
-                .map(viaje -> viaje.getChofer() != null && viaje.getChofer().getId().equals(choferId))
-                .orElse(false);
+        ViajeValidado entrada = validado(viajeId);
+        if (entrada != null && entrada.choferId().equals(choferId)) {
+            return true;
+        }
+        // Sin entrada vigente o con otro chofer: la BD decide (el viaje pudo reasignarse)
+        Viaje viaje = viajeRepository.findById(viajeId).orElse(null);
+        if (viaje == null || viaje.getChofer() == null) {
+            olvidarViaje(viajeId);
+            return false;
+        }
+        Long choferActual = viaje.getChofer().getId();
+        if (viaje.isEnCurso()) {
+            viajesEnCurso.put(viajeId, new ViajeValidado(choferActual, System.currentTimeMillis()));
+        } else {
+            olvidarViaje(viajeId);
+        }
+        return choferActual.equals(choferId);
     }
 }
@@ -0,0 +1,323 @@
+package com.andinobus.backendsmartcode.operacion.application.services;
+
+import com.andinobus.backendsmartcode.catalogos.domain.entities.AsientoLayout;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.AsientoLayoutRepository;
+import com.andinobus.backendsmartcode.common.cache.CacheAcotada;
+import com.andinobus.backendsmartcode.common.errors.NotFoundException;
+import com.andinobus.backendsmartcode.common.transacciones.Transacciones;
+import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
+import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Mapa de asientos por viaje en memoria, para servir el selector de asientos sin consultar la BD.
+ *
+ * Cada viaje guarda su layout inmutable (número, tipo, fila, columna y piso por posición) y un
+ * BitSet por estado indexado por esa posición. Los servicios que cambian asientos llaman a
+ * marcar/invalidar y el cambio se aplica al confirmarse la transacción. La caché está acotada
+ * (LRU) y cada entrada vence tras ttlMs para corregir cualquier desfase con la BD.
+ */
+@Component
+@Slf4j
+public class MapaAsientosCache {
+
+    public static final String DISPONIBLE = "DISPONIBLE";
+    public static final String RESERVADO = "RESERVADO";
+    public static final String VENDIDO = "VENDIDO";
+    public static final String BLOQUEADO = "BLOQUEADO";
+    public static final String DESHABILITADO = "DESHABILITADO";
+
+    private static final int FRANJAS = 64;
+
+    private final ViajeRepository viajeRepository;
+    private final ViajeAsientoRepository viajeAsientoRepository;
+    private final AsientoLayoutRepository asientoLayoutRepository;
+
+    @Value("${app.ventas.mapa-asientos.max-viajes:5000}")
+    private int maxViajes;
+
+    @Value("${app.ventas.mapa-asientos.ttl-ms:60000}")
+    private long ttlMs;
+
+    private final CacheAcotada<Long, MapaAsientos> mapas = CacheAcotada.porEntradas(() -> maxViajes, () -> ttlMs);
+
+    private final CacheAcotada<ClaveFrecuencia, Long> viajesPorFrecuencia = CacheAcotada.porEntradas(() -> maxViajes);
+
+    /**
+     * Versión por franja de viajes: una carga desde BD solo se guarda si ningún cambio
+     * confirmado tocó su franja mientras se leía
+     */
+    private final AtomicLongArray versiones = new AtomicLongArray(FRANJAS);
+
+    public MapaAsientosCache(ViajeRepository viajeRepository,
+                             ViajeAsientoRepository viajeAsientoRepository,
+                             AsientoLayoutRepository asientoLayoutRepository) {
+        this.viajeRepository = viajeRepository;
+        this.viajeAsientoRepository = viajeAsientoRepository;
+        this.asientoLayoutRepository = asientoLayoutRepository;
+    }
+
+    /**
+     * Estado de un asiento tal como lo ve el selector
+     */
+    public record AsientoEstado(
+            String numeroAsiento,
+            String tipoAsiento,
+            String estado,
+            Integer fila,
+            Integer columna,
+            Integer piso
+    ) {
+    }
+
+    private record ClaveFrecuencia(Long frecuenciaViajeId, LocalDate fecha) {
+    }
+
+    /**
+     * Asientos del viaje en el orden del layout (número ascendente); vacío si el bus no tiene layout
+     */
+    public List<AsientoEstado> obtener(Long viajeId) {
+        return obtenerMapa(viajeId).vista();
+    }
+
+    /**
+     * Igual que obtener, pero solo si el viaje ya está en memoria; null en caso contrario
+     */
+    public List<AsientoEstado> obtenerSiCargado(Long viajeId) {
+        MapaAsientos mapa = mapas.obtener(viajeId);
+        return mapa != null ? mapa.vista() : null;
+    }
+
+    /**
+     * Grupos de cantidad asientos DISPONIBLE contiguos (mismo piso y fila, columnas consecutivas),
+     * opcionalmente limitados a un piso
+     */
+    public List<List<String>> buscarContiguos(Long viajeId, int cantidad, Integer piso) {
+        return obtenerMapa(viajeId).contiguos(cantidad, piso);
+    }
+
+    public Long viajeDeFrecuencia(Long frecuenciaViajeId, LocalDate fecha) {
+        return viajesPorFrecuencia.obtener(new ClaveFrecuencia(frecuenciaViajeId, fecha));
+    }
+
+    public void recordarViajeDeFrecuencia(Long frecuenciaViajeId, LocalDate fecha, Long viajeId) {
+        viajesPorFrecuencia.guardar(new ClaveFrecuencia(frecuenciaViajeId, fecha), viajeId);
+    }
+
+    /**
+     * Cambia el estado de los asientos indicados al confirmarse la transacción en curso.
+     * Los números que no están en el layout se ignoran
+     */
+    public void marcar(Long viajeId, Collection<String> numeros, String estado) {
+        if (viajeId == null || numeros == null || numeros.isEmpty()) {
+            return;
+        }
+        List<String> copia = List.copyOf(numeros);
+        Transacciones.alConfirmar(() -> {
+            versiones.incrementAndGet(franja(viajeId));
+            MapaAsientos mapa = mapas.obtener(viajeId);
+            if (mapa != null) {
+                mapa.marcar(copia, estado);
+            }
+        });
+    }
+
+    /**
+     * Descarta el mapa del viaje (p. ej. al crear sus asientos) para que se recargue
+     */
+    public void invalidar(Long viajeId) {
+        Transacciones.alConfirmar(() -> {
+            versiones.incrementAndGet(franja(viajeId));
+            mapas.quitar(viajeId);
+        });
+    }
+
+    /**
+     * Descarta los mapas de los viajes de un bus cuyo layout cambió
+     */
+    public void invalidarBus(Long busId) {
+        Transacciones.alConfirmar(() -> {
+            for (int i = 0; i < FRANJAS; i++) {
+                versiones.incrementAndGet(i);
+            }
+            mapas.quitarSi(m -> busId.equals(m.busId));
+        });
+    }
+
+    private MapaAsientos obtenerMapa(Long viajeId) {
+        MapaAsientos mapa = mapas.obtener(viajeId);
+        if (mapa != null) {
+            return mapa;
+        }
+        int franja = franja(viajeId);
+        long version = versiones.get(franja);
+        mapa = cargar(viajeId);
+        synchronized (mapas) {
+            if (versiones.get(franja) == version) {
+                mapas.guardar(viajeId, mapa);
+            }
+        }
+        return mapa;
+    }
+
+    private MapaAsientos cargar(Long viajeId) {
+        Viaje viaje = viajeRepository.findById(viajeId)
+                .orElseThrow(() -> new NotFoundException("Viaje no encontrado"));
+        Long busId = viaje.getBus().getId();
+        List<AsientoLayout> layout = asientoLayoutRepository.findByBusIdOrderByNumeroAsientoAsc(busId);
+        List<ViajeAsiento> asientos = layout.isEmpty() ? List.of() : viajeAsientoRepository.findByViajeId(viajeId);
+        log.debug("Mapa de asientos cargado para viaje {}: {} posiciones", viajeId, layout.size());
+        return new MapaAsientos(busId, layout, asientos);
+    }
+
+    private static int franja(Long viajeId) {
+        return Long.hashCode(viajeId) & (FRANJAS - 1);
+    }
+
+    /**
+     * Estado compacto de un viaje: layout inmutable y un BitSet por estado indexado por posición
+     */
+    private static final class MapaAsientos {
+        private final Long busId;
+
+        private final String[] numeros;
+        private final String[] tipos;
+        private final int[] filas;
+        private final int[] columnas;
+        private final int[] pisos;
+        private final Map<String, Integer> posiciones;
+        /** Posición del asiento a la derecha (misma fila y piso, columna + 1) o -1 */
+        private final int[] derecha;
+        private final BitSet habilitados;
+
+        private final BitSet disponibles;
+        private final BitSet reservados;
+        private final BitSet vendidos;
+        private final BitSet bloqueados;
+
+        private MapaAsientos(Long busId, List<AsientoLayout> layout, List<ViajeAsiento> asientos) {
+            this.busId = busId;
+            int n = layout.size();
+            numeros = new String[n];
+            tipos = new String[n];
+            filas = new int[n];
+            columnas = new int[n];
+            pisos = new int[n];
+            derecha = new int[n];
+            posiciones = new HashMap<>(n * 2);
+            habilitados = new BitSet(n);
+            disponibles = new BitSet(n);
+            reservados = new BitSet(n);
+            vendidos = new BitSet(n);
+            bloqueados = new BitSet(n);
+
+            Map<Long, Integer> porCelda = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i++) {
+                AsientoLayout a = layout.get(i);
+                numeros[i] = String.valueOf(a.getNumeroAsiento());
+                tipos[i] = a.getTipoAsiento();
+                filas[i] = a.getFila() != null ? a.getFila() : 0;
+                columnas[i] = a.getColumna() != null ? a.getColumna() : 0;
+                pisos[i] = a.getPiso() != null ? a.getPiso() : 1;
+                posiciones.put(numeros[i], i);
+                porCelda.putIfAbsent(celda(pisos[i], filas[i], columnas[i]), i);
+                if (Boolean.TRUE.equals(a.getHabilitado())) {
+                    habilitados.set(i);
+                    // Sin ViajeAsiento el asiento habilitado se considera disponible
+                    disponibles.set(i);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                derecha[i] = porCelda.getOrDefault(celda(pisos[i], filas[i], columnas[i] + 1), -1);
+            }
+            for (ViajeAsiento va : asientos) {
+                Integer pos = posiciones.get(va.getNumeroAsiento());
+                if (pos != null && habilitados.get(pos)) {
+                    fijar(pos, va.getEstado());
+                }
+            }
+        }
+
+        private static long celda(int piso, int fila, int columna) {
+            return ((long) piso << 42) | ((long) fila << 21) | (columna & 0x1FFFFF);
+        }
+
+        private synchronized void marcar(List<String> numerosAsiento, String estado) {
+            for (String numero : numerosAsiento) {
+                Integer pos = posiciones.get(numero);
+                if (pos != null && habilitados.get(pos)) {
+                    fijar(pos, estado);
+                }
+            }
+        }
+
+        private void fijar(int pos, String estado) {
+            disponibles.clear(pos);
+            reservados.clear(pos);
+            vendidos.clear(pos);
+            bloqueados.clear(pos);
+            switch (estado != null ? estado : DISPONIBLE) {
+                case DISPONIBLE -> disponibles.set(pos);
+                case RESERVADO -> reservados.set(pos);
+                case VENDIDO -> vendidos.set(pos);
+                default -> bloqueados.set(pos);
+            }
+        }
+
+        private String estado(int pos) {
+            if (!habilitados.get(pos)) {
+                return DESHABILITADO;
+            }
+            if (disponibles.get(pos)) {
+                return DISPONIBLE;
+            }
+            if (reservados.get(pos)) {
+                return RESERVADO;
+            }
+            if (vendidos.get(pos)) {
+                return VENDIDO;
+            }
+            return BLOQUEADO;
+        }
+
+        private synchronized List<AsientoEstado> vista() {
+            List<AsientoEstado> vista = new ArrayList<>(numeros.length);
+            for (int i = 0; i < numeros.length; i++) {
+                vista.add(new AsientoEstado(numeros[i], tipos[i], estado(i), filas[i], columnas[i], pisos[i]));
+            }
+            return vista;
+        }
+
+        private synchronized List<List<String>> contiguos(int cantidad, Integer piso) {
+            List<List<String>> grupos = new ArrayList<>();
+            for (int i = disponibles.nextSetBit(0); i >= 0; i = disponibles.nextSetBit(i + 1)) {
+                if (piso != null && pisos[i] != piso) {
+                    continue;
+                }
+                List<String> grupo = new ArrayList<>(cantidad);
+                int pos = i;
+                while (pos >= 0 && disponibles.get(pos) && grupo.size() < cantidad) {
+                    grupo.add(numeros[pos]);
+                    pos = derecha[pos];
+                }
+                if (grupo.size() == cantidad) {
+                    grupos.add(grupo);
+                }
+            }
+            return grupos;
+        }
+    }
+}
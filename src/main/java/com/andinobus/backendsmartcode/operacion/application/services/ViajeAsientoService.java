@@ -13,6 +13,7 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,6 +25,7 @@ public class ViajeAsientoService {
     private final ViajeAsientoRepository viajeAsientoRepository;
     private final ViajeRepository viajeRepository;
     private final AsientoLayoutRepository asientoLayoutRepository;
+    private final MapaAsientosCache mapaAsientosCache;
 
     /**
      * Inicializa los asientos de un viaje basándose en el layout del bus asignado.
@@ -63,6 +65,7 @@ public class ViajeAsientoService {
                 .collect(Collectors.toList());
 
         viajeAsientoRepository.saveAll(viajeAsientos);
+        mapaAsientosCache.invalidar(viajeId);
         log.info("Inicializados {} asientos para el viaje {}", viajeAsientos.size(), viajeId);
     }
 
@@ -112,6 +115,7 @@ public class ViajeAsientoService {
         // Marcar como reservados
         asientos.forEach(asiento -> asiento.setEstado("RESERVADO"));
         viajeAsientoRepository.saveAll(asientos);
+        mapaAsientosCache.marcar(viajeId, numerosAsiento, "RESERVADO");
 
         log.info("Reservados {} asientos para el viaje {}", asientos.size(), viajeId);
     }
@@ -122,15 +126,18 @@ public class ViajeAsientoService {
     @Transactional
     public void liberarAsientos(Long viajeId, List<String> numerosAsiento) {
         List<ViajeAsiento> asientos = viajeAsientoRepository.findByViajeIdAndNumeroAsientoIn(viajeId, numerosAsiento);
+        List<String> liberados = new ArrayList<>();
 
         asientos.forEach(asiento -> {
             if ("RESERVADO".equals(asiento.getEstado())) {
                 asiento.setEstado("DISPONIBLE");
                 asiento.setReserva(null);
+                liberados.add(asiento.getNumeroAsiento());
             }
         });
 
         viajeAsientoRepository.saveAll(asientos);
+        mapaAsientosCache.marcar(viajeId, liberados, "DISPONIBLE");
         log.info("Liberados {} asientos del viaje {}", asientos.size(), viajeId);
     }
 
@@ -143,6 +150,7 @@ public class ViajeAsientoService {
 
         asientos.forEach(asiento -> asiento.setEstado("VENDIDO"));
         viajeAsientoRepository.saveAll(asientos);
+        mapaAsientosCache.marcar(viajeId, asientos.stream().map(ViajeAsiento::getNumeroAsiento).toList(), "VENDIDO");
 
         log.info("Confirmados {} asientos como vendidos para el viaje {}", asientos.size(), viajeId);
     }
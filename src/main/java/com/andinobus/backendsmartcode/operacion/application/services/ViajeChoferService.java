@@ -4,20 +4,21 @@ import com.andinobus.backendsmartcode.admin.domain.entities.FrecuenciaViaje;
 import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeRepository;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.BusChofer;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.Frecuencia;
+import com.andinobus.backendsmartcode.catalogos.application.services.TerminalResolver;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
-import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusChoferRepository;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.FrecuenciaRepository;
 import com.andinobus.backendsmartcode.cooperativa.domain.entities.UsuarioCooperativa;
+import com.andinobus.backendsmartcode.embarque.application.services.ManifiestoViaje;
 import com.andinobus.backendsmartcode.cooperativa.infrastructure.repositories.UsuarioCooperativaRepository;
 import com.andinobus.backendsmartcode.operacion.api.dto.ViajeChoferDtos.*;
+import com.andinobus.backendsmartcode.operacion.application.service.TrackingService;
 import com.andinobus.backendsmartcode.operacion.domain.entities.CalificacionViaje;
 import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
-import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.CalificacionViajeRepository;
-import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
 import com.andinobus.backendsmartcode.common.errors.NotFoundException;
+import com.andinobus.backendsmartcode.tracking.domain.services.FlotaEnVivoStore;
 import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
 import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
 import lombok.RequiredArgsConstructor;
@@ -28,9 +29,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -39,15 +42,17 @@ import java.util.stream.Collectors;
 public class ViajeChoferService {
 
     private final ViajeRepository viajeRepository;
-    private final ViajeAsientoRepository viajeAsientoRepository;
     private final ReservaRepository reservaRepository;
     private final CalificacionViajeRepository calificacionViajeRepository;
     private final UsuarioCooperativaRepository usuarioCooperativaRepository;
     private final FrecuenciaRepository frecuenciaRepository;
     private final FrecuenciaViajeRepository frecuenciaViajeRepository;
-    private final TerminalRepository terminalRepository;
+    private final TerminalResolver terminalResolver;
     private final NotificacionViajeService notificacionViajeService;
     private final BusChoferRepository busChoferRepository;
+    private final FlotaEnVivoStore flotaEnVivoStore;
+    private final ManifiestoViaje manifiestoViaje;
+    private final TrackingService trackingService;
 
     /**
      * Obtiene el viaje del día del chofer con lista de pasajeros
@@ -138,6 +143,7 @@ public class ViajeChoferService {
                             if (chofer != null) {
                                 viajeDisponible.setChofer(chofer);
                                 viajeRepository.save(viajeDisponible);
+                                trackingService.olvidarViaje(viajeDisponible.getId());
                                 log.info("Chofer {} asignado automáticamente al viaje {} del bus {}", 
                                         choferId, viajeDisponible.getId(), busId);
                             }
@@ -302,6 +308,32 @@ public class ViajeChoferService {
                 .build();
     }
 
+    /**
+     * El bus llegó al andén (cambia estado a EN_TERMINAL) y se materializa el manifiesto de pasajeros
+     */
+    @Transactional
+    public ViajeOperacionResponse marcarEnTerminal(Long viajeId) {
+        Viaje viaje = viajeRepository.findById(viajeId)
+                .orElseThrow(() -> new RuntimeException("Viaje no encontrado"));
+
+        if (!viaje.isProgramado()) {
+            throw new RuntimeException("El viaje no está en estado PROGRAMADO. Estado actual: " + viaje.getEstado());
+        }
+
+        viaje.setEstado("EN_TERMINAL");
+        viajeRepository.save(viaje);
+        flotaEnVivoStore.actualizarEstado(viajeId, "EN_TERMINAL", null);
+
+        ManifiestoViaje.Manifiesto manifiesto = manifiestoViaje.materializar(viajeId);
+        log.info("Viaje {} en terminal. Manifiesto con {} asientos ocupados", viajeId, manifiesto.asientos().size());
+
+        return ViajeOperacionResponse.builder()
+                .viajeId(viajeId)
+                .estado("EN_TERMINAL")
+                .mensaje("Viaje en terminal, embarque habilitado")
+                .build();
+    }
+
     /**
      * Inicia un viaje (cambia estado a EN_RUTA y registra hora de salida real)
      */
@@ -310,8 +342,8 @@ public class ViajeChoferService {
         Viaje viaje = viajeRepository.findById(viajeId)
                 .orElseThrow(() -> new RuntimeException("Viaje no encontrado"));
 
-        if (!"PROGRAMADO".equals(viaje.getEstado())) {
-            throw new RuntimeException("El viaje no está en estado PROGRAMADO. Estado actual: " + viaje.getEstado());
+        if (!viaje.isProgramado() && !viaje.isEnTerminal()) {
+            throw new RuntimeException("El viaje no está en estado PROGRAMADO ni EN_TERMINAL. Estado actual: " + viaje.getEstado());
         }
 
         // Validar que el viaje sea del día actual (no de días futuros)
@@ -341,6 +373,7 @@ public class ViajeChoferService {
         viaje.setEstado("EN_RUTA");
         viaje.setHoraSalidaReal(request.getHoraSalidaReal() != null ? request.getHoraSalidaReal() : LocalTime.now());
         viajeRepository.save(viaje);
+        flotaEnVivoStore.actualizarEstado(viajeId, "EN_RUTA", null);
 
         // Notificar a la cooperativa
         try {
@@ -379,6 +412,8 @@ public class ViajeChoferService {
         }
         
         viajeRepository.save(viaje);
+        flotaEnVivoStore.actualizarEstado(viajeId, "COMPLETADO", null);
+        trackingService.olvidarViaje(viajeId);
 
         // Notificar a la cooperativa
         try {
@@ -475,34 +510,29 @@ public class ViajeChoferService {
     private ViajeChoferResponse buildViajeChoferResponse(Viaje viaje) {
         log.info("Construyendo respuesta para viaje ID={}", viaje.getId());
         
-        // Obtener todas las reservas del viaje (PAGADO y PENDIENTE activas)
-        List<Reserva> reservas = reservaRepository.findActiveByViajeId(viaje.getId());
-        log.info("Viaje {} tiene {} reservas activas", viaje.getId(), reservas.size());
-        
-        // Obtener asientos del viaje
-        List<ViajeAsiento> asientos = viajeAsientoRepository.findByViajeId(viaje.getId());
-        log.info("Viaje {} tiene {} asientos registrados", viaje.getId(), asientos.size());
-        
-        // Agrupar asientos por reserva
-        Map<Long, List<String>> asientosPorReserva = asientos.stream()
-                .filter(a -> a.getReserva() != null)
-                .collect(Collectors.groupingBy(
-                        a -> a.getReserva().getId(),
-                        Collectors.mapping(ViajeAsiento::getNumeroAsiento, Collectors.toList())
-                ));
-        
-        // Construir lista de pasajeros
-        List<PasajeroViaje> pasajeros = reservas.stream()
-                .map(reserva -> PasajeroViaje.builder()
-                        .reservaId(reserva.getId())
-                        .clienteEmail(reserva.getClienteEmail())
-                        .asientos(asientosPorReserva.getOrDefault(reserva.getId(), List.of()))
-                        .estado(reserva.getEstado())
-                        .verificado(false) // TODO: Implementar verificación persistente
-                        .build())
-                .collect(Collectors.toList());
+        // Pasajeros desde el manifiesto en memoria (asientos ocupados por reservas activas)
+        // y su embarque desde el registro de escaneos
+        ManifiestoViaje.Manifiesto manifiesto = manifiestoViaje.obtener(viaje.getId());
+        Set<String> embarcados = manifiestoViaje.embarcados(viaje.getId());
+
+        Map<Long, PasajeroViaje> pasajerosPorReserva = new LinkedHashMap<>();
+        for (ManifiestoViaje.AsientoManifiesto asiento : manifiesto.asientos()) {
+            PasajeroViaje pasajero = pasajerosPorReserva.computeIfAbsent(asiento.reservaId(), id -> PasajeroViaje.builder()
+                    .reservaId(id)
+                    .clienteEmail(asiento.clienteEmail())
+                    .asientos(new ArrayList<>())
+                    .estado(asiento.estadoReserva())
+                    .verificado(true)
+                    .build());
+            pasajero.getAsientos().add(asiento.numero());
+            if (!embarcados.contains(asiento.numero())) {
+                pasajero.setVerificado(false);
+            }
+        }
+        List<PasajeroViaje> pasajeros = new ArrayList<>(pasajerosPorReserva.values());
+        int verificados = (int) pasajeros.stream().filter(PasajeroViaje::getVerificado).count();
         
-        log.info("Viaje {} - Pasajeros construidos: {}", viaje.getId(), pasajeros.size());
+        log.info("Viaje {} - Pasajeros construidos: {} ({} embarcados)", viaje.getId(), pasajeros.size(), verificados);
         
         // Obtener coordenadas de los terminales buscando por nombre del origen/destino
         CoordenadaDTO coordOrigen = buscarCoordenadaTerminal(viaje.getFrecuencia().getOrigen());
@@ -531,7 +561,7 @@ public class ViajeChoferService {
                 .estado(viaje.getEstado())
                 .pasajeros(pasajeros)
                 .totalPasajeros(pasajeros.size())
-                .pasajerosVerificados(0) // TODO: Implementar contador real
+                .pasajerosVerificados(verificados)
                 .coordenadaOrigen(coordOrigen)
                 .coordenadaDestino(coordDestino)
                 .cooperativaId(cooperativaId)
@@ -548,40 +578,14 @@ public class ViajeChoferService {
             return null;
         }
         
-        // Si tiene formato "PROVINCIA|CANTON|ID", extraer cantón
-        String busqueda = nombreOrigen;
-        if (nombreOrigen.contains("|")) {
-            String[] partes = nombreOrigen.split("\\|");
-            if (partes.length >= 2) {
-                busqueda = partes[1]; // Usar el cantón para buscar
-            }
-        }
-        
-        // Intentar buscar primero por nombre exacto
-        Optional<Terminal> terminalOpt = terminalRepository.findByNombreIgnoreCase(busqueda);
-        
-        // Si no se encuentra, buscar por cantón
-        if (terminalOpt.isEmpty()) {
-            List<Terminal> terminalesCanton = terminalRepository.findByCantonIgnoreCase(busqueda);
-            if (!terminalesCanton.isEmpty()) {
-                terminalOpt = Optional.of(terminalesCanton.get(0));
-            }
-        }
-        
-        // Si aún no se encuentra, buscar por texto parcial
-        if (terminalOpt.isEmpty()) {
-            List<Terminal> terminalesBusqueda = terminalRepository.buscarPorTexto(busqueda);
-            if (!terminalesBusqueda.isEmpty()) {
-                terminalOpt = Optional.of(terminalesBusqueda.get(0));
-            }
-        }
-        
-        return terminalOpt.map(terminal -> CoordenadaDTO.builder()
-                .latitud(terminal.getLatitud())
-                .longitud(terminal.getLongitud())
-                .nombreTerminal(terminal.getNombre())
-                .canton(terminal.getCanton())
-                .provincia(terminal.getProvincia())
+        // Índice en memoria: nombre exacto, luego cantón y luego texto parcial (acepta "PROVINCIA|CANTON|ID")
+        return terminalResolver.resolver(nombreOrigen)
+                .map(terminal -> CoordenadaDTO.builder()
+                .latitud(terminal.latitud())
+                .longitud(terminal.longitud())
+                .nombreTerminal(terminal.nombre())
+                .canton(terminal.canton())
+                .provincia(terminal.provincia())
                 .build())
                 .orElse(null);
     }
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -41,4 +42,47 @@ public interface ViajeAsientoRepository extends JpaRepository<ViajeAsiento, Long
     List<ViajeAsiento> findByViajeIdAndNumeroAsientoIn(Long viajeId, List<String> numerosAsiento);
     
     long countByViajeIdAndEstado(Long viajeId, String estado);
+
+    /**
+     * Reserva de forma atómica los asientos pedidos que sigan DISPONIBLE.
+     * Bloquea las filas en orden de ID y salta las que otra transacción tiene bloqueadas,
+     * así dos compras simultáneas nunca se esperan ni se bloquean mutuamente.
+     * Retorna cuántos asientos quedaron asignados a la reserva.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE viaje_asiento SET estado = 'RESERVADO', reserva_id = :reservaId, updated_at = now() " +
+                   "WHERE id IN (SELECT id FROM viaje_asiento " +
+                   "             WHERE viaje_id = :viajeId AND numero_asiento IN (:numeros) AND estado = 'DISPONIBLE' " +
+                   "             ORDER BY id FOR UPDATE SKIP LOCKED)",
+           nativeQuery = true)
+    int reclamarAsientosDisponibles(@Param("viajeId") Long viajeId,
+                                    @Param("numeros") Collection<String> numeros,
+                                    @Param("reservaId") Long reservaId);
+
+    /**
+     * Pasa a VENDIDO en una sola sentencia los asientos RESERVADO de las reservas indicadas.
+     * Retorna cuántos asientos cambiaron.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ViajeAsiento va SET va.estado = 'VENDIDO', va.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE va.reserva.id IN :reservaIds AND va.estado = 'RESERVADO'")
+    int venderAsientosDeReservas(@Param("reservaIds") Collection<Long> reservaIds);
+
+    /**
+     * Asientos de las reservas indicadas: [reservaId, viajeId, numeroAsiento]
+     */
+    @Query("SELECT va.reserva.id, va.viaje.id, va.numeroAsiento FROM ViajeAsiento va WHERE va.reserva.id IN :reservaIds")
+    List<Object[]> findNumerosByReservaIds(@Param("reservaIds") Collection<Long> reservaIds);
+
+    /**
+     * Asientos del viaje ordenados por id con la reserva ya cargada
+     */
+    @Query("SELECT va FROM ViajeAsiento va LEFT JOIN FETCH va.reserva WHERE va.viaje.id = :viajeId ORDER BY va.id")
+    List<ViajeAsiento> findByViajeIdConReserva(@Param("viajeId") Long viajeId);
+
+    @Query("SELECT va.numeroAsiento FROM ViajeAsiento va WHERE va.reserva.id = :reservaId")
+    List<String> findNumerosByReservaId(@Param("reservaId") Long reservaId);
+
+    @Query("SELECT va.numeroAsiento FROM ViajeAsiento va WHERE va.viaje.id = :viajeId AND va.numeroAsiento IN :numeros")
+    List<String> findNumerosExistentes(@Param("viajeId") Long viajeId, @Param("numeros") Collection<String> numeros);
 }
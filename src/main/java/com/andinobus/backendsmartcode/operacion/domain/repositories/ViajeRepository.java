@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -33,6 +34,31 @@ public interface ViajeRepository extends JpaRepository<Viaje, Long> {
     @Query("SELECT v FROM Viaje v WHERE v.fecha = :fecha AND v.estado != 'CANCELADO'")
     List<Viaje> findActivosByFecha(@Param("fecha") LocalDate fecha);
 
+    /**
+     * Busca viajes de un rango de fechas y estados con frecuencia, bus, cooperativa y chofer
+     * cargados en la misma consulta (evita N+1 al construir dashboards)
+     */
+    @Query("SELECT DISTINCT v FROM Viaje v " +
+           "LEFT JOIN FETCH v.frecuencia f LEFT JOIN FETCH f.cooperativa " +
+           "LEFT JOIN FETCH v.bus b LEFT JOIN FETCH b.cooperativa " +
+           "LEFT JOIN FETCH v.chofer " +
+           "WHERE v.fecha BETWEEN :desde AND :hasta AND v.estado IN :estados")
+    List<Viaje> findConDetalleByFechaBetweenAndEstadoIn(
+            @Param("desde") LocalDate desde,
+            @Param("hasta") LocalDate hasta,
+            @Param("estados") Collection<String> estados
+    );
+
+    /**
+     * Busca viajes por IDs con frecuencia, bus, cooperativa y chofer cargados
+     */
+    @Query("SELECT DISTINCT v FROM Viaje v " +
+           "LEFT JOIN FETCH v.frecuencia f LEFT JOIN FETCH f.cooperativa " +
+           "LEFT JOIN FETCH v.bus b LEFT JOIN FETCH b.cooperativa " +
+           "LEFT JOIN FETCH v.chofer " +
+           "WHERE v.id IN :ids")
+    List<Viaje> findConDetalleByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Busca viajes por origen, destino y fecha a través de la frecuencia
      */
@@ -113,4 +139,16 @@ public interface ViajeRepository extends JpaRepository<Viaje, Long> {
      */
     @Query("SELECT v FROM Viaje v WHERE v.chofer.id = :choferId AND v.fecha = :fecha AND v.estado != 'CANCELADO'")
     List<Viaje> findByChoferIdAndFecha(@Param("choferId") Long choferId, @Param("fecha") LocalDate fecha);
+
+    /**
+     * IDs de buses con algún viaje de la fecha en los estados indicados
+     */
+    @Query("SELECT DISTINCT v.bus.id FROM Viaje v WHERE v.fecha = :fecha AND v.estado IN :estados AND v.bus IS NOT NULL")
+    List<Long> findBusIdsByFechaAndEstadoIn(@Param("fecha") LocalDate fecha, @Param("estados") Collection<String> estados);
+
+    /**
+     * [choferId, cooperativaId de la frecuencia] del viaje, sin cargar la entidad (vacía si no existe)
+     */
+    @Query("SELECT c.id, f.cooperativa.id FROM Viaje v JOIN v.frecuencia f LEFT JOIN v.chofer c WHERE v.id = :viajeId")
+    List<Object[]> findResponsablesById(@Param("viajeId") Long viajeId);
 }
@@ -1,10 +1,14 @@
 package com.andinobus.backendsmartcode.operacion.presentation;
 
+import com.andinobus.backendsmartcode.common.errors.ServiceUnavailableException;
 import com.andinobus.backendsmartcode.operacion.application.dto.ActualizarPosicionRequest;
+import com.andinobus.backendsmartcode.operacion.application.dto.IngestaPosicionStatsDTO;
 import com.andinobus.backendsmartcode.operacion.application.dto.PosicionViajeDTO;
+import com.andinobus.backendsmartcode.operacion.application.service.IngestaPosicionService;
 import com.andinobus.backendsmartcode.operacion.application.service.TrackingService;
 import com.andinobus.backendsmartcode.usuarios.api.dto.AuthDtos;
 import com.andinobus.backendsmartcode.usuarios.application.services.AuthService;
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -34,7 +38,9 @@ import java.util.Map;
 public class TrackingController {
 
     private final TrackingService trackingService;
+    private final IngestaPosicionService ingestaPosicionService;
     private final AuthService authService;
+    private final ControlAcceso controlAcceso;
 
     private String extractToken(HttpServletRequest request) {
         String auth = request.getHeader("Authorization");
@@ -75,9 +81,15 @@ public class TrackingController {
                 ));
             }
 
-            PosicionViajeDTO posicion = trackingService.actualizarPosicion(viajeId, request);
+            PosicionViajeDTO posicion = trackingService.registrarPosicion(viajeId, request);
+            if (ingestaPosicionService.isAsincrona()) {
+                return ResponseEntity.accepted().body(posicion);
+            }
             return ResponseEntity.ok(posicion);
 
+        } catch (ServiceUnavailableException e) {
+            // La responde GlobalExceptionHandler (503 con Retry-After)
+            throw e;
         } catch (Exception e) {
             log.error("Error al actualizar posición del viaje {}: {}", viajeId, e.getMessage());
             return ResponseEntity.badRequest().body(Map.of(
@@ -225,4 +237,15 @@ public class TrackingController {
             ));
         }
     }
+
+    /**
+     * Métricas de la cola de ingesta de posiciones (solo SUPER ADMIN)
+     * GET /api/tracking/ingesta/estadisticas
+     */
+    @GetMapping("/ingesta/estadisticas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<IngestaPosicionStatsDTO> obtenerEstadisticasIngesta(HttpServletRequest httpRequest) {
+        controlAcceso.requerirAdmin(httpRequest);
+        return ResponseEntity.ok(ingestaPosicionService.obtenerEstadisticas());
+    }
 }
@@ -25,6 +25,15 @@ public class RutasController {
         return rutasService.buscarRutas(origen, destino, fecha, cooperativa, tipoAsiento, tipoViaje, page, size);
     }
 
+    @GetMapping("/rutas/itinerarios")
+    public RutasDtos.ItinerariosResponse planificarItinerarios(@RequestParam String origen,
+                                                               @RequestParam String destino,
+                                                               @RequestParam(required = false) String fecha,
+                                                               @RequestParam(required = false) String horaDesde,
+                                                               @RequestParam(defaultValue = "2") Integer maxTransbordos) {
+        return rutasService.planificarItinerarios(origen, destino, fecha, horaDesde, maxTransbordos);
+    }
+
     @GetMapping("/viajes")
     public RutasDtos.ViajesResponse viajesPorFecha(@RequestParam String fecha,
                                                    @RequestParam(defaultValue = "0") Integer page,
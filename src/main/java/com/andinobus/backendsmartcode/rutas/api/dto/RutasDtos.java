@@ -77,4 +77,38 @@ public class RutasDtos {
         private Integer page;
         private Integer size;
     }
+
+    @Data
+    @Builder
+    public static class TramoItinerario {
+        private Long frecuenciaId;
+        private Long cooperativaId;
+        private String cooperativa;
+        private String origen;
+        private String destino;
+        private String horaSalida;
+        private String horaLlegada;
+        private Double precio;
+        private String busPlaca;
+    }
+
+    @Data
+    @Builder
+    public static class Itinerario {
+        private String horaSalida;
+        private String horaLlegada;
+        private Integer duracionMinutos;
+        private Integer transbordos;
+        private Double precioTotal;
+        private List<TramoItinerario> tramos;
+    }
+
+    @Data
+    @Builder
+    public static class ItinerariosResponse {
+        private String origen;
+        private String destino;
+        private String fecha; // YYYY-MM-DD
+        private List<Itinerario> items; // Óptimos de Pareto por llegada, transbordos y precio
+    }
 }
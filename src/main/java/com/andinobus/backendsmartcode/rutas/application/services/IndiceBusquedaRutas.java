@@ -0,0 +1,325 @@
+package com.andinobus.backendsmartcode.rutas.application.services;
+
+import com.andinobus.backendsmartcode.admin.domain.entities.FrecuenciaViaje;
+import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeRepository;
+import com.andinobus.backendsmartcode.catalogos.application.services.TerminalResolver;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Bus;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Índice en memoria de las frecuencias de viaje activas para la búsqueda de rutas.
+ *
+ * Las entradas se guardan ordenadas por hora de salida y cada texto buscable (terminal,
+ * cantón y ruta de origen/destino, cooperativa) se normaliza sin tildes a un diccionario
+ * clave → posiciones. Una búsqueda recorre solo las claves distintas (pocos cientos) y
+ * combina posiciones con BitSet, sin tocar la BD. El índice se reconstruye cuando cambia
+ * la huella del catálogo (total de filas y última modificación de frecuencia_viaje, terminal,
+ * bus, cooperativa y ruta), verificada como máximo una vez por intervalo, o cuando
+ * TerminalService lo invalida.
+ */
+@Component
+@Slf4j
+public class IndiceBusquedaRutas {
+
+    private static final int TODOS_LOS_DIAS = 0x7F;
+    private static final int MAX_CONSULTAS_MEMO = 2048;
+    private static final Map<String, DayOfWeek> DIAS = Map.of(
+            "LUNES", DayOfWeek.MONDAY,
+            "MARTES", DayOfWeek.TUESDAY,
+            "MIERCOLES", DayOfWeek.WEDNESDAY,
+            "JUEVES", DayOfWeek.THURSDAY,
+            "VIERNES", DayOfWeek.FRIDAY,
+            "SABADO", DayOfWeek.SATURDAY,
+            "DOMINGO", DayOfWeek.SUNDAY
+    );
+
+    private final FrecuenciaViajeRepository frecuenciaViajeRepository;
+
+    @Value("${app.rutas.indice.verificacion-ms:5000}")
+    private long verificacionMs;
+
+    private volatile Indice indice;
+    private volatile long verificadoEn;
+    private final AtomicLong generaciones = new AtomicLong();
+
+    public IndiceBusquedaRutas(FrecuenciaViajeRepository frecuenciaViajeRepository) {
+        this.frecuenciaViajeRepository = frecuenciaViajeRepository;
+    }
+
+    /**
+     * Datos de una frecuencia ya resueltos para armar el resultado de búsqueda
+     */
+    public record EntradaRuta(
+            Long frecuenciaId,
+            Long busId,
+            Long cooperativaId,
+            String cooperativa,
+            String origen,
+            String destino,
+            String horaSalida,
+            String duracionEstimada,
+            String tipoFrecuencia,
+            int diasOperacion,
+            Double precio,
+            Integer asientosDisponibles,
+            String busPlaca,
+            String busMarca
+    ) {
+        public boolean operaEl(DayOfWeek dia) {
+            return (diasOperacion & mascara(dia)) != 0;
+        }
+    }
+
+    /**
+     * Criterios de búsqueda; los textos nulos o vacíos no filtran
+     */
+    public record Criterios(String origen, String destino, String cooperativa, String tipoFrecuencia) {
+    }
+
+    /**
+     * Totales y últimas modificaciones de cada tabla, en el orden de la consulta
+     */
+    private record Huella(List<Object> valores) {
+    }
+
+    private record Indice(
+            long generacion,
+            Huella huella,
+            List<EntradaRuta> entradas,
+            Map<String, BitSet> porOrigen,
+            Map<String, BitSet> porDestino,
+            Map<String, BitSet> porCooperativa,
+            Map<String, BitSet> consultas
+    ) {
+    }
+
+    /**
+     * Devuelve, en orden de hora de salida, las entradas que cumplen los criterios de texto y tipo
+     */
+    public List<EntradaRuta> buscar(Criterios criterios) {
+        Indice actual = obtenerIndice();
+        BitSet candidatos = new BitSet(actual.entradas().size());
+        candidatos.set(0, actual.entradas().size());
+
+        filtrar(candidatos, actual, "o", actual.porOrigen(), criterios.origen());
+        filtrar(candidatos, actual, "d", actual.porDestino(), criterios.destino());
+        filtrar(candidatos, actual, "c", actual.porCooperativa(), criterios.cooperativa());
+
+        List<EntradaRuta> resultado = new ArrayList<>(candidatos.cardinality());
+        for (int i = candidatos.nextSetBit(0); i >= 0; i = candidatos.nextSetBit(i + 1)) {
+            EntradaRuta entrada = actual.entradas().get(i);
+            if (criterios.tipoFrecuencia() == null || criterios.tipoFrecuencia().equals(entrada.tipoFrecuencia())) {
+                resultado.add(entrada);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Número de la versión vigente del catálogo; cambia cada vez que el índice se reconstruye.
+     * Otros cachés derivados de frecuencia_viaje (p.ej. PlanificadorItinerarios) lo usan para invalidarse
+     */
+    public long generacion() {
+        return obtenerIndice().generacion();
+    }
+
+    /**
+     * Fuerza la reconstrucción en la próxima búsqueda
+     */
+    public void invalidar() {
+        indice = null;
+    }
+
+    private void filtrar(BitSet candidatos, Indice actual, String dimension, Map<String, BitSet> diccionario, String texto) {
+        String clave = TerminalResolver.normalizar(texto);
+        if (clave.isEmpty()) {
+            return;
+        }
+        String memo = dimension + ":" + clave;
+        BitSet coincidencias = actual.consultas().get(memo);
+        if (coincidencias == null) {
+            coincidencias = new BitSet(actual.entradas().size());
+            for (Map.Entry<String, BitSet> e : diccionario.entrySet()) {
+                if (e.getKey().contains(clave)) {
+                    coincidencias.or(e.getValue());
+                }
+            }
+            if (actual.consultas().size() < MAX_CONSULTAS_MEMO) {
+                actual.consultas().put(memo, coincidencias);
+            }
+        }
+        // Los BitSet del índice son compartidos: solo se leen
+        candidatos.and(coincidencias);
+    }
+
+    private Indice obtenerIndice() {
+        Indice actual = indice;
+        long ahora = System.currentTimeMillis();
+        if (actual != null && ahora - verificadoEn < verificacionMs) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = indice;
+            if (actual != null && System.currentTimeMillis() - verificadoEn < verificacionMs) {
+                return actual;
+            }
+            Huella huella = obtenerHuella();
+            if (actual == null || !actual.huella().equals(huella)) {
+                actual = construirIndice(huella);
+                indice = actual;
+            }
+            verificadoEn = System.currentTimeMillis();
+            return actual;
+        }
+    }
+
+    private Huella obtenerHuella() {
+        List<Object[]> filas = frecuenciaViajeRepository.obtenerHuellaCatalogo();
+        if (filas.isEmpty()) {
+            return new Huella(List.of());
+        }
+        return new Huella(Arrays.asList(filas.get(0)));
+    }
+
+    private Indice construirIndice(Huella huella) {
+        long inicio = System.nanoTime();
+        List<FrecuenciaViaje> frecuencias = new ArrayList<>(frecuenciaViajeRepository.findActivasConDetalle());
+        // Mismo orden que el listado: hora de salida como texto, las que no tienen hora al inicio
+        frecuencias.sort(Comparator.comparing(IndiceBusquedaRutas::horaSalida));
+
+        List<EntradaRuta> entradas = new ArrayList<>(frecuencias.size());
+        Map<String, BitSet> porOrigen = new HashMap<>();
+        Map<String, BitSet> porDestino = new HashMap<>();
+        Map<String, BitSet> porCooperativa = new HashMap<>();
+
+        for (int i = 0; i < frecuencias.size(); i++) {
+            FrecuenciaViaje fv = frecuencias.get(i);
+            entradas.add(crearEntrada(fv));
+
+            indexar(porOrigen, i, clavesTerminal(fv.getTerminalOrigen(),
+                    fv.getRuta() != null ? fv.getRuta().getOrigen() : null));
+            indexar(porDestino, i, clavesTerminal(fv.getTerminalDestino(),
+                    fv.getRuta() != null ? fv.getRuta().getDestino() : null));
+            indexar(porCooperativa, i, Set.of(TerminalResolver.normalizar(nombreCooperativa(fv))));
+        }
+
+        log.info("Índice de búsqueda de rutas construido: {} frecuencias, {} orígenes, {} destinos en {} ms",
+                entradas.size(), porOrigen.size(), porDestino.size(), (System.nanoTime() - inicio) / 1_000_000);
+        return new Indice(generaciones.incrementAndGet(), huella, List.copyOf(entradas), porOrigen, porDestino, porCooperativa, new ConcurrentHashMap<>());
+    }
+
+    private EntradaRuta crearEntrada(FrecuenciaViaje fv) {
+        Bus bus = fv.getBus();
+        String duracionEstimada = "00:00";
+        if (fv.getDuracionEstimadaMinutos() != null) {
+            duracionEstimada = String.format("%02d:%02d",
+                    fv.getDuracionEstimadaMinutos() / 60,
+                    fv.getDuracionEstimadaMinutos() % 60);
+        }
+        return new EntradaRuta(
+                fv.getId(),
+                bus != null ? bus.getId() : null,
+                idCooperativa(fv),
+                Objects.requireNonNullElse(nombreCooperativa(fv), "Cooperativa"),
+                nombreTerminal(fv.getTerminalOrigen(), fv.getRuta() != null ? fv.getRuta().getOrigen() : null, "Sin origen"),
+                nombreTerminal(fv.getTerminalDestino(), fv.getRuta() != null ? fv.getRuta().getDestino() : null, "Sin destino"),
+                horaSalida(fv),
+                duracionEstimada,
+                fv.getTipoFrecuencia() != null ? fv.getTipoFrecuencia().name() : "INTERPROVINCIAL",
+                diasOperacion(fv.getDiasOperacion()),
+                fv.getPrecioBase(),
+                fv.getAsientosDisponibles(),
+                bus != null ? bus.getPlaca() : null,
+                bus != null ? (bus.getCarroceriaMarca() != null ? bus.getCarroceriaMarca() : bus.getChasisMarca()) : null
+        );
+    }
+
+    private static void indexar(Map<String, BitSet> diccionario, int posicion, Set<String> claves) {
+        for (String clave : claves) {
+            if (!clave.isEmpty()) {
+                diccionario.computeIfAbsent(clave, k -> new BitSet()).set(posicion);
+            }
+        }
+    }
+
+    private static Set<String> clavesTerminal(Terminal terminal, String textoRuta) {
+        Set<String> claves = new LinkedHashSet<>();
+        if (terminal != null) {
+            claves.add(TerminalResolver.normalizar(terminal.getNombre()));
+            claves.add(TerminalResolver.normalizar(terminal.getCanton()));
+        }
+        claves.add(TerminalResolver.normalizar(textoRuta));
+        return claves;
+    }
+
+    private static String nombreTerminal(Terminal terminal, String textoRuta, String porDefecto) {
+        if (terminal != null) {
+            return terminal.getCanton() != null ? terminal.getCanton() : terminal.getNombre();
+        }
+        return textoRuta != null ? textoRuta : porDefecto;
+    }
+
+    private static String nombreCooperativa(FrecuenciaViaje fv) {
+        if (fv.getCooperativa() != null && fv.getCooperativa().getNombre() != null) {
+            return fv.getCooperativa().getNombre();
+        }
+        if (fv.getBus() != null && fv.getBus().getCooperativa() != null) {
+            return fv.getBus().getCooperativa().getNombre();
+        }
+        return null;
+    }
+
+    private static Long idCooperativa(FrecuenciaViaje fv) {
+        if (fv.getCooperativa() != null) {
+            return fv.getCooperativa().getId();
+        }
+        if (fv.getBus() != null && fv.getBus().getCooperativa() != null) {
+            return fv.getBus().getCooperativa().getId();
+        }
+        return 0L;
+    }
+
+    private static String horaSalida(FrecuenciaViaje fv) {
+        LocalTime hora = fv.getHoraSalida();
+        return hora != null ? hora.toString() : "00:00";
+    }
+
+    /**
+     * Convierte el CSV de días ("LUNES,MARTES,...") en una máscara de bits; sin días válidos opera todos
+     */
+    static int diasOperacion(String csv) {
+        if (csv == null || csv.isBlank()) {
+            return TODOS_LOS_DIAS;
+        }
+        int mascara = 0;
+        for (String dia : csv.split(",")) {
+            DayOfWeek dayOfWeek = DIAS.get(TerminalResolver.normalizar(dia).toUpperCase());
+            if (dayOfWeek != null) {
+                mascara |= mascara(dayOfWeek);
+            }
+        }
+        return mascara != 0 ? mascara : TODOS_LOS_DIAS;
+    }
+
+    static int mascara(DayOfWeek dia) {
+        return 1 << (dia.getValue() - 1);
+    }
+}
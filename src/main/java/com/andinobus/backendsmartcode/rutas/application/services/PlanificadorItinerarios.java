@@ -0,0 +1,629 @@
+package com.andinobus.backendsmartcode.rutas.application.services;
+
+import com.andinobus.backendsmartcode.admin.domain.entities.FrecuenciaViaje;
+import com.andinobus.backendsmartcode.admin.domain.entities.ParadaFrecuencia;
+import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeRepository;
+import com.andinobus.backendsmartcode.catalogos.application.services.TerminalResolver;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Planificador de itinerarios con transbordos (Connection Scan Algorithm multicriterio).
+ *
+ * Cada frecuencia activa se convierte en una secuencia de paradas (terminal de origen,
+ * paradas intermedias y terminal de destino) con horas en minutos desde el inicio del día
+ * y precio acumulado. Las paradas se identifican por cantón normalizado, así un transbordo
+ * ocurre en el mismo terminal. Por día de la semana se precalcula el arreglo de conexiones
+ * (tramo entre dos paradas consecutivas) ordenado por hora de salida; una consulta lo recorre
+ * una sola vez manteniendo, por parada, las etiquetas no dominadas en llegada, tramos y precio.
+ * El arreglo de un día incluye también los viajes del día anterior que siguen en ruta después de
+ * medianoche y los del día siguiente, con sus horas desplazadas al día consultado.
+ * Las tablas se descartan cuando cambia la generación de IndiceBusquedaRutas.
+ */
+@Component
+@Slf4j
+public class PlanificadorItinerarios {
+
+    private static final int MINUTOS_DIA = 24 * 60;
+    private static final int SIN_VIAJE = -1;
+
+    private final FrecuenciaViajeRepository frecuenciaViajeRepository;
+    private final IndiceBusquedaRutas indiceBusquedaRutas;
+    private final TerminalResolver terminalResolver;
+
+    @Value("${app.rutas.planificador.transbordo-minimo-min:15}")
+    private int transbordoMinimoMin;
+
+    @Value("${app.rutas.planificador.max-resultados:10}")
+    private int maxResultados;
+
+    private volatile Catalogo catalogo;
+
+    public PlanificadorItinerarios(FrecuenciaViajeRepository frecuenciaViajeRepository,
+                                   IndiceBusquedaRutas indiceBusquedaRutas,
+                                   TerminalResolver terminalResolver) {
+        this.frecuenciaViajeRepository = frecuenciaViajeRepository;
+        this.indiceBusquedaRutas = indiceBusquedaRutas;
+        this.terminalResolver = terminalResolver;
+    }
+
+    /**
+     * Un tramo del itinerario: viaje en una frecuencia entre dos de sus paradas. Las horas son minutos
+     * desde el inicio del día consultado (pasan de 1440 cuando el tramo ya es del día siguiente)
+     */
+    public record Tramo(
+            Long frecuenciaId,
+            Long cooperativaId,
+            String cooperativa,
+            String busPlaca,
+            String origen,
+            String destino,
+            int salidaMin,
+            int llegadaMin,
+            double precio
+    ) {
+    }
+
+    /**
+     * Itinerario óptimo de Pareto (ningún otro llega antes, con menos transbordos y más barato a la vez)
+     */
+    public record Itinerario(int salidaMin, int llegadaMin, int transbordos, double precioTotal, List<Tramo> tramos) {
+    }
+
+    /**
+     * Frecuencia expresada como secuencia de paradas; los arreglos están alineados por posición
+     */
+    private record ViajeTabla(
+            Long frecuenciaId,
+            Long cooperativaId,
+            String cooperativa,
+            String busPlaca,
+            int diasOperacion,
+            int[] paradas,
+            int[] llegadas,
+            int[] salidas,
+            double[] precios,
+            boolean[] aborda,
+            boolean[] desciende
+    ) {
+    }
+
+    /**
+     * Conexiones de un día de la semana ordenadas por hora de salida: instancia y posición de partida.
+     * Una instancia es un viaje de la tabla en un día concreto (anterior, consultado o siguiente);
+     * desfase son los minutos que se suman a sus horas para expresarlas en el día consultado.
+     */
+    private record Conexiones(int[] salida, int[] instancia, int[] posicion, int[] viajeDeInstancia, int[] desfase) {
+    }
+
+    private record Catalogo(
+            long generacion,
+            List<String> nombresParada,
+            Map<String, Integer> paradaPorClave,
+            List<ViajeTabla> viajes,
+            Map<DayOfWeek, Conexiones> porDia
+    ) {
+    }
+
+    /**
+     * Etiqueta de llegada a una parada; previa y (instancia, desde, hasta) permiten reconstruir los tramos
+     */
+    private static final class Etiqueta {
+        final int llegada;
+        final int tramos;
+        final double precio;
+        final Etiqueta previa;
+        final int viaje;
+        final int desde;
+        final int hasta;
+
+        Etiqueta(int llegada, int tramos, double precio, Etiqueta previa, int viaje, int desde, int hasta) {
+            this.llegada = llegada;
+            this.tramos = tramos;
+            this.precio = precio;
+            this.previa = previa;
+            this.viaje = viaje;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        boolean domina(Etiqueta otra) {
+            return llegada <= otra.llegada && tramos <= otra.tramos && precio <= otra.precio;
+        }
+    }
+
+    /**
+     * Pasajero a bordo de un viaje: base es el precio acumulado menos el precio desde origen al abordar
+     */
+    private record ABordo(int tramos, double base, Etiqueta previa, int desde) {
+        boolean domina(ABordo otro) {
+            return tramos <= otro.tramos && base <= otro.base;
+        }
+    }
+
+    /**
+     * Busca itinerarios de origen a destino para el día indicado saliendo desde horaDesde,
+     * con hasta maxTransbordos cambios de bus en el mismo terminal
+     */
+    public List<Itinerario> planificar(String origen, String destino, DayOfWeek dia, LocalTime horaDesde, int maxTransbordos) {
+        if (origen == null || origen.isBlank() || destino == null || destino.isBlank()) {
+            throw new IllegalArgumentException("Origen y destino son obligatorios");
+        }
+        if (dia == null) {
+            throw new IllegalArgumentException("El día de viaje es obligatorio");
+        }
+        Catalogo actual = obtenerCatalogo();
+        Set<Integer> origenes = resolverParadas(actual, origen);
+        Set<Integer> destinos = resolverParadas(actual, destino);
+        if (origenes.isEmpty() || destinos.isEmpty()) {
+            return List.of();
+        }
+        Conexiones conexiones = actual.porDia().computeIfAbsent(dia, d -> construirConexiones(actual.viajes(), d));
+
+        int maxTramos = Math.max(0, maxTransbordos) + 1;
+        int desde = horaDesde != null ? horaDesde.toSecondOfDay() / 60 : 0;
+        int limite = desde + MINUTOS_DIA;
+
+        List<List<Etiqueta>> bolsas = new ArrayList<>(actual.nombresParada().size());
+        for (int i = 0; i < actual.nombresParada().size(); i++) {
+            bolsas.add(null);
+        }
+        Map<Integer, List<ABordo>> aBordo = new HashMap<>();
+        List<Etiqueta> enDestino = new ArrayList<>();
+
+        for (Integer o : origenes) {
+            bolsas.set(o, new ArrayList<>(List.of(new Etiqueta(desde, 0, 0, null, SIN_VIAJE, 0, 0))));
+        }
+
+        int inicio = primeraConexionDesde(conexiones.salida(), desde);
+        for (int c = inicio; c < conexiones.salida().length; c++) {
+            int salida = conexiones.salida()[c];
+            if (salida > limite) {
+                break;
+            }
+            int t = conexiones.instancia()[c];
+            int i = conexiones.posicion()[c];
+            ViajeTabla viaje = actual.viajes().get(conexiones.viajeDeInstancia()[t]);
+            int desfase = conexiones.desfase()[t];
+
+            // Abordar en la parada i con las etiquetas que llegaron a tiempo
+            List<Etiqueta> enParada = bolsas.get(viaje.paradas()[i]);
+            if (enParada != null && viaje.aborda()[i]) {
+                for (Etiqueta e : enParada) {
+                    if (e.tramos >= maxTramos || e.viaje == t) {
+                        continue;
+                    }
+                    int disponible = e.viaje == SIN_VIAJE ? e.llegada : e.llegada + transbordoMinimoMin;
+                    if (disponible <= salida) {
+                        agregarABordo(aBordo.computeIfAbsent(t, k -> new ArrayList<>()),
+                                new ABordo(e.tramos + 1, e.precio - viaje.precios()[i], e, i));
+                    }
+                }
+            }
+
+            // Descender en la parada i + 1
+            List<ABordo> pasajeros = aBordo.get(t);
+            if (pasajeros == null || !viaje.desciende()[i + 1]) {
+                continue;
+            }
+            int parada = viaje.paradas()[i + 1];
+            for (ABordo p : pasajeros) {
+                Etiqueta llegada = new Etiqueta(viaje.llegadas()[i + 1] + desfase, p.tramos(), p.base() + viaje.precios()[i + 1],
+                        p.previa(), t, p.desde(), i + 1);
+                if (dominada(enDestino, llegada)) {
+                    // Llegar después, con más tramos y más caro que un resultado ya encontrado no mejora nada
+                    continue;
+                }
+                List<Etiqueta> bolsa = bolsas.get(parada);
+                if (bolsa == null) {
+                    bolsa = new ArrayList<>();
+                    bolsas.set(parada, bolsa);
+                }
+                if (agregarEtiqueta(bolsa, llegada) && destinos.contains(parada)) {
+                    agregarEtiqueta(enDestino, llegada);
+                }
+            }
+        }
+
+        return enDestino.stream()
+                .sorted(Comparator.comparingInt((Etiqueta e) -> e.llegada)
+                        .thenComparingInt(e -> e.tramos)
+                        .thenComparingDouble(e -> e.precio))
+                .limit(maxResultados)
+                .map(e -> reconstruir(actual, conexiones, e))
+                .toList();
+    }
+
+    /**
+     * Descarta las tablas para que se reconstruyan en la próxima consulta
+     */
+    public void invalidar() {
+        catalogo = null;
+    }
+
+    private static int primeraConexionDesde(int[] salidas, int desde) {
+        int pos = Arrays.binarySearch(salidas, desde);
+        if (pos < 0) {
+            return -pos - 1;
+        }
+        while (pos > 0 && salidas[pos - 1] == desde) {
+            pos--;
+        }
+        return pos;
+    }
+
+    private static boolean dominada(List<Etiqueta> bolsa, Etiqueta nueva) {
+        for (Etiqueta e : bolsa) {
+            if (e.domina(nueva)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Agrega la etiqueta si ninguna existente la domina, quitando las que pasan a estar dominadas
+     */
+    private static boolean agregarEtiqueta(List<Etiqueta> bolsa, Etiqueta nueva) {
+        if (dominada(bolsa, nueva)) {
+            return false;
+        }
+        bolsa.removeIf(nueva::domina);
+        bolsa.add(nueva);
+        return true;
+    }
+
+    private static void agregarABordo(List<ABordo> bolsa, ABordo nuevo) {
+        for (ABordo a : bolsa) {
+            if (a.domina(nuevo)) {
+                return;
+            }
+        }
+        bolsa.removeIf(nuevo::domina);
+        bolsa.add(nuevo);
+    }
+
+    private Itinerario reconstruir(Catalogo actual, Conexiones conexiones, Etiqueta etiqueta) {
+        List<Tramo> tramos = new ArrayList<>();
+        for (Etiqueta e = etiqueta; e != null && e.viaje != SIN_VIAJE; e = e.previa) {
+            ViajeTabla viaje = actual.viajes().get(conexiones.viajeDeInstancia()[e.viaje]);
+            int desfase = conexiones.desfase()[e.viaje];
+            tramos.add(0, new Tramo(
+                    viaje.frecuenciaId(),
+                    viaje.cooperativaId(),
+                    viaje.cooperativa(),
+                    viaje.busPlaca(),
+                    actual.nombresParada().get(viaje.paradas()[e.desde]),
+                    actual.nombresParada().get(viaje.paradas()[e.hasta]),
+                    viaje.salidas()[e.desde] + desfase,
+                    viaje.llegadas()[e.hasta] + desfase,
+                    Math.round((viaje.precios()[e.hasta] - viaje.precios()[e.desde]) * 100) / 100.0
+            ));
+        }
+        return new Itinerario(
+                tramos.get(0).salidaMin(),
+                etiqueta.llegada,
+                tramos.size() - 1,
+                Math.round(etiqueta.precio * 100) / 100.0,
+                tramos
+        );
+    }
+
+    /**
+     * Paradas que corresponden a un texto: cantón o terminal exacto y, si no hay, coincidencia parcial
+     */
+    private Set<Integer> resolverParadas(Catalogo actual, String texto) {
+        Set<Integer> resultado = new LinkedHashSet<>();
+        String clave = TerminalResolver.normalizar(TerminalResolver.extraerCanton(texto));
+        if (clave.isEmpty()) {
+            return resultado;
+        }
+        Integer exacta = actual.paradaPorClave().get(clave);
+        if (exacta == null) {
+            exacta = actual.paradaPorClave().get(claveParada(texto));
+        }
+        if (exacta != null) {
+            resultado.add(exacta);
+            return resultado;
+        }
+        actual.paradaPorClave().forEach((k, v) -> {
+            if (k.contains(clave)) {
+                resultado.add(v);
+            }
+        });
+        return resultado;
+    }
+
+    private Catalogo obtenerCatalogo() {
+        long generacion = indiceBusquedaRutas.generacion();
+        Catalogo actual = catalogo;
+        if (actual != null && actual.generacion() == generacion) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = catalogo;
+            if (actual == null || actual.generacion() != generacion) {
+                actual = construirCatalogo(generacion);
+                catalogo = actual;
+            }
+            return actual;
+        }
+    }
+
+    private Catalogo construirCatalogo(long generacion) {
+        long inicio = System.nanoTime();
+        List<String> nombres = new ArrayList<>();
+        Map<String, Integer> porClave = new HashMap<>();
+        List<ViajeTabla> viajes = new ArrayList<>();
+
+        for (FrecuenciaViaje fv : frecuenciaViajeRepository.findActivasConParadas()) {
+            ViajeTabla viaje = construirViaje(fv, nombres, porClave);
+            if (viaje != null) {
+                viajes.add(viaje);
+            }
+        }
+
+        log.info("Tablas del planificador construidas: {} viajes, {} paradas en {} ms",
+                viajes.size(), nombres.size(), (System.nanoTime() - inicio) / 1_000_000);
+        return new Catalogo(generacion, List.copyOf(nombres), Map.copyOf(porClave), List.copyOf(viajes),
+                new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Convierte una frecuencia en su secuencia de paradas; null si no tiene horas suficientes
+     */
+    private ViajeTabla construirViaje(FrecuenciaViaje fv, List<String> nombres, Map<String, Integer> porClave) {
+        if (fv.getHoraSalida() == null) {
+            return null;
+        }
+        List<Integer> paradas = new ArrayList<>();
+        List<Integer> llegadas = new ArrayList<>();
+        List<Integer> salidas = new ArrayList<>();
+        List<Double> precios = new ArrayList<>();
+        List<Boolean> aborda = new ArrayList<>();
+        List<Boolean> desciende = new ArrayList<>();
+
+        int salidaOrigen = minutos(fv.getHoraSalida(), 0);
+        int parada = registrarParada(fv.getTerminalOrigen(), fv.getRuta() != null ? fv.getRuta().getOrigen() : null, nombres, porClave);
+        if (parada < 0) {
+            return null;
+        }
+        paradas.add(parada);
+        llegadas.add(salidaOrigen);
+        salidas.add(salidaOrigen);
+        precios.add(null);
+        aborda.add(true);
+        desciende.add(false);
+
+        int anterior = salidaOrigen;
+        List<ParadaFrecuencia> intermedias = fv.getParadas().stream()
+                .sorted(Comparator.comparing(ParadaFrecuencia::getOrden, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        for (ParadaFrecuencia p : intermedias) {
+            if (p.getTiempoLlegada() == null) {
+                continue;
+            }
+            int intermedia = registrarParada(p.getNombreParada(), nombres, porClave);
+            if (intermedia < 0 || intermedia == paradas.get(paradas.size() - 1)) {
+                continue;
+            }
+            int llegada = minutos(p.getTiempoLlegada(), anterior);
+            int espera = p.getTiempoEsperaMinutos() != null ? p.getTiempoEsperaMinutos() : 0;
+            paradas.add(intermedia);
+            llegadas.add(llegada);
+            salidas.add(llegada + espera);
+            precios.add(p.getPrecioDesdeOrigen());
+            aborda.add(!Boolean.FALSE.equals(p.getPermiteAbordaje()));
+            desciende.add(!Boolean.FALSE.equals(p.getPermiteDescenso()));
+            anterior = llegada + espera;
+        }
+
+        Integer llegadaDestino = null;
+        if (fv.getHoraLlegadaEstimada() != null) {
+            llegadaDestino = minutos(fv.getHoraLlegadaEstimada(), anterior);
+        } else {
+            Integer duracion = fv.getDuracionEstimadaMinutos() != null ? fv.getDuracionEstimadaMinutos()
+                    : fv.getRuta() != null ? fv.getRuta().getDuracionEstimadaMinutos() : null;
+            if (duracion != null) {
+                llegadaDestino = Math.max(anterior, salidaOrigen + duracion);
+            }
+        }
+        int destino = registrarParada(fv.getTerminalDestino(), fv.getRuta() != null ? fv.getRuta().getDestino() : null, nombres, porClave);
+        if (llegadaDestino == null || destino < 0) {
+            return null;
+        }
+        if (destino == paradas.get(0)) {
+            return null;
+        }
+        if (paradas.size() > 1 && destino == paradas.get(paradas.size() - 1)) {
+            // La última parada intermedia es el propio destino: se reemplaza por la llegada final
+            int ultima = paradas.size() - 1;
+            paradas.remove(ultima);
+            llegadas.remove(ultima);
+            salidas.remove(ultima);
+            precios.remove(ultima);
+            aborda.remove(ultima);
+            desciende.remove(ultima);
+        }
+        paradas.add(destino);
+        llegadas.add(llegadaDestino);
+        salidas.add(llegadaDestino);
+        precios.add(fv.getPrecioBase() != null ? fv.getPrecioBase() : 0.0);
+        aborda.add(false);
+        desciende.add(true);
+
+        int n = paradas.size();
+        double[] preciosAcumulados = completarPrecios(precios, llegadas);
+        int[] arrParadas = new int[n];
+        int[] arrLlegadas = new int[n];
+        int[] arrSalidas = new int[n];
+        boolean[] arrAborda = new boolean[n];
+        boolean[] arrDesciende = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            arrParadas[i] = paradas.get(i);
+            arrLlegadas[i] = llegadas.get(i);
+            arrSalidas[i] = salidas.get(i);
+            arrAborda[i] = aborda.get(i);
+            arrDesciende[i] = desciende.get(i);
+        }
+
+        Long cooperativaId = fv.getCooperativa() != null ? fv.getCooperativa().getId()
+                : fv.getBus() != null && fv.getBus().getCooperativa() != null ? fv.getBus().getCooperativa().getId() : null;
+        String cooperativa = fv.getCooperativa() != null ? fv.getCooperativa().getNombre()
+                : fv.getBus() != null && fv.getBus().getCooperativa() != null ? fv.getBus().getCooperativa().getNombre() : null;
+
+        return new ViajeTabla(
+                fv.getId(),
+                cooperativaId,
+                cooperativa,
+                fv.getBus() != null ? fv.getBus().getPlaca() : null,
+                IndiceBusquedaRutas.diasOperacion(fv.getDiasOperacion()),
+                arrParadas,
+                arrLlegadas,
+                arrSalidas,
+                preciosAcumulados,
+                arrAborda,
+                arrDesciende
+        );
+    }
+
+    /**
+     * Precio acumulado desde el origen en cada parada; si una parada no lo tiene,
+     * se interpola según el tiempo transcurrido entre los precios conocidos
+     */
+    private static double[] completarPrecios(List<Double> precios, List<Integer> llegadas) {
+        int n = precios.size();
+        double[] resultado = new double[n];
+        resultado[0] = 0;
+        int conocido = 0;
+        for (int i = 1; i < n; i++) {
+            Double precio = precios.get(i);
+            if (precio == null && i < n - 1) {
+                continue;
+            }
+            double valor = Math.max(precio != null ? precio : 0.0, resultado[conocido]);
+            int tramo = llegadas.get(i) - llegadas.get(conocido);
+            for (int j = conocido + 1; j < i; j++) {
+                double fraccion = tramo > 0 ? (double) (llegadas.get(j) - llegadas.get(conocido)) / tramo : 0;
+                resultado[j] = resultado[conocido] + (valor - resultado[conocido]) * fraccion;
+            }
+            resultado[i] = valor;
+            conocido = i;
+        }
+        return resultado;
+    }
+
+    /**
+     * Conexiones del día: las de los viajes que operan ese día, las de los viajes del día anterior
+     * que salen de una parada después de medianoche y las de los viajes del día siguiente
+     */
+    private static Conexiones construirConexiones(List<ViajeTabla> viajes, DayOfWeek dia) {
+        List<long[]> lista = new ArrayList<>();
+        List<Integer> viajeDeInstancia = new ArrayList<>();
+        List<Integer> desfaseDeInstancia = new ArrayList<>();
+        for (int d = -1; d <= 1; d++) {
+            int mascara = IndiceBusquedaRutas.mascara(dia.plus(d));
+            int desfase = d * MINUTOS_DIA;
+            for (int t = 0; t < viajes.size(); t++) {
+                ViajeTabla viaje = viajes.get(t);
+                if ((viaje.diasOperacion() & mascara) == 0) {
+                    continue;
+                }
+                int instancia = viajeDeInstancia.size();
+                boolean usada = false;
+                for (int i = 0; i < viaje.paradas().length - 1; i++) {
+                    int salida = viaje.salidas()[i] + desfase;
+                    if (salida < 0) {
+                        // Tramo del día anterior que sale antes de medianoche: no se puede abordar
+                        continue;
+                    }
+                    lista.add(new long[]{salida, viaje.llegadas()[i + 1] + desfase, instancia, i});
+                    usada = true;
+                }
+                if (usada) {
+                    viajeDeInstancia.add(t);
+                    desfaseDeInstancia.add(desfase);
+                }
+            }
+        }
+        lista.sort(Comparator.<long[]>comparingLong(c -> c[0]).thenComparingLong(c -> c[1]));
+
+        int n = lista.size();
+        int[] salida = new int[n];
+        int[] instancia = new int[n];
+        int[] posicion = new int[n];
+        for (int c = 0; c < n; c++) {
+            long[] conexion = lista.get(c);
+            salida[c] = (int) conexion[0];
+            instancia[c] = (int) conexion[2];
+            posicion[c] = (int) conexion[3];
+        }
+        return new Conexiones(salida, instancia, posicion,
+                viajeDeInstancia.stream().mapToInt(Integer::intValue).toArray(),
+                desfaseDeInstancia.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Minutos desde el inicio del día de servicio, sin retroceder respecto a la hora anterior
+     * (un viaje nocturno continúa al día siguiente)
+     */
+    private static int minutos(LocalTime hora, int anterior) {
+        int valor = hora.toSecondOfDay() / 60;
+        while (valor < anterior) {
+            valor += MINUTOS_DIA;
+        }
+        return valor;
+    }
+
+    private int registrarParada(Terminal terminal, String textoRuta, List<String> nombres, Map<String, Integer> porClave) {
+        if (terminal != null) {
+            String nombre = terminal.getCanton() != null ? terminal.getCanton() : terminal.getNombre();
+            return registrar(TerminalResolver.normalizar(nombre), nombre, nombres, porClave);
+        }
+        return registrarParada(textoRuta, nombres, porClave);
+    }
+
+    private int registrarParada(String texto, List<String> nombres, Map<String, Integer> porClave) {
+        String clave = claveParada(texto);
+        if (clave.isEmpty()) {
+            return -1;
+        }
+        String nombre = terminalResolver.resolver(texto)
+                .map(t -> t.canton() != null ? t.canton() : t.nombre())
+                .orElse(TerminalResolver.extraerCanton(texto));
+        return registrar(clave, nombre, nombres, porClave);
+    }
+
+    /**
+     * Clave de una parada: cantón del terminal al que resuelve el texto, o el propio texto normalizado
+     */
+    private String claveParada(String texto) {
+        return terminalResolver.resolver(texto)
+                .map(t -> TerminalResolver.normalizar(t.canton() != null ? t.canton() : t.nombre()))
+                .orElse(TerminalResolver.normalizar(TerminalResolver.extraerCanton(texto)));
+    }
+
+    private static int registrar(String clave, String nombre, List<String> nombres, Map<String, Integer> porClave) {
+        if (clave.isEmpty()) {
+            return -1;
+        }
+        return porClave.computeIfAbsent(clave, k -> {
+            nombres.add(nombre);
+            return nombres.size() - 1;
+        });
+    }
+}
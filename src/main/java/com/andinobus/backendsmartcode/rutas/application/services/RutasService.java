@@ -1,7 +1,6 @@
 package com.andinobus.backendsmartcode.rutas.application.services;
 
-import com.andinobus.backendsmartcode.admin.domain.entities.FrecuenciaViaje;
-import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeRepository;
+import com.andinobus.backendsmartcode.admin.domain.enums.TipoFrecuencia;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.BusAsientoConfig;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.Frecuencia;
 import com.andinobus.backendsmartcode.catalogos.domain.repositories.BusAsientoConfigRepository;
@@ -15,7 +14,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -25,12 +26,17 @@ import java.util.stream.Collectors;
 public class RutasService {
 
     private final FrecuenciaRepository frecuenciaRepository;
-    private final FrecuenciaViajeRepository frecuenciaViajeRepository;
     private final ViajeRepository viajeRepository;
     private final BusAsientoConfigRepository busAsientoConfigRepository;
+    private final IndiceBusquedaRutas indiceBusquedaRutas;
+    private final PlanificadorItinerarios planificadorItinerarios;
+
+    private static final List<String> ESTADOS_BUS_NO_DISPONIBLE = List.of("EN_RUTA", "COMPLETADO");
+    private static final int MAX_TRANSBORDOS = 2;
 
     /**
      * Busca rutas disponibles según criterios - ahora busca en frecuencia_viaje
+     * usando el índice en memoria de frecuencias activas (IndiceBusquedaRutas)
      */
     public RutasDtos.SearchRouteResponse buscarRutas(
             String origen,
@@ -43,206 +49,155 @@ public class RutasService {
             Integer size
     ) {
         LocalDate fecha = fechaStr != null && !fechaStr.isEmpty() ? LocalDate.parse(fechaStr) : null;
+        final LocalDate fechaFiltro = fecha != null ? fecha : LocalDate.now();
 
-        // 1. Obtener todas las frecuencias de viaje activas
-        List<FrecuenciaViaje> frecuenciasViaje = frecuenciaViajeRepository.findAll().stream()
-                .filter(f -> f.getActivo() != null && f.getActivo())
-                .collect(Collectors.toList());
+        // 1-4. Frecuencias activas filtradas por origen, destino, cooperativa y tipo, ya ordenadas por hora de salida
+        List<IndiceBusquedaRutas.EntradaRuta> candidatas = indiceBusquedaRutas.buscar(
+                new IndiceBusquedaRutas.Criterios(origen, destino, cooperativa, tipoFrecuencia(tipoViaje)));
 
-        // 2. Filtrar por origen si se especifica
-        if (origen != null && !origen.isEmpty()) {
-            frecuenciasViaje = frecuenciasViaje.stream()
-                    .filter(f -> {
-                        // Buscar en terminal origen
-                        if (f.getTerminalOrigen() != null) {
-                            String terminalNombre = f.getTerminalOrigen().getNombre();
-                            String terminalCanton = f.getTerminalOrigen().getCanton();
-                            if ((terminalNombre != null && terminalNombre.toLowerCase().contains(origen.toLowerCase())) ||
-                                (terminalCanton != null && terminalCanton.toLowerCase().contains(origen.toLowerCase()))) {
-                                return true;
-                            }
-                        }
-                        // Buscar en ruta
-                        if (f.getRuta() != null && f.getRuta().getOrigen() != null) {
-                            return f.getRuta().getOrigen().toLowerCase().contains(origen.toLowerCase());
-                        }
-                        return false;
-                    })
-                    .collect(Collectors.toList());
-        }
+        // 5. Excluir frecuencias cuyos buses tengan viajes EN_RUTA o COMPLETADO para la fecha (una sola consulta)
+        Set<Long> busesNoDisponibles = candidatas.isEmpty()
+                ? Set.of()
+                : new HashSet<>(viajeRepository.findBusIdsByFechaAndEstadoIn(fechaFiltro, ESTADOS_BUS_NO_DISPONIBLE));
 
-        // 3. Filtrar por destino si se especifica
-        if (destino != null && !destino.isEmpty()) {
-            frecuenciasViaje = frecuenciasViaje.stream()
-                    .filter(f -> {
-                        // Buscar en terminal destino
-                        if (f.getTerminalDestino() != null) {
-                            String terminalNombre = f.getTerminalDestino().getNombre();
-                            String terminalCanton = f.getTerminalDestino().getCanton();
-                            if ((terminalNombre != null && terminalNombre.toLowerCase().contains(destino.toLowerCase())) ||
-                                (terminalCanton != null && terminalCanton.toLowerCase().contains(destino.toLowerCase()))) {
-                                return true;
-                            }
-                        }
-                        // Buscar en ruta
-                        if (f.getRuta() != null && f.getRuta().getDestino() != null) {
-                            return f.getRuta().getDestino().toLowerCase().contains(destino.toLowerCase());
-                        }
-                        return false;
-                    })
-                    .collect(Collectors.toList());
+        // Paginación: se cuentan todas las coincidencias pero solo se arma la página pedida
+        int start = page * size;
+        int total = 0;
+        List<IndiceBusquedaRutas.EntradaRuta> pagina = new ArrayList<>(Math.max(0, Math.min(size, candidatas.size())));
+        for (IndiceBusquedaRutas.EntradaRuta entrada : candidatas) {
+            if (fecha != null && !entrada.operaEl(fecha.getDayOfWeek())) {
+                continue;
+            }
+            if (entrada.busId() != null && busesNoDisponibles.contains(entrada.busId())) {
+                continue;
+            }
+            if (total >= start && pagina.size() < size) {
+                pagina.add(entrada);
+            }
+            total++;
         }
 
-        // 4. Filtrar por cooperativa si se especifica
-        if (cooperativa != null && !cooperativa.isEmpty()) {
-            frecuenciasViaje = frecuenciasViaje.stream()
-                    .filter(f -> {
-                        if (f.getCooperativa() != null && f.getCooperativa().getNombre() != null) {
-                            return f.getCooperativa().getNombre().toLowerCase().contains(cooperativa.toLowerCase());
-                        }
-                        if (f.getBus() != null && f.getBus().getCooperativa() != null) {
-                            return f.getBus().getCooperativa().getNombre().toLowerCase().contains(cooperativa.toLowerCase());
-                        }
-                        return false;
-                    })
-                    .collect(Collectors.toList());
+        // 6. Configuración de asientos de los buses de la página en una sola consulta
+        Map<Long, Map<String, Integer>> asientosPorBus = new HashMap<>();
+        Set<Long> busIds = pagina.stream()
+                .map(IndiceBusquedaRutas.EntradaRuta::busId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (!busIds.isEmpty()) {
+            for (BusAsientoConfig config : busAsientoConfigRepository.findByBusIdIn(busIds)) {
+                asientosPorBus.computeIfAbsent(config.getBus().getId(), k -> new HashMap<>())
+                        .put(config.getTipoAsiento(), config.getCantidad());
+            }
         }
 
-        // 5. Filtrar frecuencias cuyos buses tengan viajes EN_RUTA o COMPLETADO para la fecha
-        final LocalDate fechaFiltro = fecha != null ? fecha : LocalDate.now();
-        frecuenciasViaje = frecuenciasViaje.stream()
-                .filter(fv -> {
-                    if (fv.getBus() == null) return true; // Si no tiene bus, no se puede verificar
-                    
-                    // Buscar viajes del bus para esta fecha
-                    List<Viaje> viajesDelBus = viajeRepository.findByBusIdAndFecha(fv.getBus().getId(), fechaFiltro);
-                    
-                    // Verificar si hay algún viaje EN_RUTA o COMPLETADO
-                    boolean tieneViajeNoDisponible = viajesDelBus.stream()
-                            .anyMatch(v -> "EN_RUTA".equals(v.getEstado()) || "COMPLETADO".equals(v.getEstado()));
-                    
-                    // Si tiene viaje no disponible, excluir esta frecuencia
-                    return !tieneViajeNoDisponible;
-                })
-                .collect(Collectors.toList());
-
-        // 6. Crear items de respuesta
-        List<RutasDtos.SearchRouteItem> items = new ArrayList<>();
-        for (FrecuenciaViaje fv : frecuenciasViaje) {
-            // Obtener origen y destino
-            String origenNombre = obtenerOrigenFrecuenciaViaje(fv);
-            String destinoNombre = obtenerDestinoFrecuenciaViaje(fv);
-            String cooperativaNombre = obtenerCooperativaNombre(fv);
-            Long cooperativaId = obtenerCooperativaId(fv);
-
-            // Obtener configuración de asientos del bus
-            Map<String, Integer> asientosPorTipo = new HashMap<>();
-            if (fv.getBus() != null) {
-                List<BusAsientoConfig> configs = busAsientoConfigRepository.findByBusId(fv.getBus().getId());
-                for (BusAsientoConfig config : configs) {
-                    asientosPorTipo.put(config.getTipoAsiento(), config.getCantidad());
-                }
-            }
+        String fechaMostrar = fechaFiltro.toString();
+        List<RutasDtos.SearchRouteItem> items = new ArrayList<>(pagina.size());
+        for (IndiceBusquedaRutas.EntradaRuta entrada : pagina) {
+            Map<String, Integer> asientosPorTipo = new HashMap<>(
+                    asientosPorBus.getOrDefault(entrada.busId(), Map.of()));
             if (asientosPorTipo.isEmpty()) {
                 // Valores por defecto si no hay configuración
-                asientosPorTipo.put("Normal", fv.getAsientosDisponibles() != null ? fv.getAsientosDisponibles() : 40);
-            }
-
-            // Calcular duración estimada en formato HH:MM
-            String duracionEstimada = "00:00";
-            if (fv.getDuracionEstimadaMinutos() != null) {
-                duracionEstimada = String.format("%02d:%02d", 
-                        fv.getDuracionEstimadaMinutos() / 60, 
-                        fv.getDuracionEstimadaMinutos() % 60);
+                asientosPorTipo.put("Normal", entrada.asientosDisponibles() != null ? entrada.asientosDisponibles() : 40);
             }
 
-            // Determinar fecha
-            String fechaMostrar = fecha != null ? fecha.toString() : LocalDate.now().toString();
-
-            // Determinar tipo de viaje
-            String tipoViajeStr = fv.getTipoFrecuencia() != null 
-                    ? fv.getTipoFrecuencia().name() 
-                    : "INTERPROVINCIAL";
-
-            RutasDtos.SearchRouteItem item = RutasDtos.SearchRouteItem.builder()
-                    .frecuenciaId(fv.getId())
-                    .cooperativaId(cooperativaId)
-                    .cooperativa(cooperativaNombre)
-                    .origen(origenNombre)
-                    .destino(destinoNombre)
-                    .horaSalida(fv.getHoraSalida() != null ? fv.getHoraSalida().toString() : "00:00")
-                    .duracionEstimada(duracionEstimada)
-                    .tipoViaje(tipoViajeStr)
+            items.add(RutasDtos.SearchRouteItem.builder()
+                    .frecuenciaId(entrada.frecuenciaId())
+                    .cooperativaId(entrada.cooperativaId())
+                    .cooperativa(entrada.cooperativa())
+                    .origen(entrada.origen())
+                    .destino(entrada.destino())
+                    .horaSalida(entrada.horaSalida())
+                    .duracionEstimada(entrada.duracionEstimada())
+                    .tipoViaje(entrada.tipoFrecuencia())
                     .asientosPorTipo(asientosPorTipo)
                     .fecha(fechaMostrar)
-                    .precio(fv.getPrecioBase())
-                    .busPlaca(fv.getBus() != null ? fv.getBus().getPlaca() : null)
-                    .busMarca(fv.getBus() != null ? (fv.getBus().getCarroceriaMarca() != null ? fv.getBus().getCarroceriaMarca() : fv.getBus().getChasisMarca()) : null)
-                    .build();
-
-            items.add(item);
+                    .precio(entrada.precio())
+                    .busPlaca(entrada.busPlaca())
+                    .busMarca(entrada.busMarca())
+                    .build());
         }
 
-        // Ordenar por hora de salida
-        items.sort(Comparator.comparing(RutasDtos.SearchRouteItem::getHoraSalida));
-
-        // Aplicar paginación
-        int start = page * size;
-        int end = Math.min(start + size, items.size());
-        List<RutasDtos.SearchRouteItem> paginatedItems = start < items.size() 
-                ? items.subList(start, end) 
-                : Collections.<RutasDtos.SearchRouteItem>emptyList();
-
         return RutasDtos.SearchRouteResponse.builder()
-                .items(paginatedItems)
-                .total(items.size())
+                .items(items)
+                .total(total)
                 .page(page)
                 .size(size)
                 .build();
     }
 
-    private String obtenerOrigenFrecuenciaViaje(FrecuenciaViaje fv) {
-        if (fv.getTerminalOrigen() != null) {
-            return fv.getTerminalOrigen().getCanton() != null 
-                    ? fv.getTerminalOrigen().getCanton() 
-                    : fv.getTerminalOrigen().getNombre();
-        }
-        if (fv.getRuta() != null && fv.getRuta().getOrigen() != null) {
-            return fv.getRuta().getOrigen();
+    /**
+     * Solo filtra por tipo si tipoViaje corresponde a un TipoFrecuencia (INTERPROVINCIAL, INTRAPROVINCIAL...)
+     */
+    private String tipoFrecuencia(String tipoViaje) {
+        if (tipoViaje == null || tipoViaje.isBlank()) {
+            return null;
         }
-        return "Sin origen";
+        String tipo = tipoViaje.trim().toUpperCase();
+        return Arrays.stream(TipoFrecuencia.values()).anyMatch(t -> t.name().equals(tipo)) ? tipo : null;
     }
 
-    private String obtenerDestinoFrecuenciaViaje(FrecuenciaViaje fv) {
-        if (fv.getTerminalDestino() != null) {
-            return fv.getTerminalDestino().getCanton() != null 
-                    ? fv.getTerminalDestino().getCanton() 
-                    : fv.getTerminalDestino().getNombre();
+    /**
+     * Itinerarios de origen a destino con hasta maxTransbordos cambios de bus en el mismo terminal,
+     * combinando frecuencias directas y paradas intermedias
+     */
+    public RutasDtos.ItinerariosResponse planificarItinerarios(
+            String origen,
+            String destino,
+            String fechaStr,
+            String horaDesdeStr,
+            Integer maxTransbordos
+    ) {
+        LocalDate fecha;
+        LocalTime horaDesde;
+        try {
+            fecha = fechaStr != null && !fechaStr.isEmpty() ? LocalDate.parse(fechaStr) : LocalDate.now();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha inválida, use el formato AAAA-MM-DD: " + fechaStr);
         }
-        if (fv.getRuta() != null && fv.getRuta().getDestino() != null) {
-            return fv.getRuta().getDestino();
+        try {
+            horaDesde = horaDesdeStr != null && !horaDesdeStr.isEmpty() ? LocalTime.parse(horaDesdeStr) : null;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Hora inválida, use el formato HH:mm: " + horaDesdeStr);
         }
-        return "Sin destino";
-    }
+        int transbordos = maxTransbordos != null ? Math.min(Math.max(maxTransbordos, 0), MAX_TRANSBORDOS) : MAX_TRANSBORDOS;
+
+        List<RutasDtos.Itinerario> items = planificadorItinerarios
+                .planificar(origen, destino, fecha.getDayOfWeek(), horaDesde, transbordos).stream()
+                .map(it -> RutasDtos.Itinerario.builder()
+                        .horaSalida(formatearMinutos(it.salidaMin()))
+                        .horaLlegada(formatearMinutos(it.llegadaMin()))
+                        .duracionMinutos(it.llegadaMin() - it.salidaMin())
+                        .transbordos(it.transbordos())
+                        .precioTotal(it.precioTotal())
+                        .tramos(it.tramos().stream()
+                                .map(t -> RutasDtos.TramoItinerario.builder()
+                                        .frecuenciaId(t.frecuenciaId())
+                                        .cooperativaId(t.cooperativaId())
+                                        .cooperativa(t.cooperativa())
+                                        .origen(t.origen())
+                                        .destino(t.destino())
+                                        .horaSalida(formatearMinutos(t.salidaMin()))
+                                        .horaLlegada(formatearMinutos(t.llegadaMin()))
+                                        .precio(t.precio())
+                                        .busPlaca(t.busPlaca())
+                                        .build())
+                                .collect(Collectors.toList()))
+                        .build())
+                .collect(Collectors.toList());
 
-    private String obtenerCooperativaNombre(FrecuenciaViaje fv) {
-        if (fv.getCooperativa() != null && fv.getCooperativa().getNombre() != null) {
-            return fv.getCooperativa().getNombre();
-        }
-        if (fv.getBus() != null && fv.getBus().getCooperativa() != null) {
-            return fv.getBus().getCooperativa().getNombre();
-        }
-        return "Cooperativa";
+        return RutasDtos.ItinerariosResponse.builder()
+                .origen(origen)
+                .destino(destino)
+                .fecha(fecha.toString())
+                .items(items)
+                .build();
     }
 
-    private Long obtenerCooperativaId(FrecuenciaViaje fv) {
-        if (fv.getCooperativa() != null) {
-            return fv.getCooperativa().getId();
-        }
-        if (fv.getBus() != null && fv.getBus().getCooperativa() != null) {
-            return fv.getBus().getCooperativa().getId();
-        }
-        return 0L;
+    /**
+     * Minutos desde el inicio del día a "HH:mm" (los que pasan de medianoche se muestran con la hora del día siguiente)
+     */
+    private String formatearMinutos(int minutos) {
+        return LocalTime.of((minutos / 60) % 24, minutos % 60).toString();
     }
 
     /**
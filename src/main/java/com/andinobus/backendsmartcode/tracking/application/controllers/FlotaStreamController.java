@@ -0,0 +1,87 @@
+package com.andinobus.backendsmartcode.tracking.application.controllers;
+
+import com.andinobus.backendsmartcode.common.errors.AccesoDenegadoException;
+import com.andinobus.backendsmartcode.tracking.domain.services.FlotaStreamService;
+import com.andinobus.backendsmartcode.usuarios.api.dto.AuthDtos;
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
+import com.andinobus.backendsmartcode.usuarios.application.services.TicketsStream;
+import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Canal push (SSE) de posiciones en vivo.
+ * Reemplaza el polling de /api/tracking/viajes/{id}/posicion-actual y /api/viajes/activos.
+ *
+ * Eventos: "snapshot" (estado inicial) y "posiciones" (lista de deltas coalescidos por viaje).
+ * Como EventSource no permite cabeceras, el cliente pide antes un ticket de un solo uso
+ * (POST /ticket con su token) y abre el canal con ?ticket=; el token de sesión nunca va en la URL.
+ *
+ * Permisos:
+ * - SUPER ADMIN: flota completa, cualquier cooperativa o viaje
+ * - ADMIN COOPERATIVA: su cooperativa y sus viajes; un chofer, el viaje que tiene asignado
+ * - CLIENTE: solo viajes con un boleto pagado
+ */
+@RestController
+@RequestMapping("/api/tracking/stream")
+@RequiredArgsConstructor
+public class FlotaStreamController {
+
+    private final FlotaStreamService flotaStreamService;
+    private final ControlAcceso controlAcceso;
+    private final ReservaRepository reservaRepository;
+
+    /**
+     * POST /api/tracking/stream/ticket
+     */
+    @PostMapping("/ticket")
+    public TicketsStream.Emitido emitirTicket(HttpServletRequest httpRequest) {
+        return controlAcceso.emitirTicketStream(httpRequest);
+    }
+
+    /**
+     * GET /api/tracking/stream/flota
+     */
+    @GetMapping(value = "/flota", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribirFlota(
+            @RequestParam(required = false) String ticket,
+            HttpServletRequest httpRequest
+    ) {
+        controlAcceso.verificarAdmin(controlAcceso.autenticarStream(httpRequest, ticket));
+        return flotaStreamService.suscribirFlota();
+    }
+
+    /**
+     * GET /api/tracking/stream/cooperativa/{cooperativaId}
+     */
+    @GetMapping(value = "/cooperativa/{cooperativaId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribirCooperativa(
+            @PathVariable Long cooperativaId,
+            @RequestParam(required = false) String ticket,
+            HttpServletRequest httpRequest
+    ) {
+        controlAcceso.verificarCooperativa(controlAcceso.autenticarStream(httpRequest, ticket), cooperativaId);
+        return flotaStreamService.suscribirCooperativa(cooperativaId);
+    }
+
+    /**
+     * GET /api/tracking/stream/viajes/{viajeId}
+     */
+    @GetMapping(value = "/viajes/{viajeId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribirViaje(
+            @PathVariable Long viajeId,
+            @RequestParam(required = false) String ticket,
+            HttpServletRequest httpRequest
+    ) {
+        AuthDtos.MeResponse me = controlAcceso.autenticarStream(httpRequest, ticket);
+        if ("COOPERATIVA".equals(me.getRol()) || ControlAcceso.esAdmin(me)) {
+            controlAcceso.verificarResponsableViaje(me, viajeId);
+        } else if (!reservaRepository.existsByViajeIdAndClienteEmailAndEstado(viajeId, me.getEmail(), "PAGADO")) {
+            throw new AccesoDenegadoException("No tienes permiso para ver este viaje");
+        }
+        return flotaStreamService.suscribirViaje(viajeId);
+    }
+}
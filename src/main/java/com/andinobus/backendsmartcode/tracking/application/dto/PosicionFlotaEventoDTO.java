@@ -0,0 +1,44 @@
+package com.andinobus.backendsmartcode.tracking.application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Delta de posición/estado de un viaje enviado por el canal push (SSE)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PosicionFlotaEventoDTO {
+    private Long viajeId;
+    private Long cooperativaId;
+    private String estado;
+    private BigDecimal latitud;
+    private BigDecimal longitud;
+    private BigDecimal velocidadKmh;
+    private Integer numeroPasajeros;
+    private LocalDateTime ultimaActualizacion;
+
+    // true cuando el viaje salió de la flota activa (finalizado, cancelado, etc.)
+    private boolean retirado;
+
+    public static PosicionFlotaEventoDTO fromViaje(ViajeActivoDTO viaje, boolean retirado) {
+        return PosicionFlotaEventoDTO.builder()
+                .viajeId(viaje.getViajeId())
+                .cooperativaId(viaje.getCooperativaId())
+                .estado(viaje.getEstado())
+                .latitud(viaje.getLatitudActual())
+                .longitud(viaje.getLongitudActual())
+                .velocidadKmh(viaje.getVelocidadKmh())
+                .numeroPasajeros(viaje.getNumeroPasajeros())
+                .ultimaActualizacion(viaje.getUltimaActualizacion())
+                .retirado(retirado)
+                .build();
+    }
+}
@@ -12,7 +12,7 @@ import java.time.LocalDateTime;
  * DTO para mostrar información de viajes activos en los dashboards
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ViajeActivoDTO {
@@ -0,0 +1,224 @@
+package com.andinobus.backendsmartcode.tracking.domain.services;
+
+import com.andinobus.backendsmartcode.common.transacciones.Transacciones;
+import com.andinobus.backendsmartcode.tracking.application.dto.ViajeActivoDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Estado en memoria de la flota activa (viajes PROGRAMADO, EN_TERMINAL y EN_CURSO).
+ *
+ * Cada viaje se guarda como un ViajeActivoDTO que nunca se modifica: las
+ * actualizaciones de posición, estado o pasajeros reemplazan la entrada por una
+ * copia, así las lecturas no necesitan bloqueo. Se indexa además por cooperativa (la de la frecuencia).
+ * La carga inicial y la resincronización periódica las hace ViajeTrackingQueryService.
+ * Los cambios individuales se notifican a los suscriptores (p.ej. FlotaStreamService).
+ */
+@Component
+@Slf4j
+public class FlotaEnVivoStore {
+
+    private static final Set<String> ESTADOS_ACTIVOS = Set.of("PROGRAMADO", "EN_TERMINAL", "EN_CURSO");
+
+    private final ConcurrentHashMap<Long, ViajeActivoDTO> viajes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<Long>> viajesPorCooperativa = new ConcurrentHashMap<>();
+    private final List<Consumer<CambioFlota>> suscriptores = new CopyOnWriteArrayList<>();
+    private volatile boolean inicializado;
+
+    /**
+     * Cambio de un viaje de la flota; retirado indica que salió de los estados activos
+     */
+    public record CambioFlota(ViajeActivoDTO viaje, boolean retirado) {
+    }
+
+    public void suscribir(Consumer<CambioFlota> suscriptor) {
+        suscriptores.add(suscriptor);
+    }
+
+    public boolean isInicializado() {
+        return inicializado;
+    }
+
+    public static boolean esEstadoActivo(String estado) {
+        return estado != null && ESTADOS_ACTIVOS.contains(estado);
+    }
+
+    /**
+     * Reemplaza el contenido con una carga completa desde la BD.
+     * Si un viaje ya tenía una posición más reciente en memoria, se conserva.
+     */
+    public void sincronizar(Collection<ViajeActivoDTO> cargados) {
+        Set<Long> vigentes = new HashSet<>();
+        for (ViajeActivoDTO dto : cargados) {
+            vigentes.add(dto.getViajeId());
+            viajes.merge(dto.getViajeId(), dto, (actual, nuevo) -> conservarPosicionReciente(actual, nuevo));
+            indexar(dto);
+        }
+        for (Long viajeId : new ArrayList<>(viajes.keySet())) {
+            if (!vigentes.contains(viajeId)) {
+                eliminar(viajeId);
+            }
+        }
+        inicializado = true;
+        log.debug("Flota en vivo sincronizada: {} viajes activos", viajes.size());
+    }
+
+    public void registrar(ViajeActivoDTO dto) {
+        if (dto == null || dto.getViajeId() == null) {
+            return;
+        }
+        if (!esEstadoActivo(dto.getEstado())) {
+            eliminar(dto.getViajeId());
+            return;
+        }
+        viajes.put(dto.getViajeId(), dto);
+        indexar(dto);
+        publicar(dto, false);
+    }
+
+    public boolean contiene(Long viajeId) {
+        return viajes.containsKey(viajeId);
+    }
+
+    public void actualizarPosicion(Long viajeId, Double latitud, Double longitud, Double velocidadKmh,
+                                   LocalDateTime ultimaActualizacion) {
+        ViajeActivoDTO actualizado = viajes.computeIfPresent(viajeId, (id, actual) -> {
+            if (actual.getUltimaActualizacion() != null && ultimaActualizacion.isBefore(actual.getUltimaActualizacion())) {
+                return actual;
+            }
+            return actual.toBuilder()
+                    .latitudActual(latitud != null ? BigDecimal.valueOf(latitud) : null)
+                    .longitudActual(longitud != null ? BigDecimal.valueOf(longitud) : null)
+                    .velocidadKmh(velocidadKmh != null ? BigDecimal.valueOf(velocidadKmh) : null)
+                    .ultimaActualizacion(ultimaActualizacion)
+                    .build();
+        });
+        publicar(actualizado, false);
+    }
+
+    /**
+     * Aplica una transición de estado. Si el nuevo estado ya no es activo, el viaje sale de la flota.
+     */
+    public void actualizarEstado(Long viajeId, String estado, LocalDateTime horaInicioReal) {
+        if (!esEstadoActivo(estado)) {
+            ViajeActivoDTO retirado = viajes.remove(viajeId);
+            if (retirado != null) {
+                desindexar(viajeId);
+                publicar(retirado.toBuilder().estado(estado).build(), true);
+            }
+            return;
+        }
+        ViajeActivoDTO actualizado = viajes.computeIfPresent(viajeId, (id, actual) -> actual.toBuilder()
+                .estado(estado)
+                .horaInicioReal(horaInicioReal != null ? horaInicioReal : actual.getHoraInicioReal())
+                .build());
+        publicar(actualizado, false);
+    }
+
+    /**
+     * Suma delta a los pasajeros (asientos pagados) del viaje. Dentro de una transacción se aplica al confirmarla,
+     * así un rollback no deja la cuenta desfasada hasta la siguiente resincronización.
+     */
+    public void ajustarPasajeros(Long viajeId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        Transacciones.alConfirmar(() -> {
+            ViajeActivoDTO actualizado = viajes.computeIfPresent(viajeId, (id, actual) -> {
+                int pasajeros = actual.getNumeroPasajeros() != null ? actual.getNumeroPasajeros() : 0;
+                return actual.toBuilder()
+                        .numeroPasajeros(Math.max(0, pasajeros + delta))
+                        .build();
+            });
+            publicar(actualizado, false);
+        });
+    }
+
+    public void eliminar(Long viajeId) {
+        ViajeActivoDTO retirado = viajes.remove(viajeId);
+        if (retirado != null) {
+            desindexar(viajeId);
+            publicar(retirado, true);
+        }
+    }
+
+    public ViajeActivoDTO obtener(Long viajeId) {
+        return viajes.get(viajeId);
+    }
+
+    public List<ViajeActivoDTO> listar() {
+        return new ArrayList<>(viajes.values());
+    }
+
+    public List<ViajeActivoDTO> listarPorCooperativa(Long cooperativaId) {
+        Set<Long> ids = viajesPorCooperativa.get(cooperativaId);
+        if (ids == null) {
+            return List.of();
+        }
+        List<ViajeActivoDTO> resultado = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ViajeActivoDTO dto = viajes.get(id);
+            if (dto != null) {
+                resultado.add(dto);
+            }
+        }
+        return resultado;
+    }
+
+    public int tamano() {
+        return viajes.size();
+    }
+
+    private void indexar(ViajeActivoDTO dto) {
+        if (dto.getCooperativaId() != null) {
+            viajesPorCooperativa
+                    .computeIfAbsent(dto.getCooperativaId(), k -> ConcurrentHashMap.newKeySet())
+                    .add(dto.getViajeId());
+        }
+    }
+
+    private void desindexar(Long viajeId) {
+        for (Set<Long> ids : viajesPorCooperativa.values()) {
+            ids.remove(viajeId);
+        }
+    }
+
+    private void publicar(ViajeActivoDTO viaje, boolean retirado) {
+        if (viaje == null || suscriptores.isEmpty()) {
+            return;
+        }
+        CambioFlota cambio = new CambioFlota(viaje, retirado);
+        for (Consumer<CambioFlota> suscriptor : suscriptores) {
+            try {
+                suscriptor.accept(cambio);
+            } catch (Exception e) {
+                log.warn("Error notificando cambio del viaje {}: {}", viaje.getViajeId(), e.getMessage());
+            }
+        }
+    }
+
+    private ViajeActivoDTO conservarPosicionReciente(ViajeActivoDTO actual, ViajeActivoDTO nuevo) {
+        LocalDateTime enMemoria = actual.getUltimaActualizacion();
+        LocalDateTime enBd = nuevo.getUltimaActualizacion();
+        if (enMemoria == null || (enBd != null && !enMemoria.isAfter(enBd))) {
+            return nuevo;
+        }
+        return nuevo.toBuilder()
+                .latitudActual(actual.getLatitudActual())
+                .longitudActual(actual.getLongitudActual())
+                .velocidadKmh(actual.getVelocidadKmh())
+                .ultimaActualizacion(enMemoria)
+                .build();
+    }
+}
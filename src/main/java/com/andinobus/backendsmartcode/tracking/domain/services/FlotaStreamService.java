@@ -0,0 +1,254 @@
+package com.andinobus.backendsmartcode.tracking.domain.services;
+
+import com.andinobus.backendsmartcode.common.errors.ServiceUnavailableException;
+import com.andinobus.backendsmartcode.tracking.application.dto.PosicionFlotaEventoDTO;
+import com.andinobus.backendsmartcode.tracking.application.dto.ViajeActivoDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Canal push (Server-Sent Events) de posiciones de la flota en vivo.
+ *
+ * Los cambios de FlotaEnVivoStore se acumulan por suscriptor en un mapa viajeId → último
+ * estado, de modo que un cliente lento solo recibe la posición más reciente de cada bus.
+ * Un despachador periódico envía lo pendiente; si el envío anterior a un cliente
+ * no terminó, ese cliente se salta hasta el siguiente ciclo.
+ */
+@Service
+@Slf4j
+public class FlotaStreamService {
+
+    private static final String EVENTO_SNAPSHOT = "snapshot";
+    private static final String EVENTO_POSICIONES = "posiciones";
+
+    private final FlotaEnVivoStore flotaEnVivoStore;
+
+    @Value("${app.tracking.stream.intervalo-ms:1000}")
+    private long intervaloMs;
+
+    @Value("${app.tracking.stream.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    @Value("${app.tracking.stream.max-suscriptores:2000}")
+    private int maxSuscriptores;
+
+    @Value("${app.tracking.stream.hilos-envio:4}")
+    private int hilosEnvio;
+
+    private final Set<Suscriptor> suscriptoresFlota = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<Suscriptor>> suscriptoresPorCooperativa = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Suscriptor>> suscriptoresPorViaje = new ConcurrentHashMap<>();
+    private final AtomicLong totalSuscriptores = new AtomicLong();
+
+    private ScheduledExecutorService despachador;
+    private ExecutorService envios;
+    private long ultimoHeartbeat = System.currentTimeMillis();
+
+    public FlotaStreamService(FlotaEnVivoStore flotaEnVivoStore) {
+        this.flotaEnVivoStore = flotaEnVivoStore;
+    }
+
+    /**
+     * Suscripción de un cliente: pendientes guarda solo el último cambio de cada viaje
+     */
+    private static final class Suscriptor {
+        private final SseEmitter emitter;
+        private final Map<Long, PosicionFlotaEventoDTO> pendientes = new ConcurrentHashMap<>();
+        private final AtomicBoolean enviando = new AtomicBoolean();
+        private volatile boolean cerrado;
+
+        private Suscriptor(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    @PostConstruct
+    void iniciar() {
+        flotaEnVivoStore.suscribir(this::publicar);
+        despachador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "flota-stream-dispatcher");
+            t.setDaemon(true);
+            return t;
+        });
+        envios = Executors.newFixedThreadPool(hilosEnvio, r -> {
+            Thread t = new Thread(r, "flota-stream-sender");
+            t.setDaemon(true);
+            return t;
+        });
+        despachador.scheduleWithFixedDelay(this::despachar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void detener() {
+        despachador.shutdownNow();
+        envios.shutdownNow();
+        todos().forEach(s -> s.emitter.complete());
+    }
+
+    public SseEmitter suscribirFlota() {
+        return registrar(null, null, flotaEnVivoStore.listar());
+    }
+
+    public SseEmitter suscribirCooperativa(Long cooperativaId) {
+        return registrar(suscriptoresPorCooperativa, cooperativaId, flotaEnVivoStore.listarPorCooperativa(cooperativaId));
+    }
+
+    public SseEmitter suscribirViaje(Long viajeId) {
+        ViajeActivoDTO viaje = flotaEnVivoStore.obtener(viajeId);
+        return registrar(suscriptoresPorViaje, viajeId, viaje != null ? List.of(viaje) : List.of());
+    }
+
+    public long getTotalSuscriptores() {
+        return totalSuscriptores.get();
+    }
+
+    /**
+     * Registra un suscriptor en la flota completa (indice null) o en el grupo clave del índice
+     */
+    private SseEmitter registrar(Map<Long, Set<Suscriptor>> indice, Long clave, List<ViajeActivoDTO> estadoInicial) {
+        if (totalSuscriptores.incrementAndGet() > maxSuscriptores) {
+            totalSuscriptores.decrementAndGet();
+            throw new ServiceUnavailableException("Se alcanzó el máximo de suscripciones en vivo");
+        }
+
+        SseEmitter emitter = new SseEmitter(0L);
+        Suscriptor suscriptor = new Suscriptor(emitter);
+        Runnable baja = () -> {
+            if (suscriptor.cerrado) {
+                return;
+            }
+            suscriptor.cerrado = true;
+            totalSuscriptores.decrementAndGet();
+            if (indice == null) {
+                suscriptoresFlota.remove(suscriptor);
+            } else {
+                indice.computeIfPresent(clave, (k, grupo) -> {
+                    grupo.remove(suscriptor);
+                    return grupo.isEmpty() ? null : grupo;
+                });
+            }
+        };
+        emitter.onCompletion(baja);
+        emitter.onTimeout(baja);
+        emitter.onError(e -> baja.run());
+
+        if (indice == null) {
+            suscriptoresFlota.add(suscriptor);
+        } else {
+            indice.compute(clave, (k, grupo) -> {
+                Set<Suscriptor> destino = grupo != null ? grupo : ConcurrentHashMap.newKeySet();
+                destino.add(suscriptor);
+                return destino;
+            });
+        }
+
+        List<PosicionFlotaEventoDTO> snapshot = estadoInicial.stream()
+                .map(v -> PosicionFlotaEventoDTO.fromViaje(v, false))
+                .toList();
+        try {
+            emitter.send(SseEmitter.event().name(EVENTO_SNAPSHOT).data(snapshot));
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Recibe un cambio de la flota y lo deja pendiente en cada suscriptor interesado
+     */
+    private void publicar(FlotaEnVivoStore.CambioFlota cambio) {
+        ViajeActivoDTO viaje = cambio.viaje();
+        PosicionFlotaEventoDTO evento = PosicionFlotaEventoDTO.fromViaje(viaje, cambio.retirado());
+
+        encolar(suscriptoresFlota, evento);
+        if (viaje.getCooperativaId() != null) {
+            Set<Suscriptor> grupo = suscriptoresPorCooperativa.get(viaje.getCooperativaId());
+            if (grupo != null) {
+                encolar(grupo, evento);
+            }
+        }
+        Set<Suscriptor> grupoViaje = suscriptoresPorViaje.get(viaje.getViajeId());
+        if (grupoViaje != null) {
+            encolar(grupoViaje, evento);
+        }
+    }
+
+    private void encolar(Set<Suscriptor> grupo, PosicionFlotaEventoDTO evento) {
+        for (Suscriptor s : grupo) {
+            s.pendientes.put(evento.getViajeId(), evento);
+        }
+    }
+
+    private void despachar() {
+        try {
+            boolean heartbeat = System.currentTimeMillis() - ultimoHeartbeat >= heartbeatMs;
+            if (heartbeat) {
+                ultimoHeartbeat = System.currentTimeMillis();
+            }
+            for (Suscriptor s : todos()) {
+                if (s.cerrado || (s.pendientes.isEmpty() && !heartbeat)) {
+                    continue;
+                }
+                if (!s.enviando.compareAndSet(false, true)) {
+                    // Cliente lento: los cambios siguen acumulándose (coalescidos) hasta el próximo ciclo
+                    continue;
+                }
+                try {
+                    envios.execute(() -> enviar(s, heartbeat));
+                } catch (RejectedExecutionException e) {
+                    s.enviando.set(false);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error despachando eventos de flota: {}", e.getMessage());
+        }
+    }
+
+    private void enviar(Suscriptor s, boolean heartbeat) {
+        try {
+            List<PosicionFlotaEventoDTO> lote = new ArrayList<>(s.pendientes.size());
+            Iterator<Long> it = s.pendientes.keySet().iterator();
+            while (it.hasNext()) {
+                PosicionFlotaEventoDTO evento = s.pendientes.remove(it.next());
+                if (evento != null) {
+                    lote.add(evento);
+                }
+            }
+            if (!lote.isEmpty()) {
+                s.emitter.send(SseEmitter.event().name(EVENTO_POSICIONES).data(lote));
+            } else if (heartbeat) {
+                s.emitter.send(SseEmitter.event().comment("ping"));
+            }
+        } catch (Exception e) {
+            log.debug("Suscriptor de flota desconectado: {}", e.getMessage());
+            s.emitter.completeWithError(e);
+        } finally {
+            s.enviando.set(false);
+        }
+    }
+
+    private List<Suscriptor> todos() {
+        List<Suscriptor> todos = new ArrayList<>(suscriptoresFlota);
+        suscriptoresPorCooperativa.values().forEach(todos::addAll);
+        suscriptoresPorViaje.values().forEach(todos::addAll);
+        return todos;
+    }
+}
@@ -4,10 +4,13 @@ import com.andinobus.backendsmartcode.tracking.application.dto.ViajeActivoDTO;
 import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
 import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
-import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
-import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
+import com.andinobus.backendsmartcode.catalogos.application.services.TerminalResolver;
+import com.andinobus.backendsmartcode.catalogos.application.services.TerminalResolver.TerminalUbicacion;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,8 +18,9 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -31,27 +35,45 @@ public class ViajeTrackingQueryService {
 
     private final ViajeRepository viajeRepository;
     private final ReservaRepository reservaRepository;
-    private final TerminalRepository terminalRepository;
+    private final TerminalResolver terminalResolver;
+    private final FlotaEnVivoStore flotaEnVivoStore;
+
+    private static final List<String> ESTADOS_ACTIVOS = List.of("EN_CURSO", "PROGRAMADO", "EN_TERMINAL");
+
+    /**
+     * Carga la flota activa en memoria al arrancar y la resincroniza periódicamente
+     * (recoge viajes creados por otras vías y corrige cualquier desvío)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.tracking.flota.resync-ms:60000}", initialDelayString = "${app.tracking.flota.resync-ms:60000}")
+    public void sincronizarFlotaEnVivo() {
+        try {
+            List<ViajeActivoDTO> activos = cargarViajesActivosDesdeBd();
+            flotaEnVivoStore.sincronizar(activos);
+            log.info("Flota en vivo sincronizada con {} viajes activos", activos.size());
+        } catch (Exception e) {
+            log.error("No se pudo sincronizar la flota en vivo: {}", e.getMessage());
+        }
+    }
 
     /**
      * Obtiene todos los viajes activos del sistema
      * Para Super Admin
      */
     public List<ViajeActivoDTO> obtenerViajesActivos() {
-        log.info("Obteniendo todos los viajes activos del sistema");
+        log.debug("Obteniendo todos los viajes activos del sistema");
 
-        LocalDate hoy = LocalDate.now();
-        List<Viaje> viajes = new ArrayList<>();
-        viajes.addAll(viajeRepository.findActivosByFecha(hoy.minusDays(1)));
-        viajes.addAll(viajeRepository.findActivosByFecha(hoy));
-        viajes.addAll(viajeRepository.findActivosByFecha(hoy.plusDays(1)));
+        if (flotaEnVivoStore.isInicializado()) {
+            return flotaEnVivoStore.listar();
+        }
+        return cargarViajesActivosDesdeBd();
+    }
 
-        return viajes.stream()
-                .filter(v -> "EN_CURSO".equals(v.getEstado()) ||
-                             "PROGRAMADO".equals(v.getEstado()) ||
-                             "EN_TERMINAL".equals(v.getEstado()))
-                .map(this::convertirAViajeActivoDTO)
-                .collect(Collectors.toList());
+    private List<ViajeActivoDTO> cargarViajesActivosDesdeBd() {
+        LocalDate hoy = LocalDate.now();
+        List<Viaje> viajes = viajeRepository.findConDetalleByFechaBetweenAndEstadoIn(
+                hoy.minusDays(1), hoy.plusDays(1), ESTADOS_ACTIVOS);
+        return convertirAViajesActivosDTO(viajes);
     }
 
     /**
@@ -59,22 +81,20 @@ public class ViajeTrackingQueryService {
      * Para Admin de Cooperativa
      */
     public List<ViajeActivoDTO> obtenerViajesActivosPorCooperativa(Long cooperativaId) {
-        log.info("Obteniendo viajes activos de la cooperativa: {}", cooperativaId);
+        log.debug("Obteniendo viajes activos de la cooperativa: {}", cooperativaId);
 
-        LocalDate hoy = LocalDate.now();
-        List<Viaje> viajes = new ArrayList<>();
-        viajes.addAll(viajeRepository.findActivosByFecha(hoy.minusDays(1)));
-        viajes.addAll(viajeRepository.findActivosByFecha(hoy));
-        viajes.addAll(viajeRepository.findActivosByFecha(hoy.plusDays(1)));
+        if (flotaEnVivoStore.isInicializado()) {
+            return flotaEnVivoStore.listarPorCooperativa(cooperativaId);
+        }
 
-        return viajes.stream()
+        LocalDate hoy = LocalDate.now();
+        List<Viaje> viajes = viajeRepository.findConDetalleByFechaBetweenAndEstadoIn(
+                hoy.minusDays(1), hoy.plusDays(1), ESTADOS_ACTIVOS).stream()
                 .filter(v -> v.getFrecuencia() != null && v.getFrecuencia().getCooperativa() != null
                         && cooperativaId.equals(v.getFrecuencia().getCooperativa().getId()))
-                .filter(v -> "EN_CURSO".equals(v.getEstado()) ||
-                             "PROGRAMADO".equals(v.getEstado()) ||
-                             "EN_TERMINAL".equals(v.getEstado()))
-                .map(this::convertirAViajeActivoDTO)
                 .collect(Collectors.toList());
+
+        return convertirAViajesActivosDTO(viajes);
     }
 
     /**
@@ -95,43 +115,85 @@ public class ViajeTrackingQueryService {
             return List.of();
         }
 
-        // Obtener viajes de esos IDs
-        List<Viaje> viajes = viajeRepository.findAllById(viajeIds);
+        if (flotaEnVivoStore.isInicializado()) {
+            return viajeIds.stream()
+                    .map(flotaEnVivoStore::obtener)
+                    .filter(v -> v != null && ("EN_CURSO".equals(v.getEstado()) || "PROGRAMADO".equals(v.getEstado())))
+                    .collect(Collectors.toList());
+        }
 
-        return viajes.stream()
+        // Obtener viajes de esos IDs
+        List<Viaje> viajes = viajeRepository.findConDetalleByIdIn(viajeIds).stream()
                 .filter(v -> "EN_CURSO".equals(v.getEstado()) ||
                              "PROGRAMADO".equals(v.getEstado()))
-                .map(this::convertirAViajeActivoDTO)
                 .collect(Collectors.toList());
+
+        return convertirAViajesActivosDTO(viajes);
     }
 
     /**
      * Obtiene el detalle completo de un viaje específico
      */
     public ViajeActivoDTO obtenerDetalleViaje(Long viajeId) {
-        log.info("Obteniendo detalle del viaje: {}", viajeId);
+        log.debug("Obteniendo detalle del viaje: {}", viajeId);
+
+        ViajeActivoDTO enVivo = flotaEnVivoStore.obtener(viajeId);
+        if (enVivo != null) {
+            return enVivo;
+        }
+
+        List<Viaje> viajes = viajeRepository.findConDetalleByIdIn(List.of(viajeId));
+        if (viajes.isEmpty()) {
+            throw new RuntimeException("Viaje no encontrado: " + viajeId);
+        }
+
+        return convertirAViajesActivosDTO(viajes).get(0);
+    }
+
+    /**
+     * Agrega (o refresca) un viaje en la flota en vivo, p.ej. al iniciarlo antes de la próxima resincronización
+     */
+    public void registrarEnFlota(Long viajeId) {
+        convertirAViajesActivosDTO(viajeRepository.findConDetalleByIdIn(List.of(viajeId)))
+                .forEach(flotaEnVivoStore::registrar);
+    }
+
+    /**
+     * Convierte N viajes (cargados con sus relaciones por fetch join) a ViajeActivoDTO
+     * con una sola consulta agregada para pasajeros; los terminales salen de TerminalResolver
+     */
+    private List<ViajeActivoDTO> convertirAViajesActivosDTO(List<Viaje> viajes) {
+        if (viajes.isEmpty()) {
+            return List.of();
+        }
 
-        Viaje viaje = viajeRepository.findById(viajeId)
-                .orElseThrow(() -> new RuntimeException("Viaje no encontrado: " + viajeId));
+        // Contar pasajeros (reservas pagadas) sumando asientos, en una sola consulta agrupada
+        List<Long> viajeIds = viajes.stream().map(Viaje::getId).collect(Collectors.toList());
+        Map<Long, Integer> pasajerosPorViaje = new HashMap<>();
+        for (Object[] fila : reservaRepository.sumAsientosPagadosByViajeIds(viajeIds)) {
+            pasajerosPorViaje.put((Long) fila[0], ((Number) fila[1]).intValue());
+        }
 
-        return convertirAViajeActivoDTO(viaje);
+        List<ViajeActivoDTO> resultado = new ArrayList<>(viajes.size());
+        for (Viaje viaje : viajes) {
+            resultado.add(construirViajeActivoDTO(viaje,
+                    pasajerosPorViaje.getOrDefault(viaje.getId(), 0)));
+        }
+        return resultado;
     }
 
     /**
-     * Convierte una entidad Viaje a ViajeActivoDTO
+     * Construye el ViajeActivoDTO de un viaje con los datos ya resueltos
      */
-    private ViajeActivoDTO convertirAViajeActivoDTO(Viaje viaje) {
+    private ViajeActivoDTO construirViajeActivoDTO(Viaje viaje, int numeroPasajeros) {
         var frecuencia = viaje.getFrecuencia();
         var bus = viaje.getBus();
-        var cooperativa = (bus != null) ? bus.getCooperativa() : null;
+        // La cooperativa dueña del viaje es la de su frecuencia (la misma que filtra la consulta por
+        // cooperativa); la del bus solo si la frecuencia no la tiene
+        var cooperativa = (frecuencia != null && frecuencia.getCooperativa() != null) ? frecuencia.getCooperativa()
+                : (bus != null) ? bus.getCooperativa() : null;
         var chofer = viaje.getChofer();
 
-        // Contar pasajeros (reservas pagadas) sumando asientos
-        int numeroPasajeros = reservaRepository.findByViajeId(viaje.getId()).stream()
-                .filter(r -> "PAGADO".equals(r.getEstado()))
-                .mapToInt(r -> r.getAsientos() != null ? r.getAsientos() : 0)
-                .sum();
-
         // Obtener coordenadas de terminales para la ruta
         BigDecimal terminalOrigenLat = null;
         BigDecimal terminalOrigenLon = null;
@@ -141,63 +203,22 @@ public class ViajeTrackingQueryService {
         String terminalDestinoNombre = null;
 
         if (frecuencia != null) {
-            // Obtener nombres de origen y destino de la frecuencia
             // Formato: "PROVINCIA|Canton|numero" -> extraemos el cantón (parte del medio)
-            String origenCompleto = frecuencia.getOrigen();
-            String destinoCompleto = frecuencia.getDestino();
-            
-            terminalOrigenNombre = extraerCantonDeRuta(origenCompleto);
-            terminalDestinoNombre = extraerCantonDeRuta(destinoCompleto);
-            
-            log.debug("Extrayendo cantones - Origen: '{}' -> '{}', Destino: '{}' -> '{}'", 
-                origenCompleto, terminalOrigenNombre, destinoCompleto, terminalDestinoNombre);
-            
-            // Buscar terminal de origen por nombre (cantón) para obtener coordenadas
-            if (terminalOrigenNombre != null) {
-                // Primero buscar por cantón (retorna lista, tomamos el primero)
-                List<Terminal> terminalesPorCanton = terminalRepository.findByCantonIgnoreCase(terminalOrigenNombre);
-                Optional<Terminal> terminalOrigen = terminalesPorCanton.isEmpty() 
-                    ? Optional.empty() 
-                    : Optional.of(terminalesPorCanton.get(0));
-                
-                if (terminalOrigen.isEmpty()) {
-                    // Intentar buscar por nombre del terminal si no se encuentra por cantón
-                    terminalOrigen = terminalRepository.findByNombreIgnoreCase(terminalOrigenNombre);
-                }
-                if (terminalOrigen.isPresent()) {
-                    Terminal term = terminalOrigen.get();
-                    if (term.getLatitud() != null && term.getLongitud() != null) {
-                        terminalOrigenLat = BigDecimal.valueOf(term.getLatitud());
-                        terminalOrigenLon = BigDecimal.valueOf(term.getLongitud());
-                        terminalOrigenNombre = term.getNombre(); // Usar nombre real del terminal
-                        log.debug("Terminal origen encontrado: {} -> lat={}, lon={}", 
-                            terminalOrigenNombre, terminalOrigenLat, terminalOrigenLon);
-                    }
-                }
+            terminalOrigenNombre = TerminalResolver.extraerCanton(frecuencia.getOrigen());
+            terminalDestinoNombre = TerminalResolver.extraerCanton(frecuencia.getDestino());
+
+            TerminalUbicacion origen = terminalResolver.resolverPorCanton(frecuencia.getOrigen()).orElse(null);
+            if (origen != null && origen.tieneCoordenadas()) {
+                terminalOrigenLat = BigDecimal.valueOf(origen.latitud());
+                terminalOrigenLon = BigDecimal.valueOf(origen.longitud());
+                terminalOrigenNombre = origen.nombre(); // Usar nombre real del terminal
             }
-            
-            // Buscar terminal de destino por nombre (cantón) para obtener coordenadas
-            if (terminalDestinoNombre != null) {
-                // Primero buscar por cantón (retorna lista, tomamos el primero)
-                List<Terminal> terminalesPorCanton = terminalRepository.findByCantonIgnoreCase(terminalDestinoNombre);
-                Optional<Terminal> terminalDestino = terminalesPorCanton.isEmpty() 
-                    ? Optional.empty() 
-                    : Optional.of(terminalesPorCanton.get(0));
-                
-                if (terminalDestino.isEmpty()) {
-                    // Intentar buscar por nombre del terminal si no se encuentra por cantón
-                    terminalDestino = terminalRepository.findByNombreIgnoreCase(terminalDestinoNombre);
-                }
-                if (terminalDestino.isPresent()) {
-                    Terminal term = terminalDestino.get();
-                    if (term.getLatitud() != null && term.getLongitud() != null) {
-                        terminalDestinoLat = BigDecimal.valueOf(term.getLatitud());
-                        terminalDestinoLon = BigDecimal.valueOf(term.getLongitud());
-                        terminalDestinoNombre = term.getNombre(); // Usar nombre real del terminal
-                        log.debug("Terminal destino encontrado: {} -> lat={}, lon={}", 
-                            terminalDestinoNombre, terminalDestinoLat, terminalDestinoLon);
-                    }
-                }
+
+            TerminalUbicacion destino = terminalResolver.resolverPorCanton(frecuencia.getDestino()).orElse(null);
+            if (destino != null && destino.tieneCoordenadas()) {
+                terminalDestinoLat = BigDecimal.valueOf(destino.latitud());
+                terminalDestinoLon = BigDecimal.valueOf(destino.longitud());
+                terminalDestinoNombre = destino.nombre(); // Usar nombre real del terminal
             }
         }
 
@@ -243,29 +264,4 @@ public class ViajeTrackingQueryService {
                 .terminalDestinoNombre(terminalDestinoNombre)
                 .build();
     }
-    
-    /**
-     * Extrae el cantón de una ruta con formato "PROVINCIA|Canton|numero"
-     * Si el formato no coincide, retorna el string original
-     * 
-     * @param rutaCompleta La ruta en formato "PROVINCIA|Canton|numero"
-     * @return El cantón extraído o el string original si no tiene el formato esperado
-     */
-    private String extraerCantonDeRuta(String rutaCompleta) {
-        if (rutaCompleta == null || rutaCompleta.isEmpty()) {
-            return null;
-        }
-        
-        // Verificar si tiene el formato con pipes
-        if (rutaCompleta.contains("|")) {
-            String[] partes = rutaCompleta.split("\\|");
-            if (partes.length >= 2) {
-                // El cantón está en la segunda posición (índice 1)
-                return partes[1].trim();
-            }
-        }
-        
-        // Si no tiene el formato esperado, retornar el string original
-        return rutaCompleta.trim();
-    }
 }
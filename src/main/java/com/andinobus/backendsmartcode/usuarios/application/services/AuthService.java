@@ -32,6 +32,7 @@ public class AuthService {
     private final ConfirmacionTokenRepository confirmacionTokenRepository;
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
+    private final CacheSesiones cacheSesiones;
 
     // Credenciales del administrador del sistema (hardcoded)
     @Value("${admin.email:admin@andinobus.com}")
@@ -234,8 +235,14 @@ public class AuthService {
                 .build();
     }
     
-    @Transactional(readOnly = true)
+    /**
+     * Usuario autenticado por el token; los aciertos de la caché de sesiones no consultan la BD
+     */
     public AuthDtos.MeResponse getMeByToken(String token) {
+        return cacheSesiones.obtener(token, this::resolverSesion);
+    }
+
+    private CacheSesiones.Sesion resolverSesion(String token) {
         // Buscar token en BD
         UserToken userToken = userTokenRepository.findByToken(token)
                 .orElseThrow(() -> new RuntimeException("Token inválido"));
@@ -250,13 +257,13 @@ public class AuthService {
         
         // Super Admin (userId = -1 o userType = ADMIN)
         if (userId == -1 || "ADMIN".equals(userType)) {
-            return AuthDtos.MeResponse.builder()
+            return sesion(userToken, AuthDtos.MeResponse.builder()
                     .userId(-1L)
                     .email(adminEmail)
                     .rol("ADMIN")
                     .nombres("Administrador")
                     .apellidos("del Sistema")
-                    .build();
+                    .build());
         }
         
         // Usuario COOPERATIVA
@@ -269,7 +276,7 @@ public class AuthService {
                 throw new RuntimeException("Usuario inactivo");
             }
             
-            return AuthDtos.MeResponse.builder()
+            return sesion(userToken, AuthDtos.MeResponse.builder()
                     .userId(usuarioCoop.getId())
                     .email(usuarioCoop.getEmail())
                     .rol("COOPERATIVA")
@@ -281,7 +288,7 @@ public class AuthService {
                     .fotoUrl(usuarioCoop.getFotoUrl())
                     .cooperativaId(usuarioCoop.getCooperativa() != null ? usuarioCoop.getCooperativa().getId() : null)
                     .cooperativaNombre(usuarioCoop.getCooperativa() != null ? usuarioCoop.getCooperativa().getNombre() : null)
-                    .build();
+                    .build());
         }
         
         // Usuario CLIENTE (default)
@@ -293,18 +300,23 @@ public class AuthService {
             throw new RuntimeException("Usuario inactivo");
         }
         
-        return AuthDtos.MeResponse.builder()
+        return sesion(userToken, AuthDtos.MeResponse.builder()
                 .userId(user.getId())
                 .email(user.getEmail())
                 .rol(user.getRol())
                 .nombres(user.getNombres())
                 .apellidos(user.getApellidos())
-                .build();
+                .build());
+    }
+
+    private static CacheSesiones.Sesion sesion(UserToken userToken, AuthDtos.MeResponse me) {
+        return new CacheSesiones.Sesion(me, userToken.getUserType(), userToken.getUserId(), userToken.getExpiresAt());
     }
     
     @Transactional
     public void logout(String token) {
         userTokenRepository.deleteByToken(token);
+        cacheSesiones.invalidarToken(token);
     }
     
     @Transactional
@@ -0,0 +1,139 @@
+package com.andinobus.backendsmartcode.usuarios.application.services;
+
+import com.andinobus.backendsmartcode.common.cache.CacheAcotada;
+import com.andinobus.backendsmartcode.common.transacciones.Transacciones;
+import com.andinobus.backendsmartcode.usuarios.api.dto.AuthDtos;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Caché token → usuario autenticado delante de AuthService.getMeByToken.
+ *
+ * Cada ping de GPS y cada /me resolvía el token y cargaba el usuario: dos consultas solo para
+ * autenticar. Aquí un acierto no abre transacción ni toca la BD. Una entrada vence tras ttlMs o
+ * al expirar el token, lo que ocurra primero; el logout y los cambios del usuario (p.ej. su
+ * desactivación) la descartan al confirmarse la transacción. La caché está acotada (LRU) y
+ * reporta su tasa de aciertos periódicamente.
+ */
+@Component
+@Slf4j
+public class CacheSesiones {
+
+    private final TransactionTemplate lectura;
+
+    @Value("${app.auth.sesiones.max-tokens:10000}")
+    private int maxTokens;
+
+    @Value("${app.auth.sesiones.ttl-ms:60000}")
+    private long ttlMs;
+
+    private final CacheAcotada<String, Sesion> sesiones = CacheAcotada.porEntradas(() -> maxTokens, () -> ttlMs);
+
+    /**
+     * Versión de las invalidaciones: una resolución desde BD solo se guarda si ninguna
+     * invalidación se confirmó mientras se leía
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+    private long consultasReportadas;
+
+    public CacheSesiones(PlatformTransactionManager transactionManager) {
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+    }
+
+    /**
+     * Resultado de resolver un token en la BD: el usuario y los datos del token que acotan su vigencia
+     */
+    public record Sesion(AuthDtos.MeResponse me, String userType, Long userId, LocalDateTime expiraEn) {
+    }
+
+    public record Estadisticas(long aciertos, long fallos, long invalidaciones, int tokens, double tasaAciertos) {
+    }
+
+    /**
+     * Usuario del token desde la caché; si no está o venció lo resuelve en una transacción de solo
+     * lectura y lo guarda. Las excepciones del resolvedor (token inválido, usuario inactivo) se propagan
+     */
+    public AuthDtos.MeResponse obtener(String token, Function<String, Sesion> resolver) {
+        Sesion sesion = sesiones.obtener(token);
+        if (sesion != null && expirada(sesion)) {
+            sesiones.quitar(token);
+            sesion = null;
+        }
+        if (sesion != null) {
+            aciertos.increment();
+            return sesion.me();
+        }
+        fallos.increment();
+        long versionLeida = version.get();
+        Sesion resuelta = lectura.execute(status -> resolver.apply(token));
+        synchronized (sesiones) {
+            if (version.get() == versionLeida) {
+                sesiones.guardar(token, resuelta);
+            }
+        }
+        return resuelta.me();
+    }
+
+    /**
+     * Descarta el token al confirmarse la transacción en curso (logout)
+     */
+    public void invalidarToken(String token) {
+        Transacciones.alConfirmar(() -> {
+            version.incrementAndGet();
+            if (sesiones.quitar(token) != null) {
+                invalidaciones.increment();
+            }
+        });
+    }
+
+    /**
+     * Descarta todos los tokens de un usuario al confirmarse la transacción en curso
+     * (desactivación o cambio de datos)
+     */
+    public void invalidarUsuario(String userType, Long userId) {
+        Transacciones.alConfirmar(() -> {
+            version.incrementAndGet();
+            invalidaciones.add(sesiones.quitarSi(s -> Objects.equals(s.userType(), userType)
+                    && Objects.equals(s.userId(), userId)));
+        });
+    }
+
+    public Estadisticas estadisticas() {
+        long a = aciertos.sum();
+        long f = fallos.sum();
+        int tokens = sesiones.tamano();
+        double tasa = a + f == 0 ? 0 : Math.round((double) a / (a + f) * 10000.0) / 100.0;
+        return new Estadisticas(a, f, invalidaciones.sum(), tokens, tasa);
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.sesiones.reporte-ms:300000}", initialDelayString = "${app.auth.sesiones.reporte-ms:300000}")
+    public void reportar() {
+        Estadisticas e = estadisticas();
+        long consultas = e.aciertos() + e.fallos();
+        if (consultas == consultasReportadas) {
+            return;
+        }
+        consultasReportadas = consultas;
+        log.info("Caché de sesiones: {} tokens, {} aciertos, {} fallos ({}% aciertos), {} invalidaciones",
+                e.tokens(), e.aciertos(), e.fallos(), e.tasaAciertos(), e.invalidaciones());
+    }
+
+    private static boolean expirada(Sesion sesion) {
+        return sesion.expiraEn() != null && LocalDateTime.now().isAfter(sesion.expiraEn());
+    }
+}
@@ -0,0 +1,181 @@
+package com.andinobus.backendsmartcode.usuarios.application.services;
+
+import com.andinobus.backendsmartcode.common.errors.AccesoDenegadoException;
+import com.andinobus.backendsmartcode.common.errors.NoAutenticadoException;
+import com.andinobus.backendsmartcode.common.errors.NotFoundException;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
+import com.andinobus.backendsmartcode.usuarios.api.dto.AuthDtos;
+import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Autenticación manual de endpoints. No hay SecurityFilterChain, así que @PreAuthorize no se
+ * aplica: los controladores resuelven el token (X-Demo-Token o Authorization: Bearer) con
+ * AuthService y validan el rol aquí. Sin token o con uno inválido → 401; sin permiso → 403.
+ * Los canales SSE, que no pueden enviar cabeceras, se autentican con un ticket de TicketsStream.
+ */
+@Component
+@RequiredArgsConstructor
+public class ControlAcceso {
+
+    private final AuthService authService;
+    private final ViajeRepository viajeRepository;
+    private final ReservaRepository reservaRepository;
+    private final TicketsStream ticketsStream;
+
+    public static String extraerToken(HttpServletRequest request) {
+        String token = request.getHeader("X-Demo-Token");
+        String auth = request.getHeader("Authorization");
+        if (token == null && auth != null && auth.startsWith("Bearer ")) {
+            token = auth.substring(7);
+        }
+        return token;
+    }
+
+    public AuthDtos.MeResponse autenticar(HttpServletRequest request) {
+        String token = extraerToken(request);
+        if (token == null || token.isBlank()) {
+            throw new NoAutenticadoException();
+        }
+        try {
+            return authService.getMeByToken(token);
+        } catch (RuntimeException e) {
+            throw new NoAutenticadoException("Token inválido");
+        }
+    }
+
+    /**
+     * Ticket de un solo uso para abrir un canal SSE, emitido al usuario del token de la cabecera
+     */
+    public TicketsStream.Emitido emitirTicketStream(HttpServletRequest request) {
+        return ticketsStream.emitir(autenticar(request));
+    }
+
+    /**
+     * Autenticación de un canal SSE: el token de la cabecera si viene, si no el ticket (que se consume)
+     */
+    public AuthDtos.MeResponse autenticarStream(HttpServletRequest request, String ticket) {
+        if (extraerToken(request) != null) {
+            return autenticar(request);
+        }
+        AuthDtos.MeResponse me = ticketsStream.canjear(ticket);
+        if (me == null) {
+            throw new NoAutenticadoException("Ticket inválido o vencido");
+        }
+        return me;
+    }
+
+    /**
+     * Solo el super administrador
+     */
+    public AuthDtos.MeResponse requerirAdmin(HttpServletRequest request) {
+        return verificarAdmin(autenticar(request));
+    }
+
+    public AuthDtos.MeResponse verificarAdmin(AuthDtos.MeResponse me) {
+        if (!esAdmin(me)) {
+            throw new AccesoDenegadoException("Solo el super administrador puede realizar esta acción");
+        }
+        return me;
+    }
+
+    /**
+     * Super administrador o usuario de una cooperativa (de cualquier cooperativa si cooperativaId es null)
+     */
+    public AuthDtos.MeResponse requerirCooperativa(HttpServletRequest request, Long cooperativaId) {
+        return verificarCooperativa(autenticar(request), cooperativaId);
+    }
+
+    public AuthDtos.MeResponse verificarCooperativa(AuthDtos.MeResponse me, Long cooperativaId) {
+        if (esAdmin(me)) {
+            return me;
+        }
+        boolean permitido = "COOPERATIVA".equals(me.getRol())
+                && (cooperativaId == null || cooperativaId.equals(me.getCooperativaId()));
+        if (!permitido) {
+            throw new AccesoDenegadoException("No tienes permiso sobre esta cooperativa");
+        }
+        return me;
+    }
+
+    /**
+     * Usuario de cooperativa con rol CHOFER
+     */
+    public AuthDtos.MeResponse requerirChofer(HttpServletRequest request) {
+        AuthDtos.MeResponse me = autenticar(request);
+        if (!esChofer(me)) {
+            throw new AccesoDenegadoException("Solo el chofer puede realizar esta acción");
+        }
+        return me;
+    }
+
+    /**
+     * Chofer asignado al viaje
+     */
+    public AuthDtos.MeResponse requerirChoferDelViaje(HttpServletRequest request, Long viajeId) {
+        AuthDtos.MeResponse me = requerirChofer(request);
+        if (!me.getUserId().equals(responsablesViaje(viajeId)[0])) {
+            throw new AccesoDenegadoException("El viaje no está asignado a este chofer");
+        }
+        return me;
+    }
+
+    /**
+     * Super administrador, usuario de la cooperativa dueña del viaje o, si es chofer, el asignado al viaje
+     */
+    public AuthDtos.MeResponse requerirResponsableViaje(HttpServletRequest request, Long viajeId) {
+        return verificarResponsableViaje(autenticar(request), viajeId);
+    }
+
+    public AuthDtos.MeResponse verificarResponsableViaje(AuthDtos.MeResponse me, Long viajeId) {
+        if (esAdmin(me)) {
+            return me;
+        }
+        Object[] responsables = responsablesViaje(viajeId);
+        boolean permitido = esChofer(me)
+                ? me.getUserId().equals(responsables[0])
+                : "COOPERATIVA".equals(me.getRol()) && Objects.equals(me.getCooperativaId(), responsables[1]);
+        if (!permitido) {
+            throw new AccesoDenegadoException("No tienes permiso sobre este viaje");
+        }
+        return me;
+    }
+
+    /**
+     * Cliente dueño de la reserva (por el email de su sesión), usuario de la cooperativa dueña del
+     * viaje o super administrador
+     */
+    public AuthDtos.MeResponse requerirDuenoReserva(HttpServletRequest request, Long reservaId) {
+        AuthDtos.MeResponse me = autenticar(request);
+        List<Object[]> filas = reservaRepository.findDuenosById(reservaId);
+        if (filas.isEmpty()) {
+            throw new NotFoundException("Reserva no encontrada");
+        }
+        String clienteEmail = (String) filas.get(0)[0];
+        if (clienteEmail != null && clienteEmail.equalsIgnoreCase(me.getEmail())) {
+            return me;
+        }
+        return verificarCooperativa(me, (Long) filas.get(0)[1]);
+    }
+
+    public static boolean esAdmin(AuthDtos.MeResponse me) {
+        return "ADMIN".equals(me.getRol());
+    }
+
+    public static boolean esChofer(AuthDtos.MeResponse me) {
+        return "COOPERATIVA".equals(me.getRol()) && "CHOFER".equals(me.getRolCooperativa());
+    }
+
+    private Object[] responsablesViaje(Long viajeId) {
+        List<Object[]> filas = viajeRepository.findResponsablesById(viajeId);
+        if (filas.isEmpty()) {
+            throw new NotFoundException("Viaje no encontrado");
+        }
+        return filas.get(0);
+    }
+}
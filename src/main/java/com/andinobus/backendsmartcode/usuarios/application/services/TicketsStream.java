@@ -0,0 +1,62 @@
+package com.andinobus.backendsmartcode.usuarios.application.services;
+
+import com.andinobus.backendsmartcode.usuarios.api.dto.AuthDtos;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tickets de un solo uso para abrir un canal SSE.
+ *
+ * EventSource no permite cabeceras, y el token de sesión en la URL queda en los logs de acceso y
+ * de los proxies. El cliente pide un ticket con su token en la cabecera y lo pasa como ?ticket=:
+ * vence a los pocos segundos y se descarta al canjearlo, así lo que quede en un log ya no sirve.
+ */
+@Component
+public class TicketsStream {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Value("${app.auth.stream-ticket.ttl-ms:30000}")
+    private long ttlMs;
+
+    private final ConcurrentHashMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+
+    private record Ticket(AuthDtos.MeResponse me, long venceEn) {
+    }
+
+    public record Emitido(String ticket, long validoSegundos) {
+    }
+
+    public Emitido emitir(AuthDtos.MeResponse me) {
+        byte[] bytes = new byte[24];
+        RANDOM.nextBytes(bytes);
+        String ticket = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tickets.put(ticket, new Ticket(me, System.currentTimeMillis() + ttlMs));
+        return new Emitido(ticket, ttlMs / 1000);
+    }
+
+    /**
+     * Usuario del ticket, que deja de ser válido; null si no existe o venció
+     */
+    public AuthDtos.MeResponse canjear(String ticket) {
+        if (ticket == null) {
+            return null;
+        }
+        Ticket canjeado = tickets.remove(ticket);
+        if (canjeado == null || System.currentTimeMillis() > canjeado.venceEn()) {
+            return null;
+        }
+        return canjeado.me();
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.stream-ticket.purga-ms:60000}", initialDelayString = "${app.auth.stream-ticket.purga-ms:60000}")
+    public void purgarVencidos() {
+        long ahora = System.currentTimeMillis();
+        tickets.values().removeIf(t -> ahora > t.venceEn());
+    }
+}
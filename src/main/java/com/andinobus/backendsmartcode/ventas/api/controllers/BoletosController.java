@@ -2,27 +2,46 @@ package com.andinobus.backendsmartcode.ventas.api.controllers;
 
 import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
 import com.andinobus.backendsmartcode.ventas.application.services.BoletoService;
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/boletos")
 @RequiredArgsConstructor
 public class BoletosController {
 
     private final BoletoService boletoService;
+    private final ControlAcceso controlAcceso;
 
+    /**
+     * Boleto firmado de una reserva pagada.
+     * Solo el cliente dueño de la reserva, la cooperativa del viaje o el super administrador
+     */
     @GetMapping("/reserva/{reservaId}")
     public ResponseEntity<VentasDtos.BoletoResponse> generarBoleto(
             @PathVariable Long reservaId,
-            @RequestParam(required = false) String clienteEmail,
-            Authentication authentication) {
-        
-        String email = clienteEmail != null ? clienteEmail : (authentication != null ? authentication.getName() : null);
-        VentasDtos.BoletoResponse response = boletoService.generarBoleto(reservaId, email);
-        return ResponseEntity.ok(response);
+            @RequestParam(required = false) String formato,
+            HttpServletRequest httpRequest) {
+        controlAcceso.requerirDuenoReserva(httpRequest, reservaId);
+        return ResponseEntity.ok(boletoService.generarBoleto(reservaId, formato));
+    }
+
+    /**
+     * Boletos de todas las reservas pagadas de un viaje (formato del QR: PNG o SVG).
+     * Solo la cooperativa dueña del viaje, su chofer o el super administrador
+     */
+    @GetMapping("/viaje/{viajeId}")
+    public ResponseEntity<List<VentasDtos.BoletoResponse>> generarBoletosViaje(
+            @PathVariable Long viajeId,
+            @RequestParam(required = false) String formato,
+            HttpServletRequest httpRequest) {
+        controlAcceso.requerirResponsableViaje(httpRequest, viajeId);
+        return ResponseEntity.ok(boletoService.generarBoletosViaje(viajeId, formato));
     }
 }
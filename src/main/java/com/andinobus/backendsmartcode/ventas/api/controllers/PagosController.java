@@ -2,27 +2,50 @@ package com.andinobus.backendsmartcode.ventas.api.controllers;
 
 import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
 import com.andinobus.backendsmartcode.ventas.application.services.PagoService;
+import com.andinobus.backendsmartcode.usuarios.api.dto.AuthDtos;
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/pagos")
 @RequiredArgsConstructor
 public class PagosController {
 
     private final PagoService pagoService;
+    private final ControlAcceso controlAcceso;
 
     @PostMapping("/confirmar")
     public ResponseEntity<VentasDtos.PagoResponse> confirmarPago(
             @RequestBody VentasDtos.PagoConfirmacionRequest request,
             @RequestParam(required = false) String clienteEmail,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication) {
         
+        if (idempotencyKey != null && request.getClaveIdempotencia() == null) {
+            request.setClaveIdempotencia(idempotencyKey);
+        }
         String email = clienteEmail != null ? clienteEmail : (authentication != null ? authentication.getName() : null);
         VentasDtos.PagoResponse response = pagoService.confirmarPago(request, email);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Conciliación: confirma un lote de pagos (p.ej. PayPal o transferencias) en una transacción.
+     * Super administrador, o usuario de cooperativa solo sobre reservas de su cooperativa
+     */
+    @PostMapping("/confirmar/lote")
+    public ResponseEntity<List<VentasDtos.PagoResponse>> confirmarPagos(
+            @RequestBody List<VentasDtos.PagoConfirmacionRequest> requests,
+            HttpServletRequest httpRequest) {
+        AuthDtos.MeResponse me = controlAcceso.requerirCooperativa(httpRequest, null);
+        Long cooperativaId = ControlAcceso.esAdmin(me) ? null : me.getCooperativaId();
+        return ResponseEntity.ok(pagoService.confirmarPagos(requests, cooperativaId));
+    }
 }
@@ -1,10 +1,14 @@
 package com.andinobus.backendsmartcode.ventas.api.controllers;
 
+import com.andinobus.backendsmartcode.usuarios.application.services.ControlAcceso;
 import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
+import com.andinobus.backendsmartcode.ventas.application.services.ExpiracionReservasService;
 import com.andinobus.backendsmartcode.ventas.application.services.ReservaService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
@@ -16,6 +20,8 @@ import java.util.List;
 public class ReservasController {
 
     private final ReservaService reservaService;
+    private final ExpiracionReservasService expiracionReservasService;
+    private final ControlAcceso controlAcceso;
 
     @PostMapping
     public ResponseEntity<VentasDtos.ReservaResponse> crearReserva(
@@ -66,6 +72,15 @@ public class ReservasController {
         return ResponseEntity.ok(asientos);
     }
 
+    @GetMapping("/viaje/{viajeId}/asientos/contiguos")
+    public ResponseEntity<VentasDtos.AsientosContiguosResponse> buscarAsientosContiguos(
+            @PathVariable Long viajeId,
+            @RequestParam(defaultValue = "2") int cantidad,
+            @RequestParam(required = false) Integer piso) {
+
+        return ResponseEntity.ok(reservaService.buscarAsientosContiguos(viajeId, cantidad, piso));
+    }
+
     @GetMapping("/frecuencia/{frecuenciaId}/asientos")
     public ResponseEntity<VentasDtos.AsientosViajeResponse> obtenerAsientosDisponiblesPorFrecuencia(
             @PathVariable Long frecuenciaId,
@@ -75,6 +90,17 @@ public class ReservasController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Métricas del motor de expiración de reservas (solo SUPER ADMIN)
+     * GET /api/reservas/expiracion/estadisticas
+     */
+    @GetMapping("/expiracion/estadisticas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<VentasDtos.ExpiracionReservasStatsResponse> obtenerEstadisticasExpiracion(HttpServletRequest httpRequest) {
+        controlAcceso.requerirAdmin(httpRequest);
+        return ResponseEntity.ok(expiracionReservasService.obtenerEstadisticas());
+    }
+
     @GetMapping("/cooperativa/{cooperativaId}")
     public ResponseEntity<List<VentasDtos.ReservaCooperativaDto>> obtenerReservasPorCooperativa(
             @PathVariable Long cooperativaId,
@@ -80,6 +80,7 @@ public class VentasDtos {
         private Long reservaId;
         private String estado;
         private String codigoQR; // data URL base64
+        private String token; // contenido firmado del QR, validado en /embarque/scan
     }
 
     @Data
@@ -100,12 +101,45 @@ public class VentasDtos {
         private List<AsientoDisponibilidadDto> asientos;
     }
 
+    @Data
+    @Builder
+    public static class ExpiracionReservasStatsResponse {
+        private int vencimientosProgramados; // Reservas pendientes en la cola de vencimientos
+        private long barridos;
+        private long barridosOmitidos; // Otra instancia tenía el candado de expiración
+        private long reservasExpiradas;
+        private long asientosLiberados;
+        private long ultimoRetrasoMs; // Retraso respecto a expiresAt del último lote
+        private long maximoRetrasoMs;
+        private double promedioRetrasoMs;
+    }
+
+    @Data
+    @Builder
+    public static class CuboVentasEstadoResponse {
+        private long ultimoCambio; // Marca de agua: último cambio de reservas incorporado al cubo
+        private java.time.LocalDateTime actualizadoEn;
+        private long cambiosPendientes;
+        private long actualizaciones;
+        private long actualizacionesOmitidas; // Otra instancia estaba actualizando el cubo
+        private long cambiosProcesados;
+    }
+
+    @Data
+    @Builder
+    public static class AsientosContiguosResponse {
+        private Long viajeId;
+        private Integer cantidad;
+        private List<List<String>> grupos; // Cada grupo: números de asientos juntos en la misma fila
+    }
+
     @Data
     @Builder
     public static class PagoConfirmacionRequest {
         private Long reservaId;
         private String metodoPago; // "EFECTIVO", "TARJETA", "PAYPAL"
         private String referencia; // Opcional: número de transacción
+        private String claveIdempotencia; // Opcional: por defecto metodoPago:referencia:reservaId
     }
 
     @Data
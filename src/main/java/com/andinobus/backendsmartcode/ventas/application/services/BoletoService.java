@@ -5,10 +5,6 @@ import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
 import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
 import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
@@ -16,10 +12,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.andinobus.backendsmartcode.common.errors.NotFoundException;
 
-import java.io.ByteArrayOutputStream;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,18 +25,23 @@ public class BoletoService {
 
     private final ReservaRepository reservaRepository;
     private final ViajeAsientoRepository viajeAsientoRepository;
+    private final FirmaBoletos firmaBoletos;
+    private final RenderizadorQr renderizadorQr;
 
+    // Números de asiento en orden numérico ("2" antes de "10"): el token de una reserva es estable
+    private static final Comparator<String> POR_NUMERO =
+            Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    /**
+     * Boleto de la reserva; el controlador ya verificó que quien lo pide es su dueño
+     */
     @Transactional(readOnly = true)
-    public VentasDtos.BoletoResponse generarBoleto(Long reservaId, String clienteEmail) {
-        // 1. Buscar reserva (por ID y email si está presente, solo por ID si no)
-        Reserva reserva;
-        if (clienteEmail != null && !clienteEmail.isEmpty()) {
-            reserva = reservaRepository.findByIdAndClienteEmail(reservaId, clienteEmail)
-                    .orElseThrow(() -> new NotFoundException("Reserva no encontrada"));
-        } else {
-            reserva = reservaRepository.findById(reservaId)
-                    .orElseThrow(() -> new NotFoundException("Reserva no encontrada"));
-        }
+    public VentasDtos.BoletoResponse generarBoleto(Long reservaId, String formato) {
+        RenderizadorQr.Formato formatoQr = RenderizadorQr.Formato.desde(formato);
+
+        // 1. Buscar reserva
+        Reserva reserva = reservaRepository.findById(reservaId)
+                .orElseThrow(() -> new NotFoundException("Reserva no encontrada"));
 
         // 2. Validar que esté pagada
         if (!"PAGADO".equals(reserva.getEstado())) {
@@ -48,7 +49,53 @@ public class BoletoService {
         }
 
         // 3. Validar que el viaje no haya iniciado
-        String estadoViaje = reserva.getViaje().getEstado();
+        validarEstadoViaje(reserva.getViaje().getEstado());
+
+        // 4. Código y token firmado con los números de asiento de la reserva
+        VentasDtos.BoletoResponse boleto = armarBoleto(reserva, viajeAsientoRepository.findByReservaId(reservaId));
+
+        // 5. Generar código QR con el token (cacheado por token)
+        boleto.setCodigoQR(renderizadorQr.dataUrl(boleto.getToken(), formatoQr));
+
+        log.info("Boleto generado: {} para reserva {}", boleto.getCodigoBoleto(), reservaId);
+        return boleto;
+    }
+
+    /**
+     * Boletos de todas las reservas pagadas de un viaje; los QR se renderizan en paralelo
+     */
+    @Transactional(readOnly = true)
+    public List<VentasDtos.BoletoResponse> generarBoletosViaje(Long viajeId, String formato) {
+        RenderizadorQr.Formato formatoQr = RenderizadorQr.Formato.desde(formato);
+        List<Reserva> pagadas = reservaRepository.findByViajeId(viajeId).stream()
+                .filter(r -> "PAGADO".equals(r.getEstado()))
+                .sorted(Comparator.comparing(Reserva::getId))
+                .toList();
+        if (pagadas.isEmpty()) {
+            return List.of();
+        }
+        validarEstadoViaje(pagadas.get(0).getViaje().getEstado());
+
+        // Los asientos del viaje se leen una sola vez y se reparten por reserva
+        Map<Long, List<ViajeAsiento>> asientosPorReserva = viajeAsientoRepository.findByViajeId(viajeId).stream()
+                .filter(a -> a.getReserva() != null)
+                .collect(Collectors.groupingBy(a -> a.getReserva().getId()));
+        List<VentasDtos.BoletoResponse> boletos = new ArrayList<>(pagadas.size());
+        for (Reserva reserva : pagadas) {
+            boletos.add(armarBoleto(reserva, asientosPorReserva.getOrDefault(reserva.getId(), List.of())));
+        }
+
+        List<String> qrs = renderizadorQr.dataUrls(
+                boletos.stream().map(VentasDtos.BoletoResponse::getToken).toList(), formatoQr);
+        for (int i = 0; i < boletos.size(); i++) {
+            boletos.get(i).setCodigoQR(qrs.get(i));
+        }
+
+        log.info("{} boletos generados para viaje {}", boletos.size(), viajeId);
+        return boletos;
+    }
+
+    private void validarEstadoViaje(String estadoViaje) {
         if ("EN_RUTA".equals(estadoViaje)) {
             throw new RuntimeException("VIAJE_INICIADO: El viaje ya ha iniciado. No es posible emitir el boleto. Por favor, contacte a la cooperativa para solicitar un reembolso.");
         }
@@ -58,62 +105,41 @@ public class BoletoService {
         if ("CANCELADO".equals(estadoViaje)) {
             throw new RuntimeException("VIAJE_CANCELADO: El viaje ha sido cancelado. Por favor, contacte a la cooperativa.");
         }
+    }
 
-        // 4. Generar código del boleto
-        String codigoBoleto = generarCodigoBoleto(reserva);
-
-        // 4. Obtener información de asientos
-        List<ViajeAsiento> asientos = viajeAsientoRepository.findByReservaId(reservaId);
-        String asientosStr = asientos.stream()
-                .map(ViajeAsiento::getNumeroAsiento)
-                .collect(Collectors.joining(", "));
-
-        // 5. Generar contenido del QR
-        String qrContent = String.format(
-                "BOLETO: %s\nRESERVA: %d\nVIAJE: %d\nASIENTOS: %s\nCLIENTE: %s",
-                codigoBoleto,
+    private VentasDtos.BoletoResponse armarBoleto(Reserva reserva, List<ViajeAsiento> asientosReserva) {
+        String token = firmaBoletos.emitir(
                 reserva.getId(),
                 reserva.getViaje().getId(),
-                asientosStr,
-                reserva.getClienteEmail()
+                numerosAsientos(asientosReserva),
+                // Cubre los viajes nocturnos que llegan al día siguiente
+                reserva.getViaje().getFecha().plusDays(2).atStartOfDay()
         );
-
-        // 6. Generar código QR
-        String qrDataUrl = generarCodigoQR(qrContent);
-
-        log.info("Boleto generado: {} para reserva {}", codigoBoleto, reservaId);
-
         return VentasDtos.BoletoResponse.builder()
-                .codigoBoleto(codigoBoleto)
-                .reservaId(reservaId)
+                .codigoBoleto(generarCodigoBoleto(reserva))
+                .reservaId(reserva.getId())
                 .estado("EMITIDO")
-                .codigoQR(qrDataUrl)
+                .token(token)
                 .build();
     }
 
-    private String generarCodigoBoleto(Reserva reserva) {
-        // Formato: AB-YYYYMMDD-XXXXX
-        String fecha = reserva.getViaje().getFecha().toString().replace("-", "");
-        String random = UUID.randomUUID().toString().substring(0, 5).toUpperCase();
-        return String.format("AB-%s-%s", fecha, random);
+    /**
+     * Números de los asientos de la reserva, ordenados por número (el token es estable)
+     */
+    private List<String> numerosAsientos(List<ViajeAsiento> asientosReserva) {
+        List<String> numeros = asientosReserva.stream()
+                .map(ViajeAsiento::getNumeroAsiento)
+                .sorted(POR_NUMERO)
+                .toList();
+        if (numeros.isEmpty()) {
+            throw new RuntimeException("La reserva no tiene asientos asignados");
+        }
+        return numeros;
     }
 
-    private String generarCodigoQR(String content) {
-        try {
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(content, BarcodeFormat.QR_CODE, 300, 300);
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            MatrixToImageWriter.writeToStream(bitMatrix, "PNG", outputStream);
-            byte[] qrBytes = outputStream.toByteArray();
-
-            String base64QR = Base64.getEncoder().encodeToString(qrBytes);
-            return "data:image/png;base64," + base64QR;
-
-        } catch (Exception e) {
-            log.error("Error generando código QR", e);
-            // Retornar placeholder en caso de error
-            return "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
-        }
+    private String generarCodigoBoleto(Reserva reserva) {
+        // Formato: AB-YYYYMMDD-RRRRR (derivado de la reserva: el mismo boleto siempre tiene el mismo código)
+        String fecha = reserva.getViaje().getFecha().toString().replace("-", "");
+        return String.format("AB-%s-%05d", fecha, reserva.getId());
     }
 }
@@ -0,0 +1,134 @@
+package com.andinobus.backendsmartcode.ventas.application.services;
+
+import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cubo diario de ventas (migración V50): día × cooperativa × frecuencia × estado de la reserva.
+ *
+ * Los triggers anotan las celdas que cambian y este servicio las incorpora por lotes avanzando la
+ * marca de agua; los reportes leen un rango de fechas del cubo con un solo recorrido de índice
+ * en lugar de agregar reserva ⋈ viaje ⋈ frecuencia en cada consulta.
+ */
+@Service
+@Slf4j
+public class CuboVentasService {
+
+    public static final String PAGADO = "PAGADO";
+
+    // Global: rango sobre la clave primaria (fecha, ...)
+    private static final String SQL_CELDAS =
+            "SELECT fecha, cooperativa_id, frecuencia_id, reservas, asientos, monto FROM cubo_ventas_diario " +
+            "WHERE fecha BETWEEN ? AND ? AND estado = ? ORDER BY fecha";
+
+    // Una cooperativa: rango sobre (cooperativa_id, fecha)
+    private static final String SQL_CELDAS_COOPERATIVA =
+            "SELECT fecha, cooperativa_id, frecuencia_id, reservas, asientos, monto FROM cubo_ventas_diario " +
+            "WHERE cooperativa_id = ? AND fecha BETWEEN ? AND ? AND estado = ? ORDER BY fecha";
+
+    private static final RowMapper<Celda> CELDA = (rs, i) -> new Celda(
+            rs.getObject(1, LocalDate.class), rs.getLong(2), rs.getLong(3),
+            rs.getInt(4), rs.getInt(5), rs.getBigDecimal(6));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.ventas.cubo.tamano-lote:5000}")
+    private int tamanoLote;
+
+    // Métricas
+    private final AtomicLong actualizaciones = new AtomicLong();
+    private final AtomicLong actualizacionesOmitidas = new AtomicLong();
+    private final AtomicLong cambiosProcesados = new AtomicLong();
+
+    public CuboVentasService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reservas de un día y una frecuencia en un estado
+     */
+    public record Celda(LocalDate fecha, Long cooperativaId, Long frecuenciaId, int reservas, int asientos, BigDecimal monto) {
+    }
+
+    /**
+     * Celdas del rango [desde, hasta] con reservas en el estado dado, ordenadas por fecha.
+     * Si cooperativaId es null se devuelven las de todas las cooperativas
+     */
+    @Transactional(readOnly = true)
+    public List<Celda> consultar(Long cooperativaId, LocalDate desde, LocalDate hasta, String estado) {
+        if (cooperativaId == null) {
+            return jdbcTemplate.query(SQL_CELDAS, CELDA, desde, hasta, estado);
+        }
+        return jdbcTemplate.query(SQL_CELDAS_COOPERATIVA, CELDA, cooperativaId, desde, hasta, estado);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ventas.cubo.intervalo-ms:10000}", initialDelayString = "${app.ventas.cubo.intervalo-ms:10000}")
+    public void actualizarPeriodico() {
+        try {
+            actualizar();
+        } catch (Exception e) {
+            log.error("No se pudo actualizar el cubo de ventas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Incorpora al cubo todos los cambios pendientes, un lote por transacción.
+     * Retorna los cambios procesados, o -1 si otra instancia estaba actualizando
+     */
+    public long actualizar() {
+        actualizaciones.incrementAndGet();
+        long total = 0;
+        while (true) {
+            Integer cambios = jdbcTemplate.queryForObject("SELECT cubo_ventas_actualizar(?)", Integer.class, tamanoLote);
+            if (cambios == null || cambios < 0) {
+                actualizacionesOmitidas.incrementAndGet();
+                return total > 0 ? total : -1;
+            }
+            total += cambios;
+            cambiosProcesados.addAndGet(cambios);
+            if (cambios < tamanoLote) {
+                if (total > 0) {
+                    log.debug("Cubo de ventas actualizado con {} cambios", total);
+                }
+                return total;
+            }
+        }
+    }
+
+    /**
+     * Recalcula el cubo completo desde las tablas base (reparación manual)
+     */
+    @Transactional
+    public void reconstruir() {
+        log.info("Reconstruyendo el cubo de ventas desde las tablas base");
+        jdbcTemplate.execute("SELECT cubo_ventas_reconstruir()");
+    }
+
+    @Transactional(readOnly = true)
+    public VentasDtos.CuboVentasEstadoResponse obtenerEstado() {
+        VentasDtos.CuboVentasEstadoResponse.CuboVentasEstadoResponseBuilder estado = VentasDtos.CuboVentasEstadoResponse.builder();
+        jdbcTemplate.query("SELECT ultimo_cambio, actualizado_en, (SELECT COUNT(*) FROM cubo_ventas_pendiente) " +
+                        "FROM cubo_ventas_watermark WHERE id = 1",
+                rs -> {
+                    estado.ultimoCambio(rs.getLong(1))
+                            .actualizadoEn(rs.getTimestamp(2).toLocalDateTime())
+                            .cambiosPendientes(rs.getLong(3));
+                });
+        return estado
+                .actualizaciones(actualizaciones.get())
+                .actualizacionesOmitidas(actualizacionesOmitidas.get())
+                .cambiosProcesados(cambiosProcesados.get())
+                .build();
+    }
+}
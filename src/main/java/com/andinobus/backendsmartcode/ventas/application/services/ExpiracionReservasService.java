@@ -0,0 +1,270 @@
+package com.andinobus.backendsmartcode.ventas.application.services;
+
+import com.andinobus.backendsmartcode.operacion.application.services.MapaAsientosCache;
+import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
+import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Motor de expiración de reservas PENDIENTE.
+ *
+ * Los vencimientos (expiresAt) se cargan de la BD al arrancar y se agregan al crear cada reserva
+ * en una DelayQueue; un hilo despierta cuando vence la primera y expira en bloque todas las
+ * reservas vencidas con una sola sentencia que también libera sus asientos. La BD es la fuente
+ * de verdad: la actualización es condicional (estado = 'PENDIENTE') y se ejecuta bajo un
+ * candado consultivo de Postgres, así cada reserva expira una sola vez aunque haya varias
+ * instancias. También incrementa la versión de la reserva: una confirmación de pago que la leyó
+ * PENDIENTE antes de expirar falla con conflicto en vez de pisar el EXPIRADO y vender asientos ya
+ * liberados. Un barrido periódico recoge las reservas creadas en otras instancias.
+ */
+@Service
+@Slf4j
+public class ExpiracionReservasService {
+
+    /** Clave del candado consultivo compartido por todas las instancias */
+    private static final long CANDADO_EXPIRACION = 7_310_042_001L;
+
+    private static final String SQL_EXPIRAR_LOTE =
+            "WITH expiradas AS ( " +
+            "    UPDATE reserva SET estado = 'EXPIRADO', version = version + 1 " +
+            "    WHERE id IN (SELECT id FROM reserva " +
+            "                 WHERE estado = 'PENDIENTE' AND expires_at < ? " +
+            "                 ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "    RETURNING id, expires_at " +
+            "), liberados AS ( " +
+            "    UPDATE viaje_asiento va SET estado = 'DISPONIBLE', reserva_id = NULL, updated_at = now() " +
+            "    FROM expiradas e WHERE va.reserva_id = e.id " +
+            "    RETURNING e.id AS reserva_id, va.viaje_id, va.numero_asiento " +
+            ") " +
+            "SELECT e.id, CAST(EXTRACT(EPOCH FROM (CAST(? AS timestamp) - e.expires_at)) * 1000 AS BIGINT) AS retraso_ms, " +
+            "       l.viaje_id, l.numero_asiento " +
+            "FROM expiradas e LEFT JOIN liberados l ON l.reserva_id = e.id";
+
+    private final ReservaRepository reservaRepository;
+    private final MapaAsientosCache mapaAsientosCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.ventas.expiracion.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${app.ventas.expiracion.reintento-ms:2000}")
+    private long reintentoMs;
+
+    private final DelayQueue<Vencimiento> vencimientos = new DelayQueue<>();
+    private Thread trabajador;
+    private volatile boolean corriendo;
+
+    // Métricas
+    private final AtomicLong barridos = new AtomicLong();
+    private final AtomicLong barridosOmitidos = new AtomicLong();
+    private final AtomicLong reservasExpiradas = new AtomicLong();
+    private final AtomicLong asientosLiberados = new AtomicLong();
+    private final AtomicLong retrasoTotalMs = new AtomicLong();
+    private volatile long ultimoRetrasoMs;
+    private volatile long maximoRetrasoMs;
+
+    public ExpiracionReservasService(ReservaRepository reservaRepository,
+                                     MapaAsientosCache mapaAsientosCache,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager) {
+        this.reservaRepository = reservaRepository;
+        this.mapaAsientosCache = mapaAsientosCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Momento en que debe despertar el motor; reservaId null indica un reintento del barrido
+     */
+    private record Vencimiento(Long reservaId, long venceEnMs) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(venceEnMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed otro) {
+            return Long.compare(venceEnMs, ((Vencimiento) otro).venceEnMs);
+        }
+    }
+
+    private record LoteExpirado(int reservas, int asientos, long retrasoTotalMs, long retrasoMaximoMs) {
+    }
+
+    /**
+     * Carga los vencimientos pendientes desde la BD y arranca el hilo de expiración
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        try {
+            List<Object[]> pendientes = reservaRepository.findVencimientosPendientes();
+            for (Object[] fila : pendientes) {
+                programar((Long) fila[0], (LocalDateTime) fila[1]);
+            }
+            log.info("Motor de expiración de reservas iniciado con {} vencimientos pendientes", pendientes.size());
+        } catch (Exception e) {
+            log.error("No se pudieron cargar los vencimientos de reservas: {}", e.getMessage());
+        }
+        corriendo = true;
+        trabajador = new Thread(this::ejecutarTrabajador, "reserva-expiracion");
+        trabajador.setDaemon(true);
+        trabajador.start();
+    }
+
+    @PreDestroy
+    void detener() {
+        corriendo = false;
+        if (trabajador != null) {
+            trabajador.interrupt();
+        }
+    }
+
+    /**
+     * Agrega el vencimiento de una reserva a la cola del motor
+     */
+    public void programar(Long reservaId, LocalDateTime expiresAt) {
+        if (reservaId == null || expiresAt == null) {
+            return;
+        }
+        vencimientos.offer(new Vencimiento(reservaId, expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+    }
+
+    /**
+     * Red de seguridad: expira lo que haya vencido aunque no esté en la cola de esta instancia
+     */
+    @Scheduled(fixedDelayString = "${app.ventas.expiracion.barrido-ms:60000}", initialDelayString = "${app.ventas.expiracion.barrido-ms:60000}")
+    public void barridoPeriodico() {
+        try {
+            expirarVencidas();
+        } catch (Exception e) {
+            log.error("Error en el barrido de reservas vencidas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Expira por lotes todas las reservas vencidas. Retorna false si otra instancia tenía el candado
+     */
+    public boolean expirarVencidas() {
+        barridos.incrementAndGet();
+        while (true) {
+            LocalDateTime ahora = LocalDateTime.now();
+            LoteExpirado lote = transactionTemplate.execute(status -> expirarLote(ahora));
+            if (lote == null) {
+                barridosOmitidos.incrementAndGet();
+                return false;
+            }
+            registrar(lote);
+            if (lote.reservas() < tamanoLote) {
+                return true;
+            }
+        }
+    }
+
+    public VentasDtos.ExpiracionReservasStatsResponse obtenerEstadisticas() {
+        long expiradas = reservasExpiradas.get();
+        return VentasDtos.ExpiracionReservasStatsResponse.builder()
+                .vencimientosProgramados(vencimientos.size())
+                .barridos(barridos.get())
+                .barridosOmitidos(barridosOmitidos.get())
+                .reservasExpiradas(expiradas)
+                .asientosLiberados(asientosLiberados.get())
+                .ultimoRetrasoMs(ultimoRetrasoMs)
+                .maximoRetrasoMs(maximoRetrasoMs)
+                .promedioRetrasoMs(expiradas > 0 ? (double) retrasoTotalMs.get() / expiradas : 0)
+                .build();
+    }
+
+    private void ejecutarTrabajador() {
+        while (corriendo) {
+            try {
+                vencimientos.take();
+                // Todo lo que ya venció se resuelve en el mismo barrido
+                vencimientos.drainTo(new ArrayList<>());
+                if (!expirarVencidas()) {
+                    // Otra instancia está expirando ahora; volver a mirar en un momento
+                    vencimientos.offer(new Vencimiento(null, System.currentTimeMillis() + reintentoMs));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error expirando reservas: {}", e.getMessage());
+                vencimientos.offer(new Vencimiento(null, System.currentTimeMillis() + reintentoMs));
+            }
+        }
+    }
+
+    /**
+     * Un lote en una transacción: candado consultivo, expiración condicional y liberación de asientos
+     */
+    private LoteExpirado expirarLote(LocalDateTime ahora) {
+        Boolean candado = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, CANDADO_EXPIRACION);
+        if (!Boolean.TRUE.equals(candado)) {
+            return null;
+        }
+
+        Timestamp corte = Timestamp.valueOf(ahora);
+        Map<Long, Long> retrasoPorReserva = new HashMap<>();
+        Map<Long, List<String>> liberadosPorViaje = new HashMap<>();
+        jdbcTemplate.query(SQL_EXPIRAR_LOTE, rs -> {
+            retrasoPorReserva.put(rs.getLong(1), Math.max(0, rs.getLong(2)));
+            long viajeId = rs.getLong(3);
+            if (!rs.wasNull()) {
+                liberadosPorViaje.computeIfAbsent(viajeId, k -> new ArrayList<>()).add(rs.getString(4));
+            }
+        }, corte, tamanoLote, corte);
+
+        int asientos = 0;
+        for (Map.Entry<Long, List<String>> e : liberadosPorViaje.entrySet()) {
+            mapaAsientosCache.marcar(e.getKey(), e.getValue(), MapaAsientosCache.DISPONIBLE);
+            asientos += e.getValue().size();
+        }
+        long retrasoTotal = 0;
+        long retrasoMaximo = 0;
+        for (long retraso : retrasoPorReserva.values()) {
+            retrasoTotal += retraso;
+            retrasoMaximo = Math.max(retrasoMaximo, retraso);
+        }
+        return new LoteExpirado(retrasoPorReserva.size(), asientos, retrasoTotal, retrasoMaximo);
+    }
+
+    /**
+     * Acumula las métricas de un lote ya confirmado
+     */
+    private void registrar(LoteExpirado lote) {
+        if (lote.reservas() == 0) {
+            return;
+        }
+        reservasExpiradas.addAndGet(lote.reservas());
+        asientosLiberados.addAndGet(lote.asientos());
+        retrasoTotalMs.addAndGet(lote.retrasoTotalMs());
+        ultimoRetrasoMs = lote.retrasoMaximoMs();
+        if (lote.retrasoMaximoMs() > maximoRetrasoMs) {
+            maximoRetrasoMs = lote.retrasoMaximoMs();
+        }
+        log.info("Expiradas {} reservas y liberados {} asientos (retraso máximo {} ms)",
+                lote.reservas(), lote.asientos(), lote.retrasoMaximoMs());
+    }
+}
@@ -0,0 +1,155 @@
+package com.andinobus.backendsmartcode.ventas.application.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Tokens de boleto firmados, verificables sin consultar la BD.
+ *
+ * El token es un payload binario compacto en Base64 URL: versión (1 byte), reserva (8), viaje (8),
+ * vencimiento en segundos epoch (4), cantidad de asientos (1), cada número de asiento como largo (1)
+ * y bytes UTF-8, y los primeros 16 bytes de un HMAC-SHA256 sobre todo lo anterior. Se firman los
+ * números y no posiciones dentro del viaje: regenerar los asientos del viaje no invalida los boletos
+ * ya emitidos. Un boleto de pocos asientos ocupa unos 60 caracteres, así que el QR queda pequeño.
+ */
+@Component
+@Slf4j
+public class FirmaBoletos {
+
+    private static final byte VERSION = 2;
+    private static final int LARGO_FIRMA = 16;
+    private static final int LARGO_CABECERA = 1 + 8 + 8 + 4 + 1;
+    private static final int MAX_ASIENTOS = 255;
+    private static final int MAX_BYTES_NUMERO = 255;
+    private static final String ALGORITMO = "HmacSHA256";
+
+    private final byte[] clave;
+    private final ZoneId zona = ZoneId.systemDefault();
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::crearMac);
+
+    public FirmaBoletos(@Value("${app.boletos.firma.secreto:}") String secreto) {
+        if (secreto == null || secreto.isBlank()) {
+            log.warn("app.boletos.firma.secreto no está configurado: se usa una clave aleatoria y los boletos " +
+                    "emitidos dejarán de validar al reiniciar o en otras instancias");
+            this.clave = new byte[32];
+            new SecureRandom().nextBytes(this.clave);
+        } else {
+            this.clave = secreto.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Contenido de un token con firma válida
+     */
+    public record BoletoFirmado(long reservaId, long viajeId, List<String> asientos, LocalDateTime venceEn) {
+        public boolean vencido() {
+            return LocalDateTime.now().isAfter(venceEn);
+        }
+    }
+
+    /**
+     * Emite el token para los números de asiento indicados
+     */
+    public String emitir(long reservaId, long viajeId, List<String> asientos, LocalDateTime venceEn) {
+        if (asientos.isEmpty() || asientos.size() > MAX_ASIENTOS) {
+            throw new IllegalArgumentException("El boleto debe tener entre 1 y " + MAX_ASIENTOS + " asientos");
+        }
+        byte[][] numeros = new byte[asientos.size()][];
+        int largoNumeros = 0;
+        for (int i = 0; i < numeros.length; i++) {
+            numeros[i] = asientos.get(i).getBytes(StandardCharsets.UTF_8);
+            if (numeros[i].length == 0 || numeros[i].length > MAX_BYTES_NUMERO) {
+                throw new IllegalArgumentException("Número de asiento inválido para el formato del boleto");
+            }
+            largoNumeros += 1 + numeros[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(LARGO_CABECERA + largoNumeros + LARGO_FIRMA);
+        buffer.put(VERSION);
+        buffer.putLong(reservaId);
+        buffer.putLong(viajeId);
+        buffer.putInt((int) venceEn.atZone(zona).toEpochSecond());
+        buffer.put((byte) numeros.length);
+        for (byte[] numero : numeros) {
+            buffer.put((byte) numero.length);
+            buffer.put(numero);
+        }
+        byte[] firma = firmar(buffer.array(), buffer.position());
+        buffer.put(firma, 0, LARGO_FIRMA);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decodifica el token y comprueba la firma; null si está mal formado o la firma no coincide.
+     * El vencimiento no se valida aquí (ver BoletoFirmado.vencido)
+     */
+    public BoletoFirmado verificar(String token) {
+        byte[] datos;
+        try {
+            datos = Base64.getUrlDecoder().decode(token.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (datos.length < LARGO_CABECERA + LARGO_FIRMA || datos[0] != VERSION) {
+            return null;
+        }
+        int largoFirmado = datos.length - LARGO_FIRMA;
+        byte[] esperada = Arrays.copyOf(firmar(datos, largoFirmado), LARGO_FIRMA);
+        if (!MessageDigest.isEqual(esperada, Arrays.copyOfRange(datos, largoFirmado, datos.length))) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(datos, 1, largoFirmado - 1);
+        long reservaId = buffer.getLong();
+        long viajeId = buffer.getLong();
+        long venceEpoch = Integer.toUnsignedLong(buffer.getInt());
+        int cantidad = Byte.toUnsignedInt(buffer.get());
+        List<String> asientos = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            int largo = Byte.toUnsignedInt(buffer.get());
+            if (largo > buffer.remaining()) {
+                return null;
+            }
+            asientos.add(new String(datos, buffer.position(), largo, StandardCharsets.UTF_8));
+            buffer.position(buffer.position() + largo);
+        }
+        if (buffer.hasRemaining() || asientos.isEmpty()) {
+            return null;
+        }
+        return new BoletoFirmado(reservaId, viajeId, List.copyOf(asientos),
+                LocalDateTime.ofInstant(Instant.ofEpochSecond(venceEpoch), zona));
+    }
+
+    private byte[] firmar(byte[] datos, int largo) {
+        Mac mac = macs.get();
+        mac.update(datos, 0, largo);
+        return mac.doFinal();
+    }
+
+    private Mac crearMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITMO);
+            mac.init(new SecretKeySpec(clave, ALGORITMO));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo inicializar la firma de boletos", e);
+        }
+    }
+}
@@ -3,28 +3,67 @@ package com.andinobus.backendsmartcode.ventas.application.services;
 import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
 import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
 import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
-import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
+import com.andinobus.backendsmartcode.operacion.application.services.MapaAsientosCache;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.andinobus.backendsmartcode.common.errors.NotFoundException;
+import com.andinobus.backendsmartcode.tracking.domain.services.FlotaEnVivoStore;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Confirmación de pagos, individual o por lotes (conciliación de PayPal/transferencias).
+ *
+ * Cada confirmación con clave de idempotencia reclama su fila en pago_confirmacion antes de tocar la
+ * reserva; una clave repetida devuelve el resultado guardado en lugar de confirmar otra vez. Las
+ * reservas se cambian como entidades versionadas (un conflicto con otra confirmación termina en 409
+ * y el lote completo se puede reintentar) y sus asientos pasan a VENDIDO en una sola sentencia.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PagoService {
 
+    private static final int MAX_CLAVE = 160;
+
+    // Con reWriteBatchedInserts los conteos de un batchUpdate no dicen qué fila se insertó: RETURNING sí
+    private static final String SQL_RECLAMAR =
+            "INSERT INTO pago_confirmacion (clave, reserva_id, metodo_pago, referencia) " +
+            "SELECT * FROM unnest(CAST(? AS varchar[]), CAST(? AS bigint[]), CAST(? AS varchar[]), CAST(? AS varchar[])) " +
+            "ON CONFLICT (clave) DO NOTHING " +
+            "RETURNING clave";
+
+    private static final String SQL_GUARDAR_RESULTADO =
+            "UPDATE pago_confirmacion SET estado = ?, mensaje = ? WHERE clave = ?";
+
+    private static final String SQL_RESULTADOS_PREVIOS =
+            "SELECT clave, reserva_id, estado, mensaje FROM pago_confirmacion WHERE clave = ANY(?)";
+
     private final ReservaRepository reservaRepository;
     private final ViajeAsientoRepository viajeAsientoRepository;
+    private final FlotaEnVivoStore flotaEnVivoStore;
+    private final MapaAsientosCache mapaAsientosCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.pagos.confirmacion.max-lote:500}")
+    private int maxLote;
 
     @Transactional
     public VentasDtos.PagoResponse confirmarPago(VentasDtos.PagoConfirmacionRequest request, String clienteEmail) {
-        // 1. Buscar reserva (por ID y email si está presente, solo por ID si no)
+        // Buscar reserva (por ID y email si está presente, solo por ID si no)
         Reserva reserva;
         if (clienteEmail != null && !clienteEmail.isEmpty()) {
             reserva = reservaRepository.findByIdAndClienteEmail(request.getReservaId(), clienteEmail)
@@ -33,33 +72,221 @@ public class PagoService {
             reserva = reservaRepository.findById(request.getReservaId())
                     .orElseThrow(() -> new RuntimeException("Reserva no encontrada"));
         }
+        return confirmar(List.of(request), Map.of(reserva.getId(), reserva)).get(0);
+    }
+
+    /**
+     * Confirma varios pagos en una transacción; la respuesta sigue el orden de las solicitudes.
+     * Con cooperativaId solo se confirman reservas de esa cooperativa (las demás: no encontradas)
+     */
+    @Transactional
+    public List<VentasDtos.PagoResponse> confirmarPagos(List<VentasDtos.PagoConfirmacionRequest> requests,
+                                                        Long cooperativaId) {
+        if (requests == null || requests.isEmpty()) {
+            return List.of();
+        }
+        if (requests.size() > maxLote) {
+            throw new IllegalArgumentException("El lote supera el máximo de " + maxLote + " confirmaciones");
+        }
+        List<Long> ids = requests.stream()
+                .map(VentasDtos.PagoConfirmacionRequest::getReservaId)
+                .filter(id -> id != null)
+                .distinct()
+                .toList();
+        Map<Long, Reserva> reservas = new HashMap<>();
+        List<Reserva> encontradas = cooperativaId != null
+                ? reservaRepository.findAllByIdAndCooperativaId(ids, cooperativaId)
+                : reservaRepository.findAllById(ids);
+        for (Reserva reserva : encontradas) {
+            reservas.put(reserva.getId(), reserva);
+        }
+        return confirmar(requests, reservas);
+    }
+
+    private List<VentasDtos.PagoResponse> confirmar(List<VentasDtos.PagoConfirmacionRequest> requests,
+                                                    Map<Long, Reserva> reservas) {
+        int n = requests.size();
+        VentasDtos.PagoResponse[] respuestas = new VentasDtos.PagoResponse[n];
+        String[] claves = new String[n];
+
+        // 1. Reclamar las claves de idempotencia; una repetida en el mismo lote reutiliza la respuesta de la primera
+        Map<String, Integer> primeraPorClave = new HashMap<>();
+        List<Integer> porReclamar = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            VentasDtos.PagoConfirmacionRequest request = requests.get(i);
+            if (!reservas.containsKey(request.getReservaId())) {
+                respuestas[i] = respuesta(request.getReservaId(), "RECHAZADO", "Reserva no encontrada");
+                continue;
+            }
+            claves[i] = clave(request);
+            if (claves[i] != null && primeraPorClave.putIfAbsent(claves[i], i) == null) {
+                porReclamar.add(i);
+            }
+        }
+        List<Integer> reclamadas = reclamar(requests, claves, porReclamar);
+        responderRepetidas(requests, claves, porReclamar, reclamadas, respuestas);
 
-        // 2. Validar estado
-        if (!"PENDIENTE".equals(reserva.getEstado())) {
-            return VentasDtos.PagoResponse.builder()
-                    .reservaId(reserva.getId())
-                    .estado("RECHAZADO")
-                    .mensaje("La reserva no está pendiente de pago")
-                    .build();
+        // 2. Cambiar las reservas pendientes (entidades versionadas)
+        Map<Long, Reserva> confirmadas = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (respuestas[i] != null || (claves[i] != null && primeraPorClave.get(claves[i]) != i)) {
+                continue;
+            }
+            Reserva reserva = reservas.get(requests.get(i).getReservaId());
+            if (!"PENDIENTE".equals(reserva.getEstado())) {
+                respuestas[i] = respuesta(reserva.getId(), "RECHAZADO", "La reserva no está pendiente de pago");
+                continue;
+            }
+            reserva.setEstado("PAGADO");
+            confirmadas.put(reserva.getId(), reserva);
+            respuestas[i] = respuesta(reserva.getId(), "PAGADO", "Pago confirmado exitosamente");
+            log.info("Pago confirmado para reserva {} con método {}", reserva.getId(), requests.get(i).getMetodoPago());
         }
 
-        // 3. Actualizar estado de reserva
-        reserva.setEstado("PAGADO");
-        reservaRepository.save(reserva);
+        // 3. Asientos de todas las reservas confirmadas a VENDIDO en una sola sentencia
+        if (!confirmadas.isEmpty()) {
+            reservaRepository.flush();
+            int vendidos = viajeAsientoRepository.venderAsientosDeReservas(confirmadas.keySet());
+            actualizarEstadoEnMemoria(confirmadas);
+            log.debug("{} reservas confirmadas, {} asientos vendidos", confirmadas.size(), vendidos);
+        }
+
+        // 4. Guardar el resultado de las claves reclamadas y completar las repetidas del lote
+        guardarResultados(claves, reclamadas, respuestas);
+        for (int i = 0; i < n; i++) {
+            if (respuestas[i] == null && claves[i] != null) {
+                respuestas[i] = respuestas[primeraPorClave.get(claves[i])];
+            }
+        }
+        return List.of(respuestas);
+    }
+
+    /**
+     * Inserta las claves a reclamar; las que ya existían (otra confirmación, quizá concurrente, ya la
+     * usó) no se insertan. Retorna los índices efectivamente reclamados
+     */
+    private List<Integer> reclamar(List<VentasDtos.PagoConfirmacionRequest> requests, String[] claves, List<Integer> indices) {
+        if (indices.isEmpty()) {
+            return List.of();
+        }
+        int m = indices.size();
+        String[] clavesReclamar = new String[m];
+        Long[] reservaIds = new Long[m];
+        String[] metodos = new String[m];
+        String[] referencias = new String[m];
+        for (int k = 0; k < m; k++) {
+            VentasDtos.PagoConfirmacionRequest request = requests.get(indices.get(k));
+            clavesReclamar[k] = claves[indices.get(k)];
+            reservaIds[k] = request.getReservaId();
+            metodos[k] = request.getMetodoPago();
+            referencias[k] = request.getReferencia();
+        }
+        Set<String> insertadas = new HashSet<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_RECLAMAR);
+            ps.setArray(1, con.createArrayOf("varchar", clavesReclamar));
+            ps.setArray(2, con.createArrayOf("bigint", reservaIds));
+            ps.setArray(3, con.createArrayOf("varchar", metodos));
+            ps.setArray(4, con.createArrayOf("varchar", referencias));
+            return ps;
+        }, rs -> {
+            insertadas.add(rs.getString(1));
+        });
+        List<Integer> reclamadas = new ArrayList<>(insertadas.size());
+        for (int i : indices) {
+            if (insertadas.contains(claves[i])) {
+                reclamadas.add(i);
+            }
+        }
+        return reclamadas;
+    }
 
-        // 4. Actualizar asientos a VENDIDO
-        List<ViajeAsiento> asientos = viajeAsientoRepository.findByReservaId(reserva.getId());
-        asientos.forEach(asiento -> {
-            asiento.setEstado("VENDIDO");
-            viajeAsientoRepository.save(asiento);
+    /**
+     * Responde con el resultado guardado las solicitudes cuya clave ya había sido usada
+     */
+    private void responderRepetidas(List<VentasDtos.PagoConfirmacionRequest> requests, String[] claves,
+                                    List<Integer> porReclamar, List<Integer> reclamadas,
+                                    VentasDtos.PagoResponse[] respuestas) {
+        if (reclamadas.size() == porReclamar.size()) {
+            return;
+        }
+        List<Integer> repetidas = new ArrayList<>(porReclamar);
+        repetidas.removeAll(reclamadas);
+        String[] clavesRepetidas = repetidas.stream().map(i -> claves[i]).toArray(String[]::new);
+        Map<String, Object[]> previos = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_RESULTADOS_PREVIOS);
+            ps.setArray(1, con.createArrayOf("varchar", clavesRepetidas));
+            return ps;
+        }, rs -> {
+            previos.put(rs.getString(1), new Object[]{rs.getLong(2), rs.getString(3), rs.getString(4)});
         });
+        for (int i : repetidas) {
+            Long reservaId = requests.get(i).getReservaId();
+            Object[] previo = previos.get(claves[i]);
+            if (previo == null || previo[1] == null) {
+                respuestas[i] = respuesta(reservaId, "RECHAZADO", "La confirmación con esta clave no se completó");
+            } else if (!reservaId.equals(previo[0])) {
+                respuestas[i] = respuesta(reservaId, "RECHAZADO", "La clave de idempotencia ya se usó para otra reserva");
+            } else {
+                respuestas[i] = respuesta(reservaId, (String) previo[1], (String) previo[2]);
+            }
+            log.info("Confirmación repetida para reserva {} (clave {}): {}", reservaId, claves[i], respuestas[i].getEstado());
+        }
+    }
+
+    private void guardarResultados(String[] claves, List<Integer> reclamadas, VentasDtos.PagoResponse[] respuestas) {
+        if (reclamadas.isEmpty()) {
+            return;
+        }
+        List<Object[]> filas = new ArrayList<>(reclamadas.size());
+        for (int i : reclamadas) {
+            filas.add(new Object[]{respuestas[i].getEstado(), respuestas[i].getMensaje(), claves[i]});
+        }
+        jdbcTemplate.batchUpdate(SQL_GUARDAR_RESULTADO, filas);
+    }
+
+    /**
+     * Mapa de asientos y pasajeros de la flota en vivo de los viajes afectados
+     */
+    private void actualizarEstadoEnMemoria(Map<Long, Reserva> confirmadas) {
+        Map<Long, List<String>> numerosPorViaje = new HashMap<>();
+        for (Object[] fila : viajeAsientoRepository.findNumerosByReservaIds(confirmadas.keySet())) {
+            numerosPorViaje.computeIfAbsent((Long) fila[1], v -> new ArrayList<>()).add((String) fila[2]);
+        }
+        numerosPorViaje.forEach((viajeId, numeros) -> mapaAsientosCache.marcar(viajeId, numeros, "VENDIDO"));
+
+        Map<Long, Integer> pasajerosPorViaje = new HashMap<>();
+        for (Reserva reserva : confirmadas.values()) {
+            pasajerosPorViaje.merge(reserva.getViaje().getId(),
+                    reserva.getAsientos() != null ? reserva.getAsientos() : 0, Integer::sum);
+        }
+        pasajerosPorViaje.forEach(flotaEnVivoStore::ajustarPasajeros);
+    }
 
-        log.info("Pago confirmado para reserva {} con método {}", reserva.getId(), request.getMetodoPago());
+    /**
+     * Clave de idempotencia: la enviada por el cliente o metodoPago:referencia:reservaId de la pasarela.
+     * La derivada incluye la reserva: una transferencia puede pagar varias reservas con la misma referencia
+     */
+    private static String clave(VentasDtos.PagoConfirmacionRequest request) {
+        String clave = null;
+        if (request.getClaveIdempotencia() != null && !request.getClaveIdempotencia().isBlank()) {
+            clave = request.getClaveIdempotencia().trim();
+        } else if (request.getReferencia() != null && !request.getReferencia().isBlank()) {
+            clave = (request.getMetodoPago() != null ? request.getMetodoPago() : "PAGO") + ":" + request.getReferencia().trim()
+                    + ":" + request.getReservaId();
+        }
+        if (clave != null && clave.length() > MAX_CLAVE) {
+            throw new IllegalArgumentException("La clave de idempotencia supera los " + MAX_CLAVE + " caracteres");
+        }
+        return clave;
+    }
 
+    private static VentasDtos.PagoResponse respuesta(Long reservaId, String estado, String mensaje) {
         return VentasDtos.PagoResponse.builder()
-                .reservaId(reserva.getId())
-                .estado("PAGADO")
-                .mensaje("Pago confirmado exitosamente")
+                .reservaId(reservaId)
+                .estado(estado)
+                .mensaje(mensaje)
                 .build();
     }
 }
@@ -0,0 +1,183 @@
+package com.andinobus.backendsmartcode.ventas.application.services;
+
+import com.andinobus.backendsmartcode.common.cache.CacheAcotada;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Renderizado de códigos QR de boletos en PNG o SVG con caché de la imagen ya codificada.
+ *
+ * El contenido del QR es el token firmado del boleto, estable para una misma reserva, así que se
+ * usa como clave de la caché. La caché es LRU y se acota por bytes, no por entradas: un PNG de
+ * 300×300 ocupa ~1 KB y un SVG algo más. Los lotes (todos los boletos de un viaje) se renderizan
+ * en paralelo en un pool propio.
+ */
+@Component
+@Slf4j
+public class RenderizadorQr {
+
+    private static final int LADO_PX = 300;
+    private static final String PLACEHOLDER_PNG =
+            "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
+
+    public enum Formato {
+        PNG("image/png"),
+        SVG("image/svg+xml");
+
+        private final String mime;
+
+        Formato(String mime) {
+            this.mime = mime;
+        }
+
+        public String mime() {
+            return mime;
+        }
+
+        /**
+         * Formato pedido por el cliente; PNG por defecto
+         */
+        public static Formato desde(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return PNG;
+            }
+            try {
+                return valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Formato de QR no soportado: " + valor + " (use PNG o SVG)");
+            }
+        }
+    }
+
+    private record Clave(Formato formato, String contenido) {
+    }
+
+    @Value("${app.boletos.qr.cache-bytes:16777216}")
+    private long maxBytes;
+
+    @Value("${app.boletos.qr.paralelismo:0}")
+    private int paralelismo;
+
+    private final CacheAcotada<Clave, byte[]> imagenes = CacheAcotada.porPeso(() -> maxBytes, imagen -> imagen.length);
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void iniciarPool() {
+        pool = new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void detenerPool() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Imagen del QR como data URL; si no se puede codificar devuelve un PNG de 1×1
+     */
+    public String dataUrl(String contenido, Formato formato) {
+        try {
+            byte[] imagen = renderizar(contenido, formato);
+            return "data:" + formato.mime() + ";base64," + Base64.getEncoder().encodeToString(imagen);
+        } catch (RuntimeException e) {
+            log.error("Error generando código QR", e);
+            return PLACEHOLDER_PNG;
+        }
+    }
+
+    /**
+     * Data URLs de varios contenidos, renderizados en paralelo y en el mismo orden
+     */
+    public List<String> dataUrls(List<String> contenidos, Formato formato) {
+        List<ForkJoinTask<String>> tareas = new ArrayList<>(contenidos.size());
+        for (String contenido : contenidos) {
+            tareas.add(pool.submit(() -> dataUrl(contenido, formato)));
+        }
+        List<String> resultado = new ArrayList<>(tareas.size());
+        for (ForkJoinTask<String> tarea : tareas) {
+            resultado.add(tarea.join());
+        }
+        return resultado;
+    }
+
+    /**
+     * Bytes de la imagen del QR, desde la caché o recién codificados
+     */
+    public byte[] renderizar(String contenido, Formato formato) {
+        Clave clave = new Clave(formato, contenido);
+        byte[] imagen = imagenes.obtener(clave);
+        if (imagen != null) {
+            return imagen;
+        }
+        imagen = formato == Formato.SVG ? svg(contenido) : png(contenido);
+        imagenes.guardar(clave, imagen);
+        return imagen;
+    }
+
+    private static byte[] png(String contenido) {
+        BitMatrix matriz = codificar(contenido, LADO_PX);
+        try {
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(2048);
+            MatrixToImageWriter.writeToStream(matriz, "PNG", salida);
+            return salida.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * SVG con un único path: un rectángulo por cada tramo horizontal de módulos oscuros
+     */
+    private static byte[] svg(String contenido) {
+        // Lado 0: la matriz queda en módulos (incluida la zona de silencio) y el SVG escala sin pérdida
+        BitMatrix matriz = codificar(contenido, 0);
+        int ancho = matriz.getWidth();
+        int alto = matriz.getHeight();
+        StringBuilder path = new StringBuilder(ancho * alto);
+        for (int y = 0; y < alto; y++) {
+            int x = 0;
+            while (x < ancho) {
+                if (!matriz.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int inicio = x;
+                while (x < ancho && matriz.get(x, y)) {
+                    x++;
+                }
+                path.append('M').append(inicio).append(' ').append(y)
+                        .append('h').append(x - inicio).append("v1h-").append(x - inicio).append('z');
+            }
+        }
+        String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + LADO_PX + "\" height=\"" + LADO_PX +
+                "\" viewBox=\"0 0 " + ancho + " " + alto + "\" shape-rendering=\"crispEdges\">" +
+                "<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>" +
+                "<path fill=\"#000\" d=\"" + path + "\"/></svg>";
+        return svg.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static BitMatrix codificar(String contenido, int lado) {
+        try {
+            return new QRCodeWriter().encode(contenido, BarcodeFormat.QR_CODE, lado, lado);
+        } catch (WriterException e) {
+            throw new IllegalStateException("No se pudo codificar el QR", e);
+        }
+    }
+}
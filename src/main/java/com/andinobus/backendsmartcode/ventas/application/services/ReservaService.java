@@ -5,6 +5,7 @@ import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusC
 import com.andinobus.backendsmartcode.catalogos.domain.entities.BusChofer;
 import com.andinobus.backendsmartcode.catalogos.domain.entities.Frecuencia;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.FrecuenciaRepository;
+import com.andinobus.backendsmartcode.operacion.application.services.MapaAsientosCache;
 import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
 import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
@@ -17,13 +18,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import com.andinobus.backendsmartcode.common.errors.AsientosNoDisponiblesException;
 import com.andinobus.backendsmartcode.common.errors.NotFoundException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -38,6 +41,8 @@ public class ReservaService {
     private final FrecuenciaRepository frecuenciaRepository;
     private final com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.AsientoLayoutRepository asientoLayoutRepository;
     private final BusChoferRepository busChoferRepository;
+    private final MapaAsientosCache mapaAsientosCache;
+    private final ExpiracionReservasService expiracionReservasService;
 
     private static final int EXPIRATION_MINUTES = 15;
     private static final BigDecimal PRECIO_BASE = new BigDecimal("25.00");
@@ -75,32 +80,16 @@ public class ReservaService {
             throw new RuntimeException("Debe seleccionar al menos un asiento");
         }
 
-        List<ViajeAsiento> asientosReservados = new ArrayList<>();
-        for (String numeroAsiento : numeroAsientos) {
-            ViajeAsiento asiento = viajeAsientoRepository
-                    .findByViajeIdAndNumeroAsiento(viaje.getId(), numeroAsiento)
-                    .orElseThrow(() -> new NotFoundException("Asiento " + numeroAsiento + " no encontrado"));
-
-            if (!"DISPONIBLE".equals(asiento.getEstado())) {
-                // Liberar asientos ya reservados en esta transacción
-                asientosReservados.forEach(a -> {
-                    a.setEstado("DISPONIBLE");
-                    a.setReserva(null);
-                });
-                throw new RuntimeException("Asiento " + numeroAsiento + " no está disponible");
-            }
-
-            asientosReservados.add(asiento);
-        }
+        List<String> asientosSolicitados = numeroAsientos.stream().distinct().toList();
 
         // 3. Crear reserva
-        BigDecimal monto = PRECIO_BASE.multiply(new BigDecimal(numeroAsientos.size()));
+        BigDecimal monto = PRECIO_BASE.multiply(new BigDecimal(asientosSolicitados.size()));
         LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(EXPIRATION_MINUTES);
 
         Reserva reserva = Reserva.builder()
                 .viaje(viaje)
                 .clienteEmail(clienteEmail)
-                .asientos(numeroAsientos.size())
+                .asientos(asientosSolicitados.size())
                 .estado("PENDIENTE")
                 .monto(monto)
                 .expiresAt(expiresAt)
@@ -108,24 +97,45 @@ public class ReservaService {
 
         reserva = reservaRepository.save(reserva);
 
-        // 4. Actualizar asientos
-        for (ViajeAsiento asiento : asientosReservados) {
-            asiento.setEstado("RESERVADO");
-            asiento.setReserva(reserva);
-            viajeAsientoRepository.save(asiento);
+        // 4. Tomar todos los asientos en una sola sentencia condicional (estado = DISPONIBLE);
+        //    si falta alguno se revierte la transacción completa, incluida la reserva
+        int reclamados = viajeAsientoRepository.reclamarAsientosDisponibles(viaje.getId(), asientosSolicitados, reserva.getId());
+        if (reclamados < asientosSolicitados.size()) {
+            rechazarAsientosPerdidos(viaje.getId(), reserva.getId(), asientosSolicitados);
         }
+        mapaAsientosCache.marcar(viaje.getId(), asientosSolicitados, "RESERVADO");
+        expiracionReservasService.programar(reserva.getId(), expiresAt);
 
-        log.info("Reserva creada: {} para viaje {} con {} asientos", reserva.getId(), viaje.getId(), numeroAsientos.size());
+        log.info("Reserva creada: {} para viaje {} con {} asientos", reserva.getId(), viaje.getId(), asientosSolicitados.size());
 
         return VentasDtos.ReservaResponse.builder()
                 .id(reserva.getId())
                 .viajeId(viaje.getId())
-                .asientos(request.getAsientos())
+                .asientos(asientosSolicitados)
                 .estado(reserva.getEstado())
                 .fechaExpira(expiresAt.toString())
                 .build();
     }
 
+    /**
+     * Determina qué asientos no se pudieron tomar y aborta: NotFoundException si alguno no existe
+     * en el viaje, AsientosNoDisponiblesException con los asientos que otra compra ya tomó
+     */
+    private void rechazarAsientosPerdidos(Long viajeId, Long reservaId, List<String> solicitados) {
+        Set<String> existentes = new HashSet<>(viajeAsientoRepository.findNumerosExistentes(viajeId, solicitados));
+        for (String numeroAsiento : solicitados) {
+            if (!existentes.contains(numeroAsiento)) {
+                throw new NotFoundException("Asiento " + numeroAsiento + " no encontrado");
+            }
+        }
+        Set<String> reclamados = new HashSet<>(viajeAsientoRepository.findNumerosByReservaId(reservaId));
+        List<String> perdidos = solicitados.stream()
+                .filter(numero -> !reclamados.contains(numero))
+                .toList();
+        log.info("Reserva rechazada para viaje {}: asientos no disponibles {}", viajeId, perdidos);
+        throw new AsientosNoDisponiblesException(perdidos);
+    }
+
     @Transactional(readOnly = true)
     public VentasDtos.ReservaDetalleResponse obtenerReserva(Long reservaId, String clienteEmail) {
         Reserva reserva;
@@ -231,82 +241,73 @@ public class ReservaService {
         reservaRepository.save(reserva);
 
         // Liberar asientos
+        List<String> liberados = viajeAsientoRepository.findNumerosByReservaId(reservaId);
         viajeAsientoRepository.liberarAsientosPorReserva(reservaId);
+        mapaAsientosCache.marcar(reserva.getViaje().getId(), liberados, "DISPONIBLE");
 
         log.info("Reserva {} cancelada", reservaId);
     }
 
-    @Transactional
+    /**
+     * Expira en bloque las reservas PENDIENTE vencidas y libera sus asientos
+     * (el motor de ExpiracionReservasService lo hace automáticamente al vencer cada una)
+     */
     public void expirarReservasPendientes() {
-        List<Reserva> reservasExpiradas = reservaRepository.findExpiredReservations(LocalDateTime.now());
-        
-        for (Reserva reserva : reservasExpiradas) {
-            reserva.setEstado("EXPIRADO");
-            reservaRepository.save(reserva);
-            viajeAsientoRepository.liberarAsientosPorReserva(reserva.getId());
-            log.info("Reserva {} expirada automáticamente", reserva.getId());
-        }
+        expiracionReservasService.expirarVencidas();
     }
 
+    /**
+     * Mapa de asientos del viaje (todos los del layout, los deshabilitados como DESHABILITADO),
+     * servido desde MapaAsientosCache
+     */
     @Transactional(readOnly = true)
     public List<VentasDtos.AsientoDisponibilidadDto> obtenerAsientosDisponibles(Long viajeId) {
-        // Obtener el viaje para acceder al bus
-        Viaje viaje = viajeRepository.findById(viajeId)
-                .orElseThrow(() -> new NotFoundException("Viaje no encontrado"));
-        
-        Long busId = viaje.getBus().getId();
-        
-        // Obtener TODOS los asientos del layout del bus (habilitados y deshabilitados)
-        List<com.andinobus.backendsmartcode.catalogos.domain.entities.AsientoLayout> layoutAsientos = 
-            asientoLayoutRepository.findByBusIdOrderByNumeroAsientoAsc(busId);
-        
-        if (layoutAsientos.isEmpty()) {
-            return List.of();
+        return toAsientoDtos(mapaAsientosCache.obtener(viajeId));
+    }
+
+    /**
+     * Grupos de asientos disponibles contiguos (misma fila y piso) para comprar juntos
+     */
+    @Transactional(readOnly = true)
+    public VentasDtos.AsientosContiguosResponse buscarAsientosContiguos(Long viajeId, int cantidad, Integer piso) {
+        if (cantidad < 1) {
+            throw new IllegalArgumentException("La cantidad de asientos debe ser al menos 1");
         }
-        
-        // Obtener los asientos del viaje (solo los habilitados tienen ViajeAsiento)
-        List<ViajeAsiento> viajeAsientos = viajeAsientoRepository.findByViajeId(viajeId);
-        
-        // Crear un mapa para acceso rápido: numeroAsiento -> ViajeAsiento
-        var viajeAsientoMap = viajeAsientos.stream()
-            .collect(Collectors.toMap(
-                ViajeAsiento::getNumeroAsiento,
-                a -> a
-            ));
-        
-        // Retornar TODOS los asientos del layout, marcando los deshabilitados como BLOQUEADO
-        return layoutAsientos.stream()
-                .map(layout -> {
-                    String numeroAsiento = String.valueOf(layout.getNumeroAsiento());
-                    ViajeAsiento viajeAsiento = viajeAsientoMap.get(numeroAsiento);
-                    
-                    String estado;
-                    if (!layout.getHabilitado()) {
-                        // Asiento deshabilitado en el layout
-                        estado = "DESHABILITADO";
-                    } else if (viajeAsiento != null) {
-                        // Asiento tiene estado del viaje
-                        estado = viajeAsiento.getEstado();
-                    } else {
-                        // Asiento habilitado pero sin ViajeAsiento (disponible por defecto)
-                        estado = "DISPONIBLE";
-                    }
-                    
-                    return VentasDtos.AsientoDisponibilidadDto.builder()
-                            .numeroAsiento(numeroAsiento)
-                            .tipoAsiento(layout.getTipoAsiento())
-                            .estado(estado)
-                            .fila(layout.getFila())
-                            .columna(layout.getColumna())
-                            .piso(layout.getPiso())
-                            .build();
-                })
+        return VentasDtos.AsientosContiguosResponse.builder()
+                .viajeId(viajeId)
+                .cantidad(cantidad)
+                .grupos(mapaAsientosCache.buscarContiguos(viajeId, cantidad, piso))
+                .build();
+    }
+
+    private List<VentasDtos.AsientoDisponibilidadDto> toAsientoDtos(List<MapaAsientosCache.AsientoEstado> asientos) {
+        return asientos.stream()
+                .map(a -> VentasDtos.AsientoDisponibilidadDto.builder()
+                        .numeroAsiento(a.numeroAsiento())
+                        .tipoAsiento(a.tipoAsiento())
+                        .estado(a.estado())
+                        .fila(a.fila())
+                        .columna(a.columna())
+                        .piso(a.piso())
+                        .build())
                 .collect(Collectors.toList());
     }
 
     @Transactional
     public VentasDtos.AsientosViajeResponse obtenerAsientosDisponiblesPorFrecuencia(Long frecuenciaViajeId, String fechaStr) {
         LocalDate fecha = LocalDate.parse(fechaStr);
+
+        // Camino sin BD: viaje ya resuelto para esta frecuencia y fecha y su mapa en memoria
+        Long viajeCacheado = mapaAsientosCache.viajeDeFrecuencia(frecuenciaViajeId, fecha);
+        if (viajeCacheado != null) {
+            List<MapaAsientosCache.AsientoEstado> enMemoria = mapaAsientosCache.obtenerSiCargado(viajeCacheado);
+            if (enMemoria != null) {
+                return VentasDtos.AsientosViajeResponse.builder()
+                        .viajeId(viajeCacheado)
+                        .asientos(toAsientoDtos(enMemoria))
+                        .build();
+            }
+        }
         
         // Verificar que la frecuencia de viaje existe (tabla frecuencia_viaje)
         com.andinobus.backendsmartcode.admin.domain.entities.FrecuenciaViaje frecuenciaViaje = 
@@ -331,6 +332,7 @@ public class ReservaService {
         }
         
         List<VentasDtos.AsientoDisponibilidadDto> asientos = obtenerAsientosDisponibles(viajeId);
+        mapaAsientosCache.recordarViajeDeFrecuencia(frecuenciaViajeId, fecha, viajeId);
         
         return VentasDtos.AsientosViajeResponse.builder()
                 .viajeId(viajeId)
@@ -420,6 +422,7 @@ public class ReservaService {
                     }
                 }
             }
+            mapaAsientosCache.invalidar(viaje.getId());
             log.info("Asientos inicializados para viaje {}", viaje.getId());
         } catch (Exception e) {
             log.error("Error inicializando asientos para viaje {}: {}", viaje.getId(), e.getMessage());
@@ -5,11 +5,13 @@ import com.andinobus.backendsmartcode.catalogos.domain.entities.Frecuencia;
 import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.FrecuenciaRepository;
 import com.andinobus.backendsmartcode.admin.domain.entities.FrecuenciaViaje;
 import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeRepository;
+import com.andinobus.backendsmartcode.operacion.application.services.MapaAsientosCache;
 import com.andinobus.backendsmartcode.operacion.application.services.ViajeAsientoService;
 import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
 import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
 import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
+import com.andinobus.backendsmartcode.tracking.domain.services.FlotaEnVivoStore;
 import com.andinobus.backendsmartcode.ventas.api.dto.VentaPresencialDtos.*;
 import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
 import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
@@ -36,6 +38,8 @@ public class VentaPresencialService {
     private final FrecuenciaRepository frecuenciaRepository;
     private final ViajeAsientoRepository viajeAsientoRepository;
     private final ViajeAsientoService viajeAsientoService;
+    private final FlotaEnVivoStore flotaEnVivoStore;
+    private final MapaAsientosCache mapaAsientosCache;
 
     /**
      * Crea una venta presencial directa desde una frecuencia
@@ -129,6 +133,9 @@ public class VentaPresencialService {
             viajeAsientoRepository.save(asiento);
         }
 
+        mapaAsientosCache.marcar(viaje.getId(), request.getAsientos(), "VENDIDO");
+        flotaEnVivoStore.ajustarPasajeros(viaje.getId(), request.getAsientos().size());
+
         log.info("Venta presencial creada: Reserva {} para viaje {} (frecuencia {}) en fecha {}. Cliente: {} {} ({})",
                 reserva.getId(), viaje.getId(), frecuencia.getId(), request.getFecha(),
                 request.getClienteNombres(), request.getClienteApellidos(), request.getClienteCedula());
@@ -43,6 +43,9 @@ public class Reserva {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    @Version
+    private Long version;
+
     @PrePersist
     public void prePersist() {
         if (createdAt == null) {
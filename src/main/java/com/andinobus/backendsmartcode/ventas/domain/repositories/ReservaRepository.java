@@ -6,7 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,12 +19,38 @@ public interface ReservaRepository extends JpaRepository<Reserva, Long> {
     
     @Query("SELECT r FROM Reserva r WHERE r.viaje.id = :viajeId AND r.estado IN ('PENDIENTE', 'PAGADO')")
     List<Reserva> findActiveByViajeId(@Param("viajeId") Long viajeId);
+
+    /**
+     * Reservas indicadas que pertenecen a viajes de la cooperativa (por su frecuencia)
+     */
+    @Query("SELECT r FROM Reserva r JOIN r.viaje v JOIN v.frecuencia f " +
+           "WHERE r.id IN :ids AND f.cooperativa.id = :cooperativaId")
+    List<Reserva> findAllByIdAndCooperativaId(@Param("ids") Collection<Long> ids,
+                                              @Param("cooperativaId") Long cooperativaId);
+    
+    /**
+     * Suma de asientos pagados por viaje (viajeId, asientos) para un conjunto de viajes
+     */
+    @Query("SELECT r.viaje.id, COALESCE(SUM(r.asientos), 0) FROM Reserva r " +
+           "WHERE r.viaje.id IN :viajeIds AND r.estado = 'PAGADO' GROUP BY r.viaje.id")
+    List<Object[]> sumAsientosPagadosByViajeIds(@Param("viajeIds") Collection<Long> viajeIds);
     
-    @Query("SELECT r FROM Reserva r WHERE r.estado = 'PENDIENTE' AND r.expiresAt < :now")
-    List<Reserva> findExpiredReservations(@Param("now") LocalDateTime now);
+    /**
+     * Vencimientos de todas las reservas PENDIENTE: [id, expiresAt]
+     */
+    @Query("SELECT r.id, r.expiresAt FROM Reserva r WHERE r.estado = 'PENDIENTE' AND r.expiresAt IS NOT NULL")
+    List<Object[]> findVencimientosPendientes();
     
     Optional<Reserva> findByIdAndClienteEmail(Long id, String clienteEmail);
     
+    boolean existsByViajeIdAndClienteEmailAndEstado(Long viajeId, String clienteEmail, String estado);
+
+    /**
+     * [clienteEmail, cooperativaId de la frecuencia] de la reserva, sin cargar la entidad (vacía si no existe)
+     */
+    @Query("SELECT r.clienteEmail, f.cooperativa.id FROM Reserva r JOIN r.viaje v JOIN v.frecuencia f WHERE r.id = :reservaId")
+    List<Object[]> findDuenosById(@Param("reservaId") Long reservaId);
+    
     /**
      * Contar reservas pendientes por cooperativa (a través del viaje y frecuencia)
      */
@@ -0,0 +1,7 @@
+-- V48: Índices para la expiración masiva de reservas pendientes
+
+-- Reservas PENDIENTE ordenadas por vencimiento (barrido del motor de expiración)
+CREATE INDEX IF NOT EXISTS idx_reserva_pendiente_expires_at ON reserva(expires_at) WHERE estado = 'PENDIENTE';
+
+-- Liberación de asientos por reserva
+CREATE INDEX IF NOT EXISTS idx_viaje_asiento_reserva_id ON viaje_asiento(reserva_id);
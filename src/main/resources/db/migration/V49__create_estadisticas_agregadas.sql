@@ -0,0 +1,275 @@
+-- V49: Capa de agregados para el dashboard del super admin
+-- Contadores por día (fecha del viaje) y cooperativa: viajes, ventas pagadas, transacciones y reservas
+-- pendientes; y por cooperativa: buses y usuarios. Los mantienen triggers sobre reserva, viaje, bus y
+-- usuario_cooperativa, de modo que cualquier escritura (JPA o SQL masivo) queda reflejada.
+-- Los cambios de viajes y reservas se registran como deltas de solo inserción para no bloquear filas
+-- calientes en el camino de compra; estadistica_compactar() los consolida periódicamente.
+
+CREATE TABLE IF NOT EXISTS estadistica_diaria_cooperativa (
+    fecha                DATE NOT NULL,
+    cooperativa_id       BIGINT NOT NULL,
+    viajes               INTEGER NOT NULL DEFAULT 0,
+    ventas_monto         NUMERIC(14,2) NOT NULL DEFAULT 0,
+    transacciones        INTEGER NOT NULL DEFAULT 0,
+    reservas_pendientes  INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (fecha, cooperativa_id)
+);
+
+CREATE TABLE IF NOT EXISTS estadistica_diaria_delta (
+    id                   BIGSERIAL PRIMARY KEY,
+    fecha                DATE NOT NULL,
+    cooperativa_id       BIGINT NOT NULL,
+    viajes               INTEGER NOT NULL DEFAULT 0,
+    ventas_monto         NUMERIC(14,2) NOT NULL DEFAULT 0,
+    transacciones        INTEGER NOT NULL DEFAULT 0,
+    reservas_pendientes  INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_estadistica_diaria_delta_fecha ON estadistica_diaria_delta(fecha, cooperativa_id);
+
+CREATE TABLE IF NOT EXISTS estadistica_cooperativa (
+    cooperativa_id     BIGINT PRIMARY KEY,
+    buses              INTEGER NOT NULL DEFAULT 0,
+    buses_activos      INTEGER NOT NULL DEFAULT 0,
+    usuarios           INTEGER NOT NULL DEFAULT 0,
+    usuarios_activos   INTEGER NOT NULL DEFAULT 0
+);
+
+-- Cooperativa a la que cuenta un viaje: la de su bus, o la de su frecuencia si no tiene bus
+CREATE OR REPLACE FUNCTION estadistica_cooperativa_de_viaje(p_bus_id BIGINT, p_frecuencia_id BIGINT)
+RETURNS BIGINT AS $$
+    SELECT COALESCE(
+        (SELECT b.cooperativa_id FROM bus b WHERE b.id = p_bus_id),
+        (SELECT f.cooperativa_id FROM frecuencia f WHERE f.id = p_frecuencia_id),
+        0)
+$$ LANGUAGE sql STABLE;
+
+CREATE OR REPLACE FUNCTION estadistica_ajustar_cooperativa(
+    p_cooperativa_id BIGINT, p_buses INTEGER, p_buses_activos INTEGER, p_usuarios INTEGER, p_usuarios_activos INTEGER)
+RETURNS VOID AS $$
+    INSERT INTO estadistica_cooperativa AS e (cooperativa_id, buses, buses_activos, usuarios, usuarios_activos)
+    VALUES (p_cooperativa_id, p_buses, p_buses_activos, p_usuarios, p_usuarios_activos)
+    ON CONFLICT (cooperativa_id) DO UPDATE SET
+        buses = e.buses + EXCLUDED.buses,
+        buses_activos = e.buses_activos + EXCLUDED.buses_activos,
+        usuarios = e.usuarios + EXCLUDED.usuarios,
+        usuarios_activos = e.usuarios_activos + EXCLUDED.usuarios_activos
+$$ LANGUAGE sql;
+
+-- Reserva: resta el aporte anterior (PAGADO / PENDIENTE) y suma el nuevo
+CREATE OR REPLACE FUNCTION estadistica_registrar_reserva()
+RETURNS TRIGGER AS $$
+DECLARE
+    v_fecha DATE;
+    v_cooperativa_id BIGINT;
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.viaje_id = NEW.viaje_id AND OLD.estado = NEW.estado
+       AND OLD.monto IS NOT DISTINCT FROM NEW.monto THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.estado IN ('PAGADO', 'PENDIENTE') THEN
+        -- Si el viaje se está eliminando, su trigger ya descontó las reservas
+        SELECT v.fecha, estadistica_cooperativa_de_viaje(v.bus_id, v.frecuencia_id)
+          INTO v_fecha, v_cooperativa_id
+          FROM viaje v WHERE v.id = OLD.viaje_id;
+        IF FOUND THEN
+            INSERT INTO estadistica_diaria_delta (fecha, cooperativa_id, ventas_monto, transacciones, reservas_pendientes)
+            VALUES (v_fecha, v_cooperativa_id,
+                    CASE WHEN OLD.estado = 'PAGADO' THEN -COALESCE(OLD.monto, 0) ELSE 0 END,
+                    CASE WHEN OLD.estado = 'PAGADO' THEN -1 ELSE 0 END,
+                    CASE WHEN OLD.estado = 'PENDIENTE' THEN -1 ELSE 0 END);
+        END IF;
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.estado IN ('PAGADO', 'PENDIENTE') THEN
+        SELECT v.fecha, estadistica_cooperativa_de_viaje(v.bus_id, v.frecuencia_id)
+          INTO v_fecha, v_cooperativa_id
+          FROM viaje v WHERE v.id = NEW.viaje_id;
+        IF FOUND THEN
+            INSERT INTO estadistica_diaria_delta (fecha, cooperativa_id, ventas_monto, transacciones, reservas_pendientes)
+            VALUES (v_fecha, v_cooperativa_id,
+                    CASE WHEN NEW.estado = 'PAGADO' THEN COALESCE(NEW.monto, 0) ELSE 0 END,
+                    CASE WHEN NEW.estado = 'PAGADO' THEN 1 ELSE 0 END,
+                    CASE WHEN NEW.estado = 'PENDIENTE' THEN 1 ELSE 0 END);
+        END IF;
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Viaje: al crear, eliminar o cambiar de fecha/bus/frecuencia mueve el viaje y el aporte de sus reservas
+CREATE OR REPLACE FUNCTION estadistica_registrar_viaje()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.fecha = NEW.fecha AND OLD.bus_id IS NOT DISTINCT FROM NEW.bus_id
+       AND OLD.frecuencia_id = NEW.frecuencia_id THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        INSERT INTO estadistica_diaria_delta (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+        SELECT OLD.fecha, estadistica_cooperativa_de_viaje(OLD.bus_id, OLD.frecuencia_id), -1,
+               -COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0),
+               -COUNT(*) FILTER (WHERE r.estado = 'PAGADO'),
+               -COUNT(*) FILTER (WHERE r.estado = 'PENDIENTE')
+          FROM reserva r WHERE r.viaje_id = OLD.id;
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO estadistica_diaria_delta (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+        SELECT NEW.fecha, estadistica_cooperativa_de_viaje(NEW.bus_id, NEW.frecuencia_id), 1,
+               COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0),
+               COUNT(*) FILTER (WHERE r.estado = 'PAGADO'),
+               COUNT(*) FILTER (WHERE r.estado = 'PENDIENTE')
+          FROM reserva r WHERE r.viaje_id = NEW.id;
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Bus: contadores de la cooperativa; si cambia de cooperativa, sus viajes pasan a la nueva
+CREATE OR REPLACE FUNCTION estadistica_registrar_bus()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.cooperativa_id = NEW.cooperativa_id AND OLD.activo = NEW.activo THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM estadistica_ajustar_cooperativa(OLD.cooperativa_id, -1, CASE WHEN OLD.activo THEN -1 ELSE 0 END, 0, 0);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM estadistica_ajustar_cooperativa(NEW.cooperativa_id, 1, CASE WHEN NEW.activo THEN 1 ELSE 0 END, 0, 0);
+    END IF;
+
+    IF TG_OP = 'UPDATE' AND OLD.cooperativa_id <> NEW.cooperativa_id THEN
+        INSERT INTO estadistica_diaria_delta (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+        SELECT v.fecha, x.cooperativa_id,
+               x.signo * COUNT(DISTINCT v.id),
+               x.signo * COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0),
+               x.signo * COUNT(r.id) FILTER (WHERE r.estado = 'PAGADO'),
+               x.signo * COUNT(r.id) FILTER (WHERE r.estado = 'PENDIENTE')
+          FROM viaje v
+          LEFT JOIN reserva r ON r.viaje_id = v.id
+          CROSS JOIN (VALUES (OLD.cooperativa_id, -1), (NEW.cooperativa_id, 1)) AS x(cooperativa_id, signo)
+         WHERE v.bus_id = NEW.id
+         GROUP BY v.fecha, x.cooperativa_id, x.signo;
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION estadistica_registrar_usuario_cooperativa()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.cooperativa_id = NEW.cooperativa_id AND OLD.activo = NEW.activo THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM estadistica_ajustar_cooperativa(OLD.cooperativa_id, 0, 0, -1, CASE WHEN OLD.activo THEN -1 ELSE 0 END);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM estadistica_ajustar_cooperativa(NEW.cooperativa_id, 0, 0, 1, CASE WHEN NEW.activo THEN 1 ELSE 0 END);
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_estadistica_reserva ON reserva;
+CREATE TRIGGER trg_estadistica_reserva
+    AFTER INSERT OR UPDATE OF estado, monto, viaje_id OR DELETE ON reserva
+    FOR EACH ROW
+    EXECUTE FUNCTION estadistica_registrar_reserva();
+
+DROP TRIGGER IF EXISTS trg_estadistica_viaje ON viaje;
+CREATE TRIGGER trg_estadistica_viaje
+    AFTER INSERT OR UPDATE OF fecha, bus_id, frecuencia_id ON viaje
+    FOR EACH ROW
+    EXECUTE FUNCTION estadistica_registrar_viaje();
+
+-- Antes de borrar: las reservas del viaje todavía existen (se eliminan en cascada)
+DROP TRIGGER IF EXISTS trg_estadistica_viaje_delete ON viaje;
+CREATE TRIGGER trg_estadistica_viaje_delete
+    BEFORE DELETE ON viaje
+    FOR EACH ROW
+    EXECUTE FUNCTION estadistica_registrar_viaje();
+
+DROP TRIGGER IF EXISTS trg_estadistica_bus ON bus;
+CREATE TRIGGER trg_estadistica_bus
+    AFTER INSERT OR UPDATE OF cooperativa_id, activo OR DELETE ON bus
+    FOR EACH ROW
+    EXECUTE FUNCTION estadistica_registrar_bus();
+
+DROP TRIGGER IF EXISTS trg_estadistica_usuario_cooperativa ON usuario_cooperativa;
+CREATE TRIGGER trg_estadistica_usuario_cooperativa
+    AFTER INSERT OR UPDATE OF cooperativa_id, activo OR DELETE ON usuario_cooperativa
+    FOR EACH ROW
+    EXECUTE FUNCTION estadistica_registrar_usuario_cooperativa();
+
+-- Consolida los deltas en estadistica_diaria_cooperativa. Solo mueve los deltas confirmados;
+-- los de transacciones en curso quedan para la siguiente ejecución
+CREATE OR REPLACE FUNCTION estadistica_compactar()
+RETURNS INTEGER AS $$
+DECLARE
+    v_grupos INTEGER;
+BEGIN
+    WITH movidos AS (
+        DELETE FROM estadistica_diaria_delta RETURNING *
+    )
+    INSERT INTO estadistica_diaria_cooperativa AS e
+           (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+    SELECT fecha, cooperativa_id, SUM(viajes), SUM(ventas_monto), SUM(transacciones), SUM(reservas_pendientes)
+      FROM movidos
+     GROUP BY fecha, cooperativa_id
+    ON CONFLICT (fecha, cooperativa_id) DO UPDATE SET
+        viajes = e.viajes + EXCLUDED.viajes,
+        ventas_monto = e.ventas_monto + EXCLUDED.ventas_monto,
+        transacciones = e.transacciones + EXCLUDED.transacciones,
+        reservas_pendientes = e.reservas_pendientes + EXCLUDED.reservas_pendientes;
+    GET DIAGNOSTICS v_grupos = ROW_COUNT;
+    RETURN v_grupos;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recalcula todos los agregados desde las tablas base. El candado exclusivo espera a las
+-- transacciones que ya registraron deltas y frena a las nuevas hasta terminar
+CREATE OR REPLACE FUNCTION estadistica_reconstruir()
+RETURNS VOID AS $$
+BEGIN
+    LOCK TABLE estadistica_diaria_delta, estadistica_diaria_cooperativa, estadistica_cooperativa IN EXCLUSIVE MODE;
+
+    DELETE FROM estadistica_diaria_delta;
+    DELETE FROM estadistica_diaria_cooperativa;
+    DELETE FROM estadistica_cooperativa;
+
+    INSERT INTO estadistica_diaria_cooperativa (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+    SELECT v.fecha, estadistica_cooperativa_de_viaje(v.bus_id, v.frecuencia_id),
+           COUNT(DISTINCT v.id),
+           COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0),
+           COUNT(r.id) FILTER (WHERE r.estado = 'PAGADO'),
+           COUNT(r.id) FILTER (WHERE r.estado = 'PENDIENTE')
+      FROM viaje v
+      LEFT JOIN reserva r ON r.viaje_id = v.id
+     GROUP BY 1, 2;
+
+    INSERT INTO estadistica_cooperativa (cooperativa_id, buses, buses_activos, usuarios, usuarios_activos)
+    SELECT c.id,
+           (SELECT COUNT(*) FROM bus b WHERE b.cooperativa_id = c.id),
+           (SELECT COUNT(*) FROM bus b WHERE b.cooperativa_id = c.id AND b.activo),
+           (SELECT COUNT(*) FROM usuario_cooperativa u WHERE u.cooperativa_id = c.id),
+           (SELECT COUNT(*) FROM usuario_cooperativa u WHERE u.cooperativa_id = c.id AND u.activo)
+      FROM cooperativa c;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Carga inicial con los datos existentes
+SELECT estadistica_reconstruir();
@@ -0,0 +1,213 @@
+-- V50: Cubo diario de ventas y ocupación para los reportes
+-- Una fila por día (fecha del viaje) × cooperativa × frecuencia × estado de la reserva con el número de
+-- reservas, asientos y monto. Los triggers de reserva, viaje y frecuencia solo anotan qué celdas
+-- (fecha, frecuencia) quedaron sucias; cubo_ventas_actualizar() las recalcula por lotes desde las
+-- tablas base y avanza la marca de agua hasta el último cambio procesado.
+
+CREATE TABLE IF NOT EXISTS cubo_ventas_diario (
+    fecha           DATE NOT NULL,
+    cooperativa_id  BIGINT NOT NULL,
+    frecuencia_id   BIGINT NOT NULL,
+    estado          VARCHAR(32) NOT NULL,
+    reservas        INTEGER NOT NULL DEFAULT 0,
+    asientos        INTEGER NOT NULL DEFAULT 0,
+    monto           NUMERIC(14,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (fecha, cooperativa_id, frecuencia_id, estado)
+);
+
+-- Reportes de una cooperativa: un rango de fechas dentro de la cooperativa
+CREATE INDEX IF NOT EXISTS idx_cubo_ventas_cooperativa_fecha ON cubo_ventas_diario(cooperativa_id, fecha);
+
+-- Celdas sucias de solo inserción; el id es la secuencia de cambios que sigue la marca de agua
+CREATE TABLE IF NOT EXISTS cubo_ventas_pendiente (
+    id             BIGSERIAL PRIMARY KEY,
+    fecha          DATE NOT NULL,
+    frecuencia_id  BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS cubo_ventas_watermark (
+    id              SMALLINT PRIMARY KEY CHECK (id = 1),
+    ultimo_cambio   BIGINT NOT NULL DEFAULT 0,
+    actualizado_en  TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+INSERT INTO cubo_ventas_watermark (id) VALUES (1) ON CONFLICT (id) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION cubo_ventas_marcar_viaje(p_viaje_id BIGINT)
+RETURNS VOID AS $$
+    INSERT INTO cubo_ventas_pendiente (fecha, frecuencia_id)
+    SELECT v.fecha, v.frecuencia_id FROM viaje v WHERE v.id = p_viaje_id
+$$ LANGUAGE sql;
+
+CREATE OR REPLACE FUNCTION cubo_ventas_registrar_reserva()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.viaje_id = NEW.viaje_id AND OLD.estado = NEW.estado
+       AND OLD.asientos = NEW.asientos AND OLD.monto IS NOT DISTINCT FROM NEW.monto THEN
+        RETURN NULL;
+    END IF;
+
+    -- Si el viaje se está eliminando no se encuentra; su propio trigger ya marcó la celda
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM cubo_ventas_marcar_viaje(OLD.viaje_id);
+    END IF;
+    IF TG_OP = 'INSERT' OR (TG_OP = 'UPDATE' AND OLD.viaje_id <> NEW.viaje_id) THEN
+        PERFORM cubo_ventas_marcar_viaje(NEW.viaje_id);
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION cubo_ventas_registrar_viaje()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.fecha = NEW.fecha AND OLD.frecuencia_id = NEW.frecuencia_id THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        INSERT INTO cubo_ventas_pendiente (fecha, frecuencia_id) VALUES (OLD.fecha, OLD.frecuencia_id);
+    END IF;
+    IF TG_OP = 'UPDATE' THEN
+        INSERT INTO cubo_ventas_pendiente (fecha, frecuencia_id) VALUES (NEW.fecha, NEW.frecuencia_id);
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Frecuencia que cambia de cooperativa: todas sus celdas pasan a la nueva
+CREATE OR REPLACE FUNCTION cubo_ventas_registrar_frecuencia()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF OLD.cooperativa_id <> NEW.cooperativa_id THEN
+        INSERT INTO cubo_ventas_pendiente (fecha, frecuencia_id)
+        SELECT DISTINCT v.fecha, v.frecuencia_id FROM viaje v WHERE v.frecuencia_id = NEW.id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_cubo_ventas_reserva ON reserva;
+CREATE TRIGGER trg_cubo_ventas_reserva
+    AFTER INSERT OR UPDATE OF estado, monto, asientos, viaje_id OR DELETE ON reserva
+    FOR EACH ROW
+    EXECUTE FUNCTION cubo_ventas_registrar_reserva();
+
+-- Un viaje nuevo no tiene reservas todavía: solo interesan los cambios y el borrado
+DROP TRIGGER IF EXISTS trg_cubo_ventas_viaje ON viaje;
+CREATE TRIGGER trg_cubo_ventas_viaje
+    AFTER UPDATE OF fecha, frecuencia_id ON viaje
+    FOR EACH ROW
+    EXECUTE FUNCTION cubo_ventas_registrar_viaje();
+
+DROP TRIGGER IF EXISTS trg_cubo_ventas_viaje_delete ON viaje;
+CREATE TRIGGER trg_cubo_ventas_viaje_delete
+    BEFORE DELETE ON viaje
+    FOR EACH ROW
+    EXECUTE FUNCTION cubo_ventas_registrar_viaje();
+
+DROP TRIGGER IF EXISTS trg_cubo_ventas_frecuencia ON frecuencia;
+CREATE TRIGGER trg_cubo_ventas_frecuencia
+    AFTER UPDATE OF cooperativa_id ON frecuencia
+    FOR EACH ROW
+    EXECUTE FUNCTION cubo_ventas_registrar_frecuencia();
+
+-- Recalcula hasta p_limite cambios pendientes en una sola sentencia: borra las marcas, recalcula
+-- sus celdas desde reserva ⋈ viaje ⋈ frecuencia, inserta o actualiza las celdas que siguen
+-- existiendo y elimina las que quedaron vacías. Retorna los cambios procesados, o -1 si otra
+-- sesión ya está actualizando el cubo
+CREATE OR REPLACE FUNCTION cubo_ventas_actualizar(p_limite INTEGER)
+RETURNS INTEGER AS $$
+DECLARE
+    v_hasta BIGINT;
+    v_cambios INTEGER;
+BEGIN
+    IF NOT pg_try_advisory_xact_lock(7310042002) THEN
+        RETURN -1;
+    END IF;
+
+    SELECT MAX(id), COUNT(*) INTO v_hasta, v_cambios
+      FROM (SELECT id FROM cubo_ventas_pendiente ORDER BY id LIMIT p_limite) t;
+    IF v_hasta IS NULL THEN
+        RETURN 0;
+    END IF;
+
+    WITH movidas AS (
+        DELETE FROM cubo_ventas_pendiente WHERE id <= v_hasta RETURNING fecha, frecuencia_id
+    ), sucias AS (
+        SELECT DISTINCT fecha, frecuencia_id FROM movidas
+    ), nuevas AS (
+        SELECT v.fecha, f.cooperativa_id, v.frecuencia_id, r.estado,
+               COUNT(*) AS reservas, SUM(r.asientos) AS asientos, COALESCE(SUM(r.monto), 0) AS monto
+          FROM sucias s
+          JOIN viaje v ON v.fecha = s.fecha AND v.frecuencia_id = s.frecuencia_id
+          JOIN frecuencia f ON f.id = v.frecuencia_id
+          JOIN reserva r ON r.viaje_id = v.id
+         GROUP BY v.fecha, f.cooperativa_id, v.frecuencia_id, r.estado
+    ), vacias AS (
+        DELETE FROM cubo_ventas_diario c USING sucias s
+         WHERE c.fecha = s.fecha AND c.frecuencia_id = s.frecuencia_id
+           AND NOT EXISTS (SELECT 1 FROM nuevas n
+                            WHERE n.fecha = c.fecha AND n.cooperativa_id = c.cooperativa_id
+                              AND n.frecuencia_id = c.frecuencia_id AND n.estado = c.estado)
+    )
+    INSERT INTO cubo_ventas_diario AS c (fecha, cooperativa_id, frecuencia_id, estado, reservas, asientos, monto)
+    SELECT fecha, cooperativa_id, frecuencia_id, estado, reservas, asientos, monto FROM nuevas
+    ON CONFLICT (fecha, cooperativa_id, frecuencia_id, estado) DO UPDATE SET
+        reservas = EXCLUDED.reservas,
+        asientos = EXCLUDED.asientos,
+        monto = EXCLUDED.monto;
+
+    UPDATE cubo_ventas_watermark
+       SET ultimo_cambio = GREATEST(ultimo_cambio, v_hasta), actualizado_en = NOW()
+     WHERE id = 1;
+
+    RETURN v_cambios;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recalcula el cubo completo desde las tablas base sin frenar las ventas. El recálculo va a una
+-- tabla de trabajo en una sola sentencia que, en la misma foto, borra las celdas sucias visibles:
+-- esos cambios ya están en el recálculo, y las que anotan transacciones que confirman después quedan
+-- pendientes para cubo_ventas_actualizar(). Solo el reemplazo toma candado, y sobre cubo_ventas_diario,
+-- que no escribe ningún trigger; los lectores ven el cubo anterior hasta el commit
+CREATE OR REPLACE FUNCTION cubo_ventas_reconstruir()
+RETURNS VOID AS $$
+DECLARE
+    v_hasta BIGINT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(7310042002);
+
+    CREATE TEMP TABLE cubo_ventas_reconstruccion (LIKE cubo_ventas_diario) ON COMMIT DROP;
+
+    WITH consumidas AS (
+        DELETE FROM cubo_ventas_pendiente RETURNING id
+    ), recalculo AS (
+        INSERT INTO cubo_ventas_reconstruccion (fecha, cooperativa_id, frecuencia_id, estado, reservas, asientos, monto)
+        SELECT v.fecha, f.cooperativa_id, v.frecuencia_id, r.estado,
+               COUNT(*), SUM(r.asientos), COALESCE(SUM(r.monto), 0)
+          FROM reserva r
+          JOIN viaje v ON v.id = r.viaje_id
+          JOIN frecuencia f ON f.id = v.frecuencia_id
+         GROUP BY v.fecha, f.cooperativa_id, v.frecuencia_id, r.estado
+    )
+    SELECT MAX(id) INTO v_hasta FROM consumidas;
+
+    LOCK TABLE cubo_ventas_diario IN EXCLUSIVE MODE;
+    DELETE FROM cubo_ventas_diario;
+    INSERT INTO cubo_ventas_diario (fecha, cooperativa_id, frecuencia_id, estado, reservas, asientos, monto)
+    SELECT fecha, cooperativa_id, frecuencia_id, estado, reservas, asientos, monto FROM cubo_ventas_reconstruccion;
+
+    UPDATE cubo_ventas_watermark
+       SET ultimo_cambio = GREATEST(ultimo_cambio, COALESCE(v_hasta, 0)), actualizado_en = NOW()
+     WHERE id = 1;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Carga inicial con los datos existentes
+SELECT cubo_ventas_reconstruir();
@@ -0,0 +1,32 @@
+-- V51: Jobs asíncronos de generación de frecuencias
+-- Cada job guarda la solicitud original y un punto de control (bloques_procesados) que se actualiza
+-- en la misma transacción que escribe las frecuencias del bloque: si la instancia cae a mitad de
+-- camino, el job se reanuda en el bloque siguiente sin repetir ni duplicar lo ya confirmado.
+
+CREATE TABLE IF NOT EXISTS generacion_job (
+    id                      BIGSERIAL PRIMARY KEY,
+    cooperativa_id          BIGINT NOT NULL REFERENCES cooperativa(id) ON DELETE CASCADE,
+    tipo                    VARCHAR(20) NOT NULL,
+    estado                  VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE',
+    solicitud               TEXT NOT NULL,
+    total_bloques           INTEGER NOT NULL DEFAULT 0,
+    bloques_procesados      INTEGER NOT NULL DEFAULT 0,
+    dias_totales            INTEGER NOT NULL DEFAULT 0,
+    dias_procesados         INTEGER NOT NULL DEFAULT 0,
+    frecuencias_creadas     INTEGER NOT NULL DEFAULT 0,
+    frecuencias_omitidas    INTEGER NOT NULL DEFAULT 0,
+    errores                 INTEGER NOT NULL DEFAULT 0,
+    cancelacion_solicitada  BOOLEAN NOT NULL DEFAULT FALSE,
+    mensaje                 TEXT,
+    advertencias            TEXT,
+    created_at              TIMESTAMP NOT NULL DEFAULT now(),
+    iniciado_en             TIMESTAMP,
+    actualizado_en          TIMESTAMP,
+    terminado_en            TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_generacion_job_cooperativa ON generacion_job(cooperativa_id, created_at DESC);
+
+-- Una sola generación activa por cooperativa (la inteligente reemplaza todas sus frecuencias)
+CREATE UNIQUE INDEX IF NOT EXISTS uq_generacion_job_activo ON generacion_job(cooperativa_id)
+    WHERE estado IN ('PENDIENTE', 'EN_CURSO');
@@ -0,0 +1,14 @@
+-- V52: Asientos embarcados por viaje
+-- Cada escaneo de un boleto firmado marca los números de sus asientos dentro del viaje. La clave
+-- (viaje_id, numero_asiento) hace que un boleto repetido, en esta u otra instancia, no pueda embarcar dos veces.
+
+CREATE TABLE IF NOT EXISTS embarque_asiento (
+    viaje_id        BIGINT NOT NULL REFERENCES viaje(id) ON DELETE CASCADE,
+    numero_asiento  VARCHAR(10) NOT NULL,
+    reserva_id      BIGINT NOT NULL,
+    usado_en        TIMESTAMP NOT NULL DEFAULT now(),
+    PRIMARY KEY (viaje_id, numero_asiento)
+);
+
+-- Los tokens firmados no tienen un largo fijo: crecen con los asientos del boleto
+ALTER TABLE embarque_scan_log ALTER COLUMN codigo TYPE TEXT;
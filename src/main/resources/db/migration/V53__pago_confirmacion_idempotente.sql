@@ -0,0 +1,19 @@
+-- V53: Confirmación de pagos idempotente
+-- Cada confirmación con clave (la enviada por el cliente o metodo:referencia de la pasarela) reclama
+-- su fila antes de tocar la reserva: un webhook reintentado o un doble clic con la misma clave espera
+-- a la primera confirmación y devuelve su mismo resultado. La columna version de reserva habilita el
+-- bloqueo optimista entre confirmaciones con claves distintas.
+
+ALTER TABLE reserva ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS pago_confirmacion (
+    clave        VARCHAR(160) PRIMARY KEY,
+    reserva_id   BIGINT NOT NULL REFERENCES reserva(id) ON DELETE CASCADE,
+    metodo_pago  VARCHAR(32),
+    referencia   VARCHAR(128),
+    estado       VARCHAR(16),
+    mensaje      VARCHAR(255),
+    created_at   TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_pago_confirmacion_reserva ON pago_confirmacion(reserva_id);
@@ -0,0 +1,20 @@
+-- V54: Bandeja de salida de emails
+-- El email se renderiza y se inserta en la misma transacción que lo origina (registro, alta de
+-- personal), así que no se pierde si la instancia se reinicia antes de enviarlo. Un despachador lo
+-- reclama con FOR UPDATE SKIP LOCKED, lo envía y lo elimina; si falla lo reprograma con backoff.
+-- Al agotar los reintentos queda FALLIDO y sin su HTML, que puede llevar una contraseña en texto plano.
+-- Una fila en ENVIANDO cuyo proximo_intento ya pasó quedó huérfana (la instancia cayó) y se vuelve a reclamar.
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id               BIGSERIAL PRIMARY KEY,
+    destinatario     VARCHAR(180) NOT NULL,
+    asunto           VARCHAR(255) NOT NULL,
+    html             TEXT NOT NULL,
+    estado           VARCHAR(16) NOT NULL DEFAULT 'PENDIENTE', -- PENDIENTE | ENVIANDO | FALLIDO
+    intentos         INTEGER NOT NULL DEFAULT 0,
+    proximo_intento  TIMESTAMP NOT NULL DEFAULT now(),
+    ultimo_error     VARCHAR(500),
+    created_at       TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_email_outbox_pendiente ON email_outbox(proximo_intento, id) WHERE estado <> 'FALLIDO';
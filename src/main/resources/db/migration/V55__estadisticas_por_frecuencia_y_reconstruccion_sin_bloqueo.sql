@@ -0,0 +1,173 @@
+-- V55: Estadísticas agregadas atribuidas como el cubo de ventas y reconstrucción sin bloquear ventas
+-- 1. Un viaje cuenta para la cooperativa de su frecuencia (la misma regla de cubo_ventas_diario y de
+--    los reportes), no para la del bus. Cambiar el bus de un viaje o de cooperativa un bus ya no mueve
+--    ventas; cambiar de cooperativa una frecuencia sí.
+-- 2. estadistica_reconstruir() ya no toma candados sobre estadistica_diaria_delta: los triggers del
+--    camino de compra siguen insertando deltas mientras se recalcula.
+
+CREATE OR REPLACE FUNCTION estadistica_cooperativa_de_viaje(p_bus_id BIGINT, p_frecuencia_id BIGINT)
+RETURNS BIGINT AS $$
+    SELECT COALESCE((SELECT f.cooperativa_id FROM frecuencia f WHERE f.id = p_frecuencia_id), 0)
+$$ LANGUAGE sql STABLE;
+
+-- Viaje: al crear, eliminar o cambiar de fecha/frecuencia mueve el viaje y el aporte de sus reservas
+CREATE OR REPLACE FUNCTION estadistica_registrar_viaje()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.fecha = NEW.fecha AND OLD.frecuencia_id = NEW.frecuencia_id THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        INSERT INTO estadistica_diaria_delta (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+        SELECT OLD.fecha, estadistica_cooperativa_de_viaje(OLD.bus_id, OLD.frecuencia_id), -1,
+               -COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0),
+               -COUNT(*) FILTER (WHERE r.estado = 'PAGADO'),
+               -COUNT(*) FILTER (WHERE r.estado = 'PENDIENTE')
+          FROM reserva r WHERE r.viaje_id = OLD.id;
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO estadistica_diaria_delta (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+        SELECT NEW.fecha, estadistica_cooperativa_de_viaje(NEW.bus_id, NEW.frecuencia_id), 1,
+               COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0),
+               COUNT(*) FILTER (WHERE r.estado = 'PAGADO'),
+               COUNT(*) FILTER (WHERE r.estado = 'PENDIENTE')
+          FROM reserva r WHERE r.viaje_id = NEW.id;
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_estadistica_viaje ON viaje;
+CREATE TRIGGER trg_estadistica_viaje
+    AFTER INSERT OR UPDATE OF fecha, frecuencia_id ON viaje
+    FOR EACH ROW
+    EXECUTE FUNCTION estadistica_registrar_viaje();
+
+-- Bus: solo los contadores de la cooperativa
+CREATE OR REPLACE FUNCTION estadistica_registrar_bus()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.cooperativa_id = NEW.cooperativa_id AND OLD.activo = NEW.activo THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM estadistica_ajustar_cooperativa(OLD.cooperativa_id, -1, CASE WHEN OLD.activo THEN -1 ELSE 0 END, 0, 0);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM estadistica_ajustar_cooperativa(NEW.cooperativa_id, 1, CASE WHEN NEW.activo THEN 1 ELSE 0 END, 0, 0);
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Frecuencia: si cambia de cooperativa, sus viajes y reservas pasan a la nueva
+CREATE OR REPLACE FUNCTION estadistica_registrar_frecuencia()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF OLD.cooperativa_id IS NOT DISTINCT FROM NEW.cooperativa_id THEN
+        RETURN NULL;
+    END IF;
+
+    INSERT INTO estadistica_diaria_delta (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+    SELECT v.fecha, x.cooperativa_id,
+           x.signo * COUNT(DISTINCT v.id),
+           x.signo * COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0),
+           x.signo * COUNT(r.id) FILTER (WHERE r.estado = 'PAGADO'),
+           x.signo * COUNT(r.id) FILTER (WHERE r.estado = 'PENDIENTE')
+      FROM viaje v
+      LEFT JOIN reserva r ON r.viaje_id = v.id
+      CROSS JOIN (VALUES (COALESCE(OLD.cooperativa_id, 0), -1), (COALESCE(NEW.cooperativa_id, 0), 1)) AS x(cooperativa_id, signo)
+     WHERE v.frecuencia_id = NEW.id
+     GROUP BY v.fecha, x.cooperativa_id, x.signo;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_estadistica_frecuencia ON frecuencia;
+CREATE TRIGGER trg_estadistica_frecuencia
+    AFTER UPDATE OF cooperativa_id ON frecuencia
+    FOR EACH ROW
+    EXECUTE FUNCTION estadistica_registrar_frecuencia();
+
+-- Compactar y reconstruir no pueden correr a la vez: ambas consumen deltas y escriben la tabla consolidada
+CREATE OR REPLACE FUNCTION estadistica_compactar()
+RETURNS INTEGER AS $$
+DECLARE
+    v_grupos INTEGER;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('estadistica_diaria_cooperativa'));
+
+    WITH movidos AS (
+        DELETE FROM estadistica_diaria_delta RETURNING *
+    )
+    INSERT INTO estadistica_diaria_cooperativa AS e
+           (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+    SELECT fecha, cooperativa_id, SUM(viajes), SUM(ventas_monto), SUM(transacciones), SUM(reservas_pendientes)
+      FROM movidos
+     GROUP BY fecha, cooperativa_id
+    ON CONFLICT (fecha, cooperativa_id) DO UPDATE SET
+        viajes = e.viajes + EXCLUDED.viajes,
+        ventas_monto = e.ventas_monto + EXCLUDED.ventas_monto,
+        transacciones = e.transacciones + EXCLUDED.transacciones,
+        reservas_pendientes = e.reservas_pendientes + EXCLUDED.reservas_pendientes;
+    GET DIAGNOSTICS v_grupos = ROW_COUNT;
+    RETURN v_grupos;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recalcula los agregados desde las tablas base sin frenar a quienes registran deltas.
+-- El recálculo se escribe en una tabla de trabajo con una sola sentencia que, en la misma foto,
+-- borra los deltas visibles: esos cambios ya están en el recálculo, y los deltas de transacciones
+-- que confirman después quedan en la tabla y se suman encima al leer o compactar. Luego la tabla
+-- consolidada se reemplaza con el contenido de la de trabajo; los lectores ven la versión anterior
+-- hasta el commit. Los contadores por cooperativa sí toman candado, pero solo frenan altas y cambios
+-- de buses y usuarios, no las ventas.
+CREATE OR REPLACE FUNCTION estadistica_reconstruir()
+RETURNS VOID AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('estadistica_diaria_cooperativa'));
+
+    CREATE TEMP TABLE estadistica_diaria_reconstruccion (LIKE estadistica_diaria_cooperativa) ON COMMIT DROP;
+
+    WITH consumidos AS (
+        DELETE FROM estadistica_diaria_delta RETURNING id
+    )
+    INSERT INTO estadistica_diaria_reconstruccion (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+    SELECT v.fecha, estadistica_cooperativa_de_viaje(v.bus_id, v.frecuencia_id),
+           COUNT(DISTINCT v.id),
+           COALESCE(SUM(r.monto) FILTER (WHERE r.estado = 'PAGADO'), 0),
+           COUNT(r.id) FILTER (WHERE r.estado = 'PAGADO'),
+           COUNT(r.id) FILTER (WHERE r.estado = 'PENDIENTE')
+      FROM viaje v
+      LEFT JOIN reserva r ON r.viaje_id = v.id
+     GROUP BY 1, 2;
+
+    DELETE FROM estadistica_diaria_cooperativa;
+    INSERT INTO estadistica_diaria_cooperativa (fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes)
+    SELECT fecha, cooperativa_id, viajes, ventas_monto, transacciones, reservas_pendientes
+      FROM estadistica_diaria_reconstruccion;
+
+    -- Espera a las transacciones que ya ajustaron contadores; las siguientes ajustan sobre el recálculo
+    LOCK TABLE estadistica_cooperativa IN EXCLUSIVE MODE;
+    DELETE FROM estadistica_cooperativa;
+    INSERT INTO estadistica_cooperativa (cooperativa_id, buses, buses_activos, usuarios, usuarios_activos)
+    SELECT c.id,
+           (SELECT COUNT(*) FROM bus b WHERE b.cooperativa_id = c.id),
+           (SELECT COUNT(*) FROM bus b WHERE b.cooperativa_id = c.id AND b.activo),
+           (SELECT COUNT(*) FROM usuario_cooperativa u WHERE u.cooperativa_id = c.id),
+           (SELECT COUNT(*) FROM usuario_cooperativa u WHERE u.cooperativa_id = c.id AND u.activo)
+      FROM cooperativa c;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recalcula con la nueva atribución
+SELECT estadistica_reconstruir();
@@ -0,0 +1,118 @@
+package com.andinobus.backendsmartcode;
+
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Bus;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Cooperativa;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Frecuencia;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusRepository;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.CooperativaRepository;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.FrecuenciaRepository;
+import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
+import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Datos de prueba contra la BD: una cooperativa con un bus (placa única) y una frecuencia, sobre
+ * los que cada prueba crea sus viajes. eliminar borra todo lo creado, incluidos los asientos y las
+ * reservas de esos viajes.
+ */
+@Component
+public class ViajesDePrueba {
+
+    private final CooperativaRepository cooperativaRepository;
+    private final BusRepository busRepository;
+    private final FrecuenciaRepository frecuenciaRepository;
+    private final ViajeRepository viajeRepository;
+    private final ViajeAsientoRepository viajeAsientoRepository;
+    private final ReservaRepository reservaRepository;
+
+    public ViajesDePrueba(CooperativaRepository cooperativaRepository,
+                          BusRepository busRepository,
+                          FrecuenciaRepository frecuenciaRepository,
+                          ViajeRepository viajeRepository,
+                          ViajeAsientoRepository viajeAsientoRepository,
+                          ReservaRepository reservaRepository) {
+        this.cooperativaRepository = cooperativaRepository;
+        this.busRepository = busRepository;
+        this.frecuenciaRepository = frecuenciaRepository;
+        this.viajeRepository = viajeRepository;
+        this.viajeAsientoRepository = viajeAsientoRepository;
+        this.reservaRepository = reservaRepository;
+    }
+
+    public Escenario crear(String cooperativaNombre, int capacidadBus, String origen, String destino, LocalTime horaSalida) {
+        Cooperativa cooperativa = cooperativaRepository.save(Cooperativa.builder().nombre(cooperativaNombre).build());
+        Bus bus = busRepository.save(Bus.builder()
+                .cooperativa(cooperativa)
+                .placa("TST-" + UUID.randomUUID().toString().substring(0, 8))
+                .capacidadAsientos(capacidadBus)
+                .build());
+        Frecuencia frecuencia = frecuenciaRepository.save(Frecuencia.builder()
+                .cooperativa(cooperativa)
+                .origen(origen)
+                .destino(destino)
+                .horaSalida(horaSalida)
+                .build());
+        return new Escenario(cooperativa, bus, frecuencia);
+    }
+
+    public final class Escenario {
+
+        private final Cooperativa cooperativa;
+        private final Bus bus;
+        private final Frecuencia frecuencia;
+        private final List<Viaje> viajes = new ArrayList<>();
+
+        private Escenario(Cooperativa cooperativa, Bus bus, Frecuencia frecuencia) {
+            this.cooperativa = cooperativa;
+            this.bus = bus;
+            this.frecuencia = frecuencia;
+        }
+
+        public Cooperativa cooperativa() {
+            return cooperativa;
+        }
+
+        public Bus bus() {
+            return bus;
+        }
+
+        public Frecuencia frecuencia() {
+            return frecuencia;
+        }
+
+        /**
+         * Viaje PROGRAMADO de la frecuencia en el bus, a la hora de la frecuencia
+         */
+        public Viaje viaje(LocalDate fecha) {
+            Viaje viaje = viajeRepository.save(Viaje.builder()
+                    .frecuencia(frecuencia)
+                    .bus(bus)
+                    .fecha(fecha)
+                    .horaSalida(frecuencia.getHoraSalida())
+                    .horaSalidaProgramada(frecuencia.getHoraSalida())
+                    .estado("PROGRAMADO")
+                    .build());
+            viajes.add(viaje);
+            return viaje;
+        }
+
+        public void eliminar() {
+            for (Viaje viaje : viajes) {
+                viajeAsientoRepository.deleteAll(viajeAsientoRepository.findByViajeId(viaje.getId()));
+                reservaRepository.deleteAll(reservaRepository.findByViajeId(viaje.getId()));
+            }
+            viajeRepository.deleteAll(viajes);
+            frecuenciaRepository.delete(frecuencia);
+            busRepository.delete(bus);
+            cooperativaRepository.delete(cooperativa);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.andinobus.backendsmartcode.catalogos.application.services;
+
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Terminal;
+import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TerminalResolverTest {
+
+    private final TerminalResolver resolver = resolver(
+            terminal(1L, "Terminal Bolívar", "CARCHI", "Bolívar"),
+            terminal(2L, "Terminal Calceta", "MANABÍ", "Bolívar"),
+            terminal(3L, "Terminal Terrestre Quito", "PICHINCHA", "Quito"));
+
+    @Test
+    void cantonHomonimo_seResuelvePorProvincia() {
+        assertEquals(1L, resolver.resolverPorCanton("CARCHI|Bolivar|1").orElseThrow().id());
+        assertEquals(2L, resolver.resolverPorCanton("MANABI|Bolívar|3").orElseThrow().id());
+        assertEquals(2L, resolver.resolver("Manabí|Bolívar|3").orElseThrow().id());
+    }
+
+    @Test
+    void rutaConProvincia_noCaeEnOtroCantonHomonimo() {
+        // Sin terminal en Bolívar de Los Ríos: no se toma el de otra provincia
+        assertTrue(resolver.resolverPorCanton("LOS RIOS|Bolívar|2").isEmpty());
+        assertTrue(resolver.resolver("LOS RIOS|Bolívar|2").isEmpty());
+    }
+
+    @Test
+    void textoSinProvincia_seResuelvePorCantonONombre() {
+        assertEquals(3L, resolver.resolverPorCanton("quito").orElseThrow().id());
+        assertEquals(2L, resolver.resolver("Terminal Calceta").orElseThrow().id());
+        assertEquals(1L, resolver.resolverPorCanton("Bolívar").orElseThrow().id());
+    }
+
+    private static TerminalResolver resolver(Terminal... terminales) {
+        TerminalRepository repository = mock(TerminalRepository.class);
+        when(repository.findAll()).thenReturn(List.of(terminales));
+        return new TerminalResolver(repository);
+    }
+
+    private static Terminal terminal(Long id, String nombre, String provincia, String canton) {
+        return Terminal.builder()
+                .id(id)
+                .nombre(nombre)
+                .provincia(provincia)
+                .canton(canton)
+                .tipologia("T3")
+                .latitud(-1.0)
+                .longitud(-78.0)
+                .activo(true)
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.andinobus.backendsmartcode.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheAcotadaTest {
+
+    @Test
+    void alSuperarElMaximo_descartaLaMenosUsada() {
+        AtomicInteger maximo = new AtomicInteger(2);
+        CacheAcotada<String, Integer> cache = CacheAcotada.porEntradas(maximo::get);
+
+        cache.guardar("a", 1);
+        cache.guardar("b", 2);
+        cache.obtener("a");
+        cache.guardar("c", 3);
+
+        assertEquals(2, cache.tamano());
+        assertEquals(1, cache.obtener("a"));
+        assertNull(cache.obtener("b"));
+
+        // El límite se lee en cada inserción
+        maximo.set(1);
+        cache.guardar("d", 4);
+        assertEquals(1, cache.tamano());
+        assertEquals(4, cache.obtener("d"));
+    }
+
+    @Test
+    void entradaVencida_noSeDevuelve() {
+        AtomicLong ttlMs = new AtomicLong(60_000);
+        CacheAcotada<String, Integer> cache = CacheAcotada.porEntradas(() -> 10, ttlMs::get);
+
+        cache.guardar("a", 1);
+        assertEquals(1, cache.obtener("a"));
+        assertEquals(1, cache.guardarSiFalta("a", 2));
+
+        ttlMs.set(-1);
+        assertNull(cache.obtener("a"));
+        assertEquals(0, cache.tamano());
+        assertEquals(3, cache.guardarSiFalta("a", 3));
+    }
+
+    @Test
+    void porPeso_seAcotaPorLaSumaDeLosPesos() {
+        CacheAcotada<String, byte[]> cache = CacheAcotada.porPeso(() -> 10, valor -> valor.length);
+
+        cache.guardar("a", new byte[4]);
+        cache.guardar("b", new byte[4]);
+        cache.guardar("c", new byte[4]);
+        assertNull(cache.obtener("a"));
+        assertNotNull(cache.obtener("b"));
+
+        // Reemplazar un valor descuenta el peso del anterior
+        cache.guardar("b", new byte[1]);
+        cache.guardar("d", new byte[5]);
+        assertEquals(3, cache.tamano());
+
+        assertEquals(2, cache.quitarSi(valor -> valor.length > 1));
+        assertEquals(1, cache.quitar("b").length);
+        assertEquals(0, cache.tamano());
+    }
+}
@@ -0,0 +1,147 @@
+package com.andinobus.backendsmartcode.common.export;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportadorFilasTest {
+
+    private static final int FILAS_MASIVAS = 1_000_000;
+    private static final String HEAP_MAXIMO = "-Xmx32m";
+
+    @Test
+    void csv_escapaComillasSeparadoresYFormulas() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportadorFilas csv = FormatoExportacion.CSV.crear(out, "Ventas")) {
+            csv.fila("Origen", "Monto", "Nota");
+            csv.fila("Quito, Norte", new BigDecimal("12.50"), "dijo \"hola\"");
+            csv.fila("=SUMA(A1)", -3, null);
+            csv.fila(LocalDate.of(2025, 3, 1), LocalTime.of(7, 30), "línea\nnueva");
+            assertEquals(4, csv.filasEscritas());
+        }
+        String texto = out.toString(StandardCharsets.UTF_8);
+        assertEquals("\uFEFFOrigen,Monto,Nota\r\n" +
+                "\"Quito, Norte\",12.50,\"dijo \"\"hola\"\"\"\r\n" +
+                "'=SUMA(A1),-3,\r\n" +
+                "2025-03-01,07:30,\"línea\nnueva\"\r\n", texto);
+    }
+
+    @Test
+    void xlsx_generaUnLibroValidoYRepiteElEncabezadoAlCambiarDeHoja() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportadorFilas xlsx = new XlsxExportador(out, "Ventas", 3)) {
+            xlsx.fila("Origen", "Monto");
+            xlsx.fila("Quito & <Norte>", new BigDecimal("12.50"));
+            xlsx.fila("Ambato", 7);
+            xlsx.fila("Cuenca\u0001", null);
+        }
+
+        Map<String, String> partes = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entrada; (entrada = zip.getNextEntry()) != null; ) {
+                partes.put(entrada.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertTrue(partes.keySet().containsAll(List.of("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml",
+                "xl/_rels/workbook.xml.rels", "xl/worksheets/sheet1.xml", "xl/worksheets/sheet2.xml")));
+        for (String xml : partes.values()) {
+            assertNotNull(parsear(xml));
+        }
+
+        Document hoja1 = parsear(partes.get("xl/worksheets/sheet1.xml"));
+        assertEquals(3, hoja1.getElementsByTagName("row").getLength());
+        assertEquals("Quito & <Norte>", hoja1.getElementsByTagName("t").item(2).getTextContent());
+        assertEquals("12.50", hoja1.getElementsByTagName("v").item(0).getTextContent());
+
+        Document hoja2 = parsear(partes.get("xl/worksheets/sheet2.xml"));
+        assertEquals(2, hoja2.getElementsByTagName("row").getLength());
+        assertEquals("Origen", hoja2.getElementsByTagName("t").item(0).getTextContent());
+        assertEquals("Cuenca", hoja2.getElementsByTagName("t").item(2).getTextContent());
+        assertTrue(partes.get("xl/workbook.xml").contains("name=\"Ventas 2\""));
+    }
+
+    @Test
+    void millonDeFilas_seExportanConHeapAcotado() throws Exception {
+        for (FormatoExportacion formato : FormatoExportacion.values()) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            Process proceso = new ProcessBuilder(java, HEAP_MAXIMO, "-cp", System.getProperty("java.class.path"),
+                    GeneradorMasivo.class.getName(), formato.name())
+                    .redirectErrorStream(true)
+                    .start();
+            assertTrue(proceso.waitFor(5, TimeUnit.MINUTES), "La exportación " + formato + " no terminó");
+            String salida = new String(proceso.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(0, proceso.exitValue(), () -> "La exportación " + formato + " falló con " + HEAP_MAXIMO + ":\n" + salida);
+            assertTrue(salida.contains("filas=" + (FILAS_MASIVAS + 1)), salida);
+        }
+    }
+
+    private static Document parsear(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Se ejecuta en una JVM aparte con heap fijo: exporta filas sintéticas tipo reporte de ventas
+     * a un stream que solo cuenta bytes. Si el exportador acumulara filas, moriría por OutOfMemoryError
+     */
+    static final class GeneradorMasivo {
+
+        public static void main(String[] args) throws IOException {
+            FormatoExportacion formato = FormatoExportacion.valueOf(args[0]);
+            long[] bytes = new long[1];
+            OutputStream contador = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    bytes[0]++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes[0] += len;
+                }
+            };
+
+            LocalDate inicio = LocalDate.of(2025, 1, 1);
+            Object[] valores = new Object[10];
+            long filas;
+            try (ExportadorFilas exportador = formato.crear(contador, "Ventas")) {
+                exportador.fila("Fecha viaje", "Hora salida", "Origen", "Destino", "Reserva", "Cliente",
+                        "Asientos", "Estado", "Monto", "Fecha reserva");
+                for (int i = 0; i < FILAS_MASIVAS; i++) {
+                    valores[0] = inicio.plusDays(i % 365);
+                    valores[1] = LocalTime.of(5 + i % 18, (i * 7) % 60);
+                    valores[2] = "Quito";
+                    valores[3] = "Guayaquil, Terminal " + (i % 13);
+                    valores[4] = (long) i;
+                    valores[5] = "cliente" + (i % 5000) + "@correo.ec";
+                    valores[6] = 1 + i % 4;
+                    valores[7] = i % 10 == 0 ? "PENDIENTE" : "PAGADO";
+                    valores[8] = BigDecimal.valueOf(850 + i % 2000, 2);
+                    valores[9] = LocalDateTime.of(2024, 12, 1, 8, 0).plusMinutes(i);
+                    exportador.fila(valores);
+                }
+                filas = exportador.filasEscritas();
+            }
+            System.out.println("filas=" + filas + " bytes=" + bytes[0]);
+        }
+    }
+}
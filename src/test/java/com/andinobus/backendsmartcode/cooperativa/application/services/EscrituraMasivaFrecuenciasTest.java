@@ -0,0 +1,152 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import com.andinobus.backendsmartcode.admin.domain.entities.Ruta;
+import com.andinobus.backendsmartcode.admin.domain.enums.TipoFrecuencia;
+import com.andinobus.backendsmartcode.admin.domain.repositories.RutaRepository;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Bus;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Cooperativa;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusRepository;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.CooperativaRepository;
+import com.andinobus.backendsmartcode.cooperativa.application.services.EscrituraMasivaFrecuencias.NuevaFrecuencia;
+import com.andinobus.backendsmartcode.cooperativa.application.services.EscrituraMasivaFrecuencias.NuevaParada;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Escritura masiva contra la BD: las filas que chocan con uk_frecuencia_bus_ruta_hora se omiten
+ * sin error, las paradas quedan en la frecuencia con el id reservado para ella, y 10.000
+ * frecuencias se escriben en menos de un segundo.
+ */
+@SpringBootTest
+class EscrituraMasivaFrecuenciasTest {
+
+    private static final int MASIVAS = 10_000;
+    private static final long LIMITE_MS = 1000;
+
+    @Autowired private EscrituraMasivaFrecuencias escrituraMasiva;
+    @Autowired private CooperativaRepository cooperativaRepository;
+    @Autowired private BusRepository busRepository;
+    @Autowired private RutaRepository rutaRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private Cooperativa cooperativa;
+    private Bus bus;
+    private Ruta ruta;
+
+    @BeforeEach
+    void preparar() {
+        cooperativa = cooperativaRepository.save(Cooperativa.builder().nombre("Coop escritura masiva").build());
+        bus = busRepository.save(Bus.builder()
+                .cooperativa(cooperativa)
+                .placa("BLK-" + UUID.randomUUID().toString().substring(0, 8))
+                .capacidadAsientos(40)
+                .build());
+        ruta = rutaRepository.save(Ruta.builder()
+                .nombre("Quito - Cuenca " + UUID.randomUUID())
+                .origen("Quito")
+                .destino("Cuenca")
+                .build());
+    }
+
+    @AfterEach
+    void limpiar() {
+        borrarFrecuencias();
+        rutaRepository.delete(ruta);
+        busRepository.delete(bus);
+        cooperativaRepository.delete(cooperativa);
+    }
+
+    @Test
+    void conflictos_seOmitenYLasParadasVanALaFrecuenciaCorrecta() {
+        // Ya existen las de 06:00 y 07:00
+        EscrituraMasivaFrecuencias.Resultado previo = escrituraMasiva.escribir(List.of(
+                frecuencia(LocalTime.of(6, 0), 2), frecuencia(LocalTime.of(7, 0), 2)));
+        assertEquals(2, previo.creadas());
+        assertTrue(escrituraMasiva.clavesExistentes(cooperativa.getId()).contains(
+                new EscrituraMasivaFrecuencias.ClaveFrecuencia(bus.getId(), ruta.getId(), LocalTime.of(6, 0))));
+
+        EscrituraMasivaFrecuencias.Resultado resultado = escrituraMasiva.escribir(List.of(
+                frecuencia(LocalTime.of(5, 0), 1),
+                frecuencia(LocalTime.of(6, 0), 3),
+                frecuencia(LocalTime.of(8, 0), 2),
+                frecuencia(LocalTime.of(7, 0), 3),
+                frecuencia(LocalTime.of(9, 0), 0)));
+
+        assertEquals(3, resultado.creadas());
+        assertEquals(2, resultado.omitidas());
+        assertEquals(3, resultado.paradas());
+        assertEquals(5, contar("SELECT COUNT(*) FROM frecuencia_viaje WHERE bus_id = ?"));
+        assertEquals(5, contar("SELECT COUNT(DISTINCT id) FROM frecuencia_viaje WHERE bus_id = ?"));
+        // 2 + 2 del primer lote y 1 + 2 del segundo; las omitidas no dejan paradas
+        assertEquals(7, contar("SELECT COUNT(*) FROM parada_frecuencia p JOIN frecuencia_viaje f ON f.id = p.frecuencia_viaje_id " +
+                "WHERE f.bus_id = ?"));
+        // Cada parada lleva en el nombre la hora de su frecuencia: el id reservado corresponde a su fila
+        assertEquals(0, contar("SELECT COUNT(*) FROM parada_frecuencia p JOIN frecuencia_viaje f ON f.id = p.frecuencia_viaje_id " +
+                "WHERE f.bus_id = ? AND p.nombre_parada NOT LIKE to_char(f.hora_salida, 'HH24:MI') || '%'"));
+    }
+
+    @Test
+    void diezMilFrecuencias_enMenosDeUnSegundo() {
+        // Pasada de calentamiento (conexiones, planes, JIT) fuera de la medición
+        escrituraMasiva.escribir(frecuencias(1000));
+        borrarFrecuencias();
+
+        List<NuevaFrecuencia> frecuencias = frecuencias(MASIVAS);
+        long inicio = System.nanoTime();
+        EscrituraMasivaFrecuencias.Resultado resultado = escrituraMasiva.escribir(frecuencias);
+        long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+
+        assertEquals(MASIVAS, resultado.creadas());
+        assertEquals(0, resultado.omitidas());
+        assertEquals(MASIVAS, contar("SELECT COUNT(*) FROM frecuencia_viaje WHERE bus_id = ?"));
+        assertTrue(milisegundos < LIMITE_MS, () -> MASIVAS + " frecuencias en " + milisegundos + " ms");
+
+        // Repetir el lote no crea nada: todas chocan con la restricción única
+        EscrituraMasivaFrecuencias.Resultado repetido = escrituraMasiva.escribir(frecuencias);
+        assertEquals(0, repetido.creadas());
+        assertEquals(MASIVAS, repetido.omitidas());
+    }
+
+    /**
+     * Frecuencias con horas distintas al segundo, para no chocar entre sí
+     */
+    private List<NuevaFrecuencia> frecuencias(int cantidad) {
+        List<NuevaFrecuencia> frecuencias = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            frecuencias.add(frecuencia(LocalTime.ofSecondOfDay(i * 7L), 0));
+        }
+        return frecuencias;
+    }
+
+    private NuevaFrecuencia frecuencia(LocalTime horaSalida, int paradas) {
+        List<NuevaParada> nuevasParadas = new ArrayList<>();
+        for (int orden = 1; orden <= paradas; orden++) {
+            nuevasParadas.add(new NuevaParada(orden, horaSalida.toString().substring(0, 5) + " parada " + orden, null, null,
+                    horaSalida.plusMinutes(30L * orden), 5, 1.5 * orden, true, true));
+        }
+        return new NuevaFrecuencia(bus.getId(), ruta.getId(), cooperativa.getId(), null, null, null, null,
+                horaSalida, horaSalida.plusHours(8), "LUNES,MARTES", 10.0, 40, 480, 450.0, 97.2,
+                1, TipoFrecuencia.INTERPROVINCIAL, 45, false, nuevasParadas);
+    }
+
+    private int contar(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, bus.getId());
+    }
+
+    private void borrarFrecuencias() {
+        jdbcTemplate.update("DELETE FROM parada_frecuencia WHERE frecuencia_viaje_id IN " +
+                "(SELECT id FROM frecuencia_viaje WHERE bus_id = ?)", bus.getId());
+        jdbcTemplate.update("DELETE FROM frecuencia_viaje WHERE bus_id = ?", bus.getId());
+    }
+}
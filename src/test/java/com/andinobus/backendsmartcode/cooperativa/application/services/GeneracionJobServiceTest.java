@@ -0,0 +1,228 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import com.andinobus.backendsmartcode.admin.domain.entities.Ruta;
+import com.andinobus.backendsmartcode.admin.domain.enums.TipoFrecuencia;
+import com.andinobus.backendsmartcode.admin.domain.repositories.RutaRepository;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Bus;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Cooperativa;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.BusRepository;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.CooperativaRepository;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionJobDtos.GeneracionJobResponse;
+import com.andinobus.backendsmartcode.cooperativa.domain.entities.GeneracionJob;
+import com.andinobus.backendsmartcode.cooperativa.infrastructure.repositories.GeneracionJobRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Jobs de generación contra la BD: un job interrumpido a mitad de un bloque se retoma desde su punto
+ * de control sin perder ni duplicar frecuencias, y cancelar no espera al bloque en curso.
+ *
+ * Cada "instancia" es un GeneracionJobService propio con la generación inteligente simulada: cada
+ * bloque escribe FRECUENCIAS_POR_BLOQUE frecuencias reales con la escritura masiva.
+ */
+@SpringBootTest
+class GeneracionJobServiceTest {
+
+    private static final int BLOQUES = 5;
+    private static final int FRECUENCIAS_POR_BLOQUE = 4;
+
+    @Autowired private GeneracionJobRepository jobRepository;
+    @Autowired private EscrituraMasivaFrecuencias escrituraMasiva;
+    @Autowired private CooperativaRepository cooperativaRepository;
+    @Autowired private BusRepository busRepository;
+    @Autowired private RutaRepository rutaRepository;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private Cooperativa cooperativa;
+    private Bus bus;
+    private Ruta ruta;
+    private final List<GeneracionJobService> instancias = new ArrayList<>();
+
+    @BeforeEach
+    void preparar() {
+        cooperativa = cooperativaRepository.save(Cooperativa.builder().nombre("Coop jobs").build());
+        bus = busRepository.save(Bus.builder()
+                .cooperativa(cooperativa)
+                .placa("JOB-" + UUID.randomUUID().toString().substring(0, 8))
+                .capacidadAsientos(40)
+                .build());
+        ruta = rutaRepository.save(Ruta.builder()
+                .nombre("Quito - Ambato " + UUID.randomUUID())
+                .origen("Quito")
+                .destino("Ambato")
+                .build());
+    }
+
+    @AfterEach
+    void limpiar() {
+        instancias.forEach(GeneracionJobService::detener);
+        jdbcTemplate.update("DELETE FROM frecuencia_viaje WHERE bus_id = ?", bus.getId());
+        jdbcTemplate.update("DELETE FROM generacion_job WHERE cooperativa_id = ?", cooperativa.getId());
+        rutaRepository.delete(ruta);
+        busRepository.delete(bus);
+        cooperativaRepository.delete(cooperativa);
+    }
+
+    @Test
+    void jobInterrumpido_seRetomaDesdeElPuntoDeControlSinPerderNiDuplicar() throws Exception {
+        // Primera instancia: se apaga mientras escribe el bloque 2 (sus filas no llegan a confirmarse)
+        GeneracionJobService[] primera = new GeneracionJobService[1];
+        primera[0] = instancia(indice -> {
+            if (indice == 2) {
+                primera[0].detener();
+                throw new IllegalStateException("Instancia detenida");
+            }
+        });
+        Long jobId = crearJob();
+        primera[0].ejecutar(jobId);
+
+        GeneracionJob interrumpido = jobRepository.findById(jobId).orElseThrow();
+        assertEquals(GeneracionJob.Estado.EN_CURSO, interrumpido.getEstado());
+        assertEquals(2, interrumpido.getBloquesProcesados());
+        assertEquals(FRECUENCIAS_POR_BLOQUE, contarFrecuencias());
+
+        // Segunda instancia: al arrancar retoma el job pendiente
+        GeneracionJobService segunda = instancia(indice -> { });
+        segunda.reanudarPendientes();
+        GeneracionJob terminado = esperarFin(jobId);
+
+        assertEquals(GeneracionJob.Estado.COMPLETADO, terminado.getEstado());
+        assertEquals(BLOQUES, terminado.getBloquesProcesados());
+        assertEquals((BLOQUES - 1) * FRECUENCIAS_POR_BLOQUE, terminado.getFrecuenciasCreadas());
+        assertEquals((BLOQUES - 1) * FRECUENCIAS_POR_BLOQUE, contarFrecuencias());
+    }
+
+    @Test
+    void cancelar_noEsperaAlBloqueEnCurso() throws Exception {
+        CountDownLatch enBloque = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        GeneracionJobService servicio = instancia(indice -> {
+            if (indice == 1) {
+                enBloque.countDown();
+                try {
+                    soltar.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Long jobId = crearJob();
+        CompletableFuture<Void> ejecucion = CompletableFuture.runAsync(() -> servicio.ejecutar(jobId));
+        assertTrue(enBloque.await(30, TimeUnit.SECONDS));
+
+        // El bloque 1 sigue abierto: la solicitud de cancelación responde sin esperarlo
+        GeneracionJobResponse respuesta = CompletableFuture
+                .supplyAsync(() -> servicio.cancelar(cooperativa.getId(), jobId))
+                .get(5, TimeUnit.SECONDS);
+        assertTrue(respuesta.getCancelacionSolicitada());
+        assertEquals("EN_CURSO", respuesta.getEstado());
+
+        soltar.countDown();
+        ejecucion.get(30, TimeUnit.SECONDS);
+
+        // El bloque en curso se confirma y el job se detiene antes del siguiente
+        GeneracionJob cancelado = jobRepository.findById(jobId).orElseThrow();
+        assertEquals(GeneracionJob.Estado.CANCELADO, cancelado.getEstado());
+        assertEquals(2, cancelado.getBloquesProcesados());
+        assertEquals(FRECUENCIAS_POR_BLOQUE, contarFrecuencias());
+    }
+
+    private GeneracionJobService instancia(IntConsumer alProcesar) {
+        GeneracionFrecuenciasInteligenteService inteligente = mock(GeneracionFrecuenciasInteligenteService.class);
+        when(inteligente.planificarGeneracion(anyLong(), any(), anyInt())).thenAnswer(inv -> ejecucion(alProcesar));
+        GeneracionJobService servicio = new GeneracionJobService(jobRepository, inteligente,
+                mock(GeneracionAutomaticaService.class), mock(GeneracionFrecuenciasService.class),
+                objectMapper, transactionManager);
+        ReflectionTestUtils.setField(servicio, "hilos", 1);
+        ReflectionTestUtils.setField(servicio, "capacidadCola", 5);
+        ReflectionTestUtils.setField(servicio, "diasPorBloque", 7);
+        servicio.iniciar();
+        instancias.add(servicio);
+        return servicio;
+    }
+
+    /**
+     * Generación determinista: el bloque 0 no crea nada (como la limpieza previa) y cada uno de los
+     * siguientes escribe sus frecuencias antes de invocar alProcesar
+     */
+    private EjecucionGeneracion ejecucion(IntConsumer alProcesar) {
+        return new EjecucionGeneracion() {
+            @Override
+            public int totalBloques() {
+                return BLOQUES;
+            }
+
+            @Override
+            public int diasTotales() {
+                return BLOQUES - 1;
+            }
+
+            @Override
+            public ResultadoBloque procesarBloque(int indice) {
+                if (indice == 0) {
+                    return new ResultadoBloque(0, 0, 0, 0, List.of());
+                }
+                List<EscrituraMasivaFrecuencias.NuevaFrecuencia> frecuencias = new ArrayList<>();
+                for (int k = 0; k < FRECUENCIAS_POR_BLOQUE; k++) {
+                    frecuencias.add(frecuencia(LocalTime.of(indice, k * 10)));
+                }
+                EscrituraMasivaFrecuencias.Resultado resultado = escrituraMasiva.escribir(frecuencias);
+                alProcesar.accept(indice);
+                return new ResultadoBloque(1, resultado.creadas(), resultado.omitidas(), 0, List.of());
+            }
+        };
+    }
+
+    private EscrituraMasivaFrecuencias.NuevaFrecuencia frecuencia(LocalTime horaSalida) {
+        return new EscrituraMasivaFrecuencias.NuevaFrecuencia(bus.getId(), ruta.getId(), cooperativa.getId(),
+                null, null, null, null, horaSalida, horaSalida.plusHours(2), "LUNES", 5.0, 40, 120, 100.0, 21.6,
+                1, TipoFrecuencia.INTERPROVINCIAL, 45, false, List.of());
+    }
+
+    private Long crearJob() {
+        return jobRepository.saveAndFlush(GeneracionJob.builder()
+                .cooperativaId(cooperativa.getId())
+                .tipo(GeneracionJob.Tipo.INTELIGENTE)
+                .solicitud("{}")
+                .build()).getId();
+    }
+
+    private int contarFrecuencias() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM frecuencia_viaje WHERE bus_id = ?", Integer.class, bus.getId());
+    }
+
+    private GeneracionJob esperarFin(Long jobId) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        GeneracionJob job = jobRepository.findById(jobId).orElseThrow();
+        while (job.getEstado().esActivo() && System.nanoTime() < limite) {
+            Thread.sleep(50);
+            job = jobRepository.findById(jobId).orElseThrow();
+        }
+        return job;
+    }
+}
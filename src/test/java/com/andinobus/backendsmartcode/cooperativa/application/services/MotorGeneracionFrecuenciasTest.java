@@ -0,0 +1,312 @@
+package com.andinobus.backendsmartcode.cooperativa.application.services;
+
+import com.andinobus.backendsmartcode.admin.domain.enums.TipoFrecuencia;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionInteligenteDtos.FrecuenciaPreview;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.GeneracionInteligenteDtos.RutaCircuitoRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MotorGeneracionFrecuenciasTest {
+
+    private static final MotorGeneracionFrecuencias.Parametros PARAMETROS = new MotorGeneracionFrecuencias.Parametros(
+            LocalTime.of(5, 0), LocalTime.of(22, 0), 9, 60, 30, 100, true, null);
+
+    @Test
+    void semanasEnParalelo_danLasMismasFrecuenciasQueElRecorridoSecuencial() {
+        Cooperativa cooperativa = Cooperativa.sintetica(200, 7);
+        // Doce semanas que cruzan el cambio de año (la semana ISO reinicia el 1 de enero)
+        LocalDate inicio = LocalDate.of(2025, 11, 20);
+        LocalDate fin = inicio.plusWeeks(12);
+        List<String> dias = List.of("LUNES", "MARTES", "MIERCOLES", "JUEVES", "VIERNES", "SABADO");
+
+        MotorGeneracionFrecuencias.Resultado esperado =
+                ReferenciaSecuencial.generar(PARAMETROS, cooperativa.rutas(), cooperativa.buses(), inicio, fin, dias);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MotorGeneracionFrecuencias.Resultado resultado = new MotorGeneracionFrecuencias(
+                    PARAMETROS, cooperativa.rutas(), cooperativa.buses(), Map.of()).generar(inicio, fin, dias, pool);
+
+            assertFalse(esperado.frecuencias().isEmpty());
+            assertEquals(esperado.frecuencias(), resultado.frecuencias());
+            assertEquals(esperado.frecuenciasPorRuta(), resultado.frecuenciasPorRuta());
+            assertEquals(esperado.frecuenciasPorBus(), resultado.frecuenciasPorBus());
+            assertEquals(esperado.advertencias(), resultado.advertencias());
+            assertEquals(esperado.diasOperacion(), resultado.diasOperacion());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void choferConDosDiasExtendidos_trabajaOchoHorasElRestoDeLaSemana() {
+        // 2h30 por viaje: 4 viajes (10h) en un día extendido, 3 viajes (7h30) en uno normal
+        RutaCircuitoRequest ruta = ruta(1L, 2L, 150, 180.0);
+        List<MotorGeneracionFrecuencias.BusMotor> buses = List.of(
+                new MotorGeneracionFrecuencias.BusMotor(1L, "AAA-001", 40, 10L, "Chofer Uno"));
+        LocalDate lunes = LocalDate.of(2025, 3, 3);
+
+        MotorGeneracionFrecuencias.Resultado resultado = new MotorGeneracionFrecuencias(PARAMETROS, List.of(ruta), buses, Map.of())
+                .generar(lunes, lunes.plusDays(7), null, null);
+
+        Map<LocalDate, Integer> viajesPorDia = new HashMap<>();
+        resultado.frecuencias().forEach(f -> viajesPorDia.merge(f.getFecha(), 1, Integer::sum));
+        assertEquals(4, viajesPorDia.get(lunes));
+        assertEquals(4, viajesPorDia.get(lunes.plusDays(1)));
+        for (int d = 2; d < 7; d++) {
+            assertEquals(3, viajesPorDia.get(lunes.plusDays(d)), "Día " + lunes.plusDays(d));
+        }
+        assertEquals(4, viajesPorDia.get(lunes.plusDays(7)), "La semana siguiente vuelve a tener días extendidos");
+    }
+
+    @Test
+    void rutasSinBusesOMuyLargasYTerminalesSaturados_seAdvierten() {
+        List<RutaCircuitoRequest> rutas = List.of(ruta(1L, 2L, 60, 40.0), ruta(1L, 3L, 660, 700.0), ruta(2L, 3L, 90, 80.0));
+        List<MotorGeneracionFrecuencias.BusMotor> buses = List.of(
+                new MotorGeneracionFrecuencias.BusMotor(1L, "AAA-001", 40, null, null),
+                new MotorGeneracionFrecuencias.BusMotor(2L, "AAA-002", 40, null, null));
+        LocalDate dia = LocalDate.of(2025, 3, 3);
+
+        MotorGeneracionFrecuencias.Resultado resultado = new MotorGeneracionFrecuencias(PARAMETROS, rutas, buses, Map.of(1L, 2))
+                .generar(dia, dia.plusDays(1), null, null);
+
+        assertEquals(List.of(
+                "Ruta T1 → T3 omitida: duración excede horas máximas del chofer",
+                "Ruta T2 → T3 sin buses asignados",
+                "Ruta T1 → T3 omitida: duración excede horas máximas del chofer",
+                "Ruta T2 → T3 sin buses asignados",
+                "Terminal T1 supera su capacidad de 2 salidas diarias en 2 día(s) (máximo 5 salidas)"),
+                resultado.advertencias());
+        assertTrue(resultado.frecuencias().stream().allMatch(f -> "AAA-001".equals(f.getBusPlaca())));
+        assertEquals(Map.of("AAA-001", 18), resultado.frecuenciasPorBus());
+    }
+
+    private static RutaCircuitoRequest ruta(Long origen, Long destino, int duracion, double distancia) {
+        return RutaCircuitoRequest.builder()
+                .terminalOrigenId(origen)
+                .terminalOrigenNombre("T" + origen)
+                .terminalDestinoId(destino)
+                .terminalDestinoNombre("T" + destino)
+                .duracionMinutos(duracion)
+                .distanciaKm(distancia)
+                .precioBase(Math.round(distancia * 4) / 100.0)
+                .build();
+    }
+
+    /**
+     * Cooperativa sintética: rutas de 45 min a 7 h, algunos buses sin chofer y choferes compartidos
+     */
+    record Cooperativa(List<RutaCircuitoRequest> rutas, List<MotorGeneracionFrecuencias.BusMotor> buses) {
+
+        static Cooperativa sintetica(int numBuses, long semilla) {
+            Random random = new Random(semilla);
+            int numTerminales = Math.max(4, numBuses / 20);
+            List<RutaCircuitoRequest> rutas = new ArrayList<>();
+            for (int r = 0; r < Math.max(3, numBuses / 6); r++) {
+                long origen = 1 + random.nextInt(numTerminales);
+                long destino = 1 + (origen + random.nextInt(numTerminales - 1)) % numTerminales;
+                double distancia = 30 + random.nextInt(320);
+                rutas.add(ruta(origen, destino, (int) (distancia / 50.0 * 60) + 10, distancia));
+            }
+            List<MotorGeneracionFrecuencias.BusMotor> buses = new ArrayList<>();
+            long chofer = 0;
+            for (int b = 0; b < numBuses; b++) {
+                Long choferId = b % 10 == 9 ? null : b % 7 == 6 ? Long.valueOf(chofer) : Long.valueOf(++chofer);
+                buses.add(new MotorGeneracionFrecuencias.BusMotor((long) b + 1, String.format("SIN-%04d", b), 30 + b % 15,
+                        choferId, choferId != null ? "Chofer " + choferId : null));
+            }
+            return new Cooperativa(rutas, buses);
+        }
+    }
+
+    /**
+     * Recorrido secuencial día por día con LocalTime y estado por objeto, tal como lo hacía
+     * previewGeneracion antes del motor. Sirve de referencia de resultados y de tiempos
+     */
+    static final class ReferenciaSecuencial {
+
+        static MotorGeneracionFrecuencias.Resultado generar(MotorGeneracionFrecuencias.Parametros p,
+                                                             List<RutaCircuitoRequest> rutas,
+                                                             List<MotorGeneracionFrecuencias.BusMotor> buses,
+                                                             LocalDate inicio, LocalDate fin, List<String> diasOperacion) {
+            List<FrecuenciaPreview> frecuencias = new ArrayList<>();
+            Map<String, Integer> porRuta = new HashMap<>();
+            Map<String, Integer> porBus = new HashMap<>();
+            List<String> advertencias = new ArrayList<>();
+            Map<Long, int[]> diasExtendidos = new HashMap<>();
+            int totalDias = 0;
+            int semanaAnterior = -1;
+
+            for (LocalDate fecha = inicio; !fecha.isAfter(fin); fecha = fecha.plusDays(1)) {
+                int semana = fecha.get(WeekFields.ISO.weekOfYear());
+                if (semana != semanaAnterior) {
+                    diasExtendidos.clear();
+                    semanaAnterior = semana;
+                }
+                String diaSemana = GeneracionFrecuenciasInteligenteService.obtenerDiaSemana(fecha);
+                if (diasOperacion != null && !diasOperacion.isEmpty() && !diasOperacion.contains(diaSemana)) {
+                    continue;
+                }
+                totalDias++;
+
+                Map<Long, Integer> maxHorasHoy = new HashMap<>();
+                for (MotorGeneracionFrecuencias.BusMotor bus : buses) {
+                    if (bus.choferId() != null) {
+                        maxHorasHoy.put(bus.choferId(), diasExtendidos.computeIfAbsent(bus.choferId(), id -> new int[1])[0] >= 2 ? 8 : 10);
+                    }
+                }
+                double[] horas = new double[buses.size()];
+
+                for (int r = 0; r < rutas.size(); r++) {
+                    RutaCircuitoRequest ruta = rutas.get(r);
+                    List<Integer> busesDeRuta = new ArrayList<>();
+                    for (int b = r; b < buses.size(); b += rutas.size()) {
+                        busesDeRuta.add(b);
+                    }
+                    if (busesDeRuta.isEmpty()) {
+                        advertencias.add("Ruta " + ruta.getTerminalOrigenNombre() + " → " + ruta.getTerminalDestinoNombre() + " sin buses asignados");
+                        continue;
+                    }
+                    int duracionIda = ruta.getDuracionMinutos() != null ? ruta.getDuracionMinutos() : 120;
+                    boolean esInterprovincial = ruta.getDistanciaKm() != null && ruta.getDistanciaKm() > p.umbralKm();
+                    int calculado = Math.max(15, Math.min(90, (int) (duracionIda * 0.25)));
+                    int base = esInterprovincial ? p.descansoInterprov() : p.descansoIntraprov();
+                    int descanso = Math.max(calculado, Math.min(base, calculado + 15));
+                    TipoFrecuencia tipo = esInterprovincial ? TipoFrecuencia.INTERPROVINCIAL : TipoFrecuencia.INTRAPROVINCIAL;
+                    Double distanciaKm = ruta.getDistanciaKm() != null ? ruta.getDistanciaKm() : 100.0;
+                    Double costo = distanciaKm * 0.12 * 1.80;
+                    int maxParadas = 0;
+                    if (Boolean.TRUE.equals(p.permitirParadas()) && esInterprovincial) {
+                        maxParadas = p.maxParadasPersonalizado() != null ? p.maxParadasPersonalizado()
+                                : GeneracionFrecuenciasInteligenteService.calcularMaxParadasPermitidas(duracionIda, tipo);
+                    }
+                    double horasViaje = duracionIda / 60.0;
+                    if (horasViaje > 10) {
+                        advertencias.add("Ruta " + ruta.getTerminalOrigenNombre() + " → " + ruta.getTerminalDestinoNombre()
+                                + " omitida: duración excede horas máximas del chofer");
+                        continue;
+                    }
+
+                    for (int posicion = 0; posicion < busesDeRuta.size(); posicion++) {
+                        int b = busesDeRuta.get(posicion);
+                        MotorGeneracionFrecuencias.BusMotor bus = buses.get(b);
+                        int maxHoras = bus.choferId() != null ? maxHorasHoy.get(bus.choferId()) : p.maxHorasChofer();
+                        LocalTime hora = p.horaInicio().plusMinutes(posicion * 15L);
+                        int orden = 0;
+                        while (horas[b] + horasViaje <= maxHoras) {
+                            LocalTime llegadaIda = hora.plusMinutes(duracionIda);
+                            if (llegadaIda.isAfter(p.horaFin())) {
+                                break;
+                            }
+                            frecuencias.add(preview(fecha, diaSemana, ruta, bus, hora, llegadaIda, true, tipo, duracionIda,
+                                    descanso, maxParadas, distanciaKm, costo, ++orden));
+                            porRuta.merge(ruta.getTerminalOrigenNombre() + " → " + ruta.getTerminalDestinoNombre(), 1, Integer::sum);
+                            porBus.merge(bus.placa(), 1, Integer::sum);
+                            horas[b] += horasViaje;
+
+                            LocalTime salidaVuelta = llegadaIda.plusMinutes(descanso);
+                            LocalTime llegadaVuelta = salidaVuelta.plusMinutes(duracionIda);
+                            if (llegadaVuelta.isAfter(p.horaFin()) || horas[b] + horasViaje > maxHoras) {
+                                break;
+                            }
+                            frecuencias.add(preview(fecha, diaSemana, ruta, bus, salidaVuelta, llegadaVuelta, false, tipo,
+                                    duracionIda, descanso, maxParadas, distanciaKm, costo, ++orden));
+                            porRuta.merge(ruta.getTerminalDestinoNombre() + " → " + ruta.getTerminalOrigenNombre(), 1, Integer::sum);
+                            porBus.merge(bus.placa(), 1, Integer::sum);
+                            horas[b] += horasViaje;
+                            hora = llegadaVuelta.plusMinutes(descanso);
+                        }
+                    }
+                }
+
+                for (int b = 0; b < buses.size(); b++) {
+                    Long choferId = buses.get(b).choferId();
+                    if (choferId != null && horas[b] > 8) {
+                        diasExtendidos.get(choferId)[0]++;
+                    }
+                }
+            }
+            return new MotorGeneracionFrecuencias.Resultado(frecuencias, porRuta, porBus, advertencias, totalDias);
+        }
+
+        private static FrecuenciaPreview preview(LocalDate fecha, String diaSemana, RutaCircuitoRequest ruta,
+                                                 MotorGeneracionFrecuencias.BusMotor bus, LocalTime salida, LocalTime llegada,
+                                                 boolean ida, TipoFrecuencia tipo, int duracion, int descanso, int paradas,
+                                                 Double distancia, Double costo, int orden) {
+            return FrecuenciaPreview.builder()
+                    .fecha(fecha)
+                    .diaSemana(diaSemana)
+                    .horaSalida(salida)
+                    .horaLlegada(llegada)
+                    .terminalOrigenId(ida ? ruta.getTerminalOrigenId() : ruta.getTerminalDestinoId())
+                    .terminalOrigenNombre(ida ? ruta.getTerminalOrigenNombre() : ruta.getTerminalDestinoNombre())
+                    .terminalDestinoId(ida ? ruta.getTerminalDestinoId() : ruta.getTerminalOrigenId())
+                    .terminalDestinoNombre(ida ? ruta.getTerminalDestinoNombre() : ruta.getTerminalOrigenNombre())
+                    .busId(bus.busId())
+                    .busPlaca(bus.placa())
+                    .asientosDisponibles(bus.asientos())
+                    .tipoFrecuencia(tipo.name())
+                    .duracionMinutos(duracion)
+                    .tiempoDescansoMinutos(descanso)
+                    .paradasPermitidas(paradas)
+                    .precio(ruta.getPrecioBase())
+                    .distanciaKm(distancia)
+                    .costoCombustibleEstimado(costo)
+                    .choferId(bus.choferId())
+                    .choferNombre(bus.choferNombre())
+                    .ordenDia(orden)
+                    .esViajeDe(ida ? "IDA" : "VUELTA")
+                    .build();
+        }
+    }
+
+    /**
+     * Benchmark manual (el proyecto no incluye JMH): doce semanas de cooperativas sintéticas de
+     * 50, 200 y 1000 buses, recorrido secuencial contra el motor. Ejecutar la clase con main
+     */
+    static final class Benchmark {
+
+        private static final int CALENTAMIENTO = 3;
+        private static final int MEDICIONES = 5;
+
+        public static void main(String[] args) {
+            LocalDate inicio = LocalDate.of(2025, 1, 6);
+            LocalDate fin = inicio.plusWeeks(12).minusDays(1);
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                for (int numBuses : new int[]{50, 200, 1000}) {
+                    Cooperativa cooperativa = Cooperativa.sintetica(numBuses, numBuses);
+                    double secuencial = medir(() -> ReferenciaSecuencial.generar(
+                            PARAMETROS, cooperativa.rutas(), cooperativa.buses(), inicio, fin, null).frecuencias().size());
+                    double motor = medir(() -> new MotorGeneracionFrecuencias(PARAMETROS, cooperativa.rutas(), cooperativa.buses(), Map.of())
+                            .generar(inicio, fin, null, pool).frecuencias().size());
+                    System.out.printf("buses=%d secuencial=%.1f ms motor=%.1f ms (x%.1f)%n",
+                            numBuses, secuencial, motor, secuencial / motor);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        private static double medir(java.util.function.IntSupplier generacion) {
+            for (int i = 0; i < CALENTAMIENTO; i++) {
+                generacion.getAsInt();
+            }
+            long inicio = System.nanoTime();
+            for (int i = 0; i < MEDICIONES; i++) {
+                generacion.getAsInt();
+            }
+            return (System.nanoTime() - inicio) / 1e6 / MEDICIONES;
+        }
+    }
+}
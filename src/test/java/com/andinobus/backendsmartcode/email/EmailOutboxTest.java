@@ -0,0 +1,289 @@
+package com.andinobus.backendsmartcode.email;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bandeja de emails contra la BD y un servidor SMTP falso en un puerto local: los enviados se
+ * eliminan, los rechazados se reprograman con backoff hasta quedar FALLIDO sin su cuerpo, y las
+ * filas que otra instancia dejó en ENVIANDO se vuelven a reclamar cuando vence su reclamo.
+ *
+ * El sondeo de la bandeja de la aplicación se aleja para que no compita con la de la prueba.
+ */
+@SpringBootTest(properties = "app.mail.outbox.poll-ms=3600000")
+class EmailOutboxTest {
+
+    private static final long BACKOFF_MS = 60_000;
+    private static final int MAX_INTENTOS = 3;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private ServidorSmtp servidor;
+    private EmailOutbox outbox;
+    private String dominio;
+
+    @BeforeEach
+    void preparar() throws IOException {
+        servidor = new ServidorSmtp();
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(servidor.puerto());
+
+        outbox = new EmailOutbox(jdbcTemplate, mailSender);
+        ReflectionTestUtils.setField(outbox, "fromName", "AndinoBus");
+        ReflectionTestUtils.setField(outbox, "fromAddress", "noreply@andinobus.test");
+        ReflectionTestUtils.setField(outbox, "hilos", 2);
+        ReflectionTestUtils.setField(outbox, "tamanoLote", 100);
+        ReflectionTestUtils.setField(outbox, "maxIntentos", MAX_INTENTOS);
+        ReflectionTestUtils.setField(outbox, "backoffMs", BACKOFF_MS);
+        ReflectionTestUtils.setField(outbox, "reclamoMs", 300_000L);
+        outbox.iniciar();
+
+        // Destinatarios propios de cada prueba para no depender de otras filas de la bandeja
+        dominio = UUID.randomUUID().toString().substring(0, 8) + ".outbox.test";
+    }
+
+    @AfterEach
+    void limpiar() {
+        outbox.detener();
+        servidor.cerrar();
+        jdbcTemplate.update("DELETE FROM email_outbox WHERE destinatario LIKE ?", "%@" + dominio);
+    }
+
+    @Test
+    void encolados_seEnvianPorConexionYSeEliminan() {
+        // En una transacción: el despachador despierta al confirmar y reclama los tres en un lote
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            outbox.encolar("ana@" + dominio, "Bienvenida 1", "<p>Hola Ana</p>");
+            outbox.encolar("ana@" + dominio, "Bienvenida 2", "<p>Otra vez</p>");
+            outbox.encolar("luis@" + dominio, "Bienvenida 3", "<p>Hola Luis</p>");
+        });
+
+        esperar(() -> filas() == 0);
+
+        assertEquals(3, servidor.recibidos().size());
+        assertEquals(List.of("Bienvenida 1", "Bienvenida 2", "Bienvenida 3"),
+                servidor.recibidos().stream().map(Recibido::asunto).sorted().toList());
+        // Dos destinatarios repartidos en dos hilos: una conexión SMTP por hilo, no por email
+        assertEquals(2, servidor.conexiones());
+    }
+
+    @Test
+    void rechazado_seReprogramaConBackoffYQuedaFallidoSinCuerpo() {
+        String destinatario = "rechazado@" + dominio;
+        servidor.rechazar(destinatario);
+        outbox.encolar(destinatario, "Credenciales", "<p>Contraseña temporal: secreta123</p>");
+
+        // Primer fallo: vuelve a PENDIENTE y espera el backoff base
+        esperar(() -> intentos(destinatario) == 1);
+        Map<String, Object> fila = fila(destinatario);
+        assertEquals("PENDIENTE", fila.get("estado"));
+        assertNotNull(fila.get("ultimo_error"));
+        assertEquals(BACKOFF_MS / 1000.0, (double) fila.get("espera"), 5.0);
+
+        // Segundo fallo: el backoff se duplica
+        reintentarAhora(destinatario);
+        esperar(() -> intentos(destinatario) == 2);
+        assertEquals(2 * BACKOFF_MS / 1000.0, (double) fila(destinatario).get("espera"), 5.0);
+
+        // Al agotar los intentos queda FALLIDO y sin la contraseña
+        reintentarAhora(destinatario);
+        esperar(() -> intentos(destinatario) == MAX_INTENTOS);
+        fila = fila(destinatario);
+        assertEquals("FALLIDO", fila.get("estado"));
+        assertEquals("", fila.get("html"));
+        assertEquals("Credenciales", fila.get("asunto"));
+        assertTrue(servidor.recibidos().isEmpty());
+        assertTrue(outbox.estadisticas().fallidos() >= 1);
+    }
+
+    @Test
+    void filaEnEnviandoConReclamoVencido_seVuelveAReclamar() {
+        // Otra instancia reclamó ambas y cayó; solo el reclamo de la primera ya venció
+        insertarEnviando("huerfano@" + dominio, "Huerfano", "- interval '1 minute'");
+        insertarEnviando("en-curso@" + dominio, "En curso", "+ interval '5 minutes'");
+
+        outbox.sondear();
+        esperar(() -> filas() == 1);
+
+        assertEquals(List.of("Huerfano"), servidor.recibidos().stream().map(Recibido::asunto).toList());
+        assertEquals("ENVIANDO", fila("en-curso@" + dominio).get("estado"));
+    }
+
+    private void insertarEnviando(String destinatario, String asunto, String desplazamiento) {
+        jdbcTemplate.update("INSERT INTO email_outbox (destinatario, asunto, html, estado, proximo_intento) " +
+                "VALUES (?, ?, '<p>pendiente</p>', 'ENVIANDO', now() " + desplazamiento + ")", destinatario, asunto);
+    }
+
+    private void reintentarAhora(String destinatario) {
+        jdbcTemplate.update("UPDATE email_outbox SET proximo_intento = now() WHERE destinatario = ?", destinatario);
+        outbox.sondear();
+    }
+
+    private int filas() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM email_outbox WHERE destinatario LIKE ?",
+                Integer.class, "%@" + dominio);
+    }
+
+    private int intentos(String destinatario) {
+        return jdbcTemplate.queryForObject("SELECT intentos FROM email_outbox WHERE destinatario = ?",
+                Integer.class, destinatario);
+    }
+
+    /**
+     * Fila del destinatario con la espera hasta el próximo intento en segundos
+     */
+    private Map<String, Object> fila(String destinatario) {
+        return jdbcTemplate.queryForMap("SELECT estado, asunto, html, ultimo_error, " +
+                "CAST(EXTRACT(EPOCH FROM (proximo_intento - now())) AS double precision) AS espera " +
+                "FROM email_outbox WHERE destinatario = ?", destinatario);
+    }
+
+    private static void esperar(BooleanSupplier condicion) {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.nanoTime() < limite, "La bandeja no llegó al estado esperado");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+    record Recibido(List<String> destinatarios, String asunto) {
+    }
+
+    /**
+     * Servidor SMTP mínimo (sin autenticación ni TLS): registra los mensajes recibidos y responde 550
+     * a los destinatarios marcados como rechazados
+     */
+    static final class ServidorSmtp {
+
+        private final ServerSocket socket;
+        private final List<Recibido> recibidos = new CopyOnWriteArrayList<>();
+        private final List<String> rechazados = new CopyOnWriteArrayList<>();
+        private final AtomicInteger conexiones = new AtomicInteger();
+
+        ServidorSmtp() throws IOException {
+            socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread.ofPlatform().name("smtp-falso").daemon().start(this::aceptar);
+        }
+
+        int puerto() {
+            return socket.getLocalPort();
+        }
+
+        List<Recibido> recibidos() {
+            return recibidos;
+        }
+
+        int conexiones() {
+            return conexiones.get();
+        }
+
+        void rechazar(String destinatario) {
+            rechazados.add(destinatario.toLowerCase());
+        }
+
+        void cerrar() {
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+                // ya cerrado
+            }
+        }
+
+        private void aceptar() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket cliente = socket.accept();
+                    conexiones.incrementAndGet();
+                    Thread.ofPlatform().daemon().start(() -> atender(cliente));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void atender(Socket cliente) {
+            try (cliente;
+                 BufferedReader entrada = new BufferedReader(new InputStreamReader(cliente.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter salida = new PrintWriter(cliente.getOutputStream(), true, StandardCharsets.UTF_8)) {
+                responder(salida, "220 smtp-falso");
+                List<String> destinatarios = new CopyOnWriteArrayList<>();
+                String linea;
+                while ((linea = entrada.readLine()) != null) {
+                    String comando = linea.toUpperCase();
+                    if (comando.startsWith("EHLO") || comando.startsWith("HELO")) {
+                        responder(salida, "250 smtp-falso");
+                    } else if (comando.startsWith("MAIL FROM") || comando.startsWith("RSET")) {
+                        destinatarios.clear();
+                        responder(salida, "250 OK");
+                    } else if (comando.startsWith("RCPT TO")) {
+                        String destinatario = linea.substring(linea.indexOf('<') + 1, linea.indexOf('>')).toLowerCase();
+                        if (rechazados.contains(destinatario)) {
+                            responder(salida, "550 Buzón no disponible");
+                        } else {
+                            destinatarios.add(destinatario);
+                            responder(salida, "250 OK");
+                        }
+                    } else if (comando.startsWith("DATA")) {
+                        responder(salida, "354 Fin con .");
+                        String asunto = null;
+                        while ((linea = entrada.readLine()) != null && !linea.equals(".")) {
+                            if (asunto == null && linea.startsWith("Subject: ")) {
+                                asunto = linea.substring("Subject: ".length());
+                            }
+                        }
+                        recibidos.add(new Recibido(List.copyOf(destinatarios), asunto));
+                        responder(salida, "250 OK");
+                    } else if (comando.startsWith("QUIT")) {
+                        responder(salida, "221 Adiós");
+                        return;
+                    } else {
+                        responder(salida, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private static void responder(PrintWriter salida, String respuesta) {
+            salida.print(respuesta + "\r\n");
+            salida.flush();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.andinobus.backendsmartcode.rutas.application.services;
+
+import com.andinobus.backendsmartcode.admin.domain.entities.FrecuenciaViaje;
+import com.andinobus.backendsmartcode.admin.domain.entities.ParadaFrecuencia;
+import com.andinobus.backendsmartcode.admin.domain.entities.Ruta;
+import com.andinobus.backendsmartcode.admin.domain.repositories.FrecuenciaViajeRepository;
+import com.andinobus.backendsmartcode.catalogos.application.services.TerminalResolver;
+import com.andinobus.backendsmartcode.catalogos.domain.repositories.TerminalRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PlanificadorItinerariosTest {
+
+    private static final String TODOS = "LUNES,MARTES,MIERCOLES,JUEVES,VIERNES,SABADO,DOMINGO";
+    private static final int MINUTOS_DIA = 24 * 60;
+
+    private long ids;
+
+    @Test
+    void viajeDirecto_sinTransbordosYDesdeLaHoraPedida() {
+        PlanificadorItinerarios planificador = planificador(
+                frecuencia("Quito", "Ambato", "06:00", "08:30", 5.0, TODOS),
+                frecuencia("Quito", "Ambato", "08:00", "10:30", 5.0, TODOS));
+
+        List<PlanificadorItinerarios.Itinerario> itinerarios =
+                planificador.planificar("Quito", "Ambato", DayOfWeek.MONDAY, LocalTime.of(7, 0), 2);
+
+        assertEquals(1, itinerarios.size());
+        PlanificadorItinerarios.Itinerario directo = itinerarios.get(0);
+        assertEquals(0, directo.transbordos());
+        assertEquals(8 * 60, directo.salidaMin());
+        assertEquals(10 * 60 + 30, directo.llegadaMin());
+        assertEquals(5.0, directo.precioTotal());
+    }
+
+    @Test
+    void transbordo_combinaDosFrecuenciasEnElMismoTerminal() {
+        PlanificadorItinerarios planificador = planificador(
+                frecuencia("Quito", "Ambato", "08:00", "10:30", 5.0, TODOS),
+                frecuencia("Ambato", "Cuenca", "11:00", "16:00", 8.0, TODOS));
+
+        List<PlanificadorItinerarios.Itinerario> itinerarios =
+                planificador.planificar("Quito", "Cuenca", DayOfWeek.MONDAY, LocalTime.of(6, 0), 2);
+
+        assertEquals(1, itinerarios.size());
+        PlanificadorItinerarios.Itinerario itinerario = itinerarios.get(0);
+        assertEquals(1, itinerario.transbordos());
+        assertEquals(13.0, itinerario.precioTotal());
+        assertEquals(List.of("Quito", "Ambato"), List.of(itinerario.tramos().get(0).origen(), itinerario.tramos().get(0).destino()));
+        assertEquals(List.of("Ambato", "Cuenca"), List.of(itinerario.tramos().get(1).origen(), itinerario.tramos().get(1).destino()));
+
+        // Sin transbordos permitidos no hay itinerario
+        assertTrue(planificador.planificar("Quito", "Cuenca", DayOfWeek.MONDAY, LocalTime.of(6, 0), 0).isEmpty());
+    }
+
+    @Test
+    void transbordoMinimo_descartaConexionesDemasiadoJustas() {
+        PlanificadorItinerarios planificador = planificador(
+                frecuencia("Quito", "Ambato", "08:00", "10:30", 5.0, TODOS),
+                frecuencia("Ambato", "Cuenca", "10:40", "15:40", 8.0, TODOS),
+                frecuencia("Ambato", "Cuenca", "10:50", "15:50", 8.0, TODOS));
+
+        List<PlanificadorItinerarios.Itinerario> itinerarios =
+                planificador.planificar("Quito", "Cuenca", DayOfWeek.MONDAY, LocalTime.of(6, 0), 2);
+
+        // 10:40 deja solo 10 minutos (mínimo 15): se toma la de 10:50
+        assertEquals(1, itinerarios.size());
+        assertEquals(10 * 60 + 50, itinerarios.get(0).tramos().get(1).salidaMin());
+        assertEquals(15 * 60 + 50, itinerarios.get(0).llegadaMin());
+    }
+
+    @Test
+    void viajeNocturno_delDiaAnteriorSePuedeAbordarDespuesDeMedianoche() {
+        PlanificadorItinerarios planificador = planificador(
+                frecuencia("Guayaquil", "Quito", "22:00", "06:00", 12.0, "LUNES",
+                        parada(1, "Riobamba", "02:00", 8.0)));
+
+        // El martes a las 00:30 el bus del lunes todavía no pasa por Riobamba (02:00, sale 02:05)
+        List<PlanificadorItinerarios.Itinerario> itinerarios =
+                planificador.planificar("Riobamba", "Quito", DayOfWeek.TUESDAY, LocalTime.of(0, 30), 2);
+        assertEquals(1, itinerarios.size());
+        assertEquals(2 * 60 + 5, itinerarios.get(0).salidaMin());
+        assertEquals(6 * 60, itinerarios.get(0).llegadaMin());
+        assertEquals(4.0, itinerarios.get(0).precioTotal());
+
+        // Desde Guayaquil salió el lunes antes de medianoche: ya no se puede abordar
+        assertTrue(planificador.planificar("Guayaquil", "Quito", DayOfWeek.TUESDAY, LocalTime.MIDNIGHT, 2).isEmpty());
+        // El miércoles no hay bus del martes
+        assertTrue(planificador.planificar("Riobamba", "Quito", DayOfWeek.WEDNESDAY, LocalTime.of(0, 30), 2).isEmpty());
+    }
+
+    @Test
+    void viajeNocturno_llegaAlDiaSiguienteYConectaConFrecuenciasDeEseDia() {
+        PlanificadorItinerarios planificador = planificador(
+                frecuencia("Guayaquil", "Quito", "22:00", "06:00", 12.0, "LUNES"),
+                frecuencia("Quito", "Ibarra", "07:00", "09:30", 4.0, "MARTES"));
+
+        PlanificadorItinerarios.Itinerario directo =
+                planificador.planificar("Guayaquil", "Quito", DayOfWeek.MONDAY, LocalTime.of(21, 0), 2).get(0);
+        assertEquals(22 * 60, directo.salidaMin());
+        assertEquals(MINUTOS_DIA + 6 * 60, directo.llegadaMin());
+
+        List<PlanificadorItinerarios.Itinerario> conTransbordo =
+                planificador.planificar("Guayaquil", "Ibarra", DayOfWeek.MONDAY, LocalTime.of(21, 0), 2);
+        assertEquals(1, conTransbordo.size());
+        assertEquals(1, conTransbordo.get(0).transbordos());
+        assertEquals(MINUTOS_DIA + 7 * 60, conTransbordo.get(0).tramos().get(1).salidaMin());
+        assertEquals(MINUTOS_DIA + 9 * 60 + 30, conTransbordo.get(0).llegadaMin());
+        assertEquals(16.0, conTransbordo.get(0).precioTotal());
+    }
+
+    @Test
+    void origenODestinoVacios_sonRechazados() {
+        PlanificadorItinerarios planificador = planificador(frecuencia("Quito", "Ambato", "08:00", "10:30", 5.0, TODOS));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> planificador.planificar(" ", "Ambato", DayOfWeek.MONDAY, null, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> planificador.planificar("Quito", null, DayOfWeek.MONDAY, null, 2));
+    }
+
+    @Test
+    void catalogoGrande_respondeEnMenosDe20Milisegundos() {
+        Random random = new Random(7);
+        int ciudades = 80;
+        FrecuenciaViaje[] frecuencias = new FrecuenciaViaje[4000];
+        for (int i = 0; i < frecuencias.length; i++) {
+            int origen = random.nextInt(ciudades);
+            int destino = (origen + 1 + random.nextInt(ciudades - 1)) % ciudades;
+            LocalTime salida = LocalTime.of(random.nextInt(24), random.nextInt(4) * 15);
+            LocalTime llegada = salida.plusMinutes(60 + random.nextInt(480));
+            frecuencias[i] = frecuencia("Ciudad " + origen, "Ciudad " + destino,
+                    salida.toString(), llegada.toString(), 2.0 + random.nextInt(20), TODOS);
+        }
+        PlanificadorItinerarios planificador = planificador(frecuencias);
+
+        int consultas = 200;
+        long[] tiempos = new long[consultas];
+        for (int n = -50; n < consultas; n++) {
+            int origen = random.nextInt(ciudades);
+            int destino = (origen + 1 + random.nextInt(ciudades - 1)) % ciudades;
+            long inicio = System.nanoTime();
+            planificador.planificar("Ciudad " + origen, "Ciudad " + destino,
+                    DayOfWeek.of(1 + random.nextInt(7)), LocalTime.of(random.nextInt(24), 0), 2);
+            if (n >= 0) {
+                tiempos[n] = System.nanoTime() - inicio;
+            }
+        }
+        Arrays.sort(tiempos);
+        double medianaMs = tiempos[consultas / 2] / 1_000_000.0;
+        assertTrue(medianaMs < 20, () -> "Mediana " + medianaMs + " ms con " + frecuencias.length + " frecuencias");
+    }
+
+    private PlanificadorItinerarios planificador(FrecuenciaViaje... frecuencias) {
+        FrecuenciaViajeRepository repositorio = mock(FrecuenciaViajeRepository.class);
+        when(repositorio.findActivasConParadas()).thenReturn(List.of(frecuencias));
+        IndiceBusquedaRutas indice = mock(IndiceBusquedaRutas.class);
+        when(indice.generacion()).thenReturn(1L);
+        TerminalResolver terminalResolver = new TerminalResolver(mock(TerminalRepository.class));
+
+        PlanificadorItinerarios planificador = new PlanificadorItinerarios(repositorio, indice, terminalResolver);
+        ReflectionTestUtils.setField(planificador, "transbordoMinimoMin", 15);
+        ReflectionTestUtils.setField(planificador, "maxResultados", 10);
+        return planificador;
+    }
+
+    private FrecuenciaViaje frecuencia(String origen, String destino, String salida, String llegada,
+                                       double precio, String dias, ParadaFrecuencia... paradas) {
+        return FrecuenciaViaje.builder()
+                .id(++ids)
+                .ruta(Ruta.builder().origen(origen).destino(destino).build())
+                .horaSalida(LocalTime.parse(salida))
+                .horaLlegadaEstimada(LocalTime.parse(llegada))
+                .precioBase(precio)
+                .diasOperacion(dias)
+                .paradas(new ArrayList<>(List.of(paradas)))
+                .build();
+    }
+
+    private static ParadaFrecuencia parada(int orden, String nombre, String llegada, double precioDesdeOrigen) {
+        return ParadaFrecuencia.builder()
+                .orden(orden)
+                .nombreParada(nombre)
+                .tiempoLlegada(LocalTime.parse(llegada))
+                .precioDesdeOrigen(precioDesdeOrigen)
+                .build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.andinobus.backendsmartcode.tracking;
+
+import com.andinobus.backendsmartcode.ViajesDePrueba;
+import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
+import com.andinobus.backendsmartcode.tracking.domain.services.FlotaEnVivoStore;
+import com.andinobus.backendsmartcode.tracking.domain.services.ViajeTrackingQueryService;
+import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
+import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Construir la lista de viajes activos desde la BD cuesta un número fijo de sentencias,
+ * sin importar cuántos viajes haya (sin N+1 sobre frecuencia, bus, cooperativa, chofer o reservas).
+ */
+@SpringBootTest
+class ViajeTrackingConsultasTest {
+
+    private static final int POCOS = 3;
+    private static final int MUCHOS = 30;
+    private static final int REPETICIONES = 3;
+
+    @Autowired private ViajeTrackingQueryService viajeTrackingQueryService;
+    @Autowired private FlotaEnVivoStore flotaEnVivoStore;
+    @Autowired private ReservaRepository reservaRepository;
+    @Autowired private ViajesDePrueba viajesDePrueba;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private Statistics estadisticas;
+    private ViajesDePrueba.Escenario escenario;
+    private final List<Viaje> viajes = new ArrayList<>();
+
+    @BeforeEach
+    void preparar() {
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.setStatisticsEnabled(true);
+
+        escenario = viajesDePrueba.crear("Coop consultas", 40, "Quito", "Guayaquil", LocalTime.of(23, 0));
+    }
+
+    @AfterEach
+    void limpiar() {
+        estadisticas.setStatisticsEnabled(false);
+        escenario.eliminar();
+        viajeTrackingQueryService.sincronizarFlotaEnVivo();
+    }
+
+    @Test
+    void viajesActivos_noCreceElNumeroDeSentenciasConLosViajes() {
+        crearViajes(POCOS);
+        // Primera pasada fuera de la medición: carga el índice de terminales
+        viajeTrackingQueryService.sincronizarFlotaEnVivo();
+        long conPocos = sentenciasAlSincronizar();
+
+        crearViajes(MUCHOS - POCOS);
+        long conMuchos = sentenciasAlSincronizar();
+
+        assertEquals(conPocos, conMuchos,
+                () -> "Sentencias con " + POCOS + " viajes: " + conPocos + ", con " + MUCHOS + ": " + conMuchos);
+        assertTrue(conMuchos <= 3, () -> "Se esperaban a lo sumo 3 sentencias, hubo " + conMuchos);
+
+        // Los pasajeros salen de la consulta agrupada: solo los 2 asientos pagados de cada viaje
+        for (Viaje viaje : viajes) {
+            assertEquals(2, flotaEnVivoStore.obtener(viaje.getId()).getNumeroPasajeros());
+        }
+    }
+
+    /**
+     * Sentencias preparadas por una resincronización de la flota. Se toma la menor de varias
+     * pasadas porque las estadísticas son globales y otro hilo puede consultar a la vez.
+     */
+    private long sentenciasAlSincronizar() {
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        transaccion.setReadOnly(true);
+        long minimo = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICIONES; i++) {
+            estadisticas.clear();
+            // Dentro de una transacción un acceso perezoso consultaría en vez de fallar, y se contaría
+            transaccion.executeWithoutResult(status -> viajeTrackingQueryService.sincronizarFlotaEnVivo());
+            minimo = Math.min(minimo, estadisticas.getPrepareStatementCount());
+        }
+        return minimo;
+    }
+
+    private void crearViajes(int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            Viaje viaje = escenario.viaje(LocalDate.now());
+            viajes.add(viaje);
+            reservaRepository.save(Reserva.builder()
+                    .viaje(viaje).clienteEmail("consultas@test.ec").asientos(2).estado("PAGADO")
+                    .monto(BigDecimal.TEN).build());
+            reservaRepository.save(Reserva.builder()
+                    .viaje(viaje).clienteEmail("consultas@test.ec").asientos(1).estado("PENDIENTE")
+                    .monto(BigDecimal.ONE).build());
+            reservaRepository.save(Reserva.builder()
+                    .viaje(viaje).clienteEmail("consultas@test.ec").asientos(4).estado("CANCELADO")
+                    .monto(BigDecimal.ONE).build());
+        }
+    }
+}
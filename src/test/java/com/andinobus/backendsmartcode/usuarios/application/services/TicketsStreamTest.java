@@ -0,0 +1,39 @@
+package com.andinobus.backendsmartcode.usuarios.application.services;
+
+import com.andinobus.backendsmartcode.usuarios.api.dto.AuthDtos;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketsStreamTest {
+
+    @Test
+    void ticket_seCanjeaUnaSolaVez() {
+        TicketsStream tickets = tickets(30_000);
+        AuthDtos.MeResponse me = AuthDtos.MeResponse.builder().email("cliente@test.ec").build();
+
+        TicketsStream.Emitido emitido = tickets.emitir(me);
+
+        assertEquals(30, emitido.validoSegundos());
+        assertSame(me, tickets.canjear(emitido.ticket()));
+        assertNull(tickets.canjear(emitido.ticket()));
+        assertNull(tickets.canjear("desconocido"));
+        assertNull(tickets.canjear(null));
+    }
+
+    @Test
+    void ticketVencido_esRechazado() {
+        TicketsStream tickets = tickets(-1);
+
+        TicketsStream.Emitido emitido = tickets.emitir(AuthDtos.MeResponse.builder().email("cliente@test.ec").build());
+
+        assertNull(tickets.canjear(emitido.ticket()));
+    }
+
+    private static TicketsStream tickets(long ttlMs) {
+        TicketsStream tickets = new TicketsStream();
+        ReflectionTestUtils.setField(tickets, "ttlMs", ttlMs);
+        return tickets;
+    }
+}
@@ -0,0 +1,254 @@
+package com.andinobus.backendsmartcode.ventas;
+
+import com.andinobus.backendsmartcode.admin.api.dto.SuperAdminDtos;
+import com.andinobus.backendsmartcode.admin.application.services.SuperAdminStatsService;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Cooperativa;
+import com.andinobus.backendsmartcode.catalogos.domain.entities.Frecuencia;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.CooperativaRepository;
+import com.andinobus.backendsmartcode.catalogos.infrastructure.repositories.FrecuenciaRepository;
+import com.andinobus.backendsmartcode.cooperativa.api.dto.ReporteCooperativaDtos;
+import com.andinobus.backendsmartcode.cooperativa.application.services.ReporteCooperativaService;
+import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeRepository;
+import com.andinobus.backendsmartcode.ventas.application.services.CuboVentasService;
+import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
+import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * El cubo de ventas, actualizado por marca de agua o reconstruido, da los mismos resultados que el
+ * join directo reserva ⋈ viaje ⋈ frecuencia de ReservaRepository, y reconstruirlo no frena las ventas.
+ */
+@SpringBootTest
+class CuboVentasTest {
+
+    @Autowired private CuboVentasService cuboVentasService;
+    @Autowired private ReporteCooperativaService reporteCooperativaService;
+    @Autowired private SuperAdminStatsService superAdminStatsService;
+    @Autowired private ReservaRepository reservaRepository;
+    @Autowired private ViajeRepository viajeRepository;
+    @Autowired private FrecuenciaRepository frecuenciaRepository;
+    @Autowired private CooperativaRepository cooperativaRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private final LocalDate desde = LocalDate.now().plusYears(20);
+    private final LocalDate hasta = desde.plusDays(6);
+
+    private final List<Cooperativa> cooperativas = new ArrayList<>();
+    private final List<Frecuencia> frecuencias = new ArrayList<>();
+    private final List<Viaje> viajes = new ArrayList<>();
+    private final List<Reserva> reservas = new ArrayList<>();
+
+    @BeforeEach
+    void crearVentas() {
+        String[] estados = {"PAGADO", "PAGADO", "PENDIENTE", "PAGADO", "CANCELADO", "EXPIRADO"};
+        for (int c = 0; c < 2; c++) {
+            Cooperativa cooperativa = cooperativaRepository.save(Cooperativa.builder().nombre("Coop cubo " + c).build());
+            cooperativas.add(cooperativa);
+            for (int f = 0; f < 2; f++) {
+                Frecuencia frecuencia = frecuenciaRepository.save(Frecuencia.builder()
+                        .cooperativa(cooperativa)
+                        .origen("Origen " + c + f)
+                        .destino("Destino " + c + f)
+                        .horaSalida(LocalTime.of(6 + f, 0))
+                        .build());
+                frecuencias.add(frecuencia);
+                for (int d = 0; d < 5; d += 2) {
+                    Viaje viaje = viajeRepository.save(Viaje.builder()
+                            .frecuencia(frecuencia)
+                            .fecha(desde.plusDays(d))
+                            .horaSalida(LocalTime.of(6 + f, 0))
+                            .horaSalidaProgramada(LocalTime.of(6 + f, 0))
+                            .estado("PROGRAMADO")
+                            .build());
+                    viajes.add(viaje);
+                    for (int r = 0; r < estados.length; r++) {
+                        reservas.add(reservaRepository.save(Reserva.builder()
+                                .viaje(viaje)
+                                .clienteEmail("cubo@test.ec")
+                                .asientos(1 + r % 3)
+                                .estado(estados[r])
+                                .monto(BigDecimal.valueOf(5L + c * 3 + f + d + r, 1).add(BigDecimal.TEN))
+                                .build()));
+                    }
+                }
+            }
+        }
+    }
+
+    @AfterEach
+    void limpiar() {
+        reservaRepository.deleteAll(reservas);
+        viajeRepository.deleteAll(viajes);
+        frecuenciaRepository.deleteAll(frecuencias);
+        cooperativaRepository.deleteAll(cooperativas);
+        sincronizar();
+    }
+
+    @Test
+    void actualizacionIncremental_coincideConElJoinDirecto() {
+        sincronizar();
+        verificarContraJoinDirecto();
+
+        // Pagar una pendiente, cancelar una pagada, eliminar otra y mover un viaje de fecha
+        Reserva pendiente = reservas.get(2);
+        pendiente.setEstado("PAGADO");
+        reservaRepository.save(pendiente);
+        Reserva pagada = reservas.get(7);
+        pagada.setEstado("CANCELADO");
+        reservaRepository.save(pagada);
+        Reserva eliminada = reservas.remove(9);
+        reservaRepository.delete(eliminada);
+        Viaje movido = viajes.get(1);
+        movido.setFecha(desde.plusDays(5));
+        viajeRepository.save(movido);
+
+        sincronizar();
+        verificarContraJoinDirecto();
+        assertEquals(0, cuboVentasService.obtenerEstado().getCambiosPendientes());
+    }
+
+    @Test
+    void reconstruir_daElMismoCuboQueLaActualizacionIncremental() {
+        sincronizar();
+        List<CuboVentasService.Celda> incremental = cuboVentasService.consultar(null, desde, hasta, CuboVentasService.PAGADO);
+
+        cuboVentasService.reconstruir();
+        List<CuboVentasService.Celda> reconstruido = cuboVentasService.consultar(null, desde, hasta, CuboVentasService.PAGADO);
+
+        assertEquals(new HashSet<>(normalizar(incremental)), new HashSet<>(normalizar(reconstruido)));
+        verificarContraJoinDirecto();
+    }
+
+    @Test
+    void reconstruccionEnCurso_noFrenaLasVentas() {
+        sincronizar();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            cuboVentasService.reconstruir();
+            // Con la reconstrucción sin confirmar, otra transacción vende y paga: sus triggers anotan
+            // celdas sucias y no deben esperar al commit de la reconstrucción
+            CompletableFuture<Void> venta = CompletableFuture.runAsync(() -> {
+                reservas.add(reservaRepository.save(Reserva.builder()
+                        .viaje(viajes.get(0))
+                        .clienteEmail("cubo@test.ec")
+                        .asientos(2)
+                        .estado("PAGADO")
+                        .monto(BigDecimal.valueOf(33))
+                        .build()));
+                Reserva pendiente = reservas.get(2);
+                pendiente.setEstado("PAGADO");
+                reservaRepository.save(pendiente);
+            });
+            assertDoesNotThrow(() -> venta.get(10, TimeUnit.SECONDS));
+        });
+
+        // Los cambios confirmados durante la reconstrucción quedan pendientes y se incorporan después
+        sincronizar();
+        verificarContraJoinDirecto();
+    }
+
+    /**
+     * Incorpora todos los cambios, esperando si el job programado tiene el candado
+     */
+    private void sincronizar() {
+        for (int intento = 0; intento < 50; intento++) {
+            if (cuboVentasService.actualizar() >= 0 && cuboVentasService.obtenerEstado().getCambiosPendientes() == 0) {
+                return;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        fail("El cubo de ventas no terminó de actualizarse");
+    }
+
+    private void verificarContraJoinDirecto() {
+        for (Cooperativa cooperativa : cooperativas) {
+            Long id = cooperativa.getId();
+            ReporteCooperativaDtos.ReporteVentasResponse reporte = reporteCooperativaService.obtenerReporteVentas(id, desde, hasta);
+
+            assertMonto(reservaRepository.sumVentasByCooperativaIdAndFechaRango(id, desde, hasta), reporte.getVentasTotales());
+            assertEquals(reservaRepository.countTransaccionesByCooperativaIdAndFechaRango(id, desde, hasta),
+                    reporte.getTotalTransacciones().longValue());
+
+            List<Object[]> dias = reservaRepository.findVentasPorDiaByCooperativaId(id, desde, hasta);
+            assertEquals(dias.size(), reporte.getVentasPorDia().size());
+            for (int i = 0; i < dias.size(); i++) {
+                ReporteCooperativaDtos.VentaDiariaDto dia = reporte.getVentasPorDia().get(i);
+                assertEquals(dias.get(i)[0], dia.getFecha());
+                assertMonto((BigDecimal) dias.get(i)[1], dia.getMonto());
+                assertEquals(((Long) dias.get(i)[2]).intValue(), dia.getTransacciones());
+            }
+
+            Set<String> rutasJoin = new HashSet<>();
+            for (Object[] fila : reservaRepository.findVentasPorRutaByCooperativaId(id, desde, hasta)) {
+                rutasJoin.add(fila[1] + "|" + fila[2] + "|" + ((BigDecimal) fila[3]).stripTrailingZeros().toPlainString() + "|" + fila[4]);
+            }
+            Set<String> rutasCubo = new HashSet<>();
+            for (ReporteCooperativaDtos.RutaVentasDto ruta : reporte.getTopRutas()) {
+                rutasCubo.add(ruta.getTerminalOrigen() + "|" + ruta.getTerminalDestino() + "|"
+                        + ruta.getVentas().stripTrailingZeros().toPlainString() + "|" + ruta.getBoletos());
+            }
+            assertEquals(rutasJoin, rutasCubo);
+        }
+
+        SuperAdminDtos.ReporteVentasGlobalResponse global = superAdminStatsService.getReporteVentasGlobal(desde, hasta);
+        assertMonto(reservaRepository.sumVentasTotalesGlobal(desde, hasta), global.getVentasTotales());
+        assertEquals(reservaRepository.countTransaccionesGlobal(desde, hasta), global.getTotalTransacciones());
+
+        List<Object[]> dias = reservaRepository.findVentasPorDiaGlobal(desde, hasta);
+        assertEquals(dias.size(), global.getVentasPorDia().size());
+        for (int i = 0; i < dias.size(); i++) {
+            assertEquals(dias.get(i)[0], global.getVentasPorDia().get(i).getFecha());
+            assertMonto((BigDecimal) dias.get(i)[1], global.getVentasPorDia().get(i).getMonto());
+            assertEquals(((Long) dias.get(i)[2]).intValue(), global.getVentasPorDia().get(i).getTransacciones());
+        }
+
+        Set<String> cooperativasJoin = new HashSet<>();
+        for (Object[] fila : reservaRepository.findVentasPorCooperativa(desde, hasta)) {
+            cooperativasJoin.add(fila[0] + "|" + fila[1] + "|" + ((BigDecimal) fila[2]).stripTrailingZeros().toPlainString() + "|" + fila[3]);
+        }
+        Set<String> cooperativasCubo = new HashSet<>();
+        for (SuperAdminDtos.VentaCooperativa venta : global.getVentasPorCooperativa()) {
+            cooperativasCubo.add(venta.getCooperativaId() + "|" + venta.getCooperativaNombre() + "|"
+                    + venta.getVentas().stripTrailingZeros().toPlainString() + "|" + venta.getTransacciones());
+        }
+        assertEquals(cooperativasJoin, cooperativasCubo);
+    }
+
+    private static List<String> normalizar(List<CuboVentasService.Celda> celdas) {
+        List<String> filas = new ArrayList<>();
+        for (CuboVentasService.Celda c : celdas) {
+            filas.add(c.fecha() + "|" + c.cooperativaId() + "|" + c.frecuenciaId() + "|" + c.reservas() + "|"
+                    + c.asientos() + "|" + c.monto().stripTrailingZeros().toPlainString());
+        }
+        return filas;
+    }
+
+    private static void assertMonto(BigDecimal esperado, BigDecimal actual) {
+        assertEquals(0, (esperado != null ? esperado : BigDecimal.ZERO).compareTo(actual),
+                () -> "Esperado " + esperado + " pero fue " + actual);
+    }
+}
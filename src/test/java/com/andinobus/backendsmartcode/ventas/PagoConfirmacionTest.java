@@ -0,0 +1,248 @@
+package com.andinobus.backendsmartcode.ventas;
+
+import com.andinobus.backendsmartcode.BackendSmartcodeApplication;
+import com.andinobus.backendsmartcode.ViajesDePrueba;
+import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
+import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
+import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
+import com.andinobus.backendsmartcode.ventas.application.services.ExpiracionReservasService;
+import com.andinobus.backendsmartcode.ventas.application.services.PagoService;
+import com.andinobus.backendsmartcode.ventas.domain.entities.Reserva;
+import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Confirmación de pagos contra la BD: una reserva que expira mientras se confirma termina en
+ * conflicto (no se vende un asiento ya liberado), la referencia compartida no bloquea otras
+ * reservas, y un lote confirma todas sus reservas y vende sus asientos.
+ */
+@SpringBootTest
+class PagoConfirmacionTest {
+
+    private static final int ASIENTOS_POR_RESERVA = 2;
+    private static final int RESERVAS_LOTE = 20;
+
+    @Autowired private PagoService pagoService;
+    @Autowired private ExpiracionReservasService expiracionReservasService;
+    @Autowired private ReservaRepository reservaRepository;
+    @Autowired private ViajeAsientoRepository viajeAsientoRepository;
+    @Autowired private ViajesDePrueba viajesDePrueba;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private ViajesDePrueba.Escenario escenario;
+    private Viaje viaje;
+    private int asientosCreados;
+
+    @BeforeEach
+    void crearViaje() {
+        escenario = viajesDePrueba.crear("Coop pagos", 40, "Quito", "Loja", LocalTime.of(20, 0));
+        viaje = escenario.viaje(LocalDate.now().plusDays(1));
+    }
+
+    @AfterEach
+    void limpiar() {
+        escenario.eliminar();
+    }
+
+    @Test
+    void expiracionDuranteLaConfirmacion_terminaEnConflicto() {
+        Reserva reserva = reservaPendiente();
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> transaccion.executeWithoutResult(status -> {
+            // La confirmación ya leyó la reserva PENDIENTE...
+            assertEquals("PENDIENTE", reservaRepository.findById(reserva.getId()).orElseThrow().getEstado());
+            // ...y en otra transacción vence, expira y libera sus asientos
+            CompletableFuture.runAsync(() -> {
+                jdbcTemplate.update("UPDATE reserva SET expires_at = now() - interval '1 minute' WHERE id = ?", reserva.getId());
+                expirarHastaObtenerElCandado();
+            }).join();
+            pagoService.confirmarPagos(List.of(confirmacion(reserva.getId(), "REF-CARRERA", null)), null);
+        }));
+
+        assertEquals("EXPIRADO", reservaRepository.findById(reserva.getId()).orElseThrow().getEstado());
+        assertEquals(0, viajeAsientoRepository.countByViajeIdAndEstado(viaje.getId(), "VENDIDO"));
+        assertEquals(0, contar("SELECT COUNT(*) FROM pago_confirmacion WHERE reserva_id = ?", reserva.getId()));
+    }
+
+    @Test
+    void referenciaCompartida_confirmaCadaReservaYElReintentoDevuelveElMismoResultado() {
+        Reserva primera = reservaPendiente();
+        Reserva segunda = reservaPendiente();
+
+        // Una transferencia paga las dos reservas: misma referencia, sin clave del cliente
+        List<VentasDtos.PagoResponse> respuestas = pagoService.confirmarPagos(List.of(
+                confirmacion(primera.getId(), "TRF-001", null),
+                confirmacion(segunda.getId(), "TRF-001", null)), null);
+        assertEquals(List.of("PAGADO", "PAGADO"), respuestas.stream().map(VentasDtos.PagoResponse::getEstado).toList());
+
+        // El webhook reintentado no confirma otra vez: devuelve el resultado guardado
+        List<VentasDtos.PagoResponse> reintento = pagoService.confirmarPagos(List.of(
+                confirmacion(primera.getId(), "TRF-001", null)), null);
+        assertEquals("PAGADO", reintento.get(0).getEstado());
+        assertEquals("Pago confirmado exitosamente", reintento.get(0).getMensaje());
+
+        // Una clave explícita ya usada para otra reserva se rechaza
+        pagoService.confirmarPagos(List.of(confirmacion(primera.getId(), null, "CLAVE-" + primera.getId())), null);
+        List<VentasDtos.PagoResponse> ajena = pagoService.confirmarPagos(List.of(
+                confirmacion(segunda.getId(), null, "CLAVE-" + primera.getId())), null);
+        assertEquals("RECHAZADO", ajena.get(0).getEstado());
+
+        assertEquals(2 * ASIENTOS_POR_RESERVA, viajeAsientoRepository.countByViajeIdAndEstado(viaje.getId(), "VENDIDO"));
+    }
+
+    @Test
+    void lote_confirmaTodasLasReservasYVendeSusAsientos() {
+        List<Long> reservaIds = reservasPendientes(RESERVAS_LOTE);
+
+        List<VentasDtos.PagoResponse> respuestas = confirmarEnLote(reservaIds);
+
+        assertEquals(RESERVAS_LOTE, respuestas.size());
+        respuestas.forEach(r -> assertEquals("PAGADO", r.getEstado()));
+        for (Long reservaId : reservaIds) {
+            assertEquals("PAGADO", reservaRepository.findById(reservaId).orElseThrow().getEstado());
+        }
+        assertEquals(RESERVAS_LOTE * ASIENTOS_POR_RESERVA, viajeAsientoRepository.countByViajeIdAndEstado(viaje.getId(), "VENDIDO"));
+        assertEquals(0, viajeAsientoRepository.countByViajeIdAndEstado(viaje.getId(), "RESERVADO"));
+    }
+
+    private List<VentasDtos.PagoResponse> confirmarEnLote(List<Long> reservaIds) {
+        List<VentasDtos.PagoConfirmacionRequest> requests = new ArrayList<>(reservaIds.size());
+        for (Long reservaId : reservaIds) {
+            requests.add(confirmacion(reservaId, null, "LOTE-" + reservaId));
+        }
+        return pagoService.confirmarPagos(requests, null);
+    }
+
+    private void expirarHastaObtenerElCandado() {
+        // El motor de expiración de la aplicación puede tener el candado en este momento
+        while (!expiracionReservasService.expirarVencidas()) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<Long> reservasPendientes(int cantidad) {
+        List<Long> ids = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            ids.add(reservaPendiente().getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Reserva PENDIENTE sin vencimiento con sus asientos RESERVADO
+     */
+    private Reserva reservaPendiente() {
+        Reserva reserva = reservaRepository.save(Reserva.builder()
+                .viaje(viaje).clienteEmail("pagos@test.ec").asientos(ASIENTOS_POR_RESERVA).estado("PENDIENTE")
+                .monto(BigDecimal.TEN).build());
+        List<ViajeAsiento> asientos = new ArrayList<>();
+        for (int i = 0; i < ASIENTOS_POR_RESERVA; i++) {
+            asientos.add(ViajeAsiento.builder()
+                    .viaje(viaje)
+                    .numeroAsiento(String.valueOf(++asientosCreados))
+                    .tipoAsiento("NORMAL")
+                    .estado("RESERVADO")
+                    .reserva(reserva)
+                    .build());
+        }
+        viajeAsientoRepository.saveAll(asientos);
+        return reserva;
+    }
+
+    private static VentasDtos.PagoConfirmacionRequest confirmacion(Long reservaId, String referencia, String clave) {
+        return VentasDtos.PagoConfirmacionRequest.builder()
+                .reservaId(reservaId)
+                .metodoPago("TRANSFERENCIA")
+                .referencia(referencia)
+                .claveIdempotencia(clave)
+                .build();
+    }
+
+    private int contar(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, args);
+    }
+
+    /**
+     * Benchmark manual contra la BD configurada: confirmar reservas en un lote frente al camino
+     * anterior de guardar la reserva y luego cada asiento por separado. Ejecutar la clase con main
+     */
+    static final class Benchmark {
+
+        private static final int CALENTAMIENTO = 20;
+        private static final int MEDICIONES = 100;
+
+        public static void main(String[] args) {
+            try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(BackendSmartcodeApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run(args)) {
+                PagoConfirmacionTest prueba = new PagoConfirmacionTest();
+                contexto.getAutowireCapableBeanFactory().autowireBean(prueba);
+                prueba.crearViaje();
+                try {
+                    // Pasadas de calentamiento (conexiones, planes, JIT) fuera de la medición
+                    asientoPorAsiento(prueba, prueba.reservasPendientes(CALENTAMIENTO));
+                    prueba.confirmarEnLote(prueba.reservasPendientes(CALENTAMIENTO));
+
+                    List<Long> porAsiento = prueba.reservasPendientes(MEDICIONES);
+                    List<Long> enLote = prueba.reservasPendientes(MEDICIONES);
+                    long inicio = System.nanoTime();
+                    asientoPorAsiento(prueba, porAsiento);
+                    double porAsientoMs = (System.nanoTime() - inicio) / 1e6;
+                    inicio = System.nanoTime();
+                    prueba.confirmarEnLote(enLote);
+                    double enLoteMs = (System.nanoTime() - inicio) / 1e6;
+
+                    System.out.printf("reservas=%d asientos=%d asiento-por-asiento=%.1f ms lote=%.1f ms (x%.1f)%n",
+                            MEDICIONES, ASIENTOS_POR_RESERVA, porAsientoMs, enLoteMs, porAsientoMs / enLoteMs);
+                } finally {
+                    prueba.limpiar();
+                }
+            }
+        }
+
+        /**
+         * El camino anterior: guardar la reserva y luego cada asiento por separado
+         */
+        private static void asientoPorAsiento(PagoConfirmacionTest prueba, List<Long> reservaIds) {
+            new TransactionTemplate(prueba.transactionManager).executeWithoutResult(status -> {
+                for (Long reservaId : reservaIds) {
+                    Reserva reserva = prueba.reservaRepository.findById(reservaId).orElseThrow();
+                    reserva.setEstado("PAGADO");
+                    prueba.reservaRepository.save(reserva);
+                    for (ViajeAsiento asiento : prueba.viajeAsientoRepository.findByReservaId(reservaId)) {
+                        asiento.setEstado("VENDIDO");
+                        prueba.viajeAsientoRepository.save(asiento);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.andinobus.backendsmartcode.ventas;
+
+import com.andinobus.backendsmartcode.ViajesDePrueba;
+import com.andinobus.backendsmartcode.common.errors.AsientosNoDisponiblesException;
+import com.andinobus.backendsmartcode.operacion.domain.entities.Viaje;
+import com.andinobus.backendsmartcode.operacion.domain.entities.ViajeAsiento;
+import com.andinobus.backendsmartcode.operacion.domain.repositories.ViajeAsientoRepository;
+import com.andinobus.backendsmartcode.ventas.api.dto.VentasDtos;
+import com.andinobus.backendsmartcode.ventas.application.services.ReservaService;
+import com.andinobus.backendsmartcode.ventas.domain.repositories.ReservaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compras simultáneas sobre los mismos asientos de un viaje: ningún asiento puede quedar vendido dos veces.
+ */
+@SpringBootTest
+class ReservaConcurrenciaTest {
+
+    private static final int ASIENTOS = 12;
+    private static final int COMPRAS = 300;
+    private static final int HILOS = 32;
+
+    @Autowired private ReservaService reservaService;
+    @Autowired private ReservaRepository reservaRepository;
+    @Autowired private ViajeAsientoRepository viajeAsientoRepository;
+    @Autowired private ViajesDePrueba viajesDePrueba;
+
+    private ViajesDePrueba.Escenario escenario;
+    private Viaje viaje;
+
+    @BeforeEach
+    void crearViaje() {
+        escenario = viajesDePrueba.crear("Coop concurrencia", ASIENTOS, "Quito", "Guayaquil", LocalTime.of(22, 0));
+        viaje = escenario.viaje(LocalDate.now().plusDays(1));
+        List<ViajeAsiento> asientos = new ArrayList<>();
+        for (int i = 1; i <= ASIENTOS; i++) {
+            asientos.add(ViajeAsiento.builder()
+                    .viaje(viaje)
+                    .numeroAsiento(String.valueOf(i))
+                    .tipoAsiento("NORMAL")
+                    .estado("DISPONIBLE")
+                    .build());
+        }
+        viajeAsientoRepository.saveAll(asientos);
+    }
+
+    @AfterEach
+    void limpiar() {
+        escenario.eliminar();
+    }
+
+    @Test
+    void comprasSimultaneas_noVendenUnAsientoDosVeces() throws Exception {
+        Map<Long, Set<String>> exitosas = new ConcurrentHashMap<>();
+        AtomicInteger rechazadas = new AtomicInteger();
+        List<Throwable> inesperados = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+
+        for (int n = 0; n < COMPRAS; n++) {
+            pool.execute(() -> {
+                List<String> pedidos = asientosAlAzar();
+                VentasDtos.ReservaCreateRequest request = new VentasDtos.ReservaCreateRequest();
+                request.setViajeId(viaje.getId());
+                request.setAsientos(pedidos);
+                try {
+                    largada.await();
+                    VentasDtos.ReservaResponse response = reservaService.crearReserva(request, "concurrencia@test.ec");
+                    exitosas.put(response.getId(), new HashSet<>(pedidos));
+                } catch (AsientosNoDisponiblesException e) {
+                    assertFalse(e.getAsientos().isEmpty());
+                    rechazadas.incrementAndGet();
+                } catch (Throwable t) {
+                    inesperados.add(t);
+                }
+            });
+        }
+        largada.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2, TimeUnit.MINUTES));
+
+        assertTrue(inesperados.isEmpty(), () -> "Errores inesperados: " + inesperados);
+        assertEquals(COMPRAS, exitosas.size() + rechazadas.get());
+        assertFalse(exitosas.isEmpty());
+
+        // Ningún asiento aparece en dos compras exitosas
+        Map<String, Long> duenoPorAsiento = new HashMap<>();
+        exitosas.forEach((reservaId, asientos) -> asientos.forEach(a ->
+                assertNull(duenoPorAsiento.put(a, reservaId), "Asiento " + a + " vendido dos veces")));
+
+        // La BD coincide con lo que cada compra exitosa cree tener
+        for (Map.Entry<Long, Set<String>> e : exitosas.entrySet()) {
+            assertEquals(e.getValue(), new HashSet<>(viajeAsientoRepository.findNumerosByReservaId(e.getKey())));
+        }
+        assertEquals(duenoPorAsiento.size(), viajeAsientoRepository.countByViajeIdAndEstado(viaje.getId(), "RESERVADO"));
+        assertEquals(exitosas.size(), reservaRepository.findByViajeId(viaje.getId()).size());
+    }
+
+    private static List<String> asientosAlAzar() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int cantidad = 1 + random.nextInt(3);
+        Set<String> asientos = new HashSet<>();
+        while (asientos.size() < cantidad) {
+            asientos.add(String.valueOf(1 + random.nextInt(ASIENTOS)));
+        }
+        return new ArrayList<>(asientos);
+    }
+}
@@ -0,0 +1,70 @@
+package com.andinobus.backendsmartcode.ventas.application.services;
+
+import com.andinobus.backendsmartcode.ventas.application.services.FirmaBoletos.BoletoFirmado;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FirmaBoletosTest {
+
+    private final FirmaBoletos firma = new FirmaBoletos("secreto-de-prueba");
+
+    @Test
+    void emitirYVerificar_devuelveLosMismosDatos() {
+        LocalDateTime venceEn = LocalDateTime.now().plusDays(2).truncatedTo(ChronoUnit.SECONDS);
+        String token = firma.emitir(42L, 7L, List.of("3", "4", "12A"), venceEn);
+
+        BoletoFirmado boleto = firma.verificar(token);
+
+        assertNotNull(boleto);
+        assertEquals(42L, boleto.reservaId());
+        assertEquals(7L, boleto.viajeId());
+        assertEquals(List.of("3", "4", "12A"), boleto.asientos());
+        assertEquals(venceEn, boleto.venceEn());
+        assertFalse(boleto.vencido());
+        // El QR de un boleto de pocos asientos sigue siendo pequeño
+        assertTrue(token.length() < 80, () -> "Token de " + token.length() + " caracteres");
+    }
+
+    @Test
+    void tokenAlterado_esRechazado() {
+        String token = firma.emitir(42L, 7L, List.of("3", "4"), LocalDateTime.now().plusDays(1));
+        byte[] datos = Base64.getUrlDecoder().decode(token);
+
+        // Cualquier byte cambiado (datos o firma) invalida el token
+        for (int i = 0; i < datos.length; i++) {
+            byte[] alterado = datos.clone();
+            alterado[i] ^= 0x01;
+            assertNull(firma.verificar(Base64.getUrlEncoder().withoutPadding().encodeToString(alterado)),
+                    "byte " + i);
+        }
+        // Recortado, vacío o sin Base64 válido
+        assertNull(firma.verificar(token.substring(0, token.length() - 4)));
+        assertNull(firma.verificar(""));
+        assertNull(firma.verificar("no es un token!"));
+        // Firmado con otra clave
+        assertNull(new FirmaBoletos("otro-secreto").verificar(token));
+    }
+
+    @Test
+    void tokenVencido_verificaPeroQuedaVencido() {
+        String token = firma.emitir(42L, 7L, List.of("1"), LocalDateTime.now().minusMinutes(1));
+
+        BoletoFirmado boleto = firma.verificar(token);
+
+        assertNotNull(boleto);
+        assertTrue(boleto.vencido());
+    }
+
+    @Test
+    void asientosFueraDelFormato_sonRechazadosAlEmitir() {
+        LocalDateTime venceEn = LocalDateTime.now().plusDays(1);
+        assertThrows(IllegalArgumentException.class, () -> firma.emitir(1L, 1L, List.of(), venceEn));
+        assertThrows(IllegalArgumentException.class, () -> firma.emitir(1L, 1L, List.of(""), venceEn));
+    }
+}
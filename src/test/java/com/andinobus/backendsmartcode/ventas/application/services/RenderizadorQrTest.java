@@ -0,0 +1,123 @@
+package com.andinobus.backendsmartcode.ventas.application.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderizadorQrTest {
+
+    private final List<RenderizadorQr> renderizadores = new ArrayList<>();
+
+    @AfterEach
+    void detener() {
+        renderizadores.forEach(RenderizadorQr::detenerPool);
+    }
+
+    @Test
+    void mismoContenido_seSirveDesdeLaCache() {
+        RenderizadorQr renderizador = renderizador(1 << 20);
+
+        byte[] primero = renderizador.renderizar("token", RenderizadorQr.Formato.PNG);
+        byte[] segundo = renderizador.renderizar("token", RenderizadorQr.Formato.PNG);
+        byte[] svg = renderizador.renderizar("token", RenderizadorQr.Formato.SVG);
+
+        assertSame(primero, segundo);
+        assertNotSame(primero, svg);
+        String texto = new String(svg, StandardCharsets.UTF_8);
+        assertTrue(texto.startsWith("<svg") && texto.contains("<path"), texto);
+    }
+
+    @Test
+    void cacheLlena_descartaLasImagenesMenosUsadas() {
+        // Sin espacio para ninguna imagen: cada llamada vuelve a codificar
+        RenderizadorQr renderizador = renderizador(0);
+
+        byte[] primero = renderizador.renderizar("token", RenderizadorQr.Formato.PNG);
+        byte[] segundo = renderizador.renderizar("token", RenderizadorQr.Formato.PNG);
+
+        assertNotSame(primero, segundo);
+        assertArrayEquals(primero, segundo);
+    }
+
+    @Test
+    void lote_conservaElOrdenYElFormato() {
+        RenderizadorQr renderizador = renderizador(1 << 20);
+
+        List<String> urls = renderizador.dataUrls(List.of("a", "b", "c"), RenderizadorQr.Formato.SVG);
+
+        assertEquals(3, urls.size());
+        urls.forEach(url -> assertTrue(url.startsWith("data:image/svg+xml;base64,"), url));
+        assertEquals(renderizador.dataUrl("b", RenderizadorQr.Formato.SVG), urls.get(1));
+        assertThrows(IllegalArgumentException.class, () -> RenderizadorQr.Formato.desde("gif"));
+    }
+
+    private RenderizadorQr renderizador(long maxBytes) {
+        RenderizadorQr renderizador = nuevo(maxBytes);
+        renderizadores.add(renderizador);
+        return renderizador;
+    }
+
+    private static RenderizadorQr nuevo(long maxBytes) {
+        RenderizadorQr renderizador = new RenderizadorQr();
+        ReflectionTestUtils.setField(renderizador, "maxBytes", maxBytes);
+        ReflectionTestUtils.setField(renderizador, "paralelismo", 0);
+        renderizador.iniciarPool();
+        return renderizador;
+    }
+
+    /**
+     * Benchmark manual (el proyecto no incluye JMH): boletos de un viaje de 40 asientos con tokens
+     * firmados reales, renderizados en PNG y SVG sin caché y luego servidos desde la caché.
+     * Ejecutar la clase con main
+     */
+    static final class Benchmark {
+
+        private static final int BOLETOS = 40;
+        private static final int CALENTAMIENTO = 3;
+        private static final int MEDICIONES = 10;
+
+        public static void main(String[] args) {
+            FirmaBoletos firma = new FirmaBoletos("benchmark");
+            LocalDateTime venceEn = LocalDateTime.now().plusDays(2);
+            List<String> tokens = new ArrayList<>(BOLETOS);
+            for (int i = 1; i <= BOLETOS; i++) {
+                tokens.add(firma.emitir(1000L + i, 1L, List.of(String.valueOf(i)), venceEn));
+            }
+
+            RenderizadorQr sinCache = nuevo(0);
+            RenderizadorQr conCache = nuevo(16L << 20);
+            try {
+                double png = medir(() -> sinCache.dataUrls(tokens, RenderizadorQr.Formato.PNG));
+                double svg = medir(() -> sinCache.dataUrls(tokens, RenderizadorQr.Formato.SVG));
+                double cachePng = medir(() -> conCache.dataUrls(tokens, RenderizadorQr.Formato.PNG));
+                double cacheSvg = medir(() -> conCache.dataUrls(tokens, RenderizadorQr.Formato.SVG));
+                System.out.printf("boletos=%d png=%.2f ms svg=%.2f ms cache-png=%.2f ms cache-svg=%.2f ms%n",
+                        BOLETOS, png, svg, cachePng, cacheSvg);
+                System.out.printf("bytes por QR: png=%d svg=%d%n",
+                        sinCache.renderizar(tokens.get(0), RenderizadorQr.Formato.PNG).length,
+                        sinCache.renderizar(tokens.get(0), RenderizadorQr.Formato.SVG).length);
+            } finally {
+                sinCache.detenerPool();
+                conCache.detenerPool();
+            }
+        }
+
+        private static double medir(Runnable lote) {
+            for (int i = 0; i < CALENTAMIENTO; i++) {
+                lote.run();
+            }
+            long inicio = System.nanoTime();
+            for (int i = 0; i < MEDICIONES; i++) {
+                lote.run();
+            }
+            return (System.nanoTime() - inicio) / 1e6 / MEDICIONES;
+        }
+    }
+}